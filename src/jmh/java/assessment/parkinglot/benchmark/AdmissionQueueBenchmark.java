@@ -0,0 +1,138 @@
+package assessment.parkinglot.benchmark;
+
+import assessment.parkinglot.metrics.QueryCounter;
+import java.io.IOException;
+import java.net.URI;
+import java.net.http.HttpClient;
+import java.net.http.HttpRequest;
+import java.net.http.HttpResponse;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+import org.openjdk.jmh.annotations.AuxCounters;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Threads;
+import org.openjdk.jmh.annotations.Warmup;
+import org.springframework.boot.WebApplicationType;
+import org.springframework.context.ConfigurableApplicationContext;
+
+/**
+ * Sustained overload of a small lot: 64 gates, one per client thread, share the 20 car spots of a
+ * lot of 25, each one parking a car over HTTP, keeping it {@code dwellMillis} and taking it out
+ * again. With {@code admission=false} a gate that finds the lot full retries right away, which is
+ * the retry storm; with {@code admission=true} its park waits in the admission queue instead.
+ *
+ * <p>The score is the amount of cars parked per second. The {@code parkRequests} and {@code
+ * statements} counters are the park requests the gates sent and the SQL statements the server ran
+ * per second, so divided by the score they give the requests and statements it takes to park a car.
+ * Use {@code -t} to change the amount of gates.
+ */
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 2, time = 5)
+@Measurement(iterations = 3, time = 10)
+@Fork(1)
+@Threads(64)
+public class AdmissionQueueBenchmark {
+
+  private static final Pattern VEHICLE_ID = Pattern.compile("\"vehicleId\":(\\d+)");
+
+  @State(Scope.Benchmark)
+  public static class Lot {
+
+    @Param({"false", "true"})
+    public boolean admission;
+
+    @Param({"25"})
+    public int lotSize;
+
+    @Param({"5"})
+    public int dwellMillis;
+
+    ConfigurableApplicationContext context;
+    HttpClient client;
+    String baseUrl;
+    QueryCounter queryCounter;
+    final AtomicLong countedStatements = new AtomicLong();
+
+    @Setup(Level.Trial)
+    public void start() {
+      this.context =
+          ParkingLotState.start(
+              lotSize,
+              WebApplicationType.SERVLET,
+              "--server.port=0",
+              "--spring.threads.virtual.enabled=true",
+              "--parking.admission.enabled=" + admission);
+      this.baseUrl =
+          "http://localhost:"
+              + context.getEnvironment().getProperty("local.server.port")
+              + "/parking";
+      this.client = HttpClient.newBuilder().version(HttpClient.Version.HTTP_1_1).build();
+      this.queryCounter = context.getBean(QueryCounter.class);
+      countedStatements.set(queryCounter.total());
+    }
+
+    @TearDown(Level.Trial)
+    public void stop() {
+      this.client.close();
+      this.context.close();
+    }
+
+    /** The id of the parked car, or {@code null} if the park failed. */
+    String park() throws IOException, InterruptedException {
+      HttpResponse<String> parked =
+          client.send(
+              HttpRequest.newBuilder(URI.create(baseUrl + "/park"))
+                  .header("Content-Type", "application/json")
+                  .POST(HttpRequest.BodyPublishers.ofString("{\"vehicleType\":\"CAR\"}"))
+                  .build(),
+              HttpResponse.BodyHandlers.ofString());
+      Matcher vehicleId = VEHICLE_ID.matcher(parked.body());
+      return parked.statusCode() == 200 && vehicleId.find() ? vehicleId.group(1) : null;
+    }
+
+    void leave(String vehicleId) throws IOException, InterruptedException {
+      client.send(
+          HttpRequest.newBuilder(URI.create(baseUrl + "/leave/" + vehicleId)).DELETE().build(),
+          HttpResponse.BodyHandlers.discarding());
+    }
+
+    /** The statements run since any gate last asked, so every statement is counted once. */
+    long statements() {
+      long total = queryCounter.total();
+      return total - countedStatements.getAndSet(total);
+    }
+  }
+
+  @State(Scope.Thread)
+  @AuxCounters(AuxCounters.Type.EVENTS)
+  public static class Gate {
+    public long parkRequests;
+    public long statements;
+  }
+
+  @Benchmark
+  public void parkAndLeave(Lot lot, Gate gate) throws IOException, InterruptedException {
+    String vehicleId;
+    do {
+      gate.parkRequests++;
+      vehicleId = lot.park();
+    } while (vehicleId == null);
+    Thread.sleep(lot.dwellMillis);
+    lot.leave(vehicleId);
+    gate.statements += lot.statements();
+  }
+}
@@ -0,0 +1,116 @@
+package assessment.parkinglot.benchmark;
+
+import assessment.parkinglot.allocation.AllocationStrategySelector;
+import assessment.parkinglot.allocation.BestFitStrategy;
+import assessment.parkinglot.allocation.FirstFitStrategy;
+import assessment.parkinglot.allocation.SpotAllocator;
+import assessment.parkinglot.allocation.UtilizationAwareStrategy;
+import assessment.parkinglot.domain.Vehicle;
+import assessment.parkinglot.domain.VehicleFactory;
+import assessment.parkinglot.entities.ParkingSpotEntity;
+import assessment.parkinglot.enums.AllocationStrategyType;
+import assessment.parkinglot.enums.ParkingSpotType;
+import assessment.parkinglot.enums.VehicleType;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+/**
+ * The in-memory decision of a park, with no database: getting the vehicle of the requested type,
+ * choosing the spot types to try with the strategy under test, and claiming the spots of the first
+ * one with room, which are released right after so the lot stays as it is. Vehicles cycle through
+ * motorcycles, cars and vans on a lot of {@code lotSize} spots with the first half of each type
+ * taken, and with {@code held=true} some compact and regular spots are held for reservations, so
+ * the selector filters the candidates too.
+ *
+ * <p>Meant to be run with {@code -prof gc}: the decision allocates nothing, so {@code
+ * gc.alloc.rate.norm} should stay at 0 B/op. The claims fill a buffer per amount of spots, where a
+ * park fills the array of ids it keeps for the vehicle, which is the only allocation it adds.
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+@State(Scope.Thread)
+public class AllocationDecisionBenchmark {
+
+  private static final int[] DEFAULT_DISTRIBUTION = {5, 11, 9};
+  private static final VehicleType[] VEHICLE_TYPES = VehicleType.values();
+
+  @Param({"FIRST_FIT", "BEST_FIT", "UTILIZATION_AWARE"})
+  public AllocationStrategyType strategy;
+
+  @Param({"false", "true"})
+  public boolean held;
+
+  @Param({"2500"})
+  public int lotSize;
+
+  private SpotAllocator spotAllocator;
+  private AllocationStrategySelector selector;
+  /** The claim buffer for each amount of spots, so claiming allocates nothing either. */
+  private final long[][] buffers = {new long[0], new long[1], new long[2], new long[3]};
+  private int next;
+
+  @Setup(Level.Trial)
+  public void createLot() {
+    List<ParkingSpotEntity> spots = new ArrayList<>();
+    int defaultSize = DEFAULT_DISTRIBUTION[0] + DEFAULT_DISTRIBUTION[1] + DEFAULT_DISTRIBUTION[2];
+    long id = 1;
+    for (ParkingSpotType type : ParkingSpotType.values()) {
+      int size = lotSize * DEFAULT_DISTRIBUTION[type.ordinal()] / defaultSize;
+      for (int i = 0; i < size; i++) {
+        Long vehicleId = i < size / 2 ? 1L : null;
+        spots.add(ParkingSpotEntity.builder().id(id++).type(type).vehicleId(vehicleId).build());
+      }
+    }
+    this.spotAllocator = new SpotAllocator();
+    spotAllocator.load(spots);
+    if (held) {
+      spotAllocator.hold(ParkingSpotType.COMPACT, spotAllocator.available(ParkingSpotType.COMPACT));
+      spotAllocator.hold(ParkingSpotType.REGULAR, 10);
+    }
+
+    this.selector =
+        new AllocationStrategySelector(
+            List.of(
+                new FirstFitStrategy(spotAllocator),
+                new BestFitStrategy(),
+                new UtilizationAwareStrategy(spotAllocator, 10)),
+            spotAllocator,
+            strategy);
+  }
+
+  /** Returns the type of the claimed spots, or -1 if the vehicle found no room. */
+  @Benchmark
+  public int decide() {
+    Vehicle vehicle = VehicleFactory.create(VEHICLE_TYPES[next]);
+    next = next == VEHICLE_TYPES.length - 1 ? 0 : next + 1;
+
+    List<ParkingSpotType> candidates = selector.candidates(vehicle);
+    for (int i = 0; i < candidates.size(); i++) {
+      ParkingSpotType type = candidates.get(i);
+      long[] spotIds = buffers[vehicle.spots(type)];
+      if (spotAllocator.claim(type, spotIds)) {
+        for (long spotId : spotIds) {
+          spotAllocator.release(type, spotId);
+        }
+        return type.ordinal();
+      }
+    }
+    return -1;
+  }
+}
@@ -0,0 +1,185 @@
+package assessment.parkinglot.benchmark;
+
+import assessment.parkinglot.allocation.BestFitStrategy;
+import assessment.parkinglot.allocation.FirstFitStrategy;
+import assessment.parkinglot.allocation.SpotAllocationStrategy;
+import assessment.parkinglot.allocation.SpotAllocator;
+import assessment.parkinglot.allocation.UtilizationAwareStrategy;
+import assessment.parkinglot.domain.Vehicle;
+import assessment.parkinglot.domain.VehicleFactory;
+import assessment.parkinglot.entities.ParkingSpotEntity;
+import assessment.parkinglot.enums.AllocationStrategyType;
+import assessment.parkinglot.enums.ParkingSpotType;
+import assessment.parkinglot.enums.VehicleType;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+import org.openjdk.jmh.annotations.AuxCounters;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+/**
+ * Simulates a saturated lot of {@code lotSize} spots, with the default mix of spot types, where
+ * arrivals outnumber departures, and compares the allocation strategies.
+ *
+ * <p>Every invocation is an arrival or a departure of a random parked vehicle. An arrival is a
+ * motorcycle, a car or a van, with the weights of {@code mix}, parked with the strategy under test.
+ * The {@code acceptance}, {@code carAcceptance} and {@code vanAcceptance} counters are the share of
+ * arrivals that found a spot; the score is the latency of choosing and claiming the spots, averaged
+ * with departures. JMH adds up event counters across iterations, so the ratios are measured in a
+ * single one.
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 1, time = 10)
+@Fork(1)
+@State(Scope.Thread)
+public class AllocationStrategyBenchmark {
+
+  private static final int[] DEFAULT_DISTRIBUTION = {5, 11, 9};
+  private static final Vehicle[] VEHICLES = {
+    VehicleFactory.create(VehicleType.MOTORCYCLE),
+    VehicleFactory.create(VehicleType.CAR),
+    VehicleFactory.create(VehicleType.VAN)
+  };
+
+  @AuxCounters(AuxCounters.Type.EVENTS)
+  @State(Scope.Thread)
+  public static class Acceptance {
+    public double acceptance;
+    public double carAcceptance;
+    public double vanAcceptance;
+
+    final long[] arrivals = new long[VehicleType.values().length];
+    final long[] accepted = new long[VehicleType.values().length];
+
+    @Setup(Level.Iteration)
+    public void reset() {
+      Arrays.fill(arrivals, 0);
+      Arrays.fill(accepted, 0);
+    }
+
+    void count(VehicleType type, boolean parked) {
+      arrivals[type.ordinal()]++;
+      if (parked) {
+        accepted[type.ordinal()]++;
+      }
+      long allArrivals = arrivals[0] + arrivals[1] + arrivals[2];
+      this.acceptance = (double) (accepted[0] + accepted[1] + accepted[2]) / allArrivals;
+      this.carAcceptance = ratio(VehicleType.CAR);
+      this.vanAcceptance = ratio(VehicleType.VAN);
+    }
+
+    private double ratio(VehicleType type) {
+      return arrivals[type.ordinal()] == 0
+          ? 0
+          : (double) accepted[type.ordinal()] / arrivals[type.ordinal()];
+    }
+  }
+
+  /** A parked vehicle, with the spots to release when it leaves. */
+  private record Parked(ParkingSpotType type, long[] spotIds) {}
+
+  @Param({"FIRST_FIT", "BEST_FIT", "UTILIZATION_AWARE"})
+  public AllocationStrategyType strategy;
+
+  @Param({"2500"})
+  public int lotSize;
+
+  /** Share of the invocations that are arrivals, above one half so the lot stays full. */
+  @Param({"0.6"})
+  public double arrivalRate;
+
+  /** Weights of motorcycles, cars and vans among the arrivals. */
+  @Param({"20:55:25"})
+  public String mix;
+
+  private final Random random = new Random(42);
+  private final List<Parked> parked = new ArrayList<>();
+  private SpotAllocator spotAllocator;
+  private SpotAllocationStrategy allocationStrategy;
+  private int[] weights;
+
+  @Setup(Level.Trial)
+  public void createLot() {
+    List<ParkingSpotEntity> spots = new ArrayList<>();
+    int defaultSize = DEFAULT_DISTRIBUTION[0] + DEFAULT_DISTRIBUTION[1] + DEFAULT_DISTRIBUTION[2];
+    long id = 1;
+    for (ParkingSpotType type : ParkingSpotType.values()) {
+      for (int i = 0; i < lotSize * DEFAULT_DISTRIBUTION[type.ordinal()] / defaultSize; i++) {
+        spots.add(ParkingSpotEntity.builder().id(id++).type(type).build());
+      }
+    }
+    this.spotAllocator = new SpotAllocator();
+    spotAllocator.load(spots);
+
+    this.allocationStrategy =
+        switch (strategy) {
+          case FIRST_FIT -> new FirstFitStrategy(spotAllocator);
+          case BEST_FIT -> new BestFitStrategy();
+          case UTILIZATION_AWARE -> new UtilizationAwareStrategy(spotAllocator, 10);
+        };
+    String[] parts = mix.split(":");
+    this.weights =
+        new int[] {
+          Integer.parseInt(parts[0]), Integer.parseInt(parts[1]), Integer.parseInt(parts[2])
+        };
+
+    for (int i = 0; i < 4 * lotSize; i++) {
+      this.arrive();
+    }
+  }
+
+  @Benchmark
+  public boolean arriveOrDepart(Acceptance counter) {
+    if (!parked.isEmpty() && random.nextDouble() >= arrivalRate) {
+      Parked leaving = parked.set(random.nextInt(parked.size()), parked.get(parked.size() - 1));
+      parked.remove(parked.size() - 1);
+      for (long spotId : leaving.spotIds()) {
+        spotAllocator.release(leaving.type(), spotId);
+      }
+      return false;
+    }
+
+    Vehicle vehicle = this.nextVehicle();
+    boolean accepted = this.park(vehicle);
+    counter.count(vehicle.getType(), accepted);
+    return accepted;
+  }
+
+  private boolean arrive() {
+    return this.park(this.nextVehicle());
+  }
+
+  private Vehicle nextVehicle() {
+    int pick = random.nextInt(weights[0] + weights[1] + weights[2]);
+    if (pick < weights[0]) {
+      return VEHICLES[0];
+    }
+    return pick < weights[0] + weights[1] ? VEHICLES[1] : VEHICLES[2];
+  }
+
+  private boolean park(Vehicle vehicle) {
+    for (ParkingSpotType type : allocationStrategy.candidates(vehicle)) {
+      long[] spotIds = new long[vehicle.spots(type)];
+      if (spotAllocator.claim(type, spotIds)) {
+        parked.add(new Parked(type, spotIds));
+        return true;
+      }
+    }
+    return false;
+  }
+}
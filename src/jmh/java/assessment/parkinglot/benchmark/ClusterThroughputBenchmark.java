@@ -0,0 +1,142 @@
+package assessment.parkinglot.benchmark;
+
+import assessment.parkinglot.ParkingLotServiceApplication;
+import java.io.IOException;
+import java.net.ServerSocket;
+import java.net.URI;
+import java.net.http.HttpClient;
+import java.net.http.HttpRequest;
+import java.net.http.HttpResponse;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Threads;
+import org.openjdk.jmh.annotations.Warmup;
+import org.springframework.boot.WebApplicationType;
+import org.springframework.boot.builder.SpringApplicationBuilder;
+import org.springframework.context.ConfigurableApplicationContext;
+
+/**
+ * Aggregate park throughput of a cluster of {@code nodes} embedded nodes sharing a lot of {@code
+ * levels} levels.
+ *
+ * <p>Every client thread sticks to one node, spread round robin, and parks a car and takes it out
+ * again, as a load balancer in front of the cluster would send it. The lot keeps plenty of room, so
+ * parks are served by the node that receives them and the score shows how the nodes add up. The
+ * nodes share this JVM and its cores, so the scaling measured here is a lower bound of the one of
+ * nodes on separate machines. Use {@code -t} to change the amount of client threads.
+ */
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 2, time = 5)
+@Measurement(iterations = 3, time = 10)
+@Fork(1)
+@Threads(64)
+@State(Scope.Benchmark)
+public class ClusterThroughputBenchmark {
+
+  private static final Pattern VEHICLE_ID = Pattern.compile("\"vehicleId\":(\\d+)");
+
+  @Param({"1", "2", "3"})
+  public int nodes;
+
+  @Param({"12"})
+  public int levels;
+
+  @Param({"1000"})
+  public int spotsPerLevel;
+
+  private final List<ConfigurableApplicationContext> contexts = new ArrayList<>();
+  private final List<String> baseUrls = new ArrayList<>();
+  private final AtomicInteger clients = new AtomicInteger();
+  private HttpClient client;
+
+  @State(Scope.Thread)
+  public static class Client {
+    String baseUrl;
+
+    @Setup(Level.Trial)
+    public void pickNode(ClusterThroughputBenchmark cluster) {
+      this.baseUrl =
+          cluster.baseUrls.get(cluster.clients.getAndIncrement() % cluster.baseUrls.size());
+    }
+  }
+
+  @Setup(Level.Trial)
+  public void start() throws IOException {
+    List<String> urls = new ArrayList<>();
+    for (int i = 0; i < nodes; i++) {
+      try (ServerSocket socket = new ServerSocket(0)) {
+        urls.add("http://localhost:" + socket.getLocalPort());
+      }
+    }
+
+    for (int i = 0; i < nodes; i++) {
+      List<String> args = new ArrayList<>(List.of("--logging.level.root=WARN"));
+      args.add("--server.port=" + URI.create(urls.get(i)).getPort());
+      args.add("--parking.cluster.enabled=true");
+      args.add("--parking.cluster.self=node-" + i);
+      for (int n = 0; n < nodes; n++) {
+        args.add("--parking.cluster.nodes[" + n + "].name=node-" + n);
+        args.add("--parking.cluster.nodes[" + n + "].url=" + urls.get(n));
+      }
+      for (int level = 0; level < levels; level++) {
+        args.add("--parking.lot.levels[" + level + "].name=" + (level + 1));
+        args.add("--parking.lot.levels[" + level + "].zones[0].name=A");
+        args.add("--parking.lot.levels[" + level + "].zones[0].spots.COMPACT=" + spotsPerLevel);
+      }
+      contexts.add(
+          new SpringApplicationBuilder(ParkingLotServiceApplication.class)
+              .web(WebApplicationType.SERVLET)
+              .logStartupInfo(false)
+              .run(args.toArray(String[]::new)));
+      baseUrls.add(urls.get(i) + "/parking");
+    }
+    this.client = HttpClient.newBuilder().version(HttpClient.Version.HTTP_1_1).build();
+  }
+
+  @TearDown(Level.Trial)
+  public void stop() {
+    this.client.close();
+    this.contexts.forEach(ConfigurableApplicationContext::close);
+  }
+
+  @Benchmark
+  public int parkAndLeave(Client node) throws IOException, InterruptedException {
+    HttpResponse<String> parked =
+        client.send(
+            HttpRequest.newBuilder(URI.create(node.baseUrl + "/park"))
+                .header("Content-Type", "application/json")
+                .POST(HttpRequest.BodyPublishers.ofString("{\"vehicleType\":\"CAR\"}"))
+                .build(),
+            HttpResponse.BodyHandlers.ofString());
+
+    Matcher vehicleId = VEHICLE_ID.matcher(parked.body());
+    if (parked.statusCode() != 200 || !vehicleId.find()) {
+      return parked.statusCode();
+    }
+
+    return client
+        .send(
+            HttpRequest.newBuilder(URI.create(node.baseUrl + "/leave/" + vehicleId.group(1)))
+                .DELETE()
+                .build(),
+            HttpResponse.BodyHandlers.discarding())
+        .statusCode();
+  }
+}
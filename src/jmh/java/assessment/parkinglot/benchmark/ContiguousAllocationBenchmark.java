@@ -0,0 +1,71 @@
+package assessment.parkinglot.benchmark;
+
+import assessment.parkinglot.allocation.SpotAllocator;
+import assessment.parkinglot.enums.ParkingSpotType;
+import java.util.Arrays;
+import java.util.concurrent.TimeUnit;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+/**
+ * Measures the search of adjacent free spots on a lot of {@code lotSize} regular spots where every
+ * third spot is taken, so the only run of three free spots is the last one. {@code claimVan} claims
+ * and releases that run, {@code claimSpot} a single spot, which only pays for keeping the index up
+ * to date. Neither should grow with the size of the lot beyond its logarithm.
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 2, time = 2)
+@Measurement(iterations = 3, time = 2)
+@Fork(1)
+@State(Scope.Thread)
+public class ContiguousAllocationBenchmark {
+
+  @Param({"10000", "100000", "1000000"})
+  public int lotSize;
+
+  private final SpotAllocator spotAllocator = new SpotAllocator();
+  private final long[] van = new long[3];
+  private final long[] spot = new long[1];
+
+  @Setup(Level.Trial)
+  public void createLot() {
+    long[] spotIds = new long[lotSize];
+    ParkingSpotType[] types = new ParkingSpotType[lotSize];
+    boolean[] free = new boolean[lotSize];
+    Arrays.fill(types, ParkingSpotType.REGULAR);
+    for (int i = 0; i < lotSize; i++) {
+      spotIds[i] = i + 1;
+      free[i] = i % 3 != 2 || i >= lotSize - 3;
+    }
+    spotAllocator.load(spotIds, types, free);
+  }
+
+  @Benchmark
+  public long claimVan() {
+    if (!spotAllocator.claim(ParkingSpotType.REGULAR, van)) {
+      throw new IllegalStateException("No run of adjacent spots found");
+    }
+    for (long spotId : van) {
+      spotAllocator.release(ParkingSpotType.REGULAR, spotId);
+    }
+    return van[0];
+  }
+
+  @Benchmark
+  public long claimSpot() {
+    spotAllocator.claim(ParkingSpotType.REGULAR, spot);
+    spotAllocator.release(ParkingSpotType.REGULAR, spot[0]);
+    return spot[0];
+  }
+}
@@ -0,0 +1,110 @@
+package assessment.parkinglot.benchmark;
+
+import java.io.IOException;
+import java.net.URI;
+import java.net.http.HttpClient;
+import java.net.http.HttpRequest;
+import java.net.http.HttpResponse;
+import java.util.concurrent.TimeUnit;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Threads;
+import org.openjdk.jmh.annotations.Warmup;
+import org.springframework.boot.WebApplicationType;
+import org.springframework.context.ConfigurableApplicationContext;
+
+/**
+ * Load test of the HTTP layer, run once on platform Tomcat threads and once on virtual threads.
+ *
+ * <p>More client threads than Tomcat has platform workers hit the running server, each one parking
+ * a car and taking it out again, or reading a page of the status. Throughput mode reports requests
+ * per millisecond, sample mode reports the latency percentiles (p99 among them). Use {@code -t} to
+ * change the amount of client threads.
+ */
+@BenchmarkMode({Mode.Throughput, Mode.SampleTime})
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 2, time = 5)
+@Measurement(iterations = 3, time = 10)
+@Fork(1)
+@Threads(256)
+@State(Scope.Benchmark)
+public class HttpLoadBenchmark {
+
+  private static final Pattern VEHICLE_ID = Pattern.compile("\"vehicleId\":(\\d+)");
+
+  @Param({"false", "true"})
+  public boolean virtualThreads;
+
+  @Param({"10000"})
+  public int lotSize;
+
+  private ConfigurableApplicationContext context;
+  private HttpClient client;
+  private String baseUrl;
+
+  @Setup(Level.Trial)
+  public void start() {
+    this.context =
+        ParkingLotState.start(
+            lotSize,
+            WebApplicationType.SERVLET,
+            "--server.port=0",
+            "--spring.threads.virtual.enabled=" + virtualThreads);
+    this.baseUrl =
+        "http://localhost:"
+            + context.getEnvironment().getProperty("local.server.port")
+            + "/parking";
+    this.client = HttpClient.newBuilder().version(HttpClient.Version.HTTP_1_1).build();
+  }
+
+  @TearDown(Level.Trial)
+  public void stop() {
+    this.client.close();
+    this.context.close();
+  }
+
+  @Benchmark
+  public int parkAndLeave() throws IOException, InterruptedException {
+    HttpResponse<String> parked =
+        client.send(
+            HttpRequest.newBuilder(URI.create(baseUrl + "/park"))
+                .header("Content-Type", "application/json")
+                .POST(HttpRequest.BodyPublishers.ofString("{\"vehicleType\":\"CAR\"}"))
+                .build(),
+            HttpResponse.BodyHandlers.ofString());
+
+    Matcher vehicleId = VEHICLE_ID.matcher(parked.body());
+    if (parked.statusCode() != 200 || !vehicleId.find()) {
+      return parked.statusCode();
+    }
+
+    return client
+        .send(
+            HttpRequest.newBuilder(URI.create(baseUrl + "/leave/" + vehicleId.group(1)))
+                .DELETE()
+                .build(),
+            HttpResponse.BodyHandlers.discarding())
+        .statusCode();
+  }
+
+  @Benchmark
+  public int statusPage() throws IOException, InterruptedException {
+    return client
+        .send(
+            HttpRequest.newBuilder(URI.create(baseUrl + "/status/page?limit=100")).GET().build(),
+            HttpResponse.BodyHandlers.discarding())
+        .statusCode();
+  }
+}
@@ -0,0 +1,111 @@
+package assessment.parkinglot.benchmark;
+
+import assessment.parkinglot.cache.IdempotencyCache;
+import assessment.parkinglot.dto.ParkingSpotDTO;
+import assessment.parkinglot.dto.VehicleDTO;
+import assessment.parkinglot.enums.ParkingSpotType;
+import assessment.parkinglot.enums.VehicleType;
+import java.lang.management.ManagementFactory;
+import java.lang.management.MemoryMXBean;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+/**
+ * Hit latency and memory bound of the {@link IdempotencyCache}, filled up to {@code maxEntries}
+ * results of a parked car.
+ *
+ * <p>{@code hit} looks up a random key already in the cache, {@code missAndEvict} runs a new key,
+ * which evicts the oldest entry of the full cache, and {@code withoutKey} is the cost of a request
+ * sent without a key. The heap retained by the full cache is printed once it is filled, measured
+ * after a GC before and after the fill.
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 2, time = 2)
+@Measurement(iterations = 3, time = 5)
+@Fork(1)
+@State(Scope.Benchmark)
+public class IdempotencyCacheBenchmark {
+
+  @Param({"10000", "1000000"})
+  public int maxEntries;
+
+  private IdempotencyCache cache;
+  private String[] keys;
+  private final AtomicLong nextKey = new AtomicLong();
+
+  @Setup(Level.Trial)
+  public void fill() {
+    this.keys = new String[maxEntries];
+    for (int i = 0; i < maxEntries; i++) {
+      keys[i] = "gate-" + i;
+    }
+
+    long before = usedHeap();
+    this.cache = new IdempotencyCache(maxEntries, Duration.ofHours(1));
+    for (int i = 0; i < maxEntries; i++) {
+      long vehicleId = i;
+      cache.execute("park", keys[i], () -> parkedCar(vehicleId));
+    }
+    long retained = usedHeap() - before;
+    System.out.printf(
+        "%nIdempotency cache of %d entries retains %d KB, %d bytes per entry%n",
+        maxEntries, retained / 1024, retained / maxEntries);
+  }
+
+  @Benchmark
+  public VehicleDTO hit() {
+    String key = keys[ThreadLocalRandom.current().nextInt(keys.length)];
+    return cache.execute("park", key, () -> parkedCar(-1));
+  }
+
+  @Benchmark
+  public VehicleDTO missAndEvict() {
+    long vehicleId = nextKey.incrementAndGet();
+    return cache.execute("park", "new-" + vehicleId, () -> parkedCar(vehicleId));
+  }
+
+  @Benchmark
+  public VehicleDTO withoutKey() {
+    return cache.execute("park", null, () -> parkedCar(-1));
+  }
+
+  private static VehicleDTO parkedCar(long vehicleId) {
+    List<ParkingSpotDTO> parkedOn = new ArrayList<>(1);
+    parkedOn.add(
+        ParkingSpotDTO.builder()
+            .parkingSpotId(vehicleId)
+            .type(ParkingSpotType.COMPACT)
+            .build());
+    return VehicleDTO.builder()
+        .vehicleId(vehicleId)
+        .type(VehicleType.CAR)
+        .parked(true)
+        .parkedOn(parkedOn)
+        .build();
+  }
+
+  private static long usedHeap() {
+    MemoryMXBean memory = ManagementFactory.getMemoryMXBean();
+    for (int i = 0; i < 3; i++) {
+      System.gc();
+    }
+    return memory.getHeapMemoryUsage().getUsed();
+  }
+}
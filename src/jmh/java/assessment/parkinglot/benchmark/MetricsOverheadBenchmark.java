@@ -0,0 +1,70 @@
+package assessment.parkinglot.benchmark;
+
+import assessment.parkinglot.dto.VehicleDTO;
+import assessment.parkinglot.enums.VehicleType;
+import assessment.parkinglot.metrics.ParkingMetrics;
+import assessment.parkinglot.service.ParkingService;
+import java.util.concurrent.TimeUnit;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+import org.springframework.boot.WebApplicationType;
+import org.springframework.context.ConfigurableApplicationContext;
+
+/**
+ * Compares the park and leave paths with and without metrics, and measures a single recording on
+ * its own. Run it with {@code -prof gc} to check that recording does not allocate.
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+@State(Scope.Benchmark)
+public class MetricsOverheadBenchmark {
+
+  @Param({"true", "false"})
+  public boolean instrumented;
+
+  @Param({"10000"})
+  public int lotSize;
+
+  private ConfigurableApplicationContext context;
+  private ParkingService parkingService;
+  private ParkingMetrics parkingMetrics;
+
+  @Setup(Level.Trial)
+  public void start() {
+    this.context =
+        ParkingLotState.start(
+            lotSize, WebApplicationType.NONE, "--parking.metrics.enabled=" + instrumented);
+    this.parkingService = context.getBean(ParkingService.class);
+    this.parkingMetrics = context.getBean(ParkingMetrics.class);
+  }
+
+  @TearDown(Level.Trial)
+  public void stop() {
+    this.context.close();
+  }
+
+  @Benchmark
+  public VehicleDTO parkAndLeave() {
+    VehicleDTO parked = parkingService.parkVehicle(VehicleType.CAR);
+    return parkingService.removeVehicle(parked.getVehicleId());
+  }
+
+  @Benchmark
+  public void recordPark() {
+    parkingMetrics.park(VehicleType.CAR, 1_000);
+  }
+}
@@ -0,0 +1,118 @@
+package assessment.parkinglot.benchmark;
+
+import assessment.parkinglot.enums.VehicleType;
+import assessment.parkinglot.feed.OccupancyFeed;
+import assessment.parkinglot.history.OccupancyRecorder;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.net.Socket;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+import org.springframework.boot.WebApplicationType;
+import org.springframework.context.ConfigurableApplicationContext;
+
+/**
+ * Load test of the occupancy feed: {@code subscribers} clients subscribe to the running server,
+ * each one draining its stream on a virtual thread, and every operation records a park and
+ * broadcasts the update to all of them. The broadcast queues the frame for every subscriber and
+ * the writes run on the virtual threads of the feed, so the time of a broadcast divided by the
+ * amount of subscribers is the cost of a connected client per update on the scheduler thread. The
+ * buffers are unbounded here, since the benchmark broadcasts far faster than the clients read. Run
+ * it with {@code -prof gc} to see what a client allocates per update: the node that queues the
+ * frame, and a virtual thread whenever its writer had caught up.
+ *
+ * <p>Each subscriber takes two file descriptors, one per end, so raise {@code ulimit -n} above
+ * twice the amount of subscribers.
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 2, time = 2)
+@Measurement(iterations = 3, time = 5)
+@Fork(1)
+@State(Scope.Benchmark)
+public class OccupancyFeedBenchmark {
+
+  @Param({"100", "1000", "5000"})
+  public int subscribers;
+
+  @Param({"10000"})
+  public int lotSize;
+
+  private ConfigurableApplicationContext context;
+  private OccupancyRecorder occupancyRecorder;
+  private OccupancyFeed occupancyFeed;
+  private final List<Socket> clients = new ArrayList<>();
+
+  @Setup(Level.Trial)
+  public void start() throws IOException, InterruptedException {
+    this.context =
+        ParkingLotState.start(
+            lotSize,
+            WebApplicationType.SERVLET,
+            "--server.port=0",
+            "--server.tomcat.max-connections=" + (subscribers + 100),
+            "--spring.threads.virtual.enabled=true",
+            "--parking.feed.interval=PT1H",
+            "--parking.feed.timeout=PT1H",
+            "--parking.feed.buffer=" + Integer.MAX_VALUE);
+    this.occupancyRecorder = context.getBean(OccupancyRecorder.class);
+    this.occupancyFeed = context.getBean(OccupancyFeed.class);
+
+    int port = Integer.parseInt(context.getEnvironment().getProperty("local.server.port"));
+    byte[] request =
+        ("GET /parking/status/feed HTTP/1.1\r\nHost: localhost\r\nAccept: text/event-stream\r\n\r\n")
+            .getBytes(StandardCharsets.US_ASCII);
+    for (int i = 0; i < subscribers; i++) {
+      Socket client = new Socket("localhost", port);
+      OutputStream out = client.getOutputStream();
+      out.write(request);
+      out.flush();
+      clients.add(client);
+      Thread.ofVirtual().start(() -> drain(client));
+    }
+    while (occupancyFeed.subscribers() < subscribers) {
+      Thread.sleep(10);
+    }
+  }
+
+  @TearDown(Level.Trial)
+  public void stop() throws IOException {
+    for (Socket client : clients) {
+      client.close();
+    }
+    this.context.close();
+  }
+
+  @Benchmark
+  public void parkAndBroadcast() {
+    occupancyRecorder.park(VehicleType.CAR);
+    occupancyFeed.broadcast();
+  }
+
+  private static void drain(Socket client) {
+    byte[] buffer = new byte[4096];
+    try (InputStream in = client.getInputStream()) {
+      while (in.read(buffer) >= 0) {
+        // Discards the events, like a client that keeps up.
+      }
+    } catch (IOException e) {
+      // The benchmark is over.
+    }
+  }
+}
@@ -0,0 +1,91 @@
+package assessment.parkinglot.benchmark;
+
+import assessment.parkinglot.dto.VehicleDTO;
+import assessment.parkinglot.enums.VehicleType;
+import assessment.parkinglot.history.OccupancyRecorder;
+import assessment.parkinglot.service.ParkingService;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Collections;
+import java.util.concurrent.TimeUnit;
+import java.util.stream.Stream;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+import org.springframework.boot.WebApplicationType;
+import org.springframework.context.ConfigurableApplicationContext;
+
+/**
+ * Compares the park and leave path with and without the occupancy history, on the write-behind
+ * mode without fsync, the fastest path there is, and measures a single recording on its own. Run it
+ * with {@code -prof gc} to check that recording does not allocate.
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+@State(Scope.Benchmark)
+public class OccupancyHistoryBenchmark {
+
+  @Param({"true", "false"})
+  public boolean recording;
+
+  @Param({"10000"})
+  public int lotSize;
+
+  private Path directory;
+  private ConfigurableApplicationContext context;
+  private ParkingService parkingService;
+  private OccupancyRecorder occupancyRecorder;
+  private final long parkedAt = System.currentTimeMillis();
+
+  @Setup(Level.Trial)
+  public void start() throws IOException {
+    this.directory = Files.createTempDirectory("parking-history");
+    this.context =
+        ParkingLotState.start(
+            lotSize,
+            WebApplicationType.NONE,
+            "--parking.history.enabled=" + recording,
+            "--parking.persistence.mode=write-behind",
+            "--parking.journal.fsync=false",
+            "--parking.journal.directory=" + directory.resolve("journal"),
+            "--parking.snapshot.path=" + directory.resolve("lot.snapshot"));
+    this.parkingService = context.getBean(ParkingService.class);
+    this.occupancyRecorder = context.getBean(OccupancyRecorder.class);
+  }
+
+  @TearDown(Level.Trial)
+  public void stop() throws IOException {
+    this.context.close();
+    try (Stream<Path> files = Files.walk(directory)) {
+      for (Path file : files.sorted(Collections.reverseOrder()).toList()) {
+        Files.delete(file);
+      }
+    }
+  }
+
+  @Benchmark
+  public VehicleDTO parkAndLeave() {
+    VehicleDTO parked = parkingService.parkVehicle(VehicleType.CAR);
+    return parkingService.removeVehicle(parked.getVehicleId());
+  }
+
+  @Benchmark
+  public void recordParkAndLeave() {
+    occupancyRecorder.park(VehicleType.CAR);
+    occupancyRecorder.leave(VehicleType.CAR, parkedAt);
+  }
+}
@@ -0,0 +1,66 @@
+package assessment.parkinglot.benchmark;
+
+import assessment.parkinglot.domain.Car;
+import assessment.parkinglot.domain.Motorcycle;
+import assessment.parkinglot.domain.Van;
+import assessment.parkinglot.domain.VehicleFactory;
+import assessment.parkinglot.dto.VehicleDTO;
+import assessment.parkinglot.enums.VehicleType;
+import java.util.concurrent.TimeUnit;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+
+/**
+ * Benchmarks the {@code ParkBehavior.park} overloads on their own, without the availability check
+ * done by the service.
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+@State(Scope.Benchmark)
+public class ParkBehaviorBenchmark {
+
+  /** Removes, after every invocation, the vehicle the invocation parked. */
+  @State(Scope.Thread)
+  public static class Arrival {
+    VehicleDTO parked;
+
+    @TearDown(Level.Invocation)
+    public void leave(ParkingLotState lot) {
+      lot.parkingService.removeVehicle(this.parked.getVehicleId());
+    }
+  }
+
+  private final Car car = (Car) VehicleFactory.create(VehicleType.CAR);
+  private final Motorcycle motorcycle = (Motorcycle) VehicleFactory.create(VehicleType.MOTORCYCLE);
+  private final Van van = (Van) VehicleFactory.create(VehicleType.VAN);
+
+  @Benchmark
+  public VehicleDTO parkCar(ParkingLotState lot, Arrival arrival) {
+    arrival.parked = lot.parkBehavior.park(car);
+    return arrival.parked;
+  }
+
+  @Benchmark
+  public VehicleDTO parkMotorcycle(ParkingLotState lot, Arrival arrival) {
+    arrival.parked = lot.parkBehavior.park(motorcycle);
+    return arrival.parked;
+  }
+
+  @Benchmark
+  public VehicleDTO parkVan(ParkingLotState lot, Arrival arrival) {
+    arrival.parked = lot.parkBehavior.park(van);
+    return arrival.parked;
+  }
+}
@@ -0,0 +1,69 @@
+package assessment.parkinglot.benchmark;
+
+import assessment.parkinglot.dto.VehicleDTO;
+import jakarta.persistence.EntityManagerFactory;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+import org.hibernate.SessionFactory;
+import org.hibernate.stat.Statistics;
+import org.openjdk.jmh.annotations.AuxCounters;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+/**
+ * Counts the SQL statements issued by {@code ParkingService.getAllParkedVehicles}. The {@code
+ * queriesPerCall} counter must stay the same for every lot size and occupancy.
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 2, time = 2)
+@Measurement(iterations = 3, time = 2)
+@Fork(1)
+public class ParkedVehiclesQueryBenchmark {
+
+  @AuxCounters(AuxCounters.Type.EVENTS)
+  @State(Scope.Thread)
+  public static class QueryCounter {
+    public double queriesPerCall;
+
+    Statistics statistics;
+    long calls;
+
+    @Setup(Level.Trial)
+    public void enableStatistics(ParkingLotState lot) {
+      this.statistics =
+          lot.context
+              .getBean(EntityManagerFactory.class)
+              .unwrap(SessionFactory.class)
+              .getStatistics();
+      this.statistics.setStatisticsEnabled(true);
+    }
+
+    @Setup(Level.Iteration)
+    public void reset() {
+      this.statistics.clear();
+      this.calls = 0;
+    }
+
+    void count() {
+      this.calls++;
+      this.queriesPerCall = (double) this.statistics.getPrepareStatementCount() / this.calls;
+    }
+  }
+
+  @Benchmark
+  public List<VehicleDTO> getAllParkedVehicles(ParkingLotState lot, QueryCounter counter) {
+    List<VehicleDTO> parked = lot.parkingService.getAllParkedVehicles();
+    counter.count();
+    return parked;
+  }
+}
@@ -0,0 +1,138 @@
+package assessment.parkinglot.benchmark;
+
+import assessment.parkinglot.ParkingLotServiceApplication;
+import assessment.parkinglot.allocation.SpotAllocator;
+import assessment.parkinglot.behavior.ParkBehavior;
+import assessment.parkinglot.entities.ParkingSpotEntity;
+import assessment.parkinglot.enums.ParkingSpotType;
+import assessment.parkinglot.enums.VehicleType;
+import assessment.parkinglot.service.ParkingService;
+import java.util.ArrayList;
+import java.util.List;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.springframework.boot.WebApplicationType;
+import org.springframework.boot.builder.SpringApplicationBuilder;
+import org.springframework.context.ConfigurableApplicationContext;
+import org.springframework.jdbc.core.JdbcTemplate;
+
+/**
+ * A running application with a lot of {@code lotSize} spots, {@code occupancy} percent of them
+ * taken.
+ *
+ * <p>The application starts with a single zone of the requested size, keeping the proportion of
+ * motorcycle, compact and regular spots of the default lot. Vehicles are then inserted with JDBC
+ * batches, since going through the service would take longer than the benchmarks themselves. Every
+ * type keeps at least 3 free spots so a van always fits.
+ */
+@State(Scope.Benchmark)
+public class ParkingLotState {
+
+  private static final int BATCH_SIZE = 10_000;
+  private static final int[] DEFAULT_DISTRIBUTION = {5, 11, 9};
+  private static final long FIRST_SEEDED_VEHICLE_ID = 1_000_000_000L;
+
+  @Param({"25", "10000", "1000000"})
+  public int lotSize;
+
+  @Param({"0", "50", "90"})
+  public int occupancy;
+
+  public ConfigurableApplicationContext context;
+  public ParkingService parkingService;
+  public ParkBehavior parkBehavior;
+
+  @Setup(Level.Trial)
+  public void start() {
+    this.context = start(lotSize);
+    this.parkingService = context.getBean(ParkingService.class);
+    this.parkBehavior = context.getBean(ParkBehavior.class);
+
+    JdbcTemplate jdbc = context.getBean(JdbcTemplate.class);
+    this.occupySpots(jdbc);
+
+    List<ParkingSpotEntity> spots =
+        jdbc.query(
+            "select id, type, vehicle_id from parking_spot_entity",
+            (rs, i) ->
+                ParkingSpotEntity.builder()
+                    .id(rs.getLong(1))
+                    .type(ParkingSpotType.values()[rs.getInt(2)])
+                    .vehicleId((Long) rs.getObject(3))
+                    .build());
+    context.getBean(SpotAllocator.class).load(spots);
+  }
+
+  @TearDown(Level.Trial)
+  public void stop() {
+    this.context.close();
+  }
+
+  /**
+   * Starts the application, without web server, with a lot of {@code lotSize} spots.
+   *
+   * @param lotSize The amount of spots of the lot.
+   * @return The context of the running application.
+   */
+  static ConfigurableApplicationContext start(int lotSize) {
+    return start(lotSize, WebApplicationType.NONE);
+  }
+
+  /**
+   * Starts the application with a lot of {@code lotSize} spots.
+   *
+   * @param lotSize The amount of spots of the lot.
+   * @param webApplicationType Whether to start a web server.
+   * @param extraArgs Any other command line argument.
+   * @return The context of the running application.
+   */
+  static ConfigurableApplicationContext start(
+      int lotSize, WebApplicationType webApplicationType, String... extraArgs) {
+    int defaultSize = DEFAULT_DISTRIBUTION[0] + DEFAULT_DISTRIBUTION[1] + DEFAULT_DISTRIBUTION[2];
+    List<String> args = new ArrayList<>(List.of("--logging.level.root=WARN"));
+    args.add("--parking.lot.levels[0].name=1");
+    args.add("--parking.lot.levels[0].zones[0].name=A");
+    for (ParkingSpotType type : ParkingSpotType.values()) {
+      long amount = (long) lotSize * DEFAULT_DISTRIBUTION[type.ordinal()] / defaultSize;
+      args.add("--parking.lot.levels[0].zones[0].spots." + type.name() + "=" + amount);
+    }
+    args.addAll(List.of(extraArgs));
+
+    return new SpringApplicationBuilder(ParkingLotServiceApplication.class)
+        .web(webApplicationType)
+        .logStartupInfo(false)
+        .run(args.toArray(String[]::new));
+  }
+
+  private void occupySpots(JdbcTemplate jdbc) {
+    long vehicleId = FIRST_SEEDED_VEHICLE_ID;
+
+    for (ParkingSpotType type : ParkingSpotType.values()) {
+      List<Long> spotIds =
+          jdbc.queryForList(
+              "select id from parking_spot_entity where type = ? order by id",
+              Long.class,
+              type.ordinal());
+      int taken = Math.min(spotIds.size() * occupancy / 100, Math.max(0, spotIds.size() - 3));
+      VehicleType vehicleType =
+          ParkingSpotType.MOTORCYCLE.equals(type) ? VehicleType.MOTORCYCLE : VehicleType.CAR;
+
+      List<Object[]> vehicles = new ArrayList<>(BATCH_SIZE);
+      List<Object[]> assignments = new ArrayList<>(BATCH_SIZE);
+      for (int i = 0; i < taken; i++, vehicleId++) {
+        vehicles.add(new Object[] {vehicleId, vehicleType.ordinal()});
+        assignments.add(new Object[] {vehicleId, spotIds.get(i)});
+        if (vehicles.size() == BATCH_SIZE || i == taken - 1) {
+          jdbc.batchUpdate("insert into vehicle_entity (id, type) values (?, ?)", vehicles);
+          jdbc.batchUpdate("update parking_spot_entity set vehicle_id = ? where id = ?", assignments);
+          vehicles.clear();
+          assignments.clear();
+        }
+      }
+    }
+  }
+}
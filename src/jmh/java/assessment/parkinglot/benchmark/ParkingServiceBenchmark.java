@@ -0,0 +1,121 @@
+package assessment.parkinglot.benchmark;
+
+import assessment.parkinglot.dto.BatchItemDTO;
+import assessment.parkinglot.dto.VehicleDTO;
+import assessment.parkinglot.enums.ParkingSpotType;
+import assessment.parkinglot.enums.VehicleType;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OperationsPerInvocation;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+
+/** Benchmarks the operations exposed by {@code ParkingService}, one per endpoint. */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class ParkingServiceBenchmark {
+
+  /** Removes, after every invocation, the vehicle the invocation parked. */
+  @State(Scope.Thread)
+  public static class Arrival {
+    VehicleDTO parked;
+
+    @TearDown(Level.Invocation)
+    public void leave(ParkingLotState lot) {
+      lot.parkingService.removeVehicle(this.parked.getVehicleId());
+    }
+  }
+
+  /** Parks, before every invocation, the vehicle the invocation removes. */
+  @State(Scope.Thread)
+  public static class Departure {
+    VehicleDTO parked;
+
+    @Setup(Level.Invocation)
+    public void arrive(ParkingLotState lot) {
+      this.parked = lot.parkingService.parkVehicle(VehicleType.CAR);
+    }
+  }
+
+  /** Removes, after every invocation, the batch of vehicles the invocation parked. */
+  @State(Scope.Thread)
+  public static class BatchArrival {
+    List<BatchItemDTO> parked;
+
+    @TearDown(Level.Invocation)
+    public void leave(ParkingLotState lot) {
+      lot.parkingService.removeVehicles(vehicleIds(this.parked));
+    }
+  }
+
+  /** Parks, before every invocation, the batch of vehicles the invocation removes. */
+  @State(Scope.Thread)
+  public static class BatchDeparture {
+    List<Long> vehicleIds;
+
+    @Setup(Level.Invocation)
+    public void arrive(ParkingLotState lot) {
+      this.vehicleIds = vehicleIds(lot.parkingService.parkVehicles(BATCH));
+    }
+  }
+
+  /** The lot keeps at least three free spots per type, so three cars always fit. */
+  private static final List<VehicleType> BATCH =
+      List.of(VehicleType.CAR, VehicleType.CAR, VehicleType.CAR);
+
+  @Benchmark
+  public VehicleDTO parkVehicle(ParkingLotState lot, Arrival arrival) {
+    arrival.parked = lot.parkingService.parkVehicle(VehicleType.CAR);
+    return arrival.parked;
+  }
+
+  @Benchmark
+  public VehicleDTO removeVehicle(ParkingLotState lot, Departure departure) {
+    return lot.parkingService.removeVehicle(departure.parked.getVehicleId());
+  }
+
+  @Benchmark
+  public long countAvailableSpots(ParkingLotState lot) {
+    return lot.parkingService.countAvailableSpots(ParkingSpotType.REGULAR);
+  }
+
+  @Benchmark
+  public boolean areAllSpotsTaken(ParkingLotState lot) {
+    return lot.parkingService.areAllSpotsTaken(VehicleType.VAN);
+  }
+
+  @Benchmark
+  public List<VehicleDTO> getAllParkedVehicles(ParkingLotState lot) {
+    return lot.parkingService.getAllParkedVehicles();
+  }
+
+  @Benchmark
+  @OperationsPerInvocation(3)
+  public List<BatchItemDTO> parkVehicles(ParkingLotState lot, BatchArrival arrival) {
+    arrival.parked = lot.parkingService.parkVehicles(BATCH);
+    return arrival.parked;
+  }
+
+  @Benchmark
+  @OperationsPerInvocation(3)
+  public List<BatchItemDTO> removeVehicles(ParkingLotState lot, BatchDeparture departure) {
+    return lot.parkingService.removeVehicles(departure.vehicleIds);
+  }
+
+  private static List<Long> vehicleIds(List<BatchItemDTO> items) {
+    return items.stream().map(i -> i.getVehicle().getVehicleId()).toList();
+  }
+}
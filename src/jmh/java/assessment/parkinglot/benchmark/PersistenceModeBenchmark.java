@@ -0,0 +1,78 @@
+package assessment.parkinglot.benchmark;
+
+import assessment.parkinglot.dto.VehicleDTO;
+import assessment.parkinglot.enums.VehicleType;
+import assessment.parkinglot.service.ParkingService;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.concurrent.TimeUnit;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Threads;
+import org.openjdk.jmh.annotations.Warmup;
+import org.springframework.boot.WebApplicationType;
+import org.springframework.context.ConfigurableApplicationContext;
+
+/**
+ * Compares the park and leave latency of the synchronous persistence with the write-behind one,
+ * from a single thread and from many, where the journal fsyncs of concurrent requests are grouped.
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+@State(Scope.Benchmark)
+public class PersistenceModeBenchmark {
+
+  @Param({"sync", "write-behind"})
+  public String mode;
+
+  @Param({"10000"})
+  public int lotSize;
+
+  private Path journal;
+  private ConfigurableApplicationContext context;
+  private ParkingService parkingService;
+
+  @Setup(Level.Trial)
+  public void start() throws IOException {
+    this.journal = Files.createTempFile("parking", ".journal");
+    this.context =
+        ParkingLotState.start(
+            lotSize,
+            WebApplicationType.NONE,
+            "--parking.persistence.mode=" + mode,
+            "--parking.journal.path=" + journal);
+    this.parkingService = context.getBean(ParkingService.class);
+  }
+
+  @TearDown(Level.Trial)
+  public void stop() throws IOException {
+    this.context.close();
+    Files.deleteIfExists(journal);
+  }
+
+  @Benchmark
+  public VehicleDTO parkAndLeave() {
+    VehicleDTO parked = parkingService.parkVehicle(VehicleType.CAR);
+    return parkingService.removeVehicle(parked.getVehicleId());
+  }
+
+  @Benchmark
+  @Threads(16)
+  public VehicleDTO parkAndLeaveConcurrently() {
+    return this.parkAndLeave();
+  }
+}
@@ -0,0 +1,117 @@
+package assessment.parkinglot.benchmark;
+
+import assessment.parkinglot.allocation.SpotAllocator;
+import assessment.parkinglot.enums.ParkingSpotType;
+import assessment.parkinglot.enums.VehicleType;
+import assessment.parkinglot.journal.LotSnapshot;
+import assessment.parkinglot.service.ParkingService;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Collections;
+import java.util.concurrent.TimeUnit;
+import java.util.stream.Stream;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+import org.springframework.boot.WebApplicationType;
+import org.springframework.context.ConfigurableApplicationContext;
+
+/**
+ * Measures the restart of a write-behind lot of {@code lotSize} spots with half of them taken,
+ * from a snapshot written at the shutdown of a previous run: the whole application start, to be
+ * compared with {@link StartupBenchmark}, and the restore of the lot alone, reading the snapshot
+ * and loading the allocator.
+ */
+@BenchmarkMode(Mode.SingleShotTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 2)
+@Measurement(iterations = 5)
+@Fork(value = 1, jvmArgsAppend = "-Xmx4g")
+@State(Scope.Benchmark)
+public class RecoveryBenchmark {
+
+  private static final int BATCH_SIZE = 1000;
+
+  @Param({"100000", "1000000"})
+  public int lotSize;
+
+  private Path directory;
+  private SpotAllocator spotAllocator;
+  private ConfigurableApplicationContext restarted;
+
+  @Setup(Level.Trial)
+  public void writeSnapshot() throws IOException {
+    this.directory = Files.createTempDirectory("parking-recovery");
+    this.spotAllocator = new SpotAllocator();
+
+    try (ConfigurableApplicationContext context = this.start()) {
+      ParkingService parkingService = context.getBean(ParkingService.class);
+      for (ParkingSpotType type : ParkingSpotType.values()) {
+        VehicleType vehicleType =
+            ParkingSpotType.MOTORCYCLE.equals(type) ? VehicleType.MOTORCYCLE : VehicleType.CAR;
+        long toPark = parkingService.countAvailableSpots(type) / 2;
+        for (long parked = 0; parked < toPark; parked += BATCH_SIZE) {
+          int batch = (int) Math.min(BATCH_SIZE, toPark - parked);
+          parkingService.parkVehicles(Collections.nCopies(batch, vehicleType));
+        }
+      }
+    }
+  }
+
+  @TearDown(Level.Invocation)
+  public void stop() {
+    if (restarted != null) {
+      restarted.close();
+      restarted = null;
+    }
+  }
+
+  @TearDown(Level.Trial)
+  public void deleteSnapshot() throws IOException {
+    try (Stream<Path> files = Files.walk(directory)) {
+      for (Path file : files.sorted(Collections.reverseOrder()).toList()) {
+        Files.delete(file);
+      }
+    }
+  }
+
+  @Benchmark
+  public ConfigurableApplicationContext restart() {
+    this.restarted = this.start();
+    return restarted;
+  }
+
+  @Benchmark
+  public SpotAllocator restoreLot() throws IOException {
+    LotSnapshot lot = LotSnapshot.read(directory.resolve("lot.snapshot"));
+    ParkingSpotType[] types = new ParkingSpotType[lot.size()];
+    boolean[] free = new boolean[lot.size()];
+    for (int i = 0; i < types.length; i++) {
+      types[i] = lot.spotType(i);
+      free[i] = !lot.isTaken(i);
+    }
+    spotAllocator.load(lot.getSpotIds(), types, free);
+    return spotAllocator;
+  }
+
+  private ConfigurableApplicationContext start() {
+    return ParkingLotState.start(
+        lotSize,
+        WebApplicationType.NONE,
+        "--parking.persistence.mode=write-behind",
+        "--parking.journal.fsync=false",
+        "--parking.journal.directory=" + directory.resolve("journal"),
+        "--parking.snapshot.path=" + directory.resolve("lot.snapshot"));
+  }
+}
@@ -0,0 +1,145 @@
+package assessment.parkinglot.benchmark;
+
+import assessment.parkinglot.allocation.SpotAllocator;
+import assessment.parkinglot.dto.ReservationDTO;
+import assessment.parkinglot.enums.ParkingSpotType;
+import assessment.parkinglot.reservation.ReservationBook;
+import java.time.Duration;
+import java.util.Arrays;
+import java.util.SplittableRandom;
+import java.util.concurrent.TimeUnit;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+/**
+ * Availability queries and bookings on a {@link ReservationBook} of up to a million reservations
+ * of 1 to 3 spots, 1 to 8 hours long, spread over the next 30 days. {@code scanAvailable} answers
+ * the same query by scanning the bookings, as a baseline for the capacity timeline.
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(value = 1, jvmArgs = "-Xmx2g")
+@State(Scope.Benchmark)
+public class ReservationBenchmark {
+
+  private static final long SLOT = Duration.ofMinutes(15).toMillis();
+  private static final int HORIZON_SLOTS = (int) (Duration.ofDays(30).toMillis() / SLOT);
+  private static final int WINDOWS = 1024;
+
+  @Param({"10000", "1000000"})
+  public int bookings;
+
+  @Param({"200000"})
+  public int lotSize;
+
+  private ReservationBook book;
+  private int reservable;
+  private long firstSlot;
+  private int[] startSlots;
+  private int[] endSlots;
+  private int[] spots;
+  private long[] windowStarts;
+  private long[] windowEnds;
+  private int window;
+  private long nextId;
+
+  @Setup(Level.Trial)
+  public void start() {
+    long[] spotIds = new long[lotSize];
+    ParkingSpotType[] types = new ParkingSpotType[lotSize];
+    boolean[] free = new boolean[lotSize];
+    for (int i = 0; i < lotSize; i++) {
+      spotIds[i] = i + 1;
+      types[i] = ParkingSpotType.REGULAR;
+      free[i] = true;
+    }
+    SpotAllocator spotAllocator = new SpotAllocator();
+    spotAllocator.load(spotIds, types, free);
+    this.book =
+        new ReservationBook(
+            spotAllocator, Duration.ofMillis(SLOT), Duration.ofDays(31), Duration.ofMinutes(15), 50);
+    this.reservable = lotSize / 2;
+
+    SplittableRandom random = new SplittableRandom(42);
+    this.firstSlot = Math.floorDiv(System.currentTimeMillis(), SLOT) + 4;
+    this.startSlots = new int[bookings];
+    this.endSlots = new int[bookings];
+    this.spots = new int[bookings];
+    for (int i = 0; i < bookings; i++) {
+      startSlots[i] = random.nextInt(HORIZON_SLOTS - 32);
+      endSlots[i] = startSlots[i] + 4 + random.nextInt(29);
+      spots[i] = 1 + random.nextInt(3);
+      book.book(
+          i,
+          ParkingSpotType.REGULAR,
+          spots[i],
+          (firstSlot + startSlots[i]) * SLOT,
+          (firstSlot + endSlots[i]) * SLOT);
+    }
+    this.nextId = bookings;
+
+    this.windowStarts = new long[WINDOWS];
+    this.windowEnds = new long[WINDOWS];
+    for (int i = 0; i < WINDOWS; i++) {
+      long from = random.nextInt(HORIZON_SLOTS - 32);
+      windowStarts[i] = from;
+      windowEnds[i] = from + 4 + random.nextInt(29);
+    }
+  }
+
+  @Benchmark
+  public int available() {
+    int i = this.nextWindow();
+    return book.available(
+        ParkingSpotType.REGULAR,
+        (firstSlot + windowStarts[i]) * SLOT,
+        (firstSlot + windowEnds[i]) * SLOT);
+  }
+
+  @Benchmark
+  public ReservationDTO bookAndCancel() {
+    int i = this.nextWindow();
+    long id = nextId++;
+    book.book(
+        id,
+        ParkingSpotType.REGULAR,
+        1,
+        (firstSlot + windowStarts[i]) * SLOT,
+        (firstSlot + windowEnds[i]) * SLOT);
+    return book.cancel(id);
+  }
+
+  /** Adds up, slot by slot, the bookings that overlap the window, and takes the peak. */
+  @Benchmark
+  public int scanAvailable() {
+    int i = this.nextWindow();
+    int from = (int) windowStarts[i];
+    int to = (int) windowEnds[i];
+    int[] booked = new int[to - from];
+    for (int b = 0; b < startSlots.length; b++) {
+      if (startSlots[b] < to && endSlots[b] > from) {
+        for (int slot = Math.max(from, startSlots[b]); slot < Math.min(to, endSlots[b]); slot++) {
+          booked[slot - from] += spots[b];
+        }
+      }
+    }
+    return Math.max(0, reservable - Arrays.stream(booked).max().orElse(0));
+  }
+
+  private int nextWindow() {
+    window = (window + 1) & (WINDOWS - 1);
+    return window;
+  }
+}
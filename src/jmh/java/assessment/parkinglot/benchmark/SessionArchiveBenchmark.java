@@ -0,0 +1,249 @@
+package assessment.parkinglot.benchmark;
+
+import assessment.parkinglot.billing.ParkingSession;
+import assessment.parkinglot.billing.SessionArchive;
+import assessment.parkinglot.enums.ParkingSpotType;
+import assessment.parkinglot.enums.VehicleType;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.sql.Connection;
+import java.sql.DriverManager;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.sql.Statement;
+import java.time.Duration;
+import java.util.Comparator;
+import java.util.SplittableRandom;
+import java.util.concurrent.TimeUnit;
+import java.util.stream.Stream;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+import org.springframework.util.unit.DataSize;
+
+/**
+ * Revenue of the last day and of the last 30 days over {@code sessions} parking sessions that left
+ * evenly over 30 days, aggregated by vehicle type. The {@code archive} benchmarks scan a {@link
+ * SessionArchive}; the {@code database} ones run the same aggregation as a {@code group by} over
+ * an indexed H2 table of the same rows, as a baseline for the columnar scan.
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 2, time = 5)
+@Measurement(iterations = 3, time = 5)
+@Fork(value = 1, jvmArgs = "-Xmx2g")
+public class SessionArchiveBenchmark {
+
+  private static final long DAY = Duration.ofDays(1).toMillis();
+  private static final long MONTH = 30 * DAY;
+  private static final VehicleType[] VEHICLE_TYPES = VehicleType.values();
+  private static final ParkingSpotType[] SPOT_TYPES = {
+    ParkingSpotType.MOTORCYCLE, ParkingSpotType.COMPACT, ParkingSpotType.REGULAR
+  };
+
+  /** The sessions, generated the same way for both states. */
+  @State(Scope.Benchmark)
+  public static class Sessions {
+
+    @Param({"1000000", "10000000"})
+    public int sessions;
+
+    Path directory;
+    long end;
+    private int shift;
+
+    /**
+     * The start of a window ending now, moved back by a millisecond on every call so the database
+     * cannot answer from the result of the previous query.
+     */
+    long from(long length) {
+      shift = (shift + 1) & 1023;
+      return end - length - shift;
+    }
+
+    void forEach(SessionConsumer consumer) throws Exception {
+      SplittableRandom random = new SplittableRandom(42);
+      long start = end - MONTH;
+      for (int i = 0; i < sessions; i++) {
+        int type = random.nextInt(VEHICLE_TYPES.length);
+        long leftAt = start + i * MONTH / sessions;
+        consumer.accept(
+            i,
+            type,
+            leftAt - Duration.ofMinutes(5 + random.nextInt(600)).toMillis(),
+            leftAt,
+            100L * (1 + random.nextInt(30)));
+      }
+    }
+
+    void clean() throws IOException {
+      try (Stream<Path> files = Files.walk(directory)) {
+        for (Path file : files.sorted(Comparator.reverseOrder()).toList()) {
+          Files.delete(file);
+        }
+      }
+    }
+  }
+
+  @FunctionalInterface
+  interface SessionConsumer {
+    void accept(long vehicleId, int type, long parkedAt, long leftAt, long fee) throws Exception;
+  }
+
+  @State(Scope.Benchmark)
+  public static class Archive extends Sessions {
+
+    SessionArchive archive;
+
+    @Setup(Level.Trial)
+    public void start() throws Exception {
+      this.directory = Files.createTempDirectory("sessions");
+      this.end = System.currentTimeMillis();
+      this.archive = new SessionArchive(directory, 65536, DataSize.ofMegabytes(256), false);
+      this.forEach(
+          (vehicleId, type, parkedAt, leftAt, fee) ->
+              archive.append(
+                  ParkingSession.builder()
+                      .vehicleId(vehicleId)
+                      .vehicleType(VEHICLE_TYPES[type])
+                      .spotType(SPOT_TYPES[type])
+                      .spots(type + 1)
+                      .parkedAt(parkedAt)
+                      .leftAt(leftAt)
+                      .fee(fee)
+                      .build()));
+      archive.flush();
+    }
+
+    @TearDown(Level.Trial)
+    public void stop() throws IOException {
+      archive.close();
+      this.clean();
+    }
+  }
+
+  @State(Scope.Benchmark)
+  public static class Database extends Sessions {
+
+    Connection connection;
+    PreparedStatement revenue;
+
+    @Setup(Level.Trial)
+    public void start() throws Exception {
+      this.directory = Files.createTempDirectory("sessions");
+      this.end = System.currentTimeMillis();
+      this.connection = DriverManager.getConnection("jdbc:h2:file:" + directory.resolve("db"));
+      try (Statement statement = connection.createStatement()) {
+        statement.execute(
+            "create table parking_session (vehicle_id bigint primary key, type tinyint,"
+                + " parked_at bigint, left_at bigint, fee bigint)");
+      }
+      connection.setAutoCommit(false);
+      try (PreparedStatement insert =
+          connection.prepareStatement("insert into parking_session values (?, ?, ?, ?, ?)")) {
+        int[] batch = {0};
+        this.forEach(
+            (vehicleId, type, parkedAt, leftAt, fee) -> {
+              insert.setLong(1, vehicleId);
+              insert.setInt(2, type);
+              insert.setLong(3, parkedAt);
+              insert.setLong(4, leftAt);
+              insert.setLong(5, fee);
+              insert.addBatch();
+              if (++batch[0] % 10_000 == 0) {
+                insert.executeBatch();
+                connection.commit();
+              }
+            });
+        insert.executeBatch();
+        connection.commit();
+      }
+      try (Statement statement = connection.createStatement()) {
+        statement.execute("create index parking_session_left_at on parking_session (left_at)");
+      }
+      connection.setAutoCommit(true);
+      this.revenue =
+          connection.prepareStatement(
+              "select type, count(*), sum(left_at - parked_at), sum(fee) from parking_session"
+                  + " where left_at >= ? and left_at < ? group by type");
+    }
+
+    @TearDown(Level.Trial)
+    public void stop() throws SQLException, IOException {
+      connection.close();
+      this.clean();
+    }
+  }
+
+  @Benchmark
+  public long archiveDay(Archive state) throws IOException {
+    return scan(state, state.from(DAY));
+  }
+
+  @Benchmark
+  public long archiveMonth(Archive state) throws IOException {
+    return scan(state, state.from(MONTH));
+  }
+
+  @Benchmark
+  public long databaseDay(Database state) throws SQLException {
+    return query(state, state.from(DAY));
+  }
+
+  @Benchmark
+  public long databaseMonth(Database state) throws SQLException {
+    return query(state, state.from(MONTH));
+  }
+
+  /** Adds up the sessions, stays and revenue by vehicle type, like the billing service. */
+  private static long scan(Archive state, long from) throws IOException {
+    long to = state.end + 1;
+    long[] sessions = new long[VEHICLE_TYPES.length];
+    long[] stays = new long[VEHICLE_TYPES.length];
+    long[] revenue = new long[VEHICLE_TYPES.length];
+    state.archive.scan(
+        from,
+        to,
+        block -> {
+          for (int i = 0; i < block.size(); i++) {
+            long leftAt = block.leftAt(i);
+            if (leftAt < from || leftAt >= to) {
+              continue;
+            }
+            int type = block.vehicleType(i).ordinal();
+            sessions[type]++;
+            stays[type] += leftAt - block.parkedAt(i);
+            revenue[type] += block.fee(i);
+          }
+        });
+    long total = 0;
+    for (int type = 0; type < VEHICLE_TYPES.length; type++) {
+      total += sessions[type] + stays[type] + revenue[type];
+    }
+    return total;
+  }
+
+  private static long query(Database state, long from) throws SQLException {
+    state.revenue.setLong(1, from);
+    state.revenue.setLong(2, state.end + 1);
+    long total = 0;
+    try (ResultSet rows = state.revenue.executeQuery()) {
+      while (rows.next()) {
+        total += rows.getLong(2) + rows.getLong(3) + rows.getLong(4);
+      }
+    }
+    return total;
+  }
+}
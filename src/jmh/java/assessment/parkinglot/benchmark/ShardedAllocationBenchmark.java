@@ -0,0 +1,71 @@
+package assessment.parkinglot.benchmark;
+
+import assessment.parkinglot.allocation.SpotAllocator;
+import assessment.parkinglot.enums.ParkingSpotType;
+import java.util.Arrays;
+import java.util.concurrent.TimeUnit;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Threads;
+import org.openjdk.jmh.annotations.Warmup;
+
+/**
+ * Measures the throughput of concurrent claims and releases on a lot of {@code lotSize} compact
+ * spots split into {@code levels} levels, each one a shard of the {@link SpotAllocator}. With one
+ * level every thread hits the same free counter; with several they spread over one per level, so
+ * the throughput should grow with the cores instead of flattening. Run with {@code -t} set to the
+ * amount of cores, and with {@code -prof perfnorm} to see the cache misses behind the difference.
+ */
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 2, time = 2)
+@Measurement(iterations = 3, time = 2)
+@Fork(1)
+@Threads(Threads.MAX)
+@State(Scope.Benchmark)
+public class ShardedAllocationBenchmark {
+
+  @Param({"1", "4", "16"})
+  public int levels;
+
+  @Param({"10000"})
+  public int lotSize;
+
+  private final SpotAllocator spotAllocator = new SpotAllocator();
+
+  @State(Scope.Thread)
+  public static class Claim {
+    final long[] spot = new long[1];
+  }
+
+  @Setup(Level.Trial)
+  public void createLot() {
+    long[] spotIds = new long[lotSize];
+    ParkingSpotType[] types = new ParkingSpotType[lotSize];
+    boolean[] free = new boolean[lotSize];
+    String[] levelNames = new String[lotSize];
+    Arrays.fill(types, ParkingSpotType.COMPACT);
+    Arrays.fill(free, true);
+    for (int i = 0; i < lotSize; i++) {
+      spotIds[i] = i + 1;
+      levelNames[i] = String.valueOf((long) i * levels / lotSize);
+    }
+    spotAllocator.load(spotIds, types, free, levelNames);
+  }
+
+  @Benchmark
+  public long claimAndRelease(Claim claim) {
+    spotAllocator.claim(ParkingSpotType.COMPACT, claim.spot);
+    spotAllocator.release(ParkingSpotType.COMPACT, claim.spot[0]);
+    return claim.spot[0];
+  }
+}
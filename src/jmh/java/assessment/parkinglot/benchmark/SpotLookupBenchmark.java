@@ -0,0 +1,90 @@
+package assessment.parkinglot.benchmark;
+
+import assessment.parkinglot.entities.ParkingSpotEntity;
+import assessment.parkinglot.enums.ParkingSpotType;
+import assessment.parkinglot.repository.ParkingSpotRepository;
+import assessment.parkinglot.repository.VehicleRepository;
+import assessment.parkinglot.repository.VehicleSpotRow;
+import java.util.List;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import org.springframework.jdbc.core.JdbcTemplate;
+
+/**
+ * Latency of the spot lookups of the repositories with and without the indexes of the spot table,
+ * which are dropped from the running database when {@code indexes} is {@code false}. Meant for
+ * large lots: {@code -p lotSize=100000,1000000 -p occupancy=50}.
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 2, time = 2)
+@Measurement(iterations = 3, time = 3)
+@Fork(1)
+public class SpotLookupBenchmark {
+
+  @State(Scope.Benchmark)
+  public static class Lookups {
+
+    @Param({"true", "false"})
+    public boolean indexes;
+
+    ParkingSpotRepository parkingSpotRepository;
+    VehicleRepository vehicleRepository;
+    long[] parkedVehicleIds;
+
+    @Setup(Level.Trial)
+    public void prepare(ParkingLotState lot) {
+      JdbcTemplate jdbc = lot.context.getBean(JdbcTemplate.class);
+      if (!indexes) {
+        jdbc.execute("drop index idx_parking_spot_vehicle");
+        jdbc.execute("drop index idx_parking_spot_type_vehicle");
+      }
+      jdbc.execute("analyze");
+
+      this.parkingSpotRepository = lot.context.getBean(ParkingSpotRepository.class);
+      this.vehicleRepository = lot.context.getBean(VehicleRepository.class);
+      this.parkedVehicleIds =
+          jdbc
+              .queryForList(
+                  "select id from vehicle_entity order by id limit 10000", Long.class)
+              .stream()
+              .mapToLong(Long::longValue)
+              .toArray();
+      if (parkedVehicleIds.length == 0) {
+        throw new IllegalStateException("The lookups need parked vehicles, set occupancy above 0");
+      }
+    }
+
+    long randomVehicleId() {
+      return parkedVehicleIds[ThreadLocalRandom.current().nextInt(parkedVehicleIds.length)];
+    }
+  }
+
+  @Benchmark
+  public List<ParkingSpotEntity> findByVehicleId(Lookups lookups) {
+    return lookups.parkingSpotRepository.findByVehicleId(lookups.randomVehicleId());
+  }
+
+  @Benchmark
+  public long countFreeSpots(Lookups lookups) {
+    return lookups.parkingSpotRepository.countByTypeAndVehicleIdIsNull(ParkingSpotType.REGULAR);
+  }
+
+  @Benchmark
+  public List<VehicleSpotRow> findWithSpotsByIdIn(Lookups lookups) {
+    return lookups.vehicleRepository.findWithSpotsByIdIn(
+        List.of(lookups.randomVehicleId(), lookups.randomVehicleId(), lookups.randomVehicleId()));
+  }
+}
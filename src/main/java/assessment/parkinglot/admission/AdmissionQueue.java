@@ -0,0 +1,295 @@
+package assessment.parkinglot.admission;
+
+import assessment.parkinglot.allocation.SpotAllocator;
+import assessment.parkinglot.dto.VehicleDTO;
+import assessment.parkinglot.enums.ErrorCode;
+import assessment.parkinglot.enums.VehicleType;
+import assessment.parkinglot.exception.PklErrorException;
+import assessment.parkinglot.service.ParkingService;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import jakarta.annotation.PreDestroy;
+import java.time.Duration;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.Executor;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicIntegerArray;
+import java.util.concurrent.locks.ReentrantLock;
+import java.util.function.Supplier;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.stereotype.Component;
+
+/**
+ * Waiting line of the parks that find their vehicle type full, with {@code
+ * parking.admission.enabled=true}.
+ *
+ * <p>Instead of failing right away, which sends the gates into a retry loop that hits the database
+ * on every attempt, a park that finds no room waits as a pending future at the end of the queue of
+ * its vehicle type, and a park that finds vehicles of its type already waiting goes straight to the
+ * end of the queue. Whenever the {@link SpotAllocator} frees spots, a single drain thread parks the
+ * waiters that fit, as long as the in-memory counters say they do, so the database sees one park
+ * per freed spot rather than one per retry. Among the types with room, the one whose first waiter
+ * has waited the longest goes first, so a burst of one type does not starve the others, and a park
+ * never overtakes an earlier one of its type.
+ *
+ * <p>A queue holds {@code parking.admission.queue-capacity} waiters at most, and a park that finds
+ * it full fails with {@link ErrorCode#PARKING_QUEUE_FULL}. A waiter not parked within {@code
+ * parking.admission.timeout} fails with {@link ErrorCode#NO_SPACE_TO_PARK}, as it would have
+ * without the queue; the timeout must stay below the timeout of asynchronous requests, {@code
+ * spring.mvc.async.request-timeout}, for the client to get that answer.
+ */
+@Component
+@ConditionalOnProperty(name = "parking.admission.enabled", havingValue = "true")
+@Slf4j
+public class AdmissionQueue {
+
+  private static final VehicleType[] VEHICLE_TYPES = VehicleType.values();
+
+  private static final int WAITING = 0;
+  private static final int PARKING = 1;
+  private static final int DONE = 2;
+
+  private final ParkingService parkingService;
+  private final long timeoutNanos;
+  private final int capacity;
+
+  private final ReentrantLock lock = new ReentrantLock();
+  private final List<ArrayDeque<Waiter>> queues = new ArrayList<>();
+  // Waiters queued or being parked from their queue, so a walk-in never overtakes the head waiter.
+  private final AtomicIntegerArray waiting = new AtomicIntegerArray(VEHICLE_TYPES.length);
+  private final AtomicBoolean signalled = new AtomicBoolean();
+  private final ExecutorService drainer =
+      Executors.newSingleThreadExecutor(
+          Thread.ofPlatform().name("admission-queue").daemon().factory());
+
+  /**
+   * Creates the queues, and listens to the spots the {@link SpotAllocator} frees.
+   *
+   * @param parkingService The service the waiters are parked with.
+   * @param spotAllocator The allocator that tells when spots are freed.
+   * @param meterRegistry The registry of the gauge of waiters of each type.
+   * @param timeout How long a park waits at most.
+   * @param capacity The amount of waiters of each vehicle type at most.
+   */
+  public AdmissionQueue(
+      ParkingService parkingService,
+      SpotAllocator spotAllocator,
+      MeterRegistry meterRegistry,
+      @Value("${parking.admission.timeout}") Duration timeout,
+      @Value("${parking.admission.queue-capacity}") int capacity) {
+    this.parkingService = parkingService;
+    this.timeoutNanos = timeout.toNanos();
+    this.capacity = Math.max(0, capacity);
+    for (VehicleType type : VEHICLE_TYPES) {
+      queues.add(new ArrayDeque<>());
+      Gauge.builder("parking.admission.waiting", waiting, w -> w.get(type.ordinal()))
+          .description("Parks waiting for a spot to be freed")
+          .tag("vehicle.type", type.name())
+          .register(meterRegistry);
+    }
+    spotAllocator.onRelease(type -> this.signal());
+  }
+
+  /**
+   * Parks a vehicle, or queues the park if its type is full.
+   *
+   * @param vehicleType The type of the vehicle.
+   * @param park The park, which fails with {@link ErrorCode#NO_SPACE_TO_PARK} when there is no
+   *     room. It runs on the calling thread, or later on the drain thread.
+   * @return The future of the parked vehicle's {@link VehicleDTO}, already done unless the park
+   *     waits.
+   * @throws RuntimeException any failure of the park other than a lack of room.
+   */
+  public CompletableFuture<VehicleDTO> park(VehicleType vehicleType, Supplier<VehicleDTO> park) {
+    if (waiting.get(vehicleType.ordinal()) == 0) {
+      try {
+        return CompletableFuture.completedFuture(park.get());
+      } catch (PklErrorException e) {
+        if (!ErrorCode.NO_SPACE_TO_PARK.equals(e.getError())) {
+          throw e;
+        }
+      }
+    }
+
+    Waiter waiter = new Waiter(vehicleType, park, System.nanoTime());
+    lock.lock();
+    try {
+      ArrayDeque<Waiter> queue = queues.get(vehicleType.ordinal());
+      if (queue.size() >= capacity) {
+        return CompletableFuture.failedFuture(new PklErrorException(ErrorCode.PARKING_QUEUE_FULL));
+      }
+      queue.addLast(waiter);
+      waiting.incrementAndGet(vehicleType.ordinal());
+    } finally {
+      lock.unlock();
+    }
+
+    Executor delayed = CompletableFuture.delayedExecutor(timeoutNanos, TimeUnit.NANOSECONDS);
+    delayed.execute(() -> this.expire(waiter));
+    waiter.future.whenComplete((parked, e) -> this.expire(waiter));
+    // Spots freed while the park was failing found no waiter to wake up.
+    this.signal();
+    return waiter.future;
+  }
+
+  /**
+   * Counts the parks of a vehicle type waiting for room, including the one being parked.
+   *
+   * @param vehicleType The type of the vehicle.
+   * @return The amount of waiters.
+   */
+  public int waiting(VehicleType vehicleType) {
+    return waiting.get(vehicleType.ordinal());
+  }
+
+  /** Fails every waiter, and stops the drain thread. */
+  @PreDestroy
+  public void close() {
+    drainer.shutdownNow();
+    List<Waiter> left = new ArrayList<>();
+    lock.lock();
+    try {
+      queues.forEach(left::addAll);
+    } finally {
+      lock.unlock();
+    }
+    left.forEach(this::expire);
+  }
+
+  /** Wakes the drain thread up, unless it is already due to run or nobody waits. */
+  private void signal() {
+    for (int type = 0; type < VEHICLE_TYPES.length; type++) {
+      if (waiting.get(type) > 0) {
+        if (signalled.compareAndSet(false, true) && !drainer.isShutdown()) {
+          drainer.execute(this::drain);
+        }
+        return;
+      }
+    }
+  }
+
+  /**
+   * Parks waiters until no type with waiters has room. A type whose park fails for lack of room,
+   * because a walk-in took the spot first, is left out until the next time spots are freed.
+   */
+  private void drain() {
+    signalled.set(false);
+    boolean[] full = new boolean[VEHICLE_TYPES.length];
+    Waiter waiter;
+    while ((waiter = this.next(full)) != null) {
+      this.serve(waiter, full);
+    }
+  }
+
+  /**
+   * Takes out the first waiter of the type with room whose first waiter has waited the longest. It
+   * still counts as waiting until it is served.
+   */
+  private Waiter next(boolean[] full) {
+    lock.lock();
+    try {
+      Waiter next = null;
+      for (VehicleType type : VEHICLE_TYPES) {
+        Waiter first = queues.get(type.ordinal()).peekFirst();
+        if (first == null || full[type.ordinal()] || (next != null && next.since - first.since <= 0)) {
+          continue;
+        }
+        if (parkingService.areAllSpotsTaken(type)) {
+          full[type.ordinal()] = true;
+        } else {
+          next = first;
+        }
+      }
+      if (next != null) {
+        queues.get(next.vehicleType.ordinal()).pollFirst();
+      }
+      return next;
+    } finally {
+      lock.unlock();
+    }
+  }
+
+  /**
+   * Parks a waiter taken out of its queue, and stops counting it once it is parked or failed. A
+   * waiter that finds no room goes back to the head of its queue, still counted.
+   */
+  private void serve(Waiter waiter, boolean[] full) {
+    int type = waiter.vehicleType.ordinal();
+    if (!waiter.state.compareAndSet(WAITING, PARKING)) {
+      // Expired once out of its queue, where expire did not find it to stop counting it.
+      waiting.decrementAndGet(type);
+      return;
+    }
+    try {
+      VehicleDTO parked = waiter.park.get();
+      waiter.state.set(DONE);
+      waiting.decrementAndGet(type);
+      waiter.future.complete(parked);
+    } catch (PklErrorException e) {
+      if (!ErrorCode.NO_SPACE_TO_PARK.equals(e.getError())) {
+        waiter.state.set(DONE);
+        waiting.decrementAndGet(type);
+        waiter.future.completeExceptionally(e);
+        return;
+      }
+      full[type] = true;
+      lock.lock();
+      try {
+        queues.get(type).addFirst(waiter);
+      } finally {
+        lock.unlock();
+      }
+      waiter.state.set(WAITING);
+      if (System.nanoTime() - waiter.since - timeoutNanos >= 0) {
+        this.expire(waiter);
+      }
+    } catch (RuntimeException e) {
+      log.error("Error at parking a queued {}: {}", waiter.vehicleType, e.getMessage(), e);
+      waiter.state.set(DONE);
+      waiting.decrementAndGet(type);
+      waiter.future.completeExceptionally(e);
+    }
+  }
+
+  /**
+   * Takes a waiter that is not being parked out of its queue, and fails it for lack of room if it
+   * was not done yet, as it is once it times out or its request is cancelled.
+   */
+  private void expire(Waiter waiter) {
+    if (!waiter.state.compareAndSet(WAITING, DONE)) {
+      return;
+    }
+    lock.lock();
+    try {
+      if (queues.get(waiter.vehicleType.ordinal()).remove(waiter)) {
+        waiting.decrementAndGet(waiter.vehicleType.ordinal());
+      }
+    } finally {
+      lock.unlock();
+    }
+    waiter.future.completeExceptionally(new PklErrorException(ErrorCode.NO_SPACE_TO_PARK));
+  }
+
+  private static class Waiter {
+    private final VehicleType vehicleType;
+    private final Supplier<VehicleDTO> park;
+    private final long since;
+    private final AtomicInteger state = new AtomicInteger(WAITING);
+    private final CompletableFuture<VehicleDTO> future = new CompletableFuture<>();
+
+    private Waiter(VehicleType vehicleType, Supplier<VehicleDTO> park, long since) {
+      this.vehicleType = vehicleType;
+      this.park = park;
+      this.since = since;
+    }
+  }
+}
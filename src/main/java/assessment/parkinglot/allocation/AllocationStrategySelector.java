@@ -0,0 +1,93 @@
+package assessment.parkinglot.allocation;
+
+import assessment.parkinglot.domain.Vehicle;
+import assessment.parkinglot.enums.AllocationStrategyType;
+import assessment.parkinglot.enums.ParkingSpotType;
+import java.util.EnumMap;
+import java.util.List;
+import java.util.Map;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+
+/**
+ * Holds the {@link SpotAllocationStrategy} in use. It starts as {@code parking.allocation.strategy}
+ * and can be switched while the service runs; parks already choosing their spots finish with the
+ * strategy they started with.
+ *
+ * <p>Whatever the strategy, a type is left out while parking on it would eat into the spots the
+ * {@link SpotAllocator} holds for reservations.
+ */
+@Component
+@Slf4j
+public class AllocationStrategySelector {
+
+  private final Map<AllocationStrategyType, SpotAllocationStrategy> strategies =
+      new EnumMap<>(AllocationStrategyType.class);
+  private final SpotAllocator spotAllocator;
+  private volatile SpotAllocationStrategy current;
+
+  public AllocationStrategySelector(
+      List<SpotAllocationStrategy> strategies,
+      SpotAllocator spotAllocator,
+      @Value("${parking.allocation.strategy}") AllocationStrategyType initial) {
+    this.spotAllocator = spotAllocator;
+    strategies.forEach(strategy -> this.strategies.put(strategy.getType(), strategy));
+    this.current = this.strategy(initial);
+    log.info("Allocating spots with the {} strategy", initial);
+  }
+
+  public AllocationStrategyType current() {
+    return current.getType();
+  }
+
+  /**
+   * Switches to another strategy.
+   *
+   * @param type The strategy to use from now on.
+   */
+  public void select(AllocationStrategyType type) {
+    this.current = this.strategy(type);
+    log.info("Allocating spots with the {} strategy", type);
+  }
+
+  /**
+   * Chooses, with the current strategy, the spot types a vehicle may be parked on.
+   *
+   * @param vehicle The vehicle to park.
+   * @return The types to try, in order.
+   */
+  public List<ParkingSpotType> candidates(Vehicle vehicle) {
+    List<ParkingSpotType> candidates = current.candidates(vehicle);
+    for (int i = 0; i < candidates.size(); i++) {
+      if (spotAllocator.held(candidates.get(i)) > 0) {
+        return this.outsideHolds(candidates, vehicle);
+      }
+    }
+    return candidates;
+  }
+
+  private SpotAllocationStrategy strategy(AllocationStrategyType type) {
+    SpotAllocationStrategy strategy = strategies.get(type);
+    if (strategy == null) {
+      throw new IllegalArgumentException("No allocation strategy " + type);
+    }
+    return strategy;
+  }
+
+  private List<ParkingSpotType> outsideHolds(List<ParkingSpotType> candidates, Vehicle vehicle) {
+    int order = SpotTypeOrders.EMPTY;
+    for (int i = 0; i < candidates.size(); i++) {
+      ParkingSpotType type = candidates.get(i);
+      if (this.outsideHolds(type, vehicle.spots(type))) {
+        order = SpotTypeOrders.append(order, type);
+      }
+    }
+    return SpotTypeOrders.of(order);
+  }
+
+  private boolean outsideHolds(ParkingSpotType type, int amount) {
+    int held = spotAllocator.held(type);
+    return held <= 0 || spotAllocator.available(type) - amount >= held;
+  }
+}
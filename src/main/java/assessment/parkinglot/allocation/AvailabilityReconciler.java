@@ -0,0 +1,91 @@
+package assessment.parkinglot.allocation;
+
+import assessment.parkinglot.enums.ParkingSpotType;
+import assessment.parkinglot.repository.ParkingSpotRepository;
+import java.util.EnumMap;
+import java.util.HashSet;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.locks.ReentrantLock;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Component;
+
+/**
+ * Periodically checks the free spots of the {@link SpotAllocator} against the database and fixes
+ * any drift between them.
+ *
+ * <p>A park or a leave in progress makes a spot look different in memory and in the database for
+ * the length of its transaction, so a spot is only corrected when it shows the same difference in
+ * two consecutive runs. Every run compares the free spots one by one, even when their counts
+ * match: a spot taken in memory and another one taken in the database leave the counts equal.
+ *
+ * <p>Runs are serialized with a {@link ReentrantLock} rather than {@code synchronized}, so a run
+ * waiting on the database does not pin its carrier thread when the scheduler uses virtual threads.
+ *
+ * <p>Only used in the synchronous persistence mode. In the write-behind mode the database follows
+ * memory, not the other way round.
+ */
+@Component
+@ConditionalOnProperty(
+    name = "parking.persistence.mode",
+    havingValue = "sync",
+    matchIfMissing = true)
+@Slf4j
+public class AvailabilityReconciler {
+
+  @Autowired ParkingSpotRepository parkingSpotRepository;
+  @Autowired SpotAllocator spotAllocator;
+
+  private final ReentrantLock lock = new ReentrantLock();
+  private final Map<ParkingSpotType, Set<Long>> freeOnlyInDatabase =
+      new EnumMap<>(ParkingSpotType.class);
+  private final Map<ParkingSpotType, Set<Long>> freeOnlyInMemory =
+      new EnumMap<>(ParkingSpotType.class);
+
+  @Scheduled(
+      initialDelayString = "${parking.availability.reconcile-interval}",
+      fixedDelayString = "${parking.availability.reconcile-interval}")
+  public void reconcile() {
+    lock.lock();
+    try {
+      for (ParkingSpotType type : ParkingSpotType.values()) {
+        this.reconcile(type);
+      }
+    } finally {
+      lock.unlock();
+    }
+  }
+
+  private void reconcile(ParkingSpotType type) {
+    Set<Long> previousFreeOnlyInDatabase = freeOnlyInDatabase.getOrDefault(type, Set.of());
+    Set<Long> previousFreeOnlyInMemory = freeOnlyInMemory.getOrDefault(type, Set.of());
+
+    Set<Long> currentFreeOnlyInDatabase = new HashSet<>();
+    Set<Long> currentFreeOnlyInMemory = new HashSet<>();
+    spotAllocator.compare(
+        type,
+        parkingSpotRepository.findFreeSpotIds(type),
+        currentFreeOnlyInDatabase::add,
+        currentFreeOnlyInMemory::add);
+
+    for (Long spotId : currentFreeOnlyInDatabase) {
+      if (previousFreeOnlyInDatabase.contains(spotId)) {
+        log.warn("Spot {} of type {} is free in the database, freeing it", spotId, type);
+        spotAllocator.release(type, spotId);
+      }
+    }
+    for (Long spotId : currentFreeOnlyInMemory) {
+      if (previousFreeOnlyInMemory.contains(spotId) && spotAllocator.take(type, spotId)) {
+        log.warn("Spot {} of type {} is taken in the database, taking it", spotId, type);
+      }
+    }
+
+    currentFreeOnlyInDatabase.removeAll(previousFreeOnlyInDatabase);
+    currentFreeOnlyInMemory.removeAll(previousFreeOnlyInMemory);
+    freeOnlyInDatabase.put(type, currentFreeOnlyInDatabase);
+    freeOnlyInMemory.put(type, currentFreeOnlyInMemory);
+  }
+}
@@ -0,0 +1,25 @@
+package assessment.parkinglot.allocation;
+
+import assessment.parkinglot.domain.Vehicle;
+import assessment.parkinglot.enums.AllocationStrategyType;
+import assessment.parkinglot.enums.ParkingSpotType;
+import java.util.List;
+import org.springframework.stereotype.Component;
+
+/**
+ * Parks a vehicle on the smallest type it fits that has room, keeping the larger spots for the
+ * vehicles that need them.
+ */
+@Component
+public class BestFitStrategy implements SpotAllocationStrategy {
+
+  @Override
+  public AllocationStrategyType getType() {
+    return AllocationStrategyType.BEST_FIT;
+  }
+
+  @Override
+  public List<ParkingSpotType> candidates(Vehicle vehicle) {
+    return vehicle.getSpotTypes();
+  }
+}
@@ -0,0 +1,56 @@
+package assessment.parkinglot.allocation;
+
+import assessment.parkinglot.domain.Vehicle;
+import assessment.parkinglot.enums.AllocationStrategyType;
+import assessment.parkinglot.enums.ParkingSpotType;
+import java.util.List;
+import org.springframework.stereotype.Component;
+
+/**
+ * Parks a vehicle on the type whose first free spot comes first in the lot, the way a driver takes
+ * the first suitable spot found on the way in, whatever its size.
+ *
+ * <p>Only the order of the types follows the lot-wide first free spot. The spot itself is claimed
+ * by {@link SpotAllocator#claim}, which starts from the level of the current thread, so it is a free
+ * spot of the picked type on that level when there is one, not necessarily the first one in the
+ * lot.
+ */
+@Component
+public class FirstFitStrategy implements SpotAllocationStrategy {
+
+  private final SpotAllocator spotAllocator;
+
+  public FirstFitStrategy(SpotAllocator spotAllocator) {
+    this.spotAllocator = spotAllocator;
+  }
+
+  @Override
+  public AllocationStrategyType getType() {
+    return AllocationStrategyType.FIRST_FIT;
+  }
+
+  @Override
+  public List<ParkingSpotType> candidates(Vehicle vehicle) {
+    List<ParkingSpotType> spotTypes = vehicle.getSpotTypes();
+    if (spotTypes.size() < 2) {
+      return spotTypes;
+    }
+    // Picks the type with the first free spot among the ones left, the smallest one on a tie.
+    int order = SpotTypeOrders.EMPTY;
+    int picked = 0;
+    for (int position = 0; position < spotTypes.size(); position++) {
+      int next = -1;
+      long nextFree = Long.MAX_VALUE;
+      for (int i = 0; i < spotTypes.size(); i++) {
+        long firstFree = spotAllocator.firstFree(spotTypes.get(i));
+        if ((picked & 1 << i) == 0 && (next < 0 || firstFree < nextFree)) {
+          next = i;
+          nextFree = firstFree;
+        }
+      }
+      picked |= 1 << next;
+      order = SpotTypeOrders.append(order, spotTypes.get(next));
+    }
+    return SpotTypeOrders.of(order);
+  }
+}
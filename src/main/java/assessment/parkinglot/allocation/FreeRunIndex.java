@@ -0,0 +1,221 @@
+package assessment.parkinglot.allocation;
+
+import java.util.concurrent.atomic.AtomicLongArray;
+
+/**
+ * Index of the runs of adjacent free spots of a {@link SpotPool}, to find the first run of a given
+ * length in {@code O(log n)}.
+ *
+ * <p>It is a segment tree whose leaves are the words of the pool bitmap. Every node holds the
+ * length of the free run at the start of its range, the one at its end, the longest one inside it,
+ * and whether the whole range is one free run, so two neighbouring runs merge in their parent as
+ * soon as the spot between them is freed. Two positions of the pool are adjacent when their spot
+ * ids are consecutive, so a run never crosses a gap in the numbering, such as the spots of other
+ * types between two zones.
+ *
+ * <p>The tree is lock-free like the bitmap: after changing a word, a thread refreshes its leaf and
+ * then every ancestor, each one with a CAS that reads the node before its children and bumps a
+ * version, so a node computed from children that changed in the meantime is never stored. Lengths
+ * saturate at {@value #MAX_RUN}, far above any vehicle.
+ */
+class FreeRunIndex {
+
+  static final int MAX_RUN = 0xFFFF;
+
+  private static final int SUFFIX_SHIFT = 16;
+  private static final int LONGEST_SHIFT = 32;
+  private static final long FULL = 1L << 48;
+  private static final int VERSION_SHIFT = 49;
+  private static final long CONTENT = (1L << VERSION_SHIFT) - 1;
+
+  private final AtomicLongArray freeBits;
+  private final long[] breaks;
+  private final int size;
+  private final int leaves;
+  private final int[] lengths;
+  private final AtomicLongArray nodes;
+
+  /**
+   * Creates the index of a pool and fills it from its bitmap.
+   *
+   * @param spotIds The spot ids of the pool, sorted ascending.
+   * @param freeBits The bitmap of the free spots of the pool.
+   */
+  FreeRunIndex(long[] spotIds, AtomicLongArray freeBits) {
+    this.freeBits = freeBits;
+    this.size = spotIds.length;
+    this.breaks = new long[freeBits.length()];
+    for (int i = 1; i < spotIds.length; i++) {
+      if (spotIds[i] != spotIds[i - 1] + 1) {
+        breaks[i >>> 6] |= 1L << i;
+      }
+    }
+
+    this.leaves = Integer.highestOneBit(Math.max(1, freeBits.length() * 2 - 1));
+    this.lengths = new int[2 * leaves];
+    this.nodes = new AtomicLongArray(2 * leaves);
+    for (int word = 0; word < freeBits.length(); word++) {
+      lengths[leaves + word] = Math.min(Long.SIZE, size - (word << 6));
+      nodes.set(leaves + word, this.leaf(word));
+    }
+    for (int node = leaves - 1; node > 0; node--) {
+      lengths[node] = Math.min(MAX_RUN, lengths[2 * node] + lengths[2 * node + 1]);
+      nodes.set(node, this.combine(node));
+    }
+  }
+
+  /**
+   * Brings the index up to date with a word of the bitmap. Called after every change to the word.
+   *
+   * @param word The index of the changed word.
+   */
+  void update(int word) {
+    int node = leaves + word;
+    while (node > 0) {
+      long previous;
+      long content;
+      do {
+        previous = nodes.get(node);
+        content = node >= leaves ? this.leaf(word) : this.combine(node);
+      } while (!nodes.compareAndSet(
+          node, previous, content | ((previous >>> VERSION_SHIFT) + 1) << VERSION_SHIFT));
+      if (content == (previous & CONTENT)) {
+        return;
+      }
+      node >>>= 1;
+    }
+  }
+
+  /**
+   * Finds the first run of adjacent free spots of the given length. Runs being changed by other
+   * threads may be missed or already gone, so the caller still claims the spots with CAS.
+   *
+   * @param length The amount of spots, up to {@value #MAX_RUN}.
+   * @return The position of the first spot of the run, or {@code -1} if there is none.
+   */
+  int find(int length) {
+    if (longest(nodes.get(1)) < length) {
+      return -1;
+    }
+    int node = 1;
+    while (node < leaves) {
+      int left = 2 * node;
+      long leftContent = nodes.get(left);
+      long rightContent = nodes.get(left + 1);
+      int middle = this.rangeStart(left + 1);
+      if (longest(leftContent) >= length) {
+        node = left;
+      } else if (this.joins(middle) && suffix(leftContent) + prefix(rightContent) >= length) {
+        return middle - suffix(leftContent);
+      } else if (longest(rightContent) >= length) {
+        node = left + 1;
+      } else {
+        return -1;
+      }
+    }
+    return this.findInWord(node - leaves, length);
+  }
+
+  /**
+   * Gives the length of the longest run of adjacent free spots, read from the root of the tree.
+   * Like {@link #find}, it may lag behind the changes of other threads.
+   *
+   * @return The amount of spots of the run, up to {@value #MAX_RUN}.
+   */
+  int longest() {
+    return longest(nodes.get(1));
+  }
+
+  private int findInWord(int word, int length) {
+    long free = freeBits.get(word);
+    long joinable = free & ~breaks[word];
+    long starts = free;
+    for (int i = 1; i < length && starts != 0; i++) {
+      starts &= joinable >>> i;
+    }
+    return starts == 0 ? -1 : (word << 6) + Long.numberOfTrailingZeros(starts);
+  }
+
+  private long leaf(int word) {
+    if (word >= freeBits.length()) {
+      return 0;
+    }
+    long free = freeBits.get(word);
+    long inner = breaks[word] & ~1L;
+    int length = lengths[leaves + word];
+
+    int prefix = Math.min(Long.numberOfTrailingZeros(~free), Long.numberOfTrailingZeros(inner));
+    int suffix = Long.numberOfLeadingZeros(~free);
+    if (inner != 0) {
+      suffix = Math.min(suffix, Long.numberOfLeadingZeros(inner) + 1);
+    }
+    if (length < Long.SIZE) {
+      suffix = 0;
+    }
+
+    int longest = 0;
+    long joinable = free & ~breaks[word];
+    for (long starts = free; starts != 0 && longest < Long.SIZE; ) {
+      starts &= joinable >>> ++longest;
+    }
+    return pack(Math.min(prefix, length), suffix, longest, prefix >= length);
+  }
+
+  private long combine(int node) {
+    int left = 2 * node;
+    long leftContent = nodes.get(left);
+    long rightContent = nodes.get(left + 1);
+    boolean joins = this.joins(this.rangeStart(left + 1));
+
+    int prefix = prefix(leftContent);
+    if (isFull(leftContent) && joins) {
+      prefix = saturate(lengths[left] + prefix(rightContent));
+    }
+    int suffix = suffix(rightContent);
+    if (isFull(rightContent) && joins) {
+      suffix = saturate(lengths[left + 1] + suffix(leftContent));
+    }
+    int longest = Math.max(longest(leftContent), longest(rightContent));
+    if (joins) {
+      longest = Math.max(longest, saturate(suffix(leftContent) + prefix(rightContent)));
+    }
+    return pack(prefix, suffix, longest, isFull(leftContent) && isFull(rightContent) && joins);
+  }
+
+  /** Whether the spot at the given position continues the run of the one before it. */
+  private boolean joins(int position) {
+    return position > 0
+        && position < size
+        && (breaks[position >>> 6] & (1L << position)) == 0;
+  }
+
+  private int rangeStart(int node) {
+    int level = 31 - Integer.numberOfLeadingZeros(node);
+    return (node - (1 << level)) * (leaves >>> level) << 6;
+  }
+
+  private static long pack(int prefix, int suffix, int longest, boolean full) {
+    return prefix | (long) suffix << SUFFIX_SHIFT | (long) longest << LONGEST_SHIFT
+        | (full ? FULL : 0);
+  }
+
+  private static int prefix(long content) {
+    return (int) (content & MAX_RUN);
+  }
+
+  private static int suffix(long content) {
+    return (int) (content >>> SUFFIX_SHIFT & MAX_RUN);
+  }
+
+  private static int longest(long content) {
+    return (int) (content >>> LONGEST_SHIFT & MAX_RUN);
+  }
+
+  private static boolean isFull(long content) {
+    return (content & FULL) != 0;
+  }
+
+  private static int saturate(int length) {
+    return Math.min(MAX_RUN, length);
+  }
+}
@@ -0,0 +1,30 @@
+package assessment.parkinglot.allocation;
+
+import assessment.parkinglot.domain.Vehicle;
+import assessment.parkinglot.enums.AllocationStrategyType;
+import assessment.parkinglot.enums.ParkingSpotType;
+import java.util.List;
+
+/**
+ * Policy that decides which of the spot types a vehicle fits it should be parked on.
+ *
+ * <p>Vehicles declare every spot type they fit, and the amount of spots they need of each, with no
+ * order among them but their size. A strategy turns that into the types to try, in order, so the
+ * choice is deliberate instead of following the order the vehicle lists them in.
+ *
+ * <p>Candidates are chosen on every park, so strategies hand out shared, unmodifiable lists rather
+ * than building one each time.
+ */
+public interface SpotAllocationStrategy {
+
+  AllocationStrategyType getType();
+
+  /**
+   * Chooses the spot types a vehicle may be parked on.
+   *
+   * @param vehicle The vehicle, which tells the types of spots it fits and the amount it needs of
+   *     each.
+   * @return The types to try, in order. Types left out must not be used, even if they have room.
+   */
+  List<ParkingSpotType> candidates(Vehicle vehicle);
+}
@@ -0,0 +1,405 @@
+package assessment.parkinglot.allocation;
+
+import assessment.parkinglot.entities.ParkingSpotEntity;
+import assessment.parkinglot.enums.ParkingSpotType;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.Comparator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Objects;
+import java.util.concurrent.atomic.AtomicIntegerArray;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.function.Consumer;
+import java.util.function.LongConsumer;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.support.TransactionSynchronization;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+
+/**
+ * In-memory registry of free parking spots, one {@link SpotShard} per level of the lot, each one
+ * with a {@link SpotPool} per {@link ParkingSpotType}.
+ *
+ * <p>It is seeded from the repository at startup and from then on it is the place where spots are
+ * chosen and claimed, so the hot path never scans the spot table. Claims and releases are lock-free
+ * and do not allocate; the repository is only written to persist their result, and releases are
+ * tied to the outcome of the transaction that persists it. Counts across levels add up the free
+ * counters of every shard, so no counter is shared by all the claims of a type.
+ */
+@Component
+@Slf4j
+public class SpotAllocator {
+
+  private volatile SpotShard[] shards = emptyShards();
+  private final LongAdder[] contention = newCounters();
+  private final AtomicIntegerArray held = new AtomicIntegerArray(ParkingSpotType.values().length);
+  private volatile Consumer<ParkingSpotType> releaseListener = type -> {};
+
+  /**
+   * Replaces the in-memory state with the given spots.
+   *
+   * @param spots Every parking spot of the lot, free or taken.
+   */
+  public void load(List<ParkingSpotEntity> spots) {
+    List<ParkingSpotEntity> sorted =
+        spots.stream().sorted(Comparator.comparing(ParkingSpotEntity::getId)).toList();
+
+    long[] spotIds = new long[sorted.size()];
+    ParkingSpotType[] types = new ParkingSpotType[sorted.size()];
+    boolean[] free = new boolean[sorted.size()];
+    String[] levels = new String[sorted.size()];
+    for (int i = 0; i < spotIds.length; i++) {
+      spotIds[i] = sorted.get(i).getId();
+      types[i] = sorted.get(i).getType();
+      free[i] = sorted.get(i).getVehicleId() == null;
+      levels[i] = Objects.toString(sorted.get(i).getLevel(), "");
+    }
+    this.load(spotIds, types, free, levels);
+  }
+
+  /**
+   * Replaces the in-memory state with the given spots, without going through entities, as a single
+   * level.
+   *
+   * @param spotIds The ids of every parking spot of the lot, sorted ascending.
+   * @param types The type of each spot, at the same position of {@code spotIds}.
+   * @param free Whether each spot, at the same position of {@code spotIds}, is free.
+   */
+  public void load(long[] spotIds, ParkingSpotType[] types, boolean[] free) {
+    String[] levels = new String[spotIds.length];
+    Arrays.fill(levels, "");
+    this.load(spotIds, types, free, levels);
+  }
+
+  /**
+   * Replaces the in-memory state with the given spots, without going through entities, with one
+   * {@link SpotShard} per level.
+   *
+   * @param spotIds The ids of every parking spot of the lot, sorted ascending.
+   * @param types The type of each spot, at the same position of {@code spotIds}.
+   * @param free Whether each spot, at the same position of {@code spotIds}, is free.
+   * @param levels The level of each spot, at the same position of {@code spotIds}.
+   */
+  public void load(long[] spotIds, ParkingSpotType[] types, boolean[] free, String[] levels) {
+    Map<String, Integer> levelIndexes = new LinkedHashMap<>();
+    int[] levelOf = new int[spotIds.length];
+    for (int i = 0; i < spotIds.length; i++) {
+      levelOf[i] = levelIndexes.computeIfAbsent(levels[i], level -> levelIndexes.size());
+    }
+    int[][] positions = new int[levelIndexes.size()][];
+    int[] counts = new int[positions.length];
+    for (int level : levelOf) {
+      counts[level]++;
+    }
+    for (int level = 0; level < positions.length; level++) {
+      positions[level] = new int[counts[level]];
+      counts[level] = 0;
+    }
+    for (int i = 0; i < spotIds.length; i++) {
+      positions[levelOf[i]][counts[levelOf[i]]++] = i;
+    }
+
+    List<SpotShard> loaded = new ArrayList<>(positions.length);
+    levelIndexes.forEach(
+        (level, index) -> loaded.add(this.shard(level, positions[index], spotIds, types, free)));
+    this.shards = loaded.isEmpty() ? emptyShards() : loaded.toArray(SpotShard[]::new);
+
+    for (ParkingSpotType type : ParkingSpotType.values()) {
+      log.info(
+          "Loaded {} {} spots, {} free, on {} levels",
+          this.capacity(type),
+          type,
+          this.available(type),
+          loaded.size());
+    }
+  }
+
+  /**
+   * Claims {@code claimed.length} free spots of the given type, all or nothing. Several spots, such
+   * as the ones of a van, are always adjacent: a run of consecutive spot ids, lowest first, on a
+   * single level. The levels are tried starting from the one of the current thread, so threads
+   * parking at the same time spread over the levels; the claimed spots come from the first level
+   * with room, which need not hold the {@link #firstFree(ParkingSpotType)} spot of the lot.
+   *
+   * @param type The type of parking spot.
+   * @param claimed Buffer filled with the claimed spot ids.
+   * @return {@code true} if the spots were claimed, {@code false} if there was not enough room or,
+   *     for several spots, no run of adjacent free ones.
+   */
+  public boolean claim(ParkingSpotType type, long[] claimed) {
+    SpotShard[] current = shards;
+    int shard = homeShard(current.length);
+    for (int tried = 0; tried < current.length; tried++) {
+      if (current[shard].pool(type).claim(claimed)) {
+        return true;
+      }
+      if (++shard == current.length) {
+        shard = 0;
+      }
+    }
+    return false;
+  }
+
+  /**
+   * Frees a previously claimed spot.
+   *
+   * @param type The type of parking spot.
+   * @param spotId The id of the spot.
+   */
+  public void release(ParkingSpotType type, long spotId) {
+    for (SpotShard shard : shards) {
+      if (shard.covers(spotId) && shard.pool(type).release(spotId)) {
+        releaseListener.accept(type);
+        return;
+      }
+    }
+    log.warn("Spot {} of type {} was not taken, nothing to release", spotId, type);
+  }
+
+  /**
+   * Takes a specific spot out of the free set, if it is free.
+   *
+   * @param type The type of parking spot.
+   * @param spotId The id of the spot.
+   * @return {@code true} if the spot was free and is now taken, {@code false} otherwise.
+   */
+  public boolean take(ParkingSpotType type, long spotId) {
+    for (SpotShard shard : shards) {
+      if (shard.covers(spotId) && shard.pool(type).take(spotId)) {
+        return true;
+      }
+    }
+    return false;
+  }
+
+  /**
+   * Compares the free spots of a type with the ones the database reports as free.
+   *
+   * @param type The type of parking spot.
+   * @param databaseFree The ids of the spots of the type free in the database.
+   * @param freeOnlyInDatabase Receives the spots free in the database but taken in memory.
+   * @param freeOnlyInMemory Receives the spots free in memory but taken in the database.
+   */
+  public void compare(
+      ParkingSpotType type,
+      Collection<Long> databaseFree,
+      LongConsumer freeOnlyInDatabase,
+      LongConsumer freeOnlyInMemory) {
+    for (SpotShard shard : shards) {
+      shard.pool(type).compare(databaseFree, freeOnlyInDatabase, freeOnlyInMemory);
+    }
+  }
+
+  /**
+   * Gives the claimed spots back if the current transaction does not commit, so a failed park never
+   * leaks capacity.
+   *
+   * @param type The type of parking spot.
+   * @param spotIds The ids of the claimed spots.
+   */
+  public void releaseOnRollback(ParkingSpotType type, long... spotIds) {
+    TransactionSynchronizationManager.registerSynchronization(
+        new TransactionSynchronization() {
+          @Override
+          public void afterCompletion(int status) {
+            if (status != STATUS_COMMITTED) {
+              releaseAll(type, spotIds);
+            }
+          }
+        });
+  }
+
+  /**
+   * Frees the spots once the current transaction commits, so they are not offered to another
+   * vehicle while the database still holds them.
+   *
+   * @param type The type of parking spot.
+   * @param spotIds The ids of the spots to free.
+   */
+  public void releaseAfterCommit(ParkingSpotType type, long... spotIds) {
+    TransactionSynchronizationManager.registerSynchronization(
+        new TransactionSynchronization() {
+          @Override
+          public void afterCommit() {
+            releaseAll(type, spotIds);
+          }
+        });
+  }
+
+  /**
+   * Sets the listener told of the type of every spot freed and of every hold given back, on the
+   * thread that frees it, so it must return quickly.
+   *
+   * @param listener The listener, replacing the previous one.
+   */
+  public void onRelease(Consumer<ParkingSpotType> listener) {
+    this.releaseListener = listener;
+  }
+
+  /**
+   * Counts the free spots of the given type, adding up the free counters of every level.
+   *
+   * @param type The type of parking spot.
+   * @return The number of free spots.
+   */
+  public int available(ParkingSpotType type) {
+    int available = 0;
+    for (SpotShard shard : shards) {
+      available += shard.pool(type).available();
+    }
+    return available;
+  }
+
+  /**
+   * Finds the longest run of adjacent free spots of the given type. Runs never span two levels, so
+   * it is the longest run of any level, and the most spots a single claim can take.
+   *
+   * @param type The type of parking spot.
+   * @return The number of spots of the run.
+   */
+  public int longestRun(ParkingSpotType type) {
+    int longest = 0;
+    for (SpotShard shard : shards) {
+      longest = Math.max(longest, shard.pool(type).longestRun());
+    }
+    return longest;
+  }
+
+  /**
+   * Sets aside free spots of the given type, which only the vehicles they are held for may take.
+   * Holds are counts rather than spots: the {@link AllocationStrategySelector} leaves a type out of
+   * the candidates of any other park that would bring its free spots below what is held.
+   *
+   * @param type The type of parking spot.
+   * @param spots The amount of spots to hold, or a negative amount to give back.
+   */
+  public void hold(ParkingSpotType type, int spots) {
+    held.addAndGet(type.ordinal(), spots);
+    if (spots < 0) {
+      releaseListener.accept(type);
+    }
+  }
+
+  /**
+   * Counts the spots of the given type currently held.
+   *
+   * @param type The type of parking spot.
+   * @return The number of held spots.
+   */
+  public int held(ParkingSpotType type) {
+    return held.get(type.ordinal());
+  }
+
+  /**
+   * Counts the free spots of the given type on each level.
+   *
+   * @param type The type of parking spot.
+   * @return The number of free spots by level name, in the order of the lot.
+   */
+  public Map<String, Integer> availableByLevel(ParkingSpotType type) {
+    Map<String, Integer> available = new LinkedHashMap<>();
+    for (SpotShard shard : shards) {
+      available.put(shard.level(), shard.pool(type).available());
+    }
+    return available;
+  }
+
+  /**
+   * Counts all the spots of the given type, free or taken.
+   *
+   * @param type The type of parking spot.
+   * @return The number of spots.
+   */
+  public int capacity(ParkingSpotType type) {
+    int capacity = 0;
+    for (SpotShard shard : shards) {
+      capacity += shard.pool(type).size();
+    }
+    return capacity;
+  }
+
+  /**
+   * Finds the free spot of the given type with the lowest id, the first one in the lot. It only
+   * ranks the types against each other: {@link #claim} starts from the level of the current thread
+   * and may take a spot on another level.
+   *
+   * @param type The type of parking spot.
+   * @return The id of the spot, or {@link Long#MAX_VALUE} if none is free.
+   */
+  public long firstFree(ParkingSpotType type) {
+    long firstFree = Long.MAX_VALUE;
+    for (SpotShard shard : shards) {
+      firstFree = Math.min(firstFree, shard.pool(type).firstFree());
+    }
+    return firstFree;
+  }
+
+  /**
+   * Counts the CAS operations on the spots of the given type lost to another thread since startup.
+   *
+   * @param type The type of parking spot.
+   * @return The number of lost CAS operations.
+   */
+  public long contention(ParkingSpotType type) {
+    return contention[type.ordinal()].sum();
+  }
+
+  private void releaseAll(ParkingSpotType type, long[] spotIds) {
+    for (long spotId : spotIds) {
+      this.release(type, spotId);
+    }
+  }
+
+  private SpotShard shard(
+      String level, int[] positions, long[] spotIds, ParkingSpotType[] types, boolean[] free) {
+    int[] sizes = new int[ParkingSpotType.values().length];
+    for (int i : positions) {
+      sizes[types[i].ordinal()]++;
+    }
+
+    long[][] ids = new long[sizes.length][];
+    boolean[][] freeOfType = new boolean[sizes.length][];
+    for (int t = 0; t < sizes.length; t++) {
+      ids[t] = new long[sizes[t]];
+      freeOfType[t] = new boolean[sizes[t]];
+    }
+    int[] filled = new int[sizes.length];
+    for (int i : positions) {
+      int t = types[i].ordinal();
+      ids[t][filled[t]] = spotIds[i];
+      freeOfType[t][filled[t]++] = free[i];
+    }
+
+    SpotPool[] pools = new SpotPool[sizes.length];
+    for (int t = 0; t < sizes.length; t++) {
+      pools[t] = new SpotPool(ids[t], freeOfType[t], contention[t]);
+    }
+    return new SpotShard(
+        level,
+        pools,
+        spotIds[positions[0]],
+        spotIds[positions[positions.length - 1]]);
+  }
+
+  /**
+   * Picks the level a thread claims from first, so concurrent threads start on different levels.
+   */
+  private static int homeShard(int shards) {
+    return shards == 1 ? 0 : (int) (Thread.currentThread().threadId() % shards);
+  }
+
+  private static SpotShard[] emptyShards() {
+    SpotPool[] empty = new SpotPool[ParkingSpotType.values().length];
+    Arrays.fill(empty, SpotPool.EMPTY);
+    return new SpotShard[] {new SpotShard("", empty, 1, 0)};
+  }
+
+  private static LongAdder[] newCounters() {
+    LongAdder[] counters = new LongAdder[ParkingSpotType.values().length];
+    Arrays.setAll(counters, i -> new LongAdder());
+    return counters;
+  }
+}
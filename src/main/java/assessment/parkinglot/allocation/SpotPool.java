@@ -0,0 +1,280 @@
+package assessment.parkinglot.allocation;
+
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLongArray;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.function.LongConsumer;
+
+/**
+ * Free-spot set of a single parking spot type.
+ *
+ * <p>Spot ids are kept in a sorted primitive array and their availability in a bitmap, one bit per
+ * spot (bit set = spot free). A free counter works as a semaphore in front of the bitmap: a claimer
+ * first reserves the amount of spots it needs from the counter and only then clears bits with CAS,
+ * so a successful reservation always finds its bits and never has to be rolled back. Every lost CAS
+ * is counted as contention.
+ *
+ * <p>Claims of several spots take a run of adjacent ones, found with a {@link FreeRunIndex} kept up
+ * to date after every change to the bitmap. Those are the only claims that can fail after their
+ * reservation, when no run is long enough, and then give it back.
+ */
+class SpotPool {
+
+  static final SpotPool EMPTY = new SpotPool(new long[0], new boolean[0], new LongAdder());
+
+  private final long[] spotIds;
+  private final AtomicLongArray freeBits;
+  private final AtomicInteger freeCount = new AtomicInteger();
+  private final AtomicInteger hint = new AtomicInteger();
+  private final LongAdder contention;
+  private final FreeRunIndex runs;
+
+  /**
+   * Creates a pool for the given spots.
+   *
+   * @param spotIds The spot ids, sorted ascending.
+   * @param free Whether each spot, at the same position of {@code spotIds}, is free.
+   * @param contention Counter of the CAS operations lost to other threads.
+   */
+  SpotPool(long[] spotIds, boolean[] free, LongAdder contention) {
+    this.spotIds = spotIds;
+    this.contention = contention;
+    this.freeBits = new AtomicLongArray((spotIds.length + 63) >>> 6);
+
+    int count = 0;
+    for (int i = 0; i < spotIds.length; i++) {
+      if (free[i]) {
+        this.freeBits.set(i >>> 6, this.freeBits.get(i >>> 6) | (1L << i));
+        count++;
+      }
+    }
+    this.freeCount.set(count);
+    this.runs = new FreeRunIndex(spotIds, freeBits);
+  }
+
+  int size() {
+    return spotIds.length;
+  }
+
+  int available() {
+    return freeCount.get();
+  }
+
+  /** Length of the longest run of adjacent free spots, the most spots a single claim can take. */
+  int longestRun() {
+    return runs.longest();
+  }
+
+  /**
+   * Finds the free spot with the lowest id, scanning the bitmap from the start.
+   *
+   * @return The id of the spot, or {@link Long#MAX_VALUE} if none is free.
+   */
+  long firstFree() {
+    for (int word = 0; word < freeBits.length(); word++) {
+      long bits = freeBits.get(word);
+      if (bits != 0) {
+        return spotIds[(word << 6) + Long.numberOfTrailingZeros(bits)];
+      }
+    }
+    return Long.MAX_VALUE;
+  }
+
+  /**
+   * Claims {@code claimed.length} free spots, all or nothing. Several spots are always adjacent.
+   *
+   * @param claimed Buffer filled with the claimed spot ids.
+   * @return {@code true} if every requested spot was claimed, {@code false} if none was.
+   */
+  boolean claim(long[] claimed) {
+    if (!reserve(claimed.length)) {
+      return false;
+    }
+    if (claimed.length > 1) {
+      return claimRun(claimed);
+    }
+    for (int i = 0; i < claimed.length; i++) {
+      claimed[i] = takeBit();
+    }
+    return true;
+  }
+
+  /**
+   * Returns a spot to the pool.
+   *
+   * @param spotId The id of the spot to free.
+   * @return {@code true} if the spot belongs to this pool and was taken, {@code false} otherwise.
+   */
+  boolean release(long spotId) {
+    int index = Arrays.binarySearch(spotIds, spotId);
+    if (index < 0) {
+      return false;
+    }
+
+    int word = index >>> 6;
+    long mask = 1L << index;
+    long bits;
+    do {
+      bits = freeBits.get(word);
+      if ((bits & mask) != 0) {
+        return false;
+      }
+    } while (!casBits(word, bits, bits | mask));
+    runs.update(word);
+
+    freeCount.incrementAndGet();
+    return true;
+  }
+
+  /**
+   * Takes a specific spot out of the pool, if it is free.
+   *
+   * @param spotId The id of the spot to take.
+   * @return {@code true} if the spot was free and is now taken, {@code false} otherwise.
+   */
+  boolean take(long spotId) {
+    int index = Arrays.binarySearch(spotIds, spotId);
+    if (index < 0 || !reserve(1)) {
+      return false;
+    }
+
+    int word = index >>> 6;
+    long mask = 1L << index;
+    long bits;
+    do {
+      bits = freeBits.get(word);
+      if ((bits & mask) == 0) {
+        freeCount.incrementAndGet();
+        return false;
+      }
+    } while (!casBits(word, bits, bits & ~mask));
+    runs.update(word);
+    return true;
+  }
+
+  /**
+   * Compares the pool with the spots the database reports as free.
+   *
+   * @param databaseFree The ids of the spots free in the database.
+   * @param freeOnlyInDatabase Receives the spots free in the database but taken in the pool.
+   * @param freeOnlyInPool Receives the spots free in the pool but taken in the database.
+   */
+  void compare(
+      Collection<Long> databaseFree, LongConsumer freeOnlyInDatabase, LongConsumer freeOnlyInPool) {
+    boolean[] freeInDatabase = new boolean[spotIds.length];
+    for (Long spotId : databaseFree) {
+      int index = Arrays.binarySearch(spotIds, spotId);
+      if (index >= 0) {
+        freeInDatabase[index] = true;
+      }
+    }
+
+    for (int i = 0; i < spotIds.length; i++) {
+      boolean freeInPool = (freeBits.get(i >>> 6) & (1L << i)) != 0;
+      if (freeInDatabase[i] && !freeInPool) {
+        freeOnlyInDatabase.accept(spotIds[i]);
+      } else if (!freeInDatabase[i] && freeInPool) {
+        freeOnlyInPool.accept(spotIds[i]);
+      }
+    }
+  }
+
+  private boolean reserve(int amount) {
+    while (true) {
+      int current = freeCount.get();
+      if (current < amount) {
+        return false;
+      }
+      if (freeCount.compareAndSet(current, current - amount)) {
+        return true;
+      }
+      contention.increment();
+    }
+  }
+
+  /**
+   * Takes the first run of adjacent free spots of the length of {@code claimed}, after its
+   * reservation. A run taken by another thread in the meantime is looked up again, and the
+   * reservation is given back once the index has no run long enough.
+   */
+  private boolean claimRun(long[] claimed) {
+    while (true) {
+      int start = runs.find(claimed.length);
+      if (start < 0) {
+        freeCount.addAndGet(claimed.length);
+        return false;
+      }
+      if (takeRun(start, claimed.length)) {
+        for (int i = 0; i < claimed.length; i++) {
+          claimed[i] = spotIds[start + i];
+        }
+        return true;
+      }
+    }
+  }
+
+  /**
+   * Clears the bits of a run, word by word, restoring the words already cleared if a spot of the
+   * run is no longer free.
+   */
+  private boolean takeRun(int start, int length) {
+    int end = start + length;
+    for (int word = start >>> 6; word <= (end - 1) >>> 6; word++) {
+      long mask = runMask(word, start, end);
+      long bits;
+      do {
+        bits = freeBits.get(word);
+        if ((bits & mask) != mask) {
+          runs.update(word);
+          for (int taken = start >>> 6; taken < word; taken++) {
+            freeBits.getAndAccumulate(taken, runMask(taken, start, end), (b, m) -> b | m);
+            runs.update(taken);
+          }
+          return false;
+        }
+      } while (!casBits(word, bits, bits & ~mask));
+      runs.update(word);
+    }
+    return true;
+  }
+
+  private static long runMask(int word, int start, int end) {
+    int from = Math.max(start, word << 6) - (word << 6);
+    int to = Math.min(end, (word + 1) << 6) - (word << 6);
+    return (to == Long.SIZE ? -1L : (1L << to) - 1) & -(1L << from);
+  }
+
+  private boolean casBits(int word, long expected, long bits) {
+    if (freeBits.compareAndSet(word, expected, bits)) {
+      return true;
+    }
+    contention.increment();
+    return false;
+  }
+
+  /**
+   * Clears one free bit. Only called after a successful {@link #reserve(int)}, which guarantees a
+   * set bit exists, so the scan keeps going until it wins one.
+   */
+  private long takeBit() {
+    int words = freeBits.length();
+    int word = hint.get();
+    while (true) {
+      long bits = freeBits.get(word);
+      while (bits != 0) {
+        long lowest = bits & -bits;
+        if (casBits(word, bits, bits & ~lowest)) {
+          runs.update(word);
+          hint.set(word);
+          return spotIds[(word << 6) + Long.numberOfTrailingZeros(lowest)];
+        }
+        bits = freeBits.get(word);
+      }
+      if (++word == words) {
+        word = 0;
+      }
+    }
+  }
+}
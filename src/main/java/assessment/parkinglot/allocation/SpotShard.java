@@ -0,0 +1,48 @@
+package assessment.parkinglot.allocation;
+
+import assessment.parkinglot.enums.ParkingSpotType;
+
+/**
+ * Free spots of one level of the lot: a {@link SpotPool} per {@link ParkingSpotType}, with no state
+ * shared with the other levels.
+ *
+ * <p>Threads claim from the shard of their own before trying the others, so on a lot of several
+ * levels they spread their CAS operations over separate free counters and bitmaps instead of all
+ * hitting the same ones. A run of adjacent spots never spans two shards, which keeps a van on a
+ * single level.
+ */
+class SpotShard {
+
+  private final String level;
+  private final SpotPool[] pools;
+  private final long firstId;
+  private final long lastId;
+
+  /**
+   * Creates the shard of a level.
+   *
+   * @param level The name of the level.
+   * @param pools The pool of every spot type, indexed by ordinal.
+   * @param firstId The lowest spot id of the level.
+   * @param lastId The highest spot id of the level.
+   */
+  SpotShard(String level, SpotPool[] pools, long firstId, long lastId) {
+    this.level = level;
+    this.pools = pools;
+    this.firstId = firstId;
+    this.lastId = lastId;
+  }
+
+  String level() {
+    return level;
+  }
+
+  SpotPool pool(ParkingSpotType type) {
+    return pools[type.ordinal()];
+  }
+
+  /** Whether the spot id falls in the range of the level, before looking it up in a pool. */
+  boolean covers(long spotId) {
+    return spotId >= firstId && spotId <= lastId;
+  }
+}
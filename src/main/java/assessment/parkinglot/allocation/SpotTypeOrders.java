@@ -0,0 +1,66 @@
+package assessment.parkinglot.allocation;
+
+import assessment.parkinglot.enums.ParkingSpotType;
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+
+/**
+ * Every ordered list of distinct spot types, built once, so the strategies hand out their
+ * candidates without building a list on every park.
+ *
+ * <p>A list is known by a code with a digit for each of its types, the ordinal of the type plus
+ * one, in base {@code types + 1}. A strategy starts from {@link #EMPTY}, {@link #append appends}
+ * the types in the order it wants them tried, and looks the list up with {@link #of}.
+ */
+final class SpotTypeOrders {
+
+  static final int EMPTY = 0;
+
+  private static final ParkingSpotType[] SPOT_TYPES = ParkingSpotType.values();
+  private static final int BASE = SPOT_TYPES.length + 1;
+  private static final List<List<ParkingSpotType>> ORDERS = orders();
+
+  private SpotTypeOrders() {}
+
+  /**
+   * @param code The code of a list.
+   * @param type A type not in the list yet.
+   * @return The code of the list with the type added at the end.
+   */
+  static int append(int code, ParkingSpotType type) {
+    return code * BASE + type.ordinal() + 1;
+  }
+
+  /**
+   * @param code The code of a list.
+   * @return The list, the same instance every time.
+   */
+  static List<ParkingSpotType> of(int code) {
+    return ORDERS.get(code);
+  }
+
+  /** The list of each code, or {@code null} for codes with a zero digit or a repeated type. */
+  private static List<List<ParkingSpotType>> orders() {
+    int codes = 1;
+    for (int i = 0; i < SPOT_TYPES.length; i++) {
+      codes *= BASE;
+    }
+    List<List<ParkingSpotType>> orders = new ArrayList<>(codes);
+    for (int code = 0; code < codes; code++) {
+      List<ParkingSpotType> order = new ArrayList<>();
+      Set<ParkingSpotType> seen = new HashSet<>();
+      for (int rest = code; rest > 0 && order != null; rest /= BASE) {
+        int digit = rest % BASE;
+        if (digit == 0 || !seen.add(SPOT_TYPES[digit - 1])) {
+          order = null;
+        } else {
+          order.add(0, SPOT_TYPES[digit - 1]);
+        }
+      }
+      orders.add(order == null ? null : List.copyOf(order));
+    }
+    return orders;
+  }
+}
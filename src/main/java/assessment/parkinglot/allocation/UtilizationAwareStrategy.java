@@ -0,0 +1,58 @@
+package assessment.parkinglot.allocation;
+
+import assessment.parkinglot.domain.Vehicle;
+import assessment.parkinglot.enums.AllocationStrategyType;
+import assessment.parkinglot.enums.ParkingSpotType;
+import java.util.List;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+
+/**
+ * Best fit that also keeps a headroom of regular spots for the vehicles that fit nowhere else.
+ *
+ * <p>A vehicle that fits other types only falls back to regular spots while more than {@code
+ * parking.allocation.regular-reserve-percent} of them would stay free, so once the smaller types
+ * fill up, the last regular spots are left to vans instead of going to cars.
+ */
+@Component
+public class UtilizationAwareStrategy implements SpotAllocationStrategy {
+
+  private final SpotAllocator spotAllocator;
+  private final int reservePercent;
+
+  public UtilizationAwareStrategy(
+      SpotAllocator spotAllocator,
+      @Value("${parking.allocation.regular-reserve-percent}") int reservePercent) {
+    this.spotAllocator = spotAllocator;
+    this.reservePercent = reservePercent;
+  }
+
+  @Override
+  public AllocationStrategyType getType() {
+    return AllocationStrategyType.UTILIZATION_AWARE;
+  }
+
+  @Override
+  public List<ParkingSpotType> candidates(Vehicle vehicle) {
+    List<ParkingSpotType> spotTypes = vehicle.getSpotTypes();
+    if (spotTypes.size() == 1) {
+      return spotTypes;
+    }
+    int order = SpotTypeOrders.EMPTY;
+    for (int i = 0; i < spotTypes.size(); i++) {
+      ParkingSpotType type = spotTypes.get(i);
+      if (this.outsideReserve(type, vehicle.spots(type))) {
+        order = SpotTypeOrders.append(order, type);
+      }
+    }
+    return SpotTypeOrders.of(order);
+  }
+
+  private boolean outsideReserve(ParkingSpotType type, int amount) {
+    if (!ParkingSpotType.REGULAR.equals(type)) {
+      return true;
+    }
+    long reserve = ((long) spotAllocator.capacity(type) * reservePercent + 99) / 100;
+    return spotAllocator.available(type) - amount >= reserve;
+  }
+}
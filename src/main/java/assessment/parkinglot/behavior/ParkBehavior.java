@@ -3,7 +3,11 @@ package assessment.parkinglot.behavior;
 import assessment.parkinglot.domain.Car;
 import assessment.parkinglot.domain.Motorcycle;
 import assessment.parkinglot.domain.Van;
+import assessment.parkinglot.domain.Vehicle;
+import assessment.parkinglot.dto.BatchItemDTO;
 import assessment.parkinglot.dto.VehicleDTO;
+import assessment.parkinglot.enums.ParkingSpotType;
+import java.util.List;
 
 public interface ParkBehavior {
 
@@ -12,4 +16,8 @@ public interface ParkBehavior {
   VehicleDTO park(Motorcycle motorcycle);
 
   VehicleDTO park(Van van);
+
+  VehicleDTO park(Vehicle vehicle, ParkingSpotType type, long[] spotIds);
+
+  List<BatchItemDTO> park(List<Vehicle> vehicles);
 }
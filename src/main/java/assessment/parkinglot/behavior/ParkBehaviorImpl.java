@@ -1,21 +1,30 @@
 package assessment.parkinglot.behavior;
 
+import assessment.parkinglot.allocation.AllocationStrategySelector;
+import assessment.parkinglot.allocation.SpotAllocator;
+import assessment.parkinglot.cache.VehicleIndex;
 import assessment.parkinglot.domain.Car;
 import assessment.parkinglot.domain.Motorcycle;
 import assessment.parkinglot.domain.Van;
+import assessment.parkinglot.domain.Vehicle;
+import assessment.parkinglot.dto.BatchItemDTO;
 import assessment.parkinglot.dto.Translator;
 import assessment.parkinglot.dto.VehicleDTO;
-import assessment.parkinglot.entities.ParkingSpotEntity;
 import assessment.parkinglot.entities.VehicleEntity;
 import assessment.parkinglot.enums.ErrorCode;
 import assessment.parkinglot.enums.ParkingSpotType;
 import assessment.parkinglot.enums.VehicleType;
+import assessment.parkinglot.exception.ParkingLotException;
 import assessment.parkinglot.exception.PklErrorException;
 import assessment.parkinglot.repository.ParkingSpotRepository;
 import assessment.parkinglot.repository.VehicleRepository;
+import java.time.Instant;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.LinkedHashMap;
 import java.util.List;
 import java.util.Map;
-
+import lombok.AllArgsConstructor;
 import lombok.extern.slf4j.Slf4j;
 import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.stereotype.Service;
@@ -31,6 +40,9 @@ public class ParkBehaviorImpl implements ParkBehavior {
   @Autowired VehicleRepository vehicleRepository;
   @Autowired ParkingSpotRepository parkingSpotRepository;
   @Autowired Translator translator;
+  @Autowired SpotAllocator spotAllocator;
+  @Autowired AllocationStrategySelector strategySelector;
+  @Autowired VehicleIndex vehicleIndex;
 
   /**
    * Parks a {@link Car} in the appropriate parking spots.
@@ -39,11 +51,11 @@ public class ParkBehaviorImpl implements ParkBehavior {
    * @return The parked car's {@link VehicleDTO}.
    */
   @Override
+  @Transactional
   public VehicleDTO park(Car car) {
-    Map<ParkingSpotType, Integer> spotTypes = car.getParkingSpotUsageByTypes();
-
-    VehicleEntity vehicleEntity = VehicleEntity.builder().type(VehicleType.CAR).build();
-    return parkVehicle(vehicleEntity, spotTypes);
+    VehicleEntity vehicleEntity =
+        VehicleEntity.builder().type(VehicleType.CAR).parkedAt(Instant.now()).build();
+    return parkVehicle(vehicleEntity, car);
   }
 
   /**
@@ -53,11 +65,11 @@ public class ParkBehaviorImpl implements ParkBehavior {
    * @return The parked motorcycle's {@link VehicleDTO}.
    */
   @Override
+  @Transactional
   public VehicleDTO park(Motorcycle motorcycle) {
-    Map<ParkingSpotType, Integer> spotTypes = motorcycle.getParkingSpotUsageByTypes();
-
-    VehicleEntity vehicleEntity = VehicleEntity.builder().type(VehicleType.MOTORCYCLE).build();
-    return parkVehicle(vehicleEntity, spotTypes);
+    VehicleEntity vehicleEntity =
+        VehicleEntity.builder().type(VehicleType.MOTORCYCLE).parkedAt(Instant.now()).build();
+    return parkVehicle(vehicleEntity, motorcycle);
   }
 
   /**
@@ -67,65 +79,238 @@ public class ParkBehaviorImpl implements ParkBehavior {
    * @return The parked van's {@link VehicleDTO}.
    */
   @Override
+  @Transactional
   public VehicleDTO park(Van van) {
-    Map<ParkingSpotType, Integer> spotTypes = van.getParkingSpotUsageByTypes();
+    VehicleEntity vehicleEntity =
+        VehicleEntity.builder().type(VehicleType.VAN).parkedAt(Instant.now()).build();
+    return parkVehicle(vehicleEntity, van);
+  }
 
-    VehicleEntity vehicleEntity = VehicleEntity.builder().type(VehicleType.VAN).build();
-    return parkVehicle(vehicleEntity, spotTypes);
+  /**
+   * Parks a vehicle on spots already claimed for it from the {@link SpotAllocator}, such as the
+   * held spots of a reservation. The spots are given back if the transaction does not commit.
+   *
+   * @param vehicle The vehicle to be parked.
+   * @param type The type of the claimed spots.
+   * @param spotIds The ids of the claimed spots.
+   * @return The parked vehicle's {@link VehicleDTO}.
+   * @throws PklErrorException if the vehicle cannot be parked.
+   */
+  @Override
+  @Transactional
+  public VehicleDTO park(Vehicle vehicle, ParkingSpotType type, long[] spotIds) {
+    this.spotAllocator.releaseOnRollback(type, spotIds);
+    VehicleEntity vehicleEntity =
+        VehicleEntity.builder().type(vehicle.getType()).parkedAt(Instant.now()).build();
+
+    try {
+      return this.persist(vehicleEntity, type, spotIds);
+    } catch (ParkingLotException e) {
+      throw e;
+    } catch (Exception e) {
+      log.error("Error at parking a vehicle: {}", e.getMessage(), e);
+      throw new PklErrorException(ErrorCode.UNABLE_TO_PARK);
+    }
+  }
+
+  /**
+   * Parks many vehicles in a single transaction. The spots of every vehicle are claimed in one pass
+   * over the {@link SpotAllocator}, then the vehicles are saved and their spots assigned in JDBC
+   * batches. A vehicle that finds no space gets an error in its item and does not stop the others.
+   *
+   * @param vehicles The vehicles to be parked.
+   * @return One {@link BatchItemDTO} per vehicle, in the same order.
+   * @throws PklErrorException if the parked vehicles cannot be persisted, in which case none is
+   *     parked.
+   */
+  @Override
+  @Transactional
+  public List<BatchItemDTO> park(List<Vehicle> vehicles) {
+
+    try {
+      return this.doPark(vehicles);
+    } catch (ParkingLotException e) {
+      throw e;
+    } catch (Exception e) {
+      log.error("Error at parking a batch of vehicles: {}", e.getMessage(), e);
+      throw new PklErrorException(ErrorCode.UNABLE_TO_PARK);
+    }
   }
 
 /**
  * Attempts to park a vehicle in the appropriate spots.
  *
  * @param vehicleEntity The {@link VehicleEntity} to be parked.
- * @param spotTypes A Map with the types, and its amoutns, of parking spots required.
+ * @param vehicle The vehicle, which tells the types, and their amounts, of parking spots required.
  * @return The parked vehicle's {@link VehicleDTO}.
  * @throws PklErrorException if the vehicle cannot be parked.
  */
-  private VehicleDTO parkVehicle(
-      VehicleEntity vehicleEntity, Map<ParkingSpotType, Integer> spotTypes) {
+  private VehicleDTO parkVehicle(VehicleEntity vehicleEntity, Vehicle vehicle) {
 
     try {
-      return this.doPark(vehicleEntity, spotTypes);
+      return this.doPark(vehicleEntity, vehicle);
+    } catch (ParkingLotException e) {
+      throw e;
     } catch (Exception e) {
-      log.error("Error at parking a vehicle: " + e.getMessage(), e.getStackTrace());
+      log.error("Error at parking a vehicle: {}", e.getMessage(), e);
       throw new PklErrorException(ErrorCode.UNABLE_TO_PARK);
     }
   }
 
   /**
-   * Performs the actual parking operation transactionally, updating the parking spots.
+   * Performs the actual parking operation, claiming the spots from the {@link SpotAllocator} and
+   * persisting the result. Runs inside the transaction of the calling {@code park} method, which
+   * gives the claimed spots back if it does not commit.
    *
    * @param vehicleEntity The {@link VehicleEntity} being parked.
-   * @param spotTypes The types of parking spots required.
+   * @param vehicle The vehicle, which tells the types of parking spots required.
    * @return The parked vehicle's {@link VehicleDTO}.
+   * @throws PklErrorException if there is no space to park the vehicle.
    */
-  @Transactional
-  private VehicleDTO doPark(VehicleEntity vehicleEntity, Map<ParkingSpotType, Integer> spotTypes) {
-    vehicleEntity = this.vehicleRepository.save(vehicleEntity);
-    final Long vehicleId = vehicleEntity.getId();
+  private VehicleDTO doPark(VehicleEntity vehicleEntity, Vehicle vehicle) {
 
-    VehicleDTO vehicleDTO = translator.toDTO(vehicleEntity);
+    Claim claim = this.claim(vehicle);
+    if (claim == null) {
+      throw new PklErrorException(ErrorCode.NO_SPACE_TO_PARK);
+    }
 
-    for (Map.Entry<ParkingSpotType, Integer> entry : spotTypes.entrySet()) {
+    return this.persist(vehicleEntity, claim.type, claim.spotIds);
+  }
 
-      List<ParkingSpotEntity> freeSpots =
-          this.parkingSpotRepository.findByTypeAndVehicleIdIsNull(entry.getKey());
-      if (freeSpots.size() >= entry.getValue()) {
-        freeSpots = freeSpots.subList(0, entry.getValue());
+  /**
+   * Claims the spots of every vehicle of a batch, then saves the vehicles that got spots and
+   * assigns them their spots with a single JDBC batch.
+   *
+   * @param vehicles The vehicles being parked.
+   * @return One {@link BatchItemDTO} per vehicle, in the same order.
+   * @throws PklErrorException if any claimed spot is no longer free in the database.
+   */
+  private List<BatchItemDTO> doPark(List<Vehicle> vehicles) {
+
+    List<BatchItemDTO> items = new ArrayList<>(vehicles.size());
+    List<BatchItemDTO> parkedItems = new ArrayList<>();
+    List<VehicleEntity> vehicleEntities = new ArrayList<>();
+    List<Claim> claims = new ArrayList<>();
+    Instant parkedAt = Instant.now();
+
+    for (Vehicle vehicle : vehicles) {
+      BatchItemDTO item = new BatchItemDTO();
+      items.add(item);
+
+      Claim claim = this.claim(vehicle);
+      if (claim == null) {
+        item.setError(ErrorCode.NO_SPACE_TO_PARK);
+        continue;
+      }
+      parkedItems.add(item);
+      vehicleEntities.add(
+          VehicleEntity.builder().type(vehicle.getType()).parkedAt(parkedAt).build());
+      claims.add(claim);
+    }
+    if (claims.isEmpty()) {
+      return items;
+    }
+
+    vehicleEntities = this.vehicleRepository.saveAll(vehicleEntities);
+
+    Map<Long, long[]> spotIdsByVehicleId = new LinkedHashMap<>();
+    int claimed = 0;
+    for (int i = 0; i < claims.size(); i++) {
+      spotIdsByVehicleId.put(vehicleEntities.get(i).getId(), claims.get(i).spotIds);
+      claimed += claims.get(i).spotIds.length;
+    }
+    int assigned = this.parkingSpotRepository.assignVehicles(spotIdsByVehicleId);
+    if (assigned != claimed) {
+      log.warn("Only {} of the {} claimed spots were still free", assigned, claimed);
+      throw new PklErrorException(ErrorCode.UNABLE_TO_PARK);
+    }
+
+    for (int i = 0; i < claims.size(); i++) {
+      VehicleEntity vehicleEntity = vehicleEntities.get(i);
+      Claim claim = claims.get(i);
+      vehicleIndex.putAfterCommit(
+          vehicleEntity.getId(),
+          vehicleEntity.getType(),
+          claim.type,
+          claim.spotIds,
+          parkedAt.toEpochMilli());
+      VehicleDTO vehicleDTO = translator.toDTO(vehicleEntity);
+      for (long spotId : claim.spotIds) {
+        vehicleDTO.getParkedOn().add(translator.toDTO(spotId, claim.type));
+      }
+      vehicleDTO.setParked(Boolean.TRUE);
+      parkedItems.get(i).setVehicle(vehicleDTO);
+    }
+    return items;
+  }
+
+  /**
+   * Claims from the {@link SpotAllocator} the spots of the first type with enough free spots, trying
+   * the types in the order chosen by the current {@link AllocationStrategySelector strategy}. The
+   * types tried share the array of ids the vehicle keeps whenever they need as many spots, so a park
+   * allocates a single array of ids. The claimed spots are given back if the current transaction
+   * does not commit.
+   *
+   * @param vehicle The vehicle, which tells the types of parking spots required, and their amounts.
+   * @return The claimed spots, or {@code null} if no type has enough free spots.
+   */
+  private Claim claim(Vehicle vehicle) {
 
-        freeSpots.forEach(
-            s -> {
-              s.setVehicleId(vehicleId);
-              this.parkingSpotRepository.save(s);
-              vehicleDTO.getParkedOn().add(translator.toDTO(s));
-            });
+    List<ParkingSpotType> candidates = this.strategySelector.candidates(vehicle);
+    long[] spotIds = null;
+    for (int i = 0; i < candidates.size(); i++) {
+      ParkingSpotType type = candidates.get(i);
 
-        break;
+      int spots = vehicle.spots(type);
+      if (spotIds == null || spotIds.length != spots) {
+        spotIds = new long[spots];
+      }
+      if (this.spotAllocator.claim(type, spotIds)) {
+        this.spotAllocator.releaseOnRollback(type, spotIds);
+        return new Claim(type, spotIds);
       }
     }
+    return null;
+  }
+
+  /**
+   * Saves the vehicle and assigns it the already claimed spots. The assignment only touches spots
+   * that are still free in the database, so a spot can never end up assigned to two vehicles. The
+   * vehicle, with the time it parked at, joins the {@link VehicleIndex} once the transaction
+   * commits.
+   *
+   * @param vehicleEntity The {@link VehicleEntity} being parked.
+   * @param type The type of the claimed spots.
+   * @param spotIds The ids of the claimed spots.
+   * @return The parked vehicle's {@link VehicleDTO}.
+   */
+  private VehicleDTO persist(VehicleEntity vehicleEntity, ParkingSpotType type, long[] spotIds) {
+    long parkedAt = vehicleEntity.getParkedAt().toEpochMilli();
+    vehicleEntity = this.vehicleRepository.save(vehicleEntity);
+
+    VehicleDTO vehicleDTO = translator.toDTO(vehicleEntity);
+
+    List<Long> ids = Arrays.stream(spotIds).boxed().toList();
+    int assigned = this.parkingSpotRepository.assignVehicle(vehicleEntity.getId(), ids);
+    if (assigned != ids.size()) {
+      log.warn("Only {} of the claimed spots {} were still free", assigned, ids);
+      throw new PklErrorException(ErrorCode.UNABLE_TO_PARK);
+    }
+    ids.forEach(id -> vehicleDTO.getParkedOn().add(translator.toDTO(id, type)));
+    vehicleIndex.putAfterCommit(
+        vehicleEntity.getId(),
+        vehicleEntity.getType(),
+        type,
+        spotIds,
+        parkedAt);
 
     vehicleDTO.setParked(Boolean.TRUE);
     return vehicleDTO;
   }
+
+  @AllArgsConstructor
+  private static class Claim {
+    private final ParkingSpotType type;
+    private final long[] spotIds;
+  }
 }
@@ -0,0 +1,28 @@
+package assessment.parkinglot.billing;
+
+import assessment.parkinglot.enums.ParkingSpotType;
+import assessment.parkinglot.enums.VehicleType;
+import lombok.AllArgsConstructor;
+import lombok.Builder;
+import lombok.Getter;
+
+/** A closed stay of a vehicle in the lot, as priced by the {@link Tariff}. */
+@Builder
+@AllArgsConstructor
+@Getter
+public class ParkingSession {
+
+  private final long vehicleId;
+  private final VehicleType vehicleType;
+  private final ParkingSpotType spotType;
+  private final int spots;
+
+  /** The time the vehicle parked at, in epoch milliseconds. */
+  private final long parkedAt;
+
+  /** The time the vehicle left at, in epoch milliseconds. */
+  private final long leftAt;
+
+  /** The price of the stay, in cents. */
+  private final long fee;
+}
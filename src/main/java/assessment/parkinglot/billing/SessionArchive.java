@@ -0,0 +1,490 @@
+package assessment.parkinglot.billing;
+
+import assessment.parkinglot.enums.ParkingSpotType;
+import assessment.parkinglot.enums.VehicleType;
+import jakarta.annotation.PreDestroy;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.LongBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.FileAlreadyExistsException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.locks.ReentrantLock;
+import java.util.function.Consumer;
+import java.util.stream.Stream;
+import java.util.zip.CRC32C;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.support.TransactionSynchronization;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+import org.springframework.util.unit.DataSize;
+
+/**
+ * Append-only archive of the closed {@link ParkingSession parking sessions}, stored column by
+ * column so that an aggregation over millions of them is a sequential scan of a few primitive
+ * arrays, without building an object per session.
+ *
+ * <p>Sessions are gathered in memory, one array per field, and written as a block once {@code
+ * parking.billing.archive.block-size} of them are in, every {@code
+ * parking.billing.archive.flush-interval} and at shutdown. A block is a header with its amount of
+ * sessions, the earliest and the latest time they left at and a CRC-32C of the rest, followed by
+ * every column in turn: vehicle ids, park times, leave times and fees as longs, then vehicle types,
+ * spot types and amounts of spots as bytes. Blocks are appended to numbered segment files, a new
+ * one every {@code parking.billing.archive.segment-size}, and never rewritten.
+ *
+ * <p>Every archive writes to segments of its own, the first one created on its first block with
+ * the next free number, so several processes can share the directory and the scan of any of them
+ * sees the blocks of all. A scan checks the CRC of a block the first time it reads it, and stops
+ * reading a segment at a block that is torn, which is what a crash in the middle of a write
+ * leaves. A block that fails to be written is cut off its segment, or, if that fails too, the
+ * segment is given up with the torn block as its tail and the next block goes to a new one. The
+ * sessions of a failed block stay in memory, growing past a block if need be, until a write
+ * succeeds. Sessions still in memory when the process dies are lost, a flush interval of them at
+ * most, or everything since the disk started failing.
+ */
+@Component
+@Slf4j
+public class SessionArchive {
+
+  private static final int MAGIC = 0x504B5342;
+  private static final int HEADER_SIZE = 4 * Integer.BYTES + 2 * Long.BYTES;
+  private static final int CRC_OFFSET = 2 * Integer.BYTES + 2 * Long.BYTES;
+  private static final int ROW_SIZE = 4 * Long.BYTES + 3 * Byte.BYTES;
+  private static final long MAX_SEGMENT_SIZE = 1L << 30;
+  private static final String SEGMENT_SUFFIX = ".sessions";
+
+  private static final VehicleType[] VEHICLE_TYPES = VehicleType.values();
+  private static final ParkingSpotType[] SPOT_TYPES = ParkingSpotType.values();
+
+  private final Path directory;
+  private final int blockSize;
+  private final long segmentSize;
+  private final boolean fsync;
+
+  private final ReentrantLock lock = new ReentrantLock();
+  private long[] vehicleIds;
+  private long[] parkedAts;
+  private long[] leftAts;
+  private long[] fees;
+  private byte[] vehicleTypes;
+  private byte[] spotTypes;
+  private byte[] spots;
+  private int pending;
+  private long pendingFrom = Long.MAX_VALUE;
+  private long pendingTo = Long.MIN_VALUE;
+
+  private ByteBuffer block;
+  private final CRC32C crc = new CRC32C();
+  private final Map<Long, Long> verified = new ConcurrentHashMap<>();
+  private FileChannel channel;
+  private long segment = -1;
+
+  /**
+   * Creates the archive, and its directory if needed.
+   *
+   * @param directory The directory of the segment files.
+   * @param blockSize The amount of sessions of a full block.
+   * @param segmentSize The size a segment is sealed at, 1 GB at most.
+   * @param fsync Whether every block is forced to the disk before the next one.
+   */
+  public SessionArchive(
+      @Value("${parking.billing.archive.directory}") Path directory,
+      @Value("${parking.billing.archive.block-size}") int blockSize,
+      @Value("${parking.billing.archive.segment-size}") DataSize segmentSize,
+      @Value("${parking.billing.archive.fsync}") boolean fsync)
+      throws IOException {
+    this.directory = directory;
+    this.blockSize = Math.max(1, blockSize);
+    this.segmentSize = Math.min(segmentSize.toBytes(), MAX_SEGMENT_SIZE);
+    this.fsync = fsync;
+    this.vehicleIds = new long[this.blockSize];
+    this.parkedAts = new long[this.blockSize];
+    this.leftAts = new long[this.blockSize];
+    this.fees = new long[this.blockSize];
+    this.vehicleTypes = new byte[this.blockSize];
+    this.spotTypes = new byte[this.blockSize];
+    this.spots = new byte[this.blockSize];
+    this.block = ByteBuffer.allocateDirect(blockLength(this.blockSize));
+    Files.createDirectories(directory);
+  }
+
+  /**
+   * Adds a closed session to the archive. While blocks cannot be written, the sessions are kept in
+   * memory, and the write is tried again each time the memory they take doubles.
+   *
+   * @param session The session.
+   */
+  public void append(ParkingSession session) {
+    lock.lock();
+    try {
+      if (pending == vehicleIds.length && !this.writeBlock()) {
+        log.warn("Keeping {} sessions in memory until they can be archived", pending);
+        this.resize(2 * pending);
+      }
+      vehicleIds[pending] = session.getVehicleId();
+      parkedAts[pending] = session.getParkedAt();
+      leftAts[pending] = session.getLeftAt();
+      fees[pending] = session.getFee();
+      vehicleTypes[pending] = (byte) session.getVehicleType().ordinal();
+      spotTypes[pending] = (byte) session.getSpotType().ordinal();
+      spots[pending] = (byte) session.getSpots();
+      pendingFrom = Math.min(pendingFrom, session.getLeftAt());
+      pendingTo = Math.max(pendingTo, session.getLeftAt());
+      if (++pending == blockSize) {
+        this.writeBlock();
+      }
+    } finally {
+      lock.unlock();
+    }
+  }
+
+  /**
+   * Adds a closed session to the archive once the current transaction, which removes its vehicle,
+   * commits, or right away if there is no transaction.
+   *
+   * @param session The session.
+   */
+  public void appendAfterCommit(ParkingSession session) {
+    if (!TransactionSynchronizationManager.isSynchronizationActive()) {
+      this.append(session);
+      return;
+    }
+    TransactionSynchronizationManager.registerSynchronization(
+        new TransactionSynchronization() {
+          @Override
+          public void afterCommit() {
+            append(session);
+          }
+        });
+  }
+
+  /** Writes the sessions gathered so far as a block, even if it is not full. */
+  @Scheduled(
+      initialDelayString = "${parking.billing.archive.flush-interval}",
+      fixedDelayString = "${parking.billing.archive.flush-interval}")
+  public void flush() {
+    lock.lock();
+    try {
+      if (pending > 0) {
+        this.writeBlock();
+      }
+    } finally {
+      lock.unlock();
+    }
+  }
+
+  @PreDestroy
+  public void close() throws IOException {
+    lock.lock();
+    try {
+      if (pending > 0) {
+        this.writeBlock();
+      }
+      if (channel != null) {
+        channel.close();
+        channel = null;
+      }
+    } finally {
+      lock.unlock();
+    }
+  }
+
+  /**
+   * Hands over, segment by segment, the blocks that may hold sessions that left in a range of
+   * time, followed by the sessions of this archive not written yet. Blocks outside the range are
+   * skipped on their header alone, and the sessions of a block handed over still have to be
+   * filtered by their leave time.
+   *
+   * @param from The start of the range, in epoch milliseconds.
+   * @param to The end of the range, excluded, in epoch milliseconds.
+   * @param consumer The consumer of each block. A block is only valid during the call.
+   * @throws IOException if a segment cannot be read.
+   */
+  public void scan(long from, long to, Consumer<Block> consumer) throws IOException {
+    List<Long> segments = segments(directory);
+    Block unwritten = null;
+    long ownSegment;
+    long ownLength;
+    lock.lock();
+    try {
+      if (pending > 0 && pendingTo >= from && pendingFrom < to) {
+        unwritten = this.pendingBlock();
+      }
+      ownSegment = channel == null ? -1 : segment;
+      ownLength = channel == null ? 0 : channel.position();
+    } finally {
+      lock.unlock();
+    }
+
+    CRC32C check = new CRC32C();
+    for (long number : segments) {
+      try (FileChannel file = FileChannel.open(segmentPath(number), StandardOpenOption.READ)) {
+        long length = number == ownSegment ? ownLength : file.size();
+        MappedByteBuffer contents = file.map(FileChannel.MapMode.READ_ONLY, 0, length);
+        long checked = verified.getOrDefault(number, 0L);
+        int position = 0;
+        while (position + HEADER_SIZE <= length && contents.getInt(position) == MAGIC) {
+          int count = contents.getInt(position + Integer.BYTES);
+          if (count <= 0 || count > (length - position - HEADER_SIZE) / ROW_SIZE) {
+            break;
+          }
+          int blockLength = blockLength(count);
+          if (position >= checked) {
+            check.reset();
+            check.update(contents.slice(position + HEADER_SIZE, blockLength - HEADER_SIZE));
+            if ((int) check.getValue() != contents.getInt(position + CRC_OFFSET)) {
+              break;
+            }
+            checked = position + blockLength;
+            verified.merge(number, checked, Math::max);
+          }
+
+          long earliest = contents.getLong(position + 2 * Integer.BYTES);
+          long latest = contents.getLong(position + 2 * Integer.BYTES + Long.BYTES);
+          if (latest >= from && earliest < to) {
+            consumer.accept(Block.read(contents, position + HEADER_SIZE, count));
+          }
+          position += blockLength;
+        }
+      }
+    }
+
+    if (unwritten != null) {
+      consumer.accept(unwritten);
+    }
+  }
+
+  /**
+   * Writes the sessions in memory at the end of the current segment, and seals the segment if it
+   * is full. A failed write is cut off the segment and the sessions are kept for the next one.
+   *
+   * @return Whether the sessions were written.
+   */
+  private boolean writeBlock() {
+    long start = -1;
+    try {
+      if (channel == null) {
+        this.openSegment();
+      }
+      start = channel.position();
+      if (block.capacity() < blockLength(pending)) {
+        block = ByteBuffer.allocateDirect(blockLength(pending));
+      }
+      block.clear();
+      block.putInt(MAGIC).putInt(pending).putLong(pendingFrom).putLong(pendingTo);
+      block.putInt(0).putInt(0);
+      for (long[] column : new long[][] {vehicleIds, parkedAts, leftAts, fees}) {
+        block.asLongBuffer().put(column, 0, pending);
+        block.position(block.position() + pending * Long.BYTES);
+      }
+      block.put(vehicleTypes, 0, pending).put(spotTypes, 0, pending).put(spots, 0, pending);
+      block.position(blockLength(pending));
+
+      crc.reset();
+      crc.update(block.slice(HEADER_SIZE, block.position() - HEADER_SIZE));
+      block.putInt(CRC_OFFSET, (int) crc.getValue());
+      block.flip();
+      while (block.hasRemaining()) {
+        channel.write(block);
+      }
+      if (fsync) {
+        channel.force(false);
+      }
+    } catch (IOException e) {
+      log.error("Error at archiving {} sessions: {}", pending, e.getMessage(), e);
+      if (start >= 0) {
+        try {
+          channel.truncate(start);
+          channel.position(start);
+        } catch (IOException truncateError) {
+          log.error(
+              "Giving up session segment {} with a torn block at {}: {}",
+              segment,
+              start,
+              truncateError.getMessage(),
+              truncateError);
+          this.abandonSegment();
+        }
+      }
+      return false;
+    }
+
+    pending = 0;
+    pendingFrom = Long.MAX_VALUE;
+    pendingTo = Long.MIN_VALUE;
+    if (vehicleIds.length > blockSize) {
+      this.resize(blockSize);
+      block = ByteBuffer.allocateDirect(blockLength(blockSize));
+    }
+    try {
+      verified.put(segment, channel.position());
+      if (channel.position() >= segmentSize) {
+        channel.close();
+        channel = null;
+      }
+    } catch (IOException e) {
+      log.error("Error at sealing session segment {}: {}", segment, e.getMessage(), e);
+      channel = null;
+    }
+    return true;
+  }
+
+  /**
+   * Stops writing to the current segment, leaving whatever is at its end for the scans to stop at.
+   */
+  private void abandonSegment() {
+    try {
+      channel.close();
+    } catch (IOException e) {
+      log.error("Error at closing session segment {}: {}", segment, e.getMessage(), e);
+    }
+    channel = null;
+  }
+
+  /** Sets the amount of sessions the memory holds, keeping the pending ones. */
+  private void resize(int capacity) {
+    vehicleIds = Arrays.copyOf(vehicleIds, capacity);
+    parkedAts = Arrays.copyOf(parkedAts, capacity);
+    leftAts = Arrays.copyOf(leftAts, capacity);
+    fees = Arrays.copyOf(fees, capacity);
+    vehicleTypes = Arrays.copyOf(vehicleTypes, capacity);
+    spotTypes = Arrays.copyOf(spotTypes, capacity);
+    spots = Arrays.copyOf(spots, capacity);
+  }
+
+  private Block pendingBlock() {
+    return new Block(
+        pending,
+        LongBuffer.wrap(Arrays.copyOf(vehicleIds, pending)),
+        LongBuffer.wrap(Arrays.copyOf(parkedAts, pending)),
+        LongBuffer.wrap(Arrays.copyOf(leftAts, pending)),
+        LongBuffer.wrap(Arrays.copyOf(fees, pending)),
+        ByteBuffer.wrap(Arrays.copyOf(vehicleTypes, pending)),
+        ByteBuffer.wrap(Arrays.copyOf(spotTypes, pending)),
+        ByteBuffer.wrap(Arrays.copyOf(spots, pending)));
+  }
+
+  /** Creates a segment of this archive, with the first number no other segment has. */
+  private void openSegment() throws IOException {
+    List<Long> segments = segments(directory);
+    long number = segments.isEmpty() ? 0 : segments.get(segments.size() - 1) + 1;
+    while (true) {
+      try {
+        channel =
+            FileChannel.open(
+                segmentPath(number), StandardOpenOption.CREATE_NEW, StandardOpenOption.WRITE);
+        segment = number;
+        return;
+      } catch (FileAlreadyExistsException e) {
+        number++;
+      }
+    }
+  }
+
+  private Path segmentPath(long number) {
+    return directory.resolve(String.format("%020d%s", number, SEGMENT_SUFFIX));
+  }
+
+  /** Numbers of the segments, ascending. */
+  private static List<Long> segments(Path directory) throws IOException {
+    try (Stream<Path> files = Files.list(directory)) {
+      return files
+          .map(path -> path.getFileName().toString())
+          .filter(name -> name.endsWith(SEGMENT_SUFFIX))
+          .map(name -> Long.parseLong(name.substring(0, name.length() - SEGMENT_SUFFIX.length())))
+          .sorted()
+          .toList();
+    }
+  }
+
+  /** Size of a block of sessions on disk, header included, padded to a multiple of 8 bytes. */
+  private static int blockLength(int count) {
+    return HEADER_SIZE + ((count * ROW_SIZE + Long.BYTES - 1) & -Long.BYTES);
+  }
+
+  /** A block of archived sessions, read column by column. */
+  public static final class Block {
+
+    private final int size;
+    private final LongBuffer vehicleIds;
+    private final LongBuffer parkedAts;
+    private final LongBuffer leftAts;
+    private final LongBuffer fees;
+    private final ByteBuffer vehicleTypes;
+    private final ByteBuffer spotTypes;
+    private final ByteBuffer spots;
+
+    private Block(
+        int size,
+        LongBuffer vehicleIds,
+        LongBuffer parkedAts,
+        LongBuffer leftAts,
+        LongBuffer fees,
+        ByteBuffer vehicleTypes,
+        ByteBuffer spotTypes,
+        ByteBuffer spots) {
+      this.size = size;
+      this.vehicleIds = vehicleIds;
+      this.parkedAts = parkedAts;
+      this.leftAts = leftAts;
+      this.fees = fees;
+      this.vehicleTypes = vehicleTypes;
+      this.spotTypes = spotTypes;
+      this.spots = spots;
+    }
+
+    private static Block read(ByteBuffer contents, int position, int size) {
+      int longs = size * Long.BYTES;
+      return new Block(
+          size,
+          contents.slice(position, longs).asLongBuffer(),
+          contents.slice(position + longs, longs).asLongBuffer(),
+          contents.slice(position + 2 * longs, longs).asLongBuffer(),
+          contents.slice(position + 3 * longs, longs).asLongBuffer(),
+          contents.slice(position + 4 * longs, size),
+          contents.slice(position + 4 * longs + size, size),
+          contents.slice(position + 4 * longs + 2 * size, size));
+    }
+
+    public int size() {
+      return size;
+    }
+
+    public long vehicleId(int index) {
+      return vehicleIds.get(index);
+    }
+
+    public long parkedAt(int index) {
+      return parkedAts.get(index);
+    }
+
+    public long leftAt(int index) {
+      return leftAts.get(index);
+    }
+
+    public long fee(int index) {
+      return fees.get(index);
+    }
+
+    public VehicleType vehicleType(int index) {
+      return VEHICLE_TYPES[vehicleTypes.get(index)];
+    }
+
+    public ParkingSpotType spotType(int index) {
+      return SPOT_TYPES[spotTypes.get(index)];
+    }
+
+    public int spots(int index) {
+      return spots.get(index);
+    }
+  }
+}
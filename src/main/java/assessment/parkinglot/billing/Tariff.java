@@ -0,0 +1,91 @@
+package assessment.parkinglot.billing;
+
+import assessment.parkinglot.conf.BillingProperties;
+import assessment.parkinglot.domain.VehicleFactory;
+import assessment.parkinglot.enums.ParkingSpotType;
+import assessment.parkinglot.enums.VehicleType;
+import java.time.Duration;
+import java.util.Arrays;
+import org.springframework.boot.context.properties.EnableConfigurationProperties;
+import org.springframework.stereotype.Component;
+
+/**
+ * Prices parking sessions from the {@link BillingProperties}.
+ *
+ * <p>The rates are laid out in flat arrays by the ordinals of the vehicle and spot types, so a
+ * price is a couple of array reads and some arithmetic. Every spot type a vehicle type can park on
+ * must have a rate, which is checked on startup.
+ */
+@Component
+@EnableConfigurationProperties(BillingProperties.class)
+public class Tariff {
+
+  private static final long DAY = Duration.ofDays(1).toMillis();
+  private static final int SPOT_TYPES = ParkingSpotType.values().length;
+
+  private final long increment;
+  private final long grace;
+  private final long[] rates;
+  private final long[] dailyCaps;
+
+  /**
+   * Creates the tariff.
+   *
+   * @param properties The rates, caps and periods.
+   * @throws IllegalStateException if a vehicle type has no rate for a spot type it parks on.
+   */
+  public Tariff(BillingProperties properties) {
+    this.increment = properties.getIncrement().toMillis();
+    this.grace = properties.getGrace().toMillis();
+    if (increment <= 0) {
+      throw new IllegalStateException("The billing increment must be positive");
+    }
+
+    this.rates = new long[VehicleType.values().length * SPOT_TYPES];
+    Arrays.fill(rates, -1);
+    properties
+        .getRates()
+        .forEach(
+            (vehicleType, bySpotType) ->
+                bySpotType.forEach(
+                    (spotType, rate) ->
+                        rates[vehicleType.ordinal() * SPOT_TYPES + spotType.ordinal()] = rate));
+
+    this.dailyCaps = new long[VehicleType.values().length];
+    Arrays.fill(dailyCaps, Long.MAX_VALUE);
+    properties.getDailyCaps().forEach((vehicleType, cap) -> dailyCaps[vehicleType.ordinal()] = cap);
+
+    for (VehicleType vehicleType : VehicleType.values()) {
+      for (ParkingSpotType spotType : VehicleFactory.create(vehicleType).getSpotTypes()) {
+        if (this.rate(vehicleType, spotType) < 0) {
+          throw new IllegalStateException("No rate for a " + vehicleType + " on " + spotType);
+        }
+      }
+    }
+  }
+
+  /**
+   * Prices a stay.
+   *
+   * @param vehicleType The type of the vehicle.
+   * @param spotType The type of the spots it took.
+   * @param parkedAt The time it parked at, in epoch milliseconds.
+   * @param leftAt The time it left at, in epoch milliseconds.
+   * @return The price, in cents.
+   */
+  public long price(VehicleType vehicleType, ParkingSpotType spotType, long parkedAt, long leftAt) {
+    long stay = leftAt - parkedAt;
+    if (stay <= grace) {
+      return 0;
+    }
+    long rate = Math.max(0, this.rate(vehicleType, spotType));
+    long cap = dailyCaps[vehicleType.ordinal()];
+
+    long day = Math.min(cap, Math.ceilDiv(DAY, increment) * rate);
+    return stay / DAY * day + Math.min(cap, Math.ceilDiv(stay % DAY, increment) * rate);
+  }
+
+  private long rate(VehicleType vehicleType, ParkingSpotType spotType) {
+    return rates[vehicleType.ordinal() * SPOT_TYPES + spotType.ordinal()];
+  }
+}
@@ -0,0 +1,148 @@
+package assessment.parkinglot.cache;
+
+import java.time.Duration;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.Supplier;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+
+/**
+ * Results of the parks and leaves sent with an {@code Idempotency-Key} header, so a client that
+ * retries a request after a timeout gets the original result back instead of parking a second
+ * vehicle.
+ *
+ * <p>A key is claimed with a {@link CompletableFuture} before the request runs, so a retry that
+ * arrives while the first attempt is still running waits for it rather than running again. Failed
+ * requests, whatever they throw, are not kept, and their retries run again. Every result lives
+ * {@code parking.idempotency.ttl} from the moment it completes, and at most {@code
+ * parking.idempotency.max-entries} of them are kept. Since every result lives as long, the order of
+ * completion is also the order of expiry, so a queue of the results gives both the expired ones and
+ * the oldest ones to evict when the cache is full, in constant time and without a lock. A request
+ * only joins the queue once it completes, so a running one is never evicted and its retries keep
+ * waiting for it however full the cache is.
+ */
+@Component
+public class IdempotencyCache {
+
+  private final ConcurrentHashMap<String, Entry> entries = new ConcurrentHashMap<>();
+  private final ConcurrentLinkedQueue<Entry> insertionOrder = new ConcurrentLinkedQueue<>();
+  private final AtomicInteger size = new AtomicInteger();
+  private final int maxEntries;
+  private final long ttlNanos;
+
+  /**
+   * Creates an empty cache.
+   *
+   * @param maxEntries The amount of results kept at most.
+   * @param ttl How long a result is kept.
+   */
+  public IdempotencyCache(
+      @Value("${parking.idempotency.max-entries}") int maxEntries,
+      @Value("${parking.idempotency.ttl}") Duration ttl) {
+    this.maxEntries = Math.max(1, maxEntries);
+    this.ttlNanos = ttl.toNanos();
+  }
+
+  /**
+   * Runs a request once per key, returning the result of the first run to the retries.
+   *
+   * @param operation The kind of request, so the same key sent to a park and a leave does not mix
+   *     them up.
+   * @param key The idempotency key sent by the client, or {@code null} to always run the request.
+   * @param request The request.
+   * @return The result of the request, or of its first run with the same key.
+   */
+  @SuppressWarnings("unchecked")
+  public <T> T execute(String operation, String key, Supplier<T> request) {
+    if (key == null) {
+      return request.get();
+    }
+
+    String cacheKey = operation + ':' + key;
+    long now = System.nanoTime();
+    Entry cached = entries.get(cacheKey);
+    if (cached != null && cached.isLive(now)) {
+      return (T) await(cached);
+    }
+
+    Entry created = new Entry(cacheKey);
+    while (true) {
+      Entry existing = entries.putIfAbsent(cacheKey, created);
+      if (existing == null) {
+        break;
+      }
+      if (existing.isLive(now)) {
+        return (T) await(existing);
+      }
+      entries.remove(cacheKey, existing);
+    }
+
+    T result;
+    try {
+      result = request.get();
+    } catch (Throwable e) {
+      entries.remove(cacheKey, created);
+      created.result.completeExceptionally(e);
+      throw e;
+    }
+    long completed = System.nanoTime();
+    created.expiresAt = completed + ttlNanos;
+    created.result.complete(result);
+    insertionOrder.add(created);
+    size.incrementAndGet();
+    this.evict(completed);
+    return result;
+  }
+
+  /** The amount of results kept, including the replaced ones not evicted yet. */
+  public int size() {
+    return size.get();
+  }
+
+  private void evict(long now) {
+    Entry oldest;
+    while (size.get() > maxEntries
+        || ((oldest = insertionOrder.peek()) != null && oldest.expiresAt - now <= 0)) {
+      Entry evicted = insertionOrder.poll();
+      if (evicted == null) {
+        return;
+      }
+      size.decrementAndGet();
+      entries.remove(evicted.key, evicted);
+    }
+  }
+
+  private static Object await(Entry entry) {
+    try {
+      return entry.result.join();
+    } catch (CompletionException e) {
+      if (e.getCause() instanceof RuntimeException cause) {
+        throw cause;
+      }
+      if (e.getCause() instanceof Error cause) {
+        throw cause;
+      }
+      throw e;
+    }
+  }
+
+  private static class Entry {
+    private final String key;
+    private final CompletableFuture<Object> result = new CompletableFuture<>();
+    // Set before the result completes, so it is read only once the result is done.
+    private volatile long expiresAt;
+
+    private Entry(String key) {
+      this.key = key;
+    }
+
+    /** Whether the request is still running or its result has not expired yet. */
+    private boolean isLive(long now) {
+      return !result.isDone() || expiresAt - now > 0;
+    }
+  }
+}
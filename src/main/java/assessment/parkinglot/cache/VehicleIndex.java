@@ -0,0 +1,94 @@
+package assessment.parkinglot.cache;
+
+import assessment.parkinglot.enums.ParkingSpotType;
+import assessment.parkinglot.enums.VehicleType;
+import java.util.Collection;
+import java.util.List;
+import java.util.concurrent.ConcurrentHashMap;
+import lombok.AllArgsConstructor;
+import lombok.Getter;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.support.TransactionSynchronization;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+
+/**
+ * In-memory index of the parked vehicles, by ID, with their type, the ids of their spots and the
+ * time they parked at, so a leave knows which spots to free, and what to bill, without reading the
+ * vehicle and the spot tables.
+ *
+ * <p>Vehicles are added when their park commits and removed when their leave commits, so the index
+ * never holds a vehicle the database does not. It may miss a vehicle, such as one parked by another
+ * process or whose park is committing right now, in which case the leave reads it from the
+ * database as before. An entry costs about a hundred bytes, and there are never more entries than
+ * spots.
+ */
+@Component
+public class VehicleIndex {
+
+  private final ConcurrentHashMap<Long, ParkedVehicle> vehicles = new ConcurrentHashMap<>();
+
+  /**
+   * Finds a parked vehicle.
+   *
+   * @param vehicleId The ID of the vehicle.
+   * @return The vehicle, or {@code null} if the index does not hold it.
+   */
+  public ParkedVehicle get(Long vehicleId) {
+    return vehicles.get(vehicleId);
+  }
+
+  /**
+   * Adds a vehicle once the current transaction, which parks it, commits.
+   *
+   * @param vehicleId The ID of the vehicle.
+   * @param vehicleType The type of the vehicle.
+   * @param spotType The type of its spots.
+   * @param spotIds The ids of its spots.
+   * @param parkedAt The time it parked at, in epoch milliseconds.
+   */
+  public void putAfterCommit(
+      Long vehicleId,
+      VehicleType vehicleType,
+      ParkingSpotType spotType,
+      long[] spotIds,
+      long parkedAt) {
+    ParkedVehicle vehicle = new ParkedVehicle(vehicleType, spotType, spotIds, parkedAt);
+    TransactionSynchronizationManager.registerSynchronization(
+        new TransactionSynchronization() {
+          @Override
+          public void afterCommit() {
+            vehicles.put(vehicleId, vehicle);
+          }
+        });
+  }
+
+  /**
+   * Removes vehicles once the current transaction, which removes them from the lot, commits.
+   *
+   * @param vehicleIds The IDs of the vehicles.
+   */
+  public void removeAfterCommit(Collection<Long> vehicleIds) {
+    List<Long> removed = List.copyOf(vehicleIds);
+    TransactionSynchronizationManager.registerSynchronization(
+        new TransactionSynchronization() {
+          @Override
+          public void afterCommit() {
+            removed.forEach(vehicles::remove);
+          }
+        });
+  }
+
+  public int size() {
+    return vehicles.size();
+  }
+
+  /** A parked vehicle, with the spots it takes, all of the same type. */
+  @AllArgsConstructor
+  @Getter
+  public static class ParkedVehicle {
+    private final VehicleType vehicleType;
+    private final ParkingSpotType spotType;
+    private final long[] spotIds;
+    private final long parkedAt;
+  }
+}
@@ -0,0 +1,108 @@
+package assessment.parkinglot.cluster;
+
+import assessment.parkinglot.conf.ClusterProperties;
+import jakarta.annotation.PostConstruct;
+import java.util.ArrayList;
+import java.util.List;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.boot.context.properties.EnableConfigurationProperties;
+import org.springframework.context.annotation.DependsOn;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.stereotype.Component;
+
+/**
+ * This node of the cluster, enabled with {@code parking.cluster.enabled=true}.
+ *
+ * <p>Levels are spread over the nodes with a {@link HashRing}, and a node only creates and
+ * allocates the spots of its own levels, so it is the single authority over them and parks never
+ * need to agree with another node. Vehicles and spots take their ids from the range of the node,
+ * {@code [index << 40, (index + 1) << 40)}, so any node can tell from a vehicle id which one parked
+ * it, with no lookup.
+ */
+@Component
+@ConditionalOnProperty(name = "parking.cluster.enabled", havingValue = "true")
+@EnableConfigurationProperties(ClusterProperties.class)
+@DependsOn("entityManagerFactory")
+@Slf4j
+public class ClusterNode {
+
+  public static final int ID_SHIFT = 40;
+
+  private static final List<String> SEQUENCES = List.of("vehicle_seq", "parking_spot_seq");
+
+  @Autowired ClusterProperties properties;
+  @Autowired JdbcTemplate jdbcTemplate;
+
+  private HashRing ring;
+  private int index;
+
+  /** Places the node on the ring and moves the id sequences to the range of the node. */
+  @PostConstruct
+  public void join() {
+    List<String> names =
+        properties.getNodes().stream().map(ClusterProperties.Node::getName).toList();
+    this.index = names.indexOf(properties.getSelf());
+    if (index < 0) {
+      throw new IllegalStateException(
+          "Node " + properties.getSelf() + " is not one of the cluster nodes " + names);
+    }
+    this.ring = new HashRing(names, properties.getVirtualNodes());
+
+    for (String sequence : SEQUENCES) {
+      Long increment =
+          jdbcTemplate.queryForObject(
+              "select increment from information_schema.sequences where sequence_name = ?",
+              Long.class,
+              sequence.toUpperCase());
+      // Hibernate takes the first value of a pooled sequence as the top of its first block
+      jdbcTemplate.execute(
+          "alter sequence " + sequence + " restart with " + (this.firstId() + increment - 1));
+    }
+    log.info("Joined the cluster as node {} of {}", index, names);
+  }
+
+  public String name() {
+    return properties.getSelf();
+  }
+
+  /** Whether this node owns the spots of the level. */
+  public boolean owns(String level) {
+    return properties.getSelf().equals(ring.owner(level));
+  }
+
+  /** Whether the vehicle was parked by this node. */
+  public boolean ownsVehicle(long vehicleId) {
+    return vehicleId >>> ID_SHIFT == index;
+  }
+
+  /**
+   * Finds the node that parked a vehicle.
+   *
+   * @param vehicleId The ID of the vehicle.
+   * @return The node, or {@code null} if the id is out of the range of every node.
+   */
+  public ClusterProperties.Node ownerOfVehicle(long vehicleId) {
+    long owner = vehicleId >>> ID_SHIFT;
+    return owner < properties.getNodes().size() ? properties.getNodes().get((int) owner) : null;
+  }
+
+  /**
+   * The other nodes, starting with the one after this node in the list, so the nodes do not all
+   * overflow onto the same one.
+   */
+  public List<ClusterProperties.Node> peers() {
+    List<ClusterProperties.Node> nodes = properties.getNodes();
+    List<ClusterProperties.Node> peers = new ArrayList<>(nodes.size() - 1);
+    for (int i = 1; i < nodes.size(); i++) {
+      peers.add(nodes.get((index + i) % nodes.size()));
+    }
+    return peers;
+  }
+
+  /** The lowest vehicle and spot id of the range of this node. */
+  public long firstId() {
+    return ((long) index << ID_SHIFT) + 1;
+  }
+}
@@ -0,0 +1,360 @@
+package assessment.parkinglot.cluster;
+
+import assessment.parkinglot.conf.ClusterProperties;
+import assessment.parkinglot.controller.request.ParkRequest;
+import assessment.parkinglot.controller.response.AvailableSpotResponse;
+import assessment.parkinglot.controller.response.ErrorResponse;
+import assessment.parkinglot.controller.response.LevelAvailabilityResponse;
+import assessment.parkinglot.dto.BatchItemDTO;
+import assessment.parkinglot.dto.VehicleDTO;
+import assessment.parkinglot.enums.ErrorCode;
+import assessment.parkinglot.enums.ParkingSpotType;
+import assessment.parkinglot.enums.VehicleType;
+import assessment.parkinglot.exception.PklErrorException;
+import assessment.parkinglot.exception.PklNotFoundException;
+import jakarta.annotation.PostConstruct;
+import jakarta.annotation.PreDestroy;
+import java.net.http.HttpClient;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.UUID;
+import java.util.function.Function;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.core.ParameterizedTypeReference;
+import org.springframework.http.HttpMethod;
+import org.springframework.http.MediaType;
+import org.springframework.http.client.JdkClientHttpRequestFactory;
+import org.springframework.stereotype.Component;
+import org.springframework.web.client.ResourceAccessException;
+import org.springframework.web.client.RestClient;
+import org.springframework.web.client.RestClientException;
+import org.springframework.web.client.RestClientResponseException;
+
+/**
+ * Sends to the other nodes of the cluster the requests this node cannot answer alone.
+ *
+ * <p>A park is served by the node that receives it, and only goes to the peers, one after the
+ * other, once the levels of that node are full. A leave goes to the node that parked the vehicle,
+ * found from its id. Counts of free spots add up the answers of every node. Forwarded requests
+ * carry the {@value #FORWARDED_HEADER} header and are always served locally, so a request crosses
+ * at most one hop and two nodes never bounce it between them. A forwarded park carries an
+ * Idempotency-Key, so a peer parks it once however many times it is sent. A park only moves on to
+ * the next peer when one answers that it has no space: a peer that does not answer may have parked
+ * the vehicle, so the park fails rather than parking it twice. A batch of parks overflows the same
+ * way, each peer getting the vehicles still without space in a single batch under a key of its own,
+ * and is sent again to a peer that does not answer, since the key keeps the peer from parking it
+ * twice. A peer that does not answer a count is skipped, and its spots are missing from the counts
+ * until it is back.
+ */
+@Component
+@ConditionalOnProperty(name = "parking.cluster.enabled", havingValue = "true")
+@Slf4j
+public class ClusterRouter {
+
+  public static final String FORWARDED_HEADER = "X-Parking-Forwarded";
+
+  private static final String IDEMPOTENCY_KEY = "Idempotency-Key";
+
+  @Autowired ClusterNode clusterNode;
+  @Autowired ClusterProperties properties;
+
+  private HttpClient httpClient;
+  private RestClient restClient;
+
+  @PostConstruct
+  public void start() {
+    this.httpClient =
+        HttpClient.newBuilder()
+            .version(HttpClient.Version.HTTP_1_1)
+            .connectTimeout(properties.getForwardTimeout())
+            .build();
+    JdkClientHttpRequestFactory requestFactory = new JdkClientHttpRequestFactory(httpClient);
+    requestFactory.setReadTimeout(properties.getForwardTimeout());
+    this.restClient =
+        RestClient.builder()
+            .requestFactory(requestFactory)
+            .defaultHeader(FORWARDED_HEADER, clusterNode.name())
+            .build();
+  }
+
+  @PreDestroy
+  public void stop() {
+    httpClient.close();
+  }
+
+  /** Whether the vehicle was parked by this node. */
+  public boolean ownsVehicle(long vehicleId) {
+    return clusterNode.ownsVehicle(vehicleId);
+  }
+
+  /**
+   * Parks a vehicle on the first peer with room for it.
+   *
+   * @param vehicleType The type of the vehicle.
+   * @param idempotencyKey The key the client parks the vehicle with, or {@code null} for none.
+   * @return The parked vehicle.
+   * @throws PklErrorException with {@code NO_SPACE_TO_PARK} if every peer answered it has no space,
+   *     or with {@code UNABLE_TO_PARK} if a peer failed or did not answer.
+   */
+  public VehicleDTO park(VehicleType vehicleType, String idempotencyKey) {
+    String forwardedKey =
+        clusterNode.name()
+            + "/"
+            + (idempotencyKey == null ? UUID.randomUUID().toString() : idempotencyKey);
+    for (ClusterProperties.Node peer : clusterNode.peers()) {
+      try {
+        return restClient
+            .post()
+            .uri(peer.getUrl() + "/parking/park")
+            .header(IDEMPOTENCY_KEY, forwardedKey)
+            .contentType(MediaType.APPLICATION_JSON)
+            .body(ParkRequest.builder().vehicleType(vehicleType.name()).build())
+            .retrieve()
+            .body(VehicleDTO.class);
+      } catch (RestClientResponseException e) {
+        if (!this.isNoSpaceToPark(e)) {
+          log.error("Node {} failed to park a {}: {}", peer.getName(), vehicleType, e.getMessage());
+          throw new PklErrorException(ErrorCode.UNABLE_TO_PARK);
+        }
+        log.debug("Node {} has no space to park a {}", peer.getName(), vehicleType);
+      } catch (RestClientException e) {
+        log.error("Node {} did not answer a park: {}", peer.getName(), e.getMessage());
+        throw new PklErrorException(ErrorCode.UNABLE_TO_PARK);
+      }
+    }
+    throw new PklErrorException(ErrorCode.NO_SPACE_TO_PARK);
+  }
+
+  /**
+   * Parks a batch of vehicles on this node, and the ones it has no space for on the peers, one
+   * after the other. The vehicles still without space travel to the next peer in a single batch,
+   * and the items come back in the order of the types. The batches carry the same Idempotency-Key,
+   * so a peer that does not answer is sent its batch again, up to {@code
+   * parking.cluster.forward-attempts} times, without parking it twice. The vehicles sent to a peer
+   * that fails or never answers are not parked on any other, since it may have parked them.
+   *
+   * @param vehicleTypes The types of the vehicles, {@code null} for an unknown type.
+   * @param local Parks the vehicles on this node.
+   * @return An item per vehicle, with the parked vehicle or the reason it was not parked.
+   */
+  public List<BatchItemDTO> park(
+      List<VehicleType> vehicleTypes, Function<List<VehicleType>, List<BatchItemDTO>> local) {
+    List<BatchItemDTO> items = new ArrayList<>(local.apply(vehicleTypes));
+    List<Integer> positions = new ArrayList<>();
+    for (int i = 0; i < items.size(); i++) {
+      if (ErrorCode.NO_SPACE_TO_PARK.equals(items.get(i).getError())) {
+        positions.add(i);
+      }
+    }
+
+    String forwardedKey = clusterNode.name() + "/" + UUID.randomUUID();
+    for (ClusterProperties.Node peer : clusterNode.peers()) {
+      if (positions.isEmpty()) {
+        break;
+      }
+      List<BatchItemDTO> peerItems =
+          this.parkOn(peer, positions.stream().map(vehicleTypes::get).toList(), forwardedKey);
+      List<Integer> noSpace = new ArrayList<>();
+      for (int i = 0; i < positions.size(); i++) {
+        BatchItemDTO item = peerItems.get(i);
+        items.set(positions.get(i), item);
+        if (ErrorCode.NO_SPACE_TO_PARK.equals(item.getError())) {
+          noSpace.add(positions.get(i));
+        }
+      }
+      positions = noSpace;
+    }
+    return items;
+  }
+
+  /**
+   * Removes a vehicle through the node that parked it.
+   *
+   * @param vehicleId The ID of the vehicle.
+   * @return The removed vehicle.
+   * @throws PklNotFoundException if the id does not belong to any node.
+   * @throws RestClientException if the node does not remove it.
+   */
+  public VehicleDTO leave(Long vehicleId) {
+    ClusterProperties.Node owner = clusterNode.ownerOfVehicle(vehicleId);
+    if (owner == null) {
+      throw new PklNotFoundException(ErrorCode.VEHICLE_NOT_FOUND);
+    }
+    return restClient
+        .delete()
+        .uri(owner.getUrl() + "/parking/leave/" + vehicleId)
+        .retrieve()
+        .body(VehicleDTO.class);
+  }
+
+  /**
+   * Removes a batch of vehicles, each one through the node that parked it. The vehicles of a node
+   * travel in a single batch, and the items come back in the order of the ids.
+   *
+   * @param vehicleIds The IDs of the vehicles.
+   * @param local Removes the vehicles parked by this node.
+   * @return An item per vehicle, with the removed vehicle or the reason it was not removed.
+   */
+  public List<BatchItemDTO> leave(
+      List<Long> vehicleIds, Function<List<Long>, List<BatchItemDTO>> local) {
+    Map<ClusterProperties.Node, List<Integer>> positions = new LinkedHashMap<>();
+    BatchItemDTO[] items = new BatchItemDTO[vehicleIds.size()];
+    for (int i = 0; i < items.length; i++) {
+      Long vehicleId = vehicleIds.get(i);
+      ClusterProperties.Node owner =
+          vehicleId == null ? null : clusterNode.ownerOfVehicle(vehicleId);
+      if (owner == null) {
+        items[i] = BatchItemDTO.builder().error(ErrorCode.VEHICLE_NOT_FOUND).build();
+      } else {
+        positions.computeIfAbsent(owner, node -> new ArrayList<>()).add(i);
+      }
+    }
+
+    positions.forEach(
+        (owner, ownerPositions) -> {
+          List<Long> ownerIds = ownerPositions.stream().map(vehicleIds::get).toList();
+          List<BatchItemDTO> ownerItems;
+          if (owner.getName().equals(clusterNode.name())) {
+            ownerItems = local.apply(ownerIds);
+          } else {
+            ownerItems = this.leaveOn(owner, ownerIds);
+          }
+          for (int i = 0; i < ownerPositions.size(); i++) {
+            items[ownerPositions.get(i)] = ownerItems.get(i);
+          }
+        });
+    return Arrays.asList(items);
+  }
+
+  /** Adds up the free spots of the type on every peer. */
+  public long countAvailableSpots(ParkingSpotType spotType) {
+    long freeSpots = 0;
+    for (ClusterProperties.Node peer : clusterNode.peers()) {
+      try {
+        AvailableSpotResponse response =
+            restClient
+                .get()
+                .uri(peer.getUrl() + "/parking/available-spots/" + spotType)
+                .retrieve()
+                .body(AvailableSpotResponse.class);
+        freeSpots += response.getFreeSpots();
+      } catch (RestClientException e) {
+        log.warn("Node {} did not report its free spots: {}", peer.getName(), e.getMessage());
+      }
+    }
+    return freeSpots;
+  }
+
+  /** Collects the free spots of the type on every level of every peer. */
+  public Map<String, Long> countAvailableSpotsByLevel(ParkingSpotType spotType) {
+    Map<String, Long> freeSpots = new LinkedHashMap<>();
+    for (ClusterProperties.Node peer : clusterNode.peers()) {
+      try {
+        List<LevelAvailabilityResponse> levels =
+            restClient
+                .get()
+                .uri(peer.getUrl() + "/parking/available-spots/" + spotType + "/levels")
+                .retrieve()
+                .body(new ParameterizedTypeReference<List<LevelAvailabilityResponse>>() {});
+        for (LevelAvailabilityResponse level : levels) {
+          freeSpots.merge(level.getLevel(), (long) level.getFreeSpots(), Long::sum);
+        }
+      } catch (RestClientException e) {
+        log.warn("Node {} did not report its free spots: {}", peer.getName(), e.getMessage());
+      }
+    }
+    return freeSpots;
+  }
+
+  /** Whether every peer has all the spots for the vehicle type taken. */
+  public boolean areAllSpotsTaken(VehicleType vehicleType) {
+    for (ClusterProperties.Node peer : clusterNode.peers()) {
+      try {
+        Boolean taken =
+            restClient
+                .get()
+                .uri(peer.getUrl() + "/parking/all-spots-taken/" + vehicleType)
+                .retrieve()
+                .body(Boolean.class);
+        if (!Boolean.TRUE.equals(taken)) {
+          return false;
+        }
+      } catch (RestClientException e) {
+        log.warn("Node {} did not report its taken spots: {}", peer.getName(), e.getMessage());
+      }
+    }
+    return true;
+  }
+
+  private boolean isNoSpaceToPark(RestClientResponseException e) {
+    try {
+      ErrorResponse error = e.getResponseBodyAs(ErrorResponse.class);
+      return error != null && ErrorCode.NO_SPACE_TO_PARK.getCode().equals(error.getErrorCode());
+    } catch (RuntimeException unreadable) {
+      return false;
+    }
+  }
+
+  private List<BatchItemDTO> parkOn(
+      ClusterProperties.Node peer, List<VehicleType> vehicleTypes, String forwardedKey) {
+    List<ParkRequest> parkRequests =
+        vehicleTypes.stream()
+            .map(type -> ParkRequest.builder().vehicleType(type.name()).build())
+            .toList();
+    int attempts = Math.max(1, properties.getForwardAttempts());
+    for (int attempt = 1; ; attempt++) {
+      try {
+        return restClient
+            .post()
+            .uri(peer.getUrl() + "/parking/park/batch")
+            .header(IDEMPOTENCY_KEY, forwardedKey)
+            .contentType(MediaType.APPLICATION_JSON)
+            .body(parkRequests)
+            .retrieve()
+            .body(new ParameterizedTypeReference<List<BatchItemDTO>>() {});
+      } catch (RestClientException e) {
+        if (e instanceof ResourceAccessException && attempt < attempts) {
+          log.warn(
+              "Node {} did not answer a batch of parks, attempt {} of {}: {}",
+              peer.getName(),
+              attempt,
+              attempts,
+              e.getMessage());
+          continue;
+        }
+        log.error(
+            "Error at parking a batch of vehicles on node {}: {}",
+            peer.getName(),
+            e.getMessage(),
+            e);
+        BatchItemDTO failed = BatchItemDTO.builder().error(ErrorCode.UNABLE_TO_PARK).build();
+        return vehicleTypes.stream().map(vehicleType -> failed).toList();
+      }
+    }
+  }
+
+  private List<BatchItemDTO> leaveOn(ClusterProperties.Node owner, List<Long> vehicleIds) {
+    try {
+      return restClient
+          .method(HttpMethod.DELETE)
+          .uri(owner.getUrl() + "/parking/leave/batch")
+          .contentType(MediaType.APPLICATION_JSON)
+          .body(vehicleIds)
+          .retrieve()
+          .body(new ParameterizedTypeReference<List<BatchItemDTO>>() {});
+    } catch (RestClientException e) {
+      log.error(
+          "Error at removing a batch of vehicles on node {}: {}",
+          owner.getName(),
+          e.getMessage(),
+          e);
+      BatchItemDTO failed = BatchItemDTO.builder().error(ErrorCode.UNABLE_TO_LEAVE_PARK).build();
+      return vehicleIds.stream().map(vehicleId -> failed).toList();
+    }
+  }
+}
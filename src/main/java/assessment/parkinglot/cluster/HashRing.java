@@ -0,0 +1,62 @@
+package assessment.parkinglot.cluster;
+
+import java.nio.charset.StandardCharsets;
+import java.util.List;
+import java.util.Map;
+import java.util.NavigableMap;
+import java.util.TreeMap;
+
+/**
+ * Consistent hash ring that maps keys, the names of the levels, to the nodes of the cluster.
+ *
+ * <p>Every node is placed at {@code virtualNodes} points of a 64-bit ring, and a key belongs to the
+ * first point at or after its own hash. Adding a node only moves the keys that fall right before
+ * its points, about {@code 1 / n} of them, and every node computes the same owners from the same
+ * list of names without talking to the others.
+ */
+public class HashRing {
+
+  private static final long FNV_OFFSET = 0xcbf29ce484222325L;
+  private static final long FNV_PRIME = 0x100000001b3L;
+
+  private final NavigableMap<Long, String> points = new TreeMap<>();
+
+  /**
+   * Creates the ring of the given nodes.
+   *
+   * @param nodes The names of the nodes.
+   * @param virtualNodes The amount of points of every node.
+   */
+  public HashRing(List<String> nodes, int virtualNodes) {
+    if (nodes.isEmpty()) {
+      throw new IllegalArgumentException("A hash ring needs at least one node");
+    }
+    for (String node : nodes) {
+      for (int i = 0; i < Math.max(1, virtualNodes); i++) {
+        points.putIfAbsent(hash(node + "#" + i), node);
+      }
+    }
+  }
+
+  /**
+   * Finds the node a key belongs to.
+   *
+   * @param key The key, such as the name of a level.
+   * @return The name of the node.
+   */
+  public String owner(String key) {
+    Map.Entry<Long, String> point = points.ceilingEntry(hash(key));
+    return (point != null ? point : points.firstEntry()).getValue();
+  }
+
+  /** FNV-1a over the UTF-8 bytes of the key, finished with the MurmurHash3 mix of its bits. */
+  static long hash(String key) {
+    long hash = FNV_OFFSET;
+    for (byte b : key.getBytes(StandardCharsets.UTF_8)) {
+      hash = (hash ^ (b & 0xff)) * FNV_PRIME;
+    }
+    hash = (hash ^ (hash >>> 33)) * 0xff51afd7ed558ccdL;
+    hash = (hash ^ (hash >>> 33)) * 0xc4ceb9fe1a85ec53L;
+    return hash ^ (hash >>> 33);
+  }
+}
@@ -0,0 +1,58 @@
+package assessment.parkinglot.conf;
+
+import assessment.parkinglot.enums.ParkingSpotType;
+import assessment.parkinglot.enums.VehicleType;
+import java.time.Duration;
+import java.util.EnumMap;
+import java.util.Map;
+import lombok.Data;
+import org.springframework.boot.context.properties.ConfigurationProperties;
+
+/**
+ * Tariff of the lot, bound from the {@code parking.billing} properties.
+ *
+ * <p>A stay is charged by periods of {@code increment}, every started one in full, at the rate of
+ * the vehicle type on the type of spots it took. Stays up to {@code grace} are free, and a day of
+ * stay never costs more than the daily cap of the vehicle type. Prices are in cents. Rates and caps
+ * left out keep their defaults.
+ *
+ * <pre>
+ * parking.billing.increment=PT15M
+ * parking.billing.grace=PT10M
+ * parking.billing.rates.CAR.COMPACT=100
+ * parking.billing.rates.CAR.REGULAR=125
+ * parking.billing.daily-caps.CAR=3000
+ * </pre>
+ */
+@ConfigurationProperties(prefix = "parking.billing")
+@Data
+public class BillingProperties {
+
+  private Duration increment = Duration.ofMinutes(15);
+
+  private Duration grace = Duration.ofMinutes(10);
+
+  /** Price of a period, by vehicle type and by the type of the spots it takes. */
+  private Map<VehicleType, Map<ParkingSpotType, Long>> rates = defaultRates();
+
+  /** Most a vehicle type pays for a day of stay. A type without a cap is charged every period. */
+  private Map<VehicleType, Long> dailyCaps = defaultDailyCaps();
+
+  private static Map<VehicleType, Map<ParkingSpotType, Long>> defaultRates() {
+    Map<VehicleType, Map<ParkingSpotType, Long>> rates = new EnumMap<>(VehicleType.class);
+    rates.put(VehicleType.MOTORCYCLE, new EnumMap<>(Map.of(ParkingSpotType.MOTORCYCLE, 50L)));
+    rates.put(
+        VehicleType.CAR,
+        new EnumMap<>(Map.of(ParkingSpotType.COMPACT, 100L, ParkingSpotType.REGULAR, 125L)));
+    rates.put(VehicleType.VAN, new EnumMap<>(Map.of(ParkingSpotType.REGULAR, 300L)));
+    return rates;
+  }
+
+  private static Map<VehicleType, Long> defaultDailyCaps() {
+    Map<VehicleType, Long> dailyCaps = new EnumMap<>(VehicleType.class);
+    dailyCaps.put(VehicleType.MOTORCYCLE, 1500L);
+    dailyCaps.put(VehicleType.CAR, 3000L);
+    dailyCaps.put(VehicleType.VAN, 7500L);
+    return dailyCaps;
+  }
+}
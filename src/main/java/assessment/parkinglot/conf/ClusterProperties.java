@@ -0,0 +1,54 @@
+package assessment.parkinglot.conf;
+
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.List;
+import lombok.AllArgsConstructor;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+import org.springframework.boot.context.properties.ConfigurationProperties;
+
+/**
+ * Nodes of the cluster, bound from the {@code parking.cluster} properties.
+ *
+ * <p>Every node is started with the same list of nodes, in the same order, and the name of its own.
+ * The order matters: a node takes its vehicle and spot ids from the range of its position in the
+ * list, so the list can only grow at the end.
+ *
+ * <pre>
+ * parking.cluster.enabled=true
+ * parking.cluster.self=a
+ * parking.cluster.nodes[0].name=a
+ * parking.cluster.nodes[0].url=http://10.0.0.1:8080
+ * parking.cluster.nodes[1].name=b
+ * parking.cluster.nodes[1].url=http://10.0.0.2:8080
+ * </pre>
+ */
+@ConfigurationProperties(prefix = "parking.cluster")
+@Data
+public class ClusterProperties {
+
+  private boolean enabled;
+
+  /** Name of this node, one of {@link #nodes}. */
+  private String self;
+
+  private List<Node> nodes = new ArrayList<>();
+
+  /** Points of every node on the hash ring, the more of them the more even the levels spread. */
+  private int virtualNodes = 64;
+
+  /** Time to wait for another node to answer a forwarded request. */
+  private Duration forwardTimeout = Duration.ofSeconds(2);
+
+  /** Times a batch of parks is sent to a peer that does not answer before giving up on it. */
+  private int forwardAttempts = 3;
+
+  @Data
+  @NoArgsConstructor
+  @AllArgsConstructor
+  public static class Node {
+    private String name;
+    private String url;
+  }
+}
@@ -0,0 +1,50 @@
+package assessment.parkinglot.conf;
+
+import assessment.parkinglot.metrics.QueryCountInterceptor;
+import assessment.parkinglot.metrics.QueryCounter;
+import assessment.parkinglot.metrics.QueryCountingDataSource;
+import javax.sql.DataSource;
+import org.springframework.beans.factory.ObjectProvider;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.config.BeanPostProcessor;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+import org.springframework.web.servlet.config.annotation.AsyncSupportConfigurer;
+import org.springframework.web.servlet.config.annotation.InterceptorRegistry;
+import org.springframework.web.servlet.config.annotation.WebMvcConfigurer;
+
+/**
+ * Configuration class that wraps the {@link DataSource} in a {@link QueryCountingDataSource}, so
+ * the {@link QueryCounter} sees every statement sent to the database, and plugs the {@link
+ * QueryCountInterceptor} into Spring MVC, so the statements of every request are counted, however
+ * many threads the request runs on.
+ */
+@Configuration
+public class MetricsConfiguration implements WebMvcConfigurer {
+
+  @Autowired QueryCountInterceptor queryCountInterceptor;
+
+  @Bean
+  public static BeanPostProcessor queryCountingDataSource(
+      ObjectProvider<QueryCounter> queryCounter) {
+    return new BeanPostProcessor() {
+      @Override
+      public Object postProcessAfterInitialization(Object bean, String beanName) {
+        if (bean instanceof DataSource dataSource && !(bean instanceof QueryCountingDataSource)) {
+          return new QueryCountingDataSource(dataSource, queryCounter.getObject());
+        }
+        return bean;
+      }
+    };
+  }
+
+  @Override
+  public void addInterceptors(InterceptorRegistry registry) {
+    registry.addInterceptor(queryCountInterceptor).addPathPatterns("/parking/**");
+  }
+
+  @Override
+  public void configureAsyncSupport(AsyncSupportConfigurer configurer) {
+    configurer.registerCallableInterceptors(queryCountInterceptor);
+  }
+}
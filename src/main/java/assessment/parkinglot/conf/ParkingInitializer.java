@@ -1,45 +1,94 @@
 package assessment.parkinglot.conf;
 
-import static assessment.parkinglot.constants.SystemConfConstants.*;
-
+import assessment.parkinglot.allocation.SpotAllocator;
+import assessment.parkinglot.cluster.ClusterNode;
 import assessment.parkinglot.entities.ParkingSpotEntity;
 import assessment.parkinglot.enums.ParkingSpotType;
+import assessment.parkinglot.journal.LotSnapshotter;
 import assessment.parkinglot.repository.ParkingSpotRepository;
+import java.util.ArrayList;
+import java.util.List;
+import lombok.extern.slf4j.Slf4j;
 import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.boot.ApplicationArguments;
 import org.springframework.boot.ApplicationRunner;
+import org.springframework.boot.context.properties.EnableConfigurationProperties;
 import org.springframework.context.annotation.Configuration;
+import org.springframework.core.Ordered;
+import org.springframework.core.annotation.Order;
 
 /**
  * Configuration class that initializes the parking spot repository
  * when the application starts.
  *
- * This class is responsible for creating and saving parking spots in the repository
- * at application startup, distributing them into different types of spots: motorcycle,
- * compact, and regular.
+ * This class is responsible for creating and saving the parking spots described by the
+ * {@link ParkingLotProperties} at application startup, level by level and zone by zone. Spots are
+ * saved in chunks, each one in its own transaction and inserted with JDBC batches, so lots of
+ * hundreds of thousands of spots start in seconds. Once saved, the spots are loaded into the
+ * {@link SpotAllocator}. In the write-behind mode, a lot with a snapshot is restored from it by the
+ * {@link LotSnapshotter} instead. In cluster mode, a node only creates the levels the {@link
+ * ClusterNode} owns.
  *
  * Implements the {@link ApplicationRunner} interface to execute additional code
  * after the application has started.
  */
 @Configuration
+@EnableConfigurationProperties(ParkingLotProperties.class)
+@Order(Ordered.HIGHEST_PRECEDENCE)
+@Slf4j
 public class ParkingInitializer implements ApplicationRunner {
 
   @Autowired ParkingSpotRepository spotRepository;
+  @Autowired SpotAllocator spotAllocator;
+  @Autowired ParkingLotProperties lotProperties;
+
+  @Autowired(required = false)
+  LotSnapshotter snapshotter;
+
+  @Autowired(required = false)
+  ClusterNode clusterNode;
 
   @Override
   public void run(ApplicationArguments args) throws Exception {
-
-    // Add motorcycle spots
-    for (int i = 0; i < MOTORCYCLE_SPOTS_AMOUNT; i++) {
-      spotRepository.save(ParkingSpotEntity.builder().type(ParkingSpotType.MOTORCYCLE).build());
-    }
-    // Add compact car spots
-    for (int i = 0; i < COMPACT_SPOTS_AMOUNT; i++) {
-      spotRepository.save(ParkingSpotEntity.builder().type(ParkingSpotType.COMPACT).build());
+    if (snapshotter != null && snapshotter.exists()) {
+      log.info("Found a lot snapshot, the lot will be restored from it");
+      return;
     }
-    // Add regular spots
-    for (int i = 0; i < REGULAR_SPOTS_AMOUNT; i++) {
-      spotRepository.save(ParkingSpotEntity.builder().type(ParkingSpotType.REGULAR).build());
+
+    long start = System.nanoTime();
+    int chunkSize = Math.max(1, lotProperties.getInsertChunkSize());
+    List<ParkingSpotEntity> spots = new ArrayList<>();
+    List<ParkingSpotEntity> chunk = new ArrayList<>(chunkSize);
+
+    for (ParkingLotProperties.Level level : lotProperties.getLevels()) {
+      if (clusterNode != null && !clusterNode.owns(level.getName())) {
+        continue;
+      }
+      for (ParkingLotProperties.Zone zone : level.getZones()) {
+        for (ParkingSpotType type : ParkingSpotType.values()) {
+
+          int amount = zone.getSpots().getOrDefault(type, 0);
+          for (int i = 0; i < amount; i++) {
+            chunk.add(
+                ParkingSpotEntity.builder()
+                    .type(type)
+                    .level(level.getName())
+                    .zone(zone.getName())
+                    .build());
+            if (chunk.size() == chunkSize) {
+              spots.addAll(spotRepository.saveAll(chunk));
+              chunk = new ArrayList<>(chunkSize);
+            }
+          }
+        }
+      }
     }
+    spots.addAll(spotRepository.saveAll(chunk));
+    log.info(
+        "Created {} parking spots in {} ms",
+        spots.size(),
+        (System.nanoTime() - start) / 1_000_000);
+
+    spotAllocator.load(spots);
   }
 }
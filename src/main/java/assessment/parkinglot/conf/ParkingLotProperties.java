@@ -0,0 +1,62 @@
+package assessment.parkinglot.conf;
+
+import static assessment.parkinglot.constants.SystemConfConstants.*;
+
+import assessment.parkinglot.enums.ParkingSpotType;
+import java.util.ArrayList;
+import java.util.EnumMap;
+import java.util.List;
+import java.util.Map;
+import lombok.AllArgsConstructor;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+import org.springframework.boot.context.properties.ConfigurationProperties;
+
+/**
+ * Layout of the parking lot, bound from the {@code parking.lot} properties.
+ *
+ * <p>The lot is made of levels, each one split into zones, and every zone holds a given amount of
+ * spots of each {@link ParkingSpotType}. When no layout is configured the lot has a single level
+ * with a single zone, holding the amounts of {@code SystemConfConstants}.
+ *
+ * <pre>
+ * parking.lot.levels[0].name=1
+ * parking.lot.levels[0].zones[0].name=A
+ * parking.lot.levels[0].zones[0].spots.MOTORCYCLE=5
+ * parking.lot.levels[0].zones[0].spots.COMPACT=11
+ * parking.lot.levels[0].zones[0].spots.REGULAR=9
+ * </pre>
+ */
+@ConfigurationProperties(prefix = "parking.lot")
+@Data
+public class ParkingLotProperties {
+
+  /** Amount of spots saved per transaction while the lot is created. */
+  private int insertChunkSize = 5000;
+
+  private List<Level> levels = new ArrayList<>(List.of(defaultLevel()));
+
+  @Data
+  @NoArgsConstructor
+  @AllArgsConstructor
+  public static class Level {
+    private String name;
+    private List<Zone> zones = new ArrayList<>();
+  }
+
+  @Data
+  @NoArgsConstructor
+  @AllArgsConstructor
+  public static class Zone {
+    private String name;
+    private Map<ParkingSpotType, Integer> spots = new EnumMap<>(ParkingSpotType.class);
+  }
+
+  private static Level defaultLevel() {
+    Map<ParkingSpotType, Integer> spots = new EnumMap<>(ParkingSpotType.class);
+    spots.put(ParkingSpotType.MOTORCYCLE, MOTORCYCLE_SPOTS_AMOUNT);
+    spots.put(ParkingSpotType.COMPACT, COMPACT_SPOTS_AMOUNT);
+    spots.put(ParkingSpotType.REGULAR, REGULAR_SPOTS_AMOUNT);
+    return new Level("1", new ArrayList<>(List.of(new Zone("A", spots))));
+  }
+}
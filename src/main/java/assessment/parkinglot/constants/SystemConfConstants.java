@@ -4,4 +4,6 @@ public class SystemConfConstants {
   public static final Integer MOTORCYCLE_SPOTS_AMOUNT = 5;
   public static final Integer REGULAR_SPOTS_AMOUNT = 9;
   public static final Integer COMPACT_SPOTS_AMOUNT = 11;
+  public static final Integer MAX_STATUS_PAGE_SIZE = 1000;
+  public static final Integer MAX_BATCH_SIZE = 1000;
 }
@@ -1,36 +1,96 @@
 package assessment.parkinglot.controller;
 
+import static assessment.parkinglot.constants.SystemConfConstants.MAX_BATCH_SIZE;
+import static assessment.parkinglot.constants.SystemConfConstants.MAX_STATUS_PAGE_SIZE;
 
+import assessment.parkinglot.admission.AdmissionQueue;
+import assessment.parkinglot.cache.IdempotencyCache;
+import assessment.parkinglot.cluster.ClusterRouter;
 import assessment.parkinglot.controller.request.ParkRequest;
+import assessment.parkinglot.controller.request.ReservationRequest;
+import assessment.parkinglot.controller.response.AllocationStrategyResponse;
 import assessment.parkinglot.controller.response.AvailableSpotResponse;
 import assessment.parkinglot.controller.response.ErrorResponse;
+import assessment.parkinglot.controller.response.LevelAvailabilityResponse;
+import assessment.parkinglot.controller.response.OccupancyHistoryResponse;
+import assessment.parkinglot.controller.response.ParkedVehiclesPageResponse;
+import assessment.parkinglot.controller.response.ReservableSpotResponse;
+import assessment.parkinglot.dto.BatchItemDTO;
+import assessment.parkinglot.dto.ReservationDTO;
+import assessment.parkinglot.dto.RevenueDTO;
 import assessment.parkinglot.dto.VehicleDTO;
+import assessment.parkinglot.enums.AllocationStrategyType;
 import assessment.parkinglot.enums.ErrorCode;
+import assessment.parkinglot.enums.HistoryResolution;
 import assessment.parkinglot.enums.ParkingSpotType;
 import assessment.parkinglot.enums.VehicleType;
 import assessment.parkinglot.exception.PklBadRequestException;
 import assessment.parkinglot.exception.PklErrorException;
+import assessment.parkinglot.feed.OccupancyFeed;
+import assessment.parkinglot.metrics.QueryCounter;
+import assessment.parkinglot.service.BillingService;
 import assessment.parkinglot.service.ParkingService;
+import assessment.parkinglot.service.ReservationService;
+import com.fasterxml.jackson.core.JsonGenerator;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.ObjectWriter;
 import io.swagger.v3.oas.annotations.Operation;
 import io.swagger.v3.oas.annotations.media.Content;
 import io.swagger.v3.oas.annotations.media.Schema;
 import io.swagger.v3.oas.annotations.responses.ApiResponse;
 import io.swagger.v3.oas.annotations.responses.ApiResponses;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.time.Instant;
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
 import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
 import lombok.extern.slf4j.Slf4j;
 import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.http.MediaType;
 import org.springframework.http.ResponseEntity;
 import org.springframework.stereotype.Controller;
 import org.springframework.web.bind.annotation.*;
+import org.springframework.web.servlet.mvc.method.annotation.ResponseBodyEmitter;
+import org.springframework.web.servlet.mvc.method.annotation.StreamingResponseBody;
 
 @Controller
 @RequestMapping("/parking")
 @Slf4j
 public class ParkingController {
 
+    private static final String NDJSON_VALUE = "application/x-ndjson";
+    private static final String IDEMPOTENCY_KEY = "Idempotency-Key";
+
     @Autowired
     ParkingService parkingService;
 
+    @Autowired
+    ReservationService reservationService;
+
+    @Autowired
+    BillingService billingService;
+
+    @Autowired
+    ObjectMapper objectMapper;
+
+    @Autowired
+    IdempotencyCache idempotencyCache;
+
+    @Autowired
+    OccupancyFeed occupancyFeed;
+
+    @Autowired(required = false)
+    ClusterRouter clusterRouter;
+
+    @Autowired(required = false)
+    AdmissionQueue admissionQueue;
+
+    @Autowired
+    QueryCounter queryCounter;
+
     @Operation(summary = "Get all parked vehicles")
     @ApiResponses(value = {
             @ApiResponse(responseCode = "200", description = "Successfully retrieved list of parked vehicles"),
@@ -45,14 +105,98 @@ public class ParkingController {
 
     }
 
-    @Operation(summary = "Park a vehicle")
+    @Operation(summary = "Get a page of parked vehicles, ordered by their ID")
     @ApiResponses(value = {
-            @ApiResponse(responseCode = "200", description = "Successfully parked the vehicle"),
-            @ApiResponse(responseCode = "400", description = "Invalid vehicle type", content = @Content(mediaType = "application/json", schema = @Schema(implementation = ErrorResponse.class))),
+            @ApiResponse(responseCode = "200", description = "Successfully retrieved the page of parked vehicles"),
+            @ApiResponse(responseCode = "400", description = "Invalid page size", content = @Content(mediaType = "application/json", schema = @Schema(implementation = ErrorResponse.class))),
+            @ApiResponse(responseCode = "500", description = "Internal server error", content = @Content(mediaType = "application/json", schema = @Schema(implementation = ErrorResponse.class)))
+    })
+    @GetMapping("/status/page")
+    public ResponseEntity<ParkedVehiclesPageResponse> parkedVehiclesPage(@RequestParam(required = false) Long after,
+                                                                         @RequestParam(defaultValue = "100") int limit) {
+
+        if (limit < 1 || limit > MAX_STATUS_PAGE_SIZE) {
+            throw new PklBadRequestException(ErrorCode.INVALID_PAGE_SIZE);
+        }
+
+        List<VehicleDTO> parkedVehicles= parkingService.getParkedVehicles(after, limit);
+        Long nextCursor= parkedVehicles.size() < limit ? null : parkedVehicles.get(parkedVehicles.size() - 1).getVehicleId();
+
+        return ResponseEntity.ok(ParkedVehiclesPageResponse.builder().vehicles(parkedVehicles).nextCursor(nextCursor).build());
+    }
+
+    @Operation(summary = "Stream all parked vehicles as newline-delimited JSON")
+    @ApiResponses(value = {
+            @ApiResponse(responseCode = "200", description = "Successfully streamed the parked vehicles")
+    })
+    @GetMapping(value = "/status/stream", produces = NDJSON_VALUE)
+    public ResponseEntity<StreamingResponseBody> streamParkedVehicles() {
+
+        ObjectWriter writer= objectMapper.writerFor(VehicleDTO.class).without(JsonGenerator.Feature.AUTO_CLOSE_TARGET);
+
+        StreamingResponseBody body= out -> parkingService.streamParkedVehicles(v -> {
+            try{
+                writer.writeValue(out, v);
+                out.write('\n');
+            }catch (IOException e){
+                throw new UncheckedIOException(e);
+            }
+        });
+
+        return ResponseEntity.ok().contentType(MediaType.parseMediaType(NDJSON_VALUE)).body(body);
+    }
+
+    @Operation(summary = "Get the occupancy of the lot and the dwell times of the vehicles over its latest minutes, hours or days")
+    @ApiResponses(value = {
+            @ApiResponse(responseCode = "200", description = "Successfully retrieved the occupancy history, from the oldest to the newest period"),
+            @ApiResponse(responseCode = "400", description = "Invalid resolution or amount of periods", content = @Content(mediaType = "application/json", schema = @Schema(implementation = ErrorResponse.class))),
             @ApiResponse(responseCode = "500", description = "Internal server error", content = @Content(mediaType = "application/json", schema = @Schema(implementation = ErrorResponse.class)))
     })
+    @GetMapping("/status/history")
+    public ResponseEntity<OccupancyHistoryResponse> occupancyHistory(@RequestParam(defaultValue = "MINUTE") String resolution,
+                                                                     @RequestParam(defaultValue = "60") int limit) {
+
+        HistoryResolution historyResolution;
+
+        try{
+            historyResolution= HistoryResolution.valueOf(resolution);
+        }catch (Exception e){
+            throw new PklBadRequestException(ErrorCode.UNKNOWN_HISTORY_RESOLUTION);
+        }
+
+        if (limit < 1 || limit > MAX_STATUS_PAGE_SIZE) {
+            throw new PklBadRequestException(ErrorCode.INVALID_PAGE_SIZE);
+        }
+
+        return ResponseEntity.ok(OccupancyHistoryResponse.builder()
+                .resolution(historyResolution)
+                .periods(parkingService.getOccupancyHistory(historyResolution, limit))
+                .build());
+    }
+
+    @Operation(summary = "Subscribe to the free spots of every type and the parks and leaves of the lot, as Server-Sent Events")
+    @ApiResponses(value = {
+            @ApiResponse(responseCode = "200", description = "Successfully subscribed, an event follows every change, at most one per interval")
+    })
+    @GetMapping(value = "/status/feed", produces = MediaType.TEXT_EVENT_STREAM_VALUE)
+    public ResponseEntity<ResponseBodyEmitter> occupancyFeed() {
+
+        return ResponseEntity.ok()
+                .contentType(MediaType.TEXT_EVENT_STREAM)
+                .header("Cache-Control", "no-cache")
+                .body(occupancyFeed.subscribe());
+    }
+
+    @Operation(summary = "Park a vehicle, only once per Idempotency-Key header, waiting for a spot to be freed if the admission queue is enabled")
+    @ApiResponses(value = {
+            @ApiResponse(responseCode = "200", description = "Successfully parked the vehicle, or found the one parked with the same Idempotency-Key"),
+            @ApiResponse(responseCode = "400", description = "Invalid vehicle type", content = @Content(mediaType = "application/json", schema = @Schema(implementation = ErrorResponse.class))),
+            @ApiResponse(responseCode = "500", description = "No space to park, in time or in the admission queue, or internal server error", content = @Content(mediaType = "application/json", schema = @Schema(implementation = ErrorResponse.class)))
+    })
     @PostMapping("/park")
-    public ResponseEntity<VehicleDTO> parkVehicle(@RequestBody ParkRequest parkRequest) {
+    public CompletableFuture<ResponseEntity<VehicleDTO>> parkVehicle(@RequestBody ParkRequest parkRequest,
+                                                  @RequestHeader(value = IDEMPOTENCY_KEY, required = false) String idempotencyKey,
+                                                  @RequestHeader(value = ClusterRouter.FORWARDED_HEADER, required = false) String forwardedBy) {
 
         VehicleType vehicleType;
 
@@ -62,30 +206,97 @@ public class ParkingController {
             throw new PklBadRequestException(ErrorCode.UNKNOWN_VEHICLE_TYPE);
         }
 
-        VehicleDTO vehicle= parkingService.parkVehicle(vehicleType);
+        boolean routesToPeers= this.routesToPeers(forwardedBy);
+
+        // A forwarded park fails fast, the node that received it from the client queues it once no
+        // peer has room.
+        if (admissionQueue == null || forwardedBy != null) {
+            VehicleDTO vehicle= idempotencyCache.execute("park", idempotencyKey, () -> this.park(vehicleType, routesToPeers, idempotencyKey));
+            return CompletableFuture.completedFuture(ResponseEntity.ok(vehicle));
+        }
+
+        // A queued park runs on the drain thread, its statements still count for this request.
+        return admissionQueue
+                .park(vehicleType, queryCounter.propagate(() -> idempotencyCache.execute("park", idempotencyKey, () -> this.park(vehicleType, routesToPeers, idempotencyKey))))
+                .thenApply(ResponseEntity::ok);
+
+    }
+
+    @Operation(summary = "Park many vehicles in a single transaction, only once per Idempotency-Key header, the ones without space on the peers in cluster mode")
+    @ApiResponses(value = {
+            @ApiResponse(responseCode = "200", description = "Processed the batch, each item holds the parked vehicle or the reason it was not parked, or found the batch parked with the same Idempotency-Key"),
+            @ApiResponse(responseCode = "400", description = "Invalid batch size", content = @Content(mediaType = "application/json", schema = @Schema(implementation = ErrorResponse.class))),
+            @ApiResponse(responseCode = "500", description = "Internal server error", content = @Content(mediaType = "application/json", schema = @Schema(implementation = ErrorResponse.class)))
+    })
+    @PostMapping("/park/batch")
+    public ResponseEntity<List<BatchItemDTO>> parkVehicles(@RequestBody List<ParkRequest> parkRequests,
+                                                           @RequestHeader(value = IDEMPOTENCY_KEY, required = false) String idempotencyKey,
+                                                           @RequestHeader(value = ClusterRouter.FORWARDED_HEADER, required = false) String forwardedBy) {
+
+        this.validateBatchSize(parkRequests);
 
-        return ResponseEntity.ok(vehicle);
+        List<VehicleType> vehicleTypes= new ArrayList<>(parkRequests.size());
+        for (ParkRequest parkRequest : parkRequests){
+            try{
+                vehicleTypes.add(VehicleType.valueOf(parkRequest.getVehicleType()));
+            }catch (Exception e){
+                vehicleTypes.add(null);
+            }
+        }
 
+        boolean routesToPeers= this.routesToPeers(forwardedBy);
+        return ResponseEntity.ok(idempotencyCache.execute("park-batch", idempotencyKey, () -> routesToPeers
+                ? clusterRouter.park(vehicleTypes, parkingService::parkVehicles)
+                : parkingService.parkVehicles(vehicleTypes)));
     }
 
-    @Operation(summary = "Remove a parked vehicle by its ID")
+    @Operation(summary = "Remove a parked vehicle by its ID, only once per Idempotency-Key header")
     @ApiResponses(value = {
-            @ApiResponse(responseCode = "200", description = "Successfully removed the vehicle"),
+            @ApiResponse(responseCode = "200", description = "Successfully removed the vehicle, or found the one removed with the same Idempotency-Key"),
             @ApiResponse(responseCode = "404", description = "Vehicle not found", content = @Content(mediaType = "application/json", schema = @Schema(implementation = ErrorResponse.class))),
             @ApiResponse(responseCode = "500", description = "Internal server error", content = @Content(mediaType = "application/json", schema = @Schema(implementation = ErrorResponse.class)))
     })
     @DeleteMapping("/leave/{vehicleId}")
-    public ResponseEntity<VehicleDTO> removeVehicle(@PathVariable Long vehicleId) {
+    public ResponseEntity<VehicleDTO> removeVehicle(@PathVariable Long vehicleId,
+                                                    @RequestHeader(value = IDEMPOTENCY_KEY, required = false) String idempotencyKey,
+                                                    @RequestHeader(value = ClusterRouter.FORWARDED_HEADER, required = false) String forwardedBy) {
+        boolean routesToPeers= this.routesToPeers(forwardedBy);
         VehicleDTO vehicleDTO;
         try{
-            vehicleDTO= parkingService.removeVehicle(vehicleId);
+            vehicleDTO= idempotencyCache.execute("leave", idempotencyKey, () -> this.leave(vehicleId, routesToPeers));
         }catch (Exception e){
-            log.error("Error at removing a vehicle: " + e.getMessage(), e.getStackTrace());
+            log.error("Error at removing a vehicle: {}", e.getMessage(), e);
             throw new PklErrorException(ErrorCode.UNABLE_TO_LEAVE_PARK);
         }
         return ResponseEntity.ok(vehicleDTO);
     }
 
+    @Operation(summary = "Remove many parked vehicles by their IDs in a single transaction")
+    @ApiResponses(value = {
+            @ApiResponse(responseCode = "200", description = "Processed the batch, each item holds the removed vehicle or the reason it was not removed"),
+            @ApiResponse(responseCode = "400", description = "Invalid batch size", content = @Content(mediaType = "application/json", schema = @Schema(implementation = ErrorResponse.class))),
+            @ApiResponse(responseCode = "500", description = "Internal server error", content = @Content(mediaType = "application/json", schema = @Schema(implementation = ErrorResponse.class)))
+    })
+    @DeleteMapping("/leave/batch")
+    public ResponseEntity<List<BatchItemDTO>> removeVehicles(@RequestBody List<Long> vehicleIds,
+                                                            @RequestHeader(value = ClusterRouter.FORWARDED_HEADER, required = false) String forwardedBy) {
+
+        this.validateBatchSize(vehicleIds);
+
+        List<BatchItemDTO> items;
+        try{
+            if (this.routesToPeers(forwardedBy)) {
+                items= clusterRouter.leave(vehicleIds, parkingService::removeVehicles);
+            } else {
+                items= parkingService.removeVehicles(vehicleIds);
+            }
+        }catch (Exception e){
+            log.error("Error at removing a batch of vehicles: {}", e.getMessage(), e);
+            throw new PklErrorException(ErrorCode.UNABLE_TO_LEAVE_PARK);
+        }
+        return ResponseEntity.ok(items);
+    }
+
     @Operation(summary = "Get the number of available parking spots for a specific type")
     @ApiResponses(value = {
             @ApiResponse(responseCode = "200", description = "Successfully retrieved the number of available spots"),
@@ -93,7 +304,8 @@ public class ParkingController {
             @ApiResponse(responseCode = "500", description = "Internal server error", content = @Content(mediaType = "application/json", schema = @Schema(implementation = ErrorResponse.class)))
     })
     @GetMapping("/available-spots/{type}")
-    public ResponseEntity<AvailableSpotResponse> countAvailableSpots(@PathVariable String type) {
+    public ResponseEntity<AvailableSpotResponse> countAvailableSpots(@PathVariable String type,
+                                                                     @RequestHeader(value = ClusterRouter.FORWARDED_HEADER, required = false) String forwardedBy) {
 
         ParkingSpotType spotType;
 
@@ -104,10 +316,43 @@ public class ParkingController {
         }
 
         Long freeSpots= parkingService.countAvailableSpots(spotType);
+        if (this.routesToPeers(forwardedBy)) {
+            freeSpots+= clusterRouter.countAvailableSpots(spotType);
+        }
 
         return ResponseEntity.ok(AvailableSpotResponse.builder().type(spotType).freeSpots(freeSpots.intValue()).build());
     }
 
+    @Operation(summary = "Get the number of available parking spots for a specific type on each level")
+    @ApiResponses(value = {
+            @ApiResponse(responseCode = "200", description = "Successfully retrieved the number of available spots of every level"),
+            @ApiResponse(responseCode = "400", description = "Invalid parking spot type", content = @Content(mediaType = "application/json", schema = @Schema(implementation = ErrorResponse.class))),
+            @ApiResponse(responseCode = "500", description = "Internal server error", content = @Content(mediaType = "application/json", schema = @Schema(implementation = ErrorResponse.class)))
+    })
+    @GetMapping("/available-spots/{type}/levels")
+    public ResponseEntity<List<LevelAvailabilityResponse>> countAvailableSpotsByLevel(@PathVariable String type,
+                                                                                      @RequestHeader(value = ClusterRouter.FORWARDED_HEADER, required = false) String forwardedBy) {
+
+        ParkingSpotType spotType;
+
+        try{
+            spotType= ParkingSpotType.valueOf(type);
+        }catch (Exception e){
+            throw new PklBadRequestException(ErrorCode.UNKNOWN_PARKING_SPOT);
+        }
+
+        Map<String, Long> freeSpotsByLevel= new LinkedHashMap<>(parkingService.countAvailableSpotsByLevel(spotType));
+        if (this.routesToPeers(forwardedBy)) {
+            clusterRouter.countAvailableSpotsByLevel(spotType).forEach((level, freeSpots) -> freeSpotsByLevel.merge(level, freeSpots, Long::sum));
+        }
+
+        List<LevelAvailabilityResponse> levels= new ArrayList<>();
+        freeSpotsByLevel.forEach((level, freeSpots) ->
+                levels.add(LevelAvailabilityResponse.builder().level(level).type(spotType).freeSpots(freeSpots.intValue()).build()));
+
+        return ResponseEntity.ok(levels);
+    }
+
     @Operation(summary = "Check if all parking spots for a specific vehicle type are taken")
     @ApiResponses(value = {
             @ApiResponse(responseCode = "200", description = "Successfully checked the parking spots"),
@@ -115,7 +360,8 @@ public class ParkingController {
             @ApiResponse(responseCode = "500", description = "Internal server error", content = @Content(mediaType = "application/json", schema = @Schema(implementation = ErrorResponse.class)))
     })
     @GetMapping("/all-spots-taken/{type}")
-    public ResponseEntity<Boolean> areAllSpotsTaken(@PathVariable String type) {
+    public ResponseEntity<Boolean> areAllSpotsTaken(@PathVariable String type,
+                                                    @RequestHeader(value = ClusterRouter.FORWARDED_HEADER, required = false) String forwardedBy) {
 
         VehicleType vehicleType;
 
@@ -125,7 +371,195 @@ public class ParkingController {
             throw new PklBadRequestException(ErrorCode.UNKNOWN_VEHICLE_TYPE);
         }
 
-        return ResponseEntity.ok(parkingService.areAllSpotsTaken(vehicleType));
+        boolean allSpotsTaken= parkingService.areAllSpotsTaken(vehicleType);
+        if (allSpotsTaken && this.routesToPeers(forwardedBy)) {
+            allSpotsTaken= clusterRouter.areAllSpotsTaken(vehicleType);
+        }
+
+        return ResponseEntity.ok(allSpotsTaken);
     }
 
+    @Operation(summary = "Get the strategy used to choose the spot type of each vehicle")
+    @ApiResponses(value = {
+            @ApiResponse(responseCode = "200", description = "Successfully retrieved the allocation strategy")
+    })
+    @GetMapping("/allocation-strategy")
+    public ResponseEntity<AllocationStrategyResponse> allocationStrategy() {
+
+        return ResponseEntity.ok(AllocationStrategyResponse.builder().strategy(parkingService.getAllocationStrategy()).build());
+    }
+
+    @Operation(summary = "Switch the strategy used to choose the spot type of each vehicle")
+    @ApiResponses(value = {
+            @ApiResponse(responseCode = "200", description = "Successfully switched the allocation strategy"),
+            @ApiResponse(responseCode = "400", description = "Invalid allocation strategy", content = @Content(mediaType = "application/json", schema = @Schema(implementation = ErrorResponse.class)))
+    })
+    @PutMapping("/allocation-strategy/{strategy}")
+    public ResponseEntity<AllocationStrategyResponse> selectAllocationStrategy(@PathVariable String strategy) {
+
+        AllocationStrategyType strategyType;
+
+        try{
+            strategyType= AllocationStrategyType.valueOf(strategy);
+        }catch (Exception e){
+            throw new PklBadRequestException(ErrorCode.UNKNOWN_ALLOCATION_STRATEGY);
+        }
+
+        parkingService.setAllocationStrategy(strategyType);
+
+        return ResponseEntity.ok(AllocationStrategyResponse.builder().strategy(strategyType).build());
+    }
+
+    @Operation(summary = "Reserve spots of a type for a window of time")
+    @ApiResponses(value = {
+            @ApiResponse(responseCode = "200", description = "Successfully reserved the spots"),
+            @ApiResponse(responseCode = "400", description = "Invalid parking spot type, window or amount of spots", content = @Content(mediaType = "application/json", schema = @Schema(implementation = ErrorResponse.class))),
+            @ApiResponse(responseCode = "500", description = "No room left for the window, or internal server error", content = @Content(mediaType = "application/json", schema = @Schema(implementation = ErrorResponse.class)))
+    })
+    @PostMapping("/reservations")
+    public ResponseEntity<ReservationDTO> reserve(@RequestBody ReservationRequest reservationRequest) {
+
+        ParkingSpotType spotType;
+
+        try{
+            spotType= ParkingSpotType.valueOf(reservationRequest.getSpotType());
+        }catch (Exception e){
+            throw new PklBadRequestException(ErrorCode.UNKNOWN_PARKING_SPOT);
+        }
+
+        if (reservationRequest.getSpots() == null) {
+            throw new PklBadRequestException(ErrorCode.INVALID_RESERVATION);
+        }
+
+        ReservationDTO reservation= reservationService.reserve(spotType, reservationRequest.getSpots(),
+                this.toInstant(reservationRequest.getStart(), ErrorCode.INVALID_RESERVATION),
+                this.toInstant(reservationRequest.getEnd(), ErrorCode.INVALID_RESERVATION));
+
+        return ResponseEntity.ok(reservation);
+    }
+
+    @Operation(summary = "Get the number of spots of a type that can still be reserved for a whole window of time")
+    @ApiResponses(value = {
+            @ApiResponse(responseCode = "200", description = "Successfully retrieved the number of reservable spots"),
+            @ApiResponse(responseCode = "400", description = "Invalid parking spot type or window", content = @Content(mediaType = "application/json", schema = @Schema(implementation = ErrorResponse.class))),
+            @ApiResponse(responseCode = "500", description = "Internal server error", content = @Content(mediaType = "application/json", schema = @Schema(implementation = ErrorResponse.class)))
+    })
+    @GetMapping("/reservations/available-spots/{type}")
+    public ResponseEntity<ReservableSpotResponse> countReservableSpots(@PathVariable String type,
+                                                                       @RequestParam String start,
+                                                                       @RequestParam String end) {
+
+        ParkingSpotType spotType;
+
+        try{
+            spotType= ParkingSpotType.valueOf(type);
+        }catch (Exception e){
+            throw new PklBadRequestException(ErrorCode.UNKNOWN_PARKING_SPOT);
+        }
+
+        Instant from= this.toInstant(start, ErrorCode.INVALID_RESERVATION);
+        Instant to= this.toInstant(end, ErrorCode.INVALID_RESERVATION);
+        long freeSpots= reservationService.countReservableSpots(spotType, from, to);
+
+        return ResponseEntity.ok(ReservableSpotResponse.builder().type(spotType).start(from).end(to).freeSpots((int) freeSpots).build());
+    }
+
+    @Operation(summary = "Get a reservation")
+    @ApiResponses(value = {
+            @ApiResponse(responseCode = "200", description = "Successfully retrieved the reservation"),
+            @ApiResponse(responseCode = "404", description = "Reservation not found or over", content = @Content(mediaType = "application/json", schema = @Schema(implementation = ErrorResponse.class)))
+    })
+    @GetMapping("/reservations/{reservationId}")
+    public ResponseEntity<ReservationDTO> reservation(@PathVariable Long reservationId) {
+
+        return ResponseEntity.ok(reservationService.getReservation(reservationId));
+    }
+
+    @Operation(summary = "Cancel a reservation")
+    @ApiResponses(value = {
+            @ApiResponse(responseCode = "200", description = "Successfully cancelled the reservation"),
+            @ApiResponse(responseCode = "404", description = "Reservation not found or over", content = @Content(mediaType = "application/json", schema = @Schema(implementation = ErrorResponse.class))),
+            @ApiResponse(responseCode = "500", description = "Internal server error", content = @Content(mediaType = "application/json", schema = @Schema(implementation = ErrorResponse.class)))
+    })
+    @DeleteMapping("/reservations/{reservationId}")
+    public ResponseEntity<ReservationDTO> cancelReservation(@PathVariable Long reservationId) {
+
+        return ResponseEntity.ok(reservationService.cancelReservation(reservationId));
+    }
+
+    @Operation(summary = "Park a vehicle on the spots a reservation holds")
+    @ApiResponses(value = {
+            @ApiResponse(responseCode = "200", description = "Successfully parked the vehicle"),
+            @ApiResponse(responseCode = "400", description = "Invalid vehicle type, or no room held for it", content = @Content(mediaType = "application/json", schema = @Schema(implementation = ErrorResponse.class))),
+            @ApiResponse(responseCode = "404", description = "Reservation not found or over", content = @Content(mediaType = "application/json", schema = @Schema(implementation = ErrorResponse.class))),
+            @ApiResponse(responseCode = "500", description = "Internal server error", content = @Content(mediaType = "application/json", schema = @Schema(implementation = ErrorResponse.class)))
+    })
+    @PostMapping("/reservations/{reservationId}/arrive")
+    public ResponseEntity<VehicleDTO> arrive(@PathVariable Long reservationId, @RequestBody ParkRequest parkRequest) {
+
+        VehicleType vehicleType;
+
+        try{
+            vehicleType= VehicleType.valueOf(parkRequest.getVehicleType());
+        }catch (Exception e){
+            throw new PklBadRequestException(ErrorCode.UNKNOWN_VEHICLE_TYPE);
+        }
+
+        return ResponseEntity.ok(reservationService.arrive(reservationId, vehicleType));
+    }
+
+    @Operation(summary = "Get the revenue of the parking sessions closed in a range of time")
+    @ApiResponses(value = {
+            @ApiResponse(responseCode = "200", description = "Successfully aggregated the revenue"),
+            @ApiResponse(responseCode = "400", description = "Invalid time range", content = @Content(mediaType = "application/json", schema = @Schema(implementation = ErrorResponse.class))),
+            @ApiResponse(responseCode = "500", description = "Internal server error", content = @Content(mediaType = "application/json", schema = @Schema(implementation = ErrorResponse.class)))
+    })
+    @GetMapping("/revenue")
+    public ResponseEntity<RevenueDTO> revenue(@RequestParam String from, @RequestParam String to) {
+
+        RevenueDTO revenue= billingService.getRevenue(
+                this.toInstant(from, ErrorCode.INVALID_TIME_RANGE), this.toInstant(to, ErrorCode.INVALID_TIME_RANGE));
+
+        return ResponseEntity.ok(revenue);
+    }
+
+    private VehicleDTO park(VehicleType vehicleType, boolean routesToPeers, String idempotencyKey) {
+        try{
+            return parkingService.parkVehicle(vehicleType);
+        }catch (PklErrorException e){
+            if (!routesToPeers || !ErrorCode.NO_SPACE_TO_PARK.equals(e.getError())) {
+                throw e;
+            }
+            return clusterRouter.park(vehicleType, idempotencyKey);
+        }
+    }
+
+    private VehicleDTO leave(Long vehicleId, boolean routesToPeers) {
+        if (routesToPeers && !clusterRouter.ownsVehicle(vehicleId)) {
+            return clusterRouter.leave(vehicleId);
+        }
+        return parkingService.removeVehicle(vehicleId);
+    }
+
+    /**
+     * Whether the request may involve other nodes: in cluster mode, unless a node forwarded it. Read
+     * on the request thread, since a queued park runs later on another one.
+     */
+    private boolean routesToPeers(String forwardedBy) {
+        return clusterRouter != null && forwardedBy == null;
+    }
+
+    private Instant toInstant(String time, ErrorCode error) {
+        try{
+            return Instant.parse(time);
+        }catch (Exception e){
+            throw new PklBadRequestException(error);
+        }
+    }
+
+    private void validateBatchSize(List<?> batch) {
+        if (batch == null || batch.isEmpty() || batch.size() > MAX_BATCH_SIZE) {
+            throw new PklBadRequestException(ErrorCode.INVALID_BATCH_SIZE);
+        }
+    }
 }
@@ -0,0 +1,18 @@
+package assessment.parkinglot.controller.request;
+
+import lombok.AllArgsConstructor;
+import lombok.Builder;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+@Builder
+@NoArgsConstructor
+@AllArgsConstructor
+@Data
+public class ReservationRequest {
+
+  private String spotType;
+  private Integer spots;
+  private String start;
+  private String end;
+}
@@ -0,0 +1,15 @@
+package assessment.parkinglot.controller.response;
+
+import assessment.parkinglot.enums.AllocationStrategyType;
+import lombok.AllArgsConstructor;
+import lombok.Builder;
+import lombok.Getter;
+import lombok.NoArgsConstructor;
+
+@Builder
+@NoArgsConstructor
+@AllArgsConstructor
+@Getter
+public class AllocationStrategyResponse {
+  private AllocationStrategyType strategy;
+}
@@ -0,0 +1,17 @@
+package assessment.parkinglot.controller.response;
+
+import assessment.parkinglot.enums.ParkingSpotType;
+import lombok.AllArgsConstructor;
+import lombok.Builder;
+import lombok.Getter;
+import lombok.NoArgsConstructor;
+
+@Builder
+@NoArgsConstructor
+@AllArgsConstructor
+@Getter
+public class LevelAvailabilityResponse {
+  private String level;
+  private ParkingSpotType type;
+  private Integer freeSpots;
+}
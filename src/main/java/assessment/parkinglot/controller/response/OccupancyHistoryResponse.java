@@ -0,0 +1,18 @@
+package assessment.parkinglot.controller.response;
+
+import assessment.parkinglot.domain.ParkingStatus;
+import assessment.parkinglot.enums.HistoryResolution;
+import java.util.List;
+import lombok.AllArgsConstructor;
+import lombok.Builder;
+import lombok.Getter;
+import lombok.NoArgsConstructor;
+
+@Builder
+@NoArgsConstructor
+@AllArgsConstructor
+@Getter
+public class OccupancyHistoryResponse {
+  private HistoryResolution resolution;
+  private List<ParkingStatus> periods;
+}
@@ -0,0 +1,22 @@
+package assessment.parkinglot.controller.response;
+
+import assessment.parkinglot.enums.ParkingSpotType;
+import assessment.parkinglot.enums.VehicleType;
+import java.time.Instant;
+import java.util.Map;
+import lombok.AllArgsConstructor;
+import lombok.Builder;
+import lombok.Getter;
+import lombok.NoArgsConstructor;
+
+@Builder
+@NoArgsConstructor
+@AllArgsConstructor
+@Getter
+public class OccupancyUpdateResponse {
+  private Long sequence;
+  private Instant time;
+  private Map<ParkingSpotType, Integer> freeSpots;
+  private Map<VehicleType, Long> parks;
+  private Map<VehicleType, Long> leaves;
+}
@@ -0,0 +1,17 @@
+package assessment.parkinglot.controller.response;
+
+import assessment.parkinglot.dto.VehicleDTO;
+import java.util.List;
+import lombok.AllArgsConstructor;
+import lombok.Builder;
+import lombok.Getter;
+import lombok.NoArgsConstructor;
+
+@Builder
+@NoArgsConstructor
+@AllArgsConstructor
+@Getter
+public class ParkedVehiclesPageResponse {
+  private List<VehicleDTO> vehicles;
+  private Long nextCursor;
+}
@@ -0,0 +1,19 @@
+package assessment.parkinglot.controller.response;
+
+import assessment.parkinglot.enums.ParkingSpotType;
+import java.time.Instant;
+import lombok.AllArgsConstructor;
+import lombok.Builder;
+import lombok.Getter;
+import lombok.NoArgsConstructor;
+
+@Builder
+@NoArgsConstructor
+@AllArgsConstructor
+@Getter
+public class ReservableSpotResponse {
+  private ParkingSpotType type;
+  private Instant start;
+  private Instant end;
+  private Integer freeSpots;
+}
@@ -1,3 +1,52 @@
 package assessment.parkinglot.domain;
 
-public class ParkingStatus {}
+import assessment.parkinglot.enums.ParkingSpotType;
+import assessment.parkinglot.enums.VehicleType;
+import java.time.Instant;
+import java.util.List;
+import lombok.AllArgsConstructor;
+import lombok.Builder;
+import lombok.Getter;
+import lombok.NoArgsConstructor;
+
+/**
+ * Occupancy of the lot over one period of its history: how many spots of each type were taken,
+ * and how many vehicles of each type parked and left and for how long they had stayed.
+ */
+@Builder
+@NoArgsConstructor
+@AllArgsConstructor
+@Getter
+public class ParkingStatus {
+
+  private Instant start;
+  private Instant end;
+  private List<SpotOccupancy> spots;
+  private List<VehicleTraffic> vehicles;
+
+  @Builder
+  @NoArgsConstructor
+  @AllArgsConstructor
+  @Getter
+  public static class SpotOccupancy {
+    private ParkingSpotType type;
+    private Double averageTaken;
+    private Long peakTaken;
+  }
+
+  /**
+   * Dwell times are those of the vehicles that left in the period, measured from the time each one
+   * parked at, even before the recorder started.
+   */
+  @Builder
+  @NoArgsConstructor
+  @AllArgsConstructor
+  @Getter
+  public static class VehicleTraffic {
+    private VehicleType type;
+    private Long parks;
+    private Long leaves;
+    private Double averageDwellSeconds;
+    private Double maxDwellSeconds;
+  }
+}
@@ -4,13 +4,58 @@ import assessment.parkinglot.behavior.ParkBehavior;
 import assessment.parkinglot.dto.VehicleDTO;
 import assessment.parkinglot.enums.ParkingSpotType;
 import assessment.parkinglot.enums.VehicleType;
+import java.util.ArrayList;
+import java.util.List;
 import java.util.Map;
 
+/**
+ * A kind of vehicle and the spots it needs. Vehicles hold no state of their own, so there is one
+ * instance of each kind, handed out by {@link VehicleFactory}.
+ *
+ * <p>The spots a vehicle needs are kept in a table indexed by the ordinal of the spot type, built
+ * once, so asking what a vehicle fits allocates nothing.
+ */
 public abstract class Vehicle {
 
+  private static final ParkingSpotType[] SPOT_TYPES = ParkingSpotType.values();
+
+  private final VehicleType type;
+  private final int[] spots = new int[SPOT_TYPES.length];
+  private final List<ParkingSpotType> spotTypes;
+
+  /**
+   * @param type The type of the vehicle.
+   * @param spots The types of spots the vehicle fits, and the amount it needs of each.
+   */
+  protected Vehicle(VehicleType type, Map<ParkingSpotType, Integer> spots) {
+    this.type = type;
+    List<ParkingSpotType> spotTypes = new ArrayList<>();
+    for (ParkingSpotType spotType : SPOT_TYPES) {
+      Integer amount = spots.get(spotType);
+      if (amount != null && amount > 0) {
+        this.spots[spotType.ordinal()] = amount;
+        spotTypes.add(spotType);
+      }
+    }
+    this.spotTypes = List.copyOf(spotTypes);
+  }
+
   public abstract VehicleDTO park(ParkBehavior parkBehavior);
 
-  public abstract Map<ParkingSpotType, Integer> getParkingSpotUsageByTypes();
+  public VehicleType getType() {
+    return type;
+  }
+
+  /**
+   * @param spotType A type of spot.
+   * @return The amount of spots of the type the vehicle needs, or 0 if it does not fit them.
+   */
+  public int spots(ParkingSpotType spotType) {
+    return spots[spotType.ordinal()];
+  }
 
-  public abstract VehicleType getType();
+  /** The types of spots the vehicle fits, from the smallest to the largest. */
+  public List<ParkingSpotType> getSpotTypes() {
+    return spotTypes;
+  }
 }
@@ -4,18 +4,19 @@ import assessment.parkinglot.enums.VehicleType;
 
 public class VehicleFactory {
 
+  private static final Vehicle[] VEHICLES = new Vehicle[VehicleType.values().length];
+
+  static {
+    VEHICLES[VehicleType.CAR.ordinal()] = new Car();
+    VEHICLES[VehicleType.VAN.ordinal()] = new Van();
+    VEHICLES[VehicleType.MOTORCYCLE.ordinal()] = new Motorcycle();
+  }
+
+  /**
+   * @param type The type of the vehicle.
+   * @return The vehicle of the type, the same instance on every call.
+   */
   public static Vehicle create(VehicleType type) {
-    switch (type) {
-      case CAR -> {
-        return Car.builder().build();
-      }
-      case VAN -> {
-        return Van.builder().build();
-      }
-      case MOTORCYCLE -> {
-        return Motorcycle.builder().build();
-      }
-      default -> throw new IllegalArgumentException("Unknown VehicleType");
-    }
+    return VEHICLES[type.ordinal()];
   }
 }
@@ -0,0 +1,14 @@
+package assessment.parkinglot.dto;
+
+import assessment.parkinglot.enums.ErrorCode;
+import lombok.*;
+
+@Builder
+@AllArgsConstructor
+@NoArgsConstructor
+@Data
+public class BatchItemDTO {
+
+  private VehicleDTO vehicle;
+  private ErrorCode error;
+}
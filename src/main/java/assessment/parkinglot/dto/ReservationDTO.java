@@ -0,0 +1,20 @@
+package assessment.parkinglot.dto;
+
+import assessment.parkinglot.enums.ParkingSpotType;
+import java.time.Instant;
+import lombok.*;
+
+@Builder
+@AllArgsConstructor
+@NoArgsConstructor
+@Data
+public class ReservationDTO {
+
+    private Long reservationId;
+    private ParkingSpotType spotType;
+    private Integer spots;
+    private Instant start;
+    private Instant end;
+    private Integer arrived;
+    private Integer held;
+}
@@ -0,0 +1,23 @@
+package assessment.parkinglot.dto;
+
+import assessment.parkinglot.enums.ParkingSpotType;
+import assessment.parkinglot.enums.VehicleType;
+import java.time.Instant;
+import java.util.Map;
+import lombok.*;
+
+@Builder
+@AllArgsConstructor
+@NoArgsConstructor
+@Data
+public class RevenueDTO {
+
+    private Instant from;
+    private Instant to;
+    private Long sessions;
+    private Long revenue;
+    private Long averageStaySeconds;
+    private Map<VehicleType, Long> sessionsByVehicleType;
+    private Map<VehicleType, Long> revenueByVehicleType;
+    private Map<ParkingSpotType, Long> revenueBySpotType;
+}
@@ -1,7 +1,11 @@
 package assessment.parkinglot.dto;
 
+import assessment.parkinglot.billing.ParkingSession;
 import assessment.parkinglot.entities.ParkingSpotEntity;
 import assessment.parkinglot.entities.VehicleEntity;
+import assessment.parkinglot.enums.ParkingSpotType;
+import assessment.parkinglot.enums.VehicleType;
+import java.time.Instant;
 import org.springframework.stereotype.Service;
 
 @Service
@@ -11,7 +15,26 @@ public class Translator {
     return VehicleDTO.builder().vehicleId(entity.getId()).type(entity.getType()).build();
   }
 
+  public VehicleDTO toDTO(Long vehicleId, VehicleType type) {
+    return VehicleDTO.builder().vehicleId(vehicleId).type(type).build();
+  }
+
+  public VehicleDTO toDTO(ParkingSession session) {
+    return VehicleDTO.builder()
+        .vehicleId(session.getVehicleId())
+        .type(session.getVehicleType())
+        .parked(Boolean.FALSE)
+        .parkedAt(Instant.ofEpochMilli(session.getParkedAt()))
+        .leftAt(Instant.ofEpochMilli(session.getLeftAt()))
+        .fee(session.getFee())
+        .build();
+  }
+
   public ParkingSpotDTO toDTO(ParkingSpotEntity entity) {
     return ParkingSpotDTO.builder().parkingSpotId(entity.getId()).type(entity.getType()).build();
   }
+
+  public ParkingSpotDTO toDTO(Long spotId, ParkingSpotType type) {
+    return ParkingSpotDTO.builder().parkingSpotId(spotId).type(type).build();
+  }
 }
@@ -1,6 +1,8 @@
 package assessment.parkinglot.dto;
 
 import assessment.parkinglot.enums.VehicleType;
+import com.fasterxml.jackson.annotation.JsonInclude;
+import java.time.Instant;
 import java.util.ArrayList;
 import java.util.List;
 import lombok.*;
@@ -16,4 +18,10 @@ public class VehicleDTO {
     private Boolean parked;
     @Builder.Default
     private List<ParkingSpotDTO> parkedOn= new ArrayList<>();
+    @JsonInclude(JsonInclude.Include.NON_NULL)
+    private Instant parkedAt;
+    @JsonInclude(JsonInclude.Include.NON_NULL)
+    private Instant leftAt;
+    @JsonInclude(JsonInclude.Include.NON_NULL)
+    private Long fee;
 }
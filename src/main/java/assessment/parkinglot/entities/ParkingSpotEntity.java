@@ -5,18 +5,37 @@ import jakarta.persistence.Entity;
 import jakarta.persistence.GeneratedValue;
 import jakarta.persistence.GenerationType;
 import jakarta.persistence.Id;
+import jakarta.persistence.Index;
+import jakarta.persistence.SequenceGenerator;
+import jakarta.persistence.Table;
 import lombok.*;
 
+/**
+ * A parking spot of the lot, taken by the vehicle of {@code vehicleId} or free when it is {@code
+ * null}.
+ *
+ * <p>Spots are looked up by their vehicle, on leaves and when listing the parked vehicles, and the
+ * free ones by their type, so both have an index. The free spots of a type are the entries of the
+ * type with a null vehicle in the composite index; H2 has no partial indexes to hold only them.
+ */
 @Entity
+@Table(
+    indexes = {
+      @Index(name = "idx_parking_spot_vehicle", columnList = "vehicle_id"),
+      @Index(name = "idx_parking_spot_type_vehicle", columnList = "type, vehicle_id")
+    })
 @Builder
 @AllArgsConstructor
 @NoArgsConstructor
 @Data
 public class ParkingSpotEntity {
   @Id
-  @GeneratedValue(strategy = GenerationType.IDENTITY)
+  @GeneratedValue(strategy = GenerationType.SEQUENCE, generator = "parking_spot_seq")
+  @SequenceGenerator(name = "parking_spot_seq", allocationSize = 500)
   private Long id;
 
   private ParkingSpotType type;
   private Long vehicleId;
+  private String level;
+  private String zone;
 }
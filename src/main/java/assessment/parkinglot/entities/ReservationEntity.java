@@ -0,0 +1,33 @@
+package assessment.parkinglot.entities;
+
+import assessment.parkinglot.enums.ParkingSpotType;
+import jakarta.persistence.Entity;
+import jakarta.persistence.GeneratedValue;
+import jakarta.persistence.GenerationType;
+import jakarta.persistence.Id;
+import jakarta.persistence.SequenceGenerator;
+import java.time.Instant;
+import lombok.*;
+
+/**
+ * A booking of {@code spots} spots of a type from {@code startsAt} to {@code endsAt}, of which
+ * {@code arrived} are already taken by the vehicles that arrived. Rows are deleted once the
+ * booking is over or cancelled.
+ */
+@Entity
+@Builder
+@AllArgsConstructor
+@NoArgsConstructor
+@Data
+public class ReservationEntity {
+  @Id
+  @GeneratedValue(strategy = GenerationType.SEQUENCE, generator = "reservation_seq")
+  @SequenceGenerator(name = "reservation_seq", allocationSize = 50)
+  private Long id;
+
+  private ParkingSpotType spotType;
+  private int spots;
+  private Instant startsAt;
+  private Instant endsAt;
+  private int arrived;
+}
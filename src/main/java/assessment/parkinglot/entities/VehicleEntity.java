@@ -5,6 +5,8 @@ import jakarta.persistence.Entity;
 import jakarta.persistence.GeneratedValue;
 import jakarta.persistence.GenerationType;
 import jakarta.persistence.Id;
+import jakarta.persistence.SequenceGenerator;
+import java.time.Instant;
 import lombok.*;
 
 @Entity
@@ -14,8 +16,11 @@ import lombok.*;
 @Getter
 public class VehicleEntity {
   @Id
-  @GeneratedValue(strategy = GenerationType.IDENTITY)
+  @GeneratedValue(strategy = GenerationType.SEQUENCE, generator = "vehicle_seq")
+  @SequenceGenerator(name = "vehicle_seq", allocationSize = 50)
   private Long id;
 
   private VehicleType type;
+
+  private Instant parkedAt;
 }
@@ -0,0 +1,7 @@
+package assessment.parkinglot.enums;
+
+public enum AllocationStrategyType {
+  FIRST_FIT,
+  BEST_FIT,
+  UTILIZATION_AWARE
+}
@@ -8,11 +8,22 @@ import lombok.Getter;
 public enum ErrorCode {
   UNKNOWN_PARKING_SPOT(4001, "The requested Parking Spot Type is unknown"),
   UNKNOWN_VEHICLE_TYPE(4002, "The requested Vehicle Type is unknown"),
+  INVALID_PAGE_SIZE(4003, "The requested page size is out of range"),
+  INVALID_BATCH_SIZE(4004, "The requested batch size is out of range"),
+  UNKNOWN_ALLOCATION_STRATEGY(4005, "The requested allocation strategy is unknown"),
+  UNKNOWN_HISTORY_RESOLUTION(4006, "The requested history resolution is unknown"),
+  INVALID_RESERVATION(4007, "The requested reservation window or amount of spots is out of range"),
+  NO_HELD_SPACE(4008, "The reservation holds no room for this vehicle right now"),
+  INVALID_TIME_RANGE(4009, "The requested time range is invalid"),
   VEHICLE_NOT_FOUND(4401, "The requested vehicle to leave is not parked"),
+  RESERVATION_NOT_FOUND(4402, "The requested reservation does not exist or is over"),
   UNKNOWN_ERROR(5000, "An unknown error has occurred"),
   NO_SPACE_TO_PARK(5001, "There is no space to park this vehicle"),
   UNABLE_TO_PARK(5002, "There was an error at parking. Vehicle not parked"),
-  UNABLE_TO_LEAVE_PARK(5003, "There was an error at leaving park lot. Vehicle is still parked");
+  UNABLE_TO_LEAVE_PARK(5003, "There was an error at leaving park lot. Vehicle is still parked"),
+  NO_SPACE_TO_RESERVE(5004, "There is no room left to reserve these spots for this window"),
+  UNABLE_TO_READ_SESSIONS(5005, "There was an error at reading the archived parking sessions"),
+  PARKING_QUEUE_FULL(5006, "There is no space to park this vehicle and too many are already waiting");
 
   private Integer code;
   private String message;
@@ -0,0 +1,7 @@
+package assessment.parkinglot.enums;
+
+public enum HistoryResolution {
+  MINUTE,
+  HOUR,
+  DAY
+}
@@ -0,0 +1,252 @@
+package assessment.parkinglot.feed;
+
+import assessment.parkinglot.allocation.SpotAllocator;
+import assessment.parkinglot.controller.response.OccupancyUpdateResponse;
+import assessment.parkinglot.enums.ParkingSpotType;
+import assessment.parkinglot.enums.VehicleType;
+import assessment.parkinglot.history.OccupancyRecorder;
+import com.fasterxml.jackson.core.JsonProcessingException;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import jakarta.annotation.PreDestroy;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.time.Duration;
+import java.time.Instant;
+import java.util.EnumMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.locks.ReentrantLock;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.http.MediaType;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Component;
+import org.springframework.web.servlet.mvc.method.annotation.ResponseBodyEmitter;
+
+/**
+ * Pushes the occupancy of the lot to its subscribers as Server-Sent Events: the free spots of each
+ * type, and the parks and leaves of each vehicle type since the previous update.
+ *
+ * <p>Every {@code parking.feed.interval} the changes since the previous update, however many parks
+ * and leaves they hold, are coalesced into a single event, and nothing is sent when nothing
+ * changed. The event is serialized once into a byte array holding the whole frame, which is then
+ * written as is to every subscriber, so a subscriber costs a socket write per update and nothing
+ * else. A new subscriber gets the latest event right away.
+ *
+ * <p>The broadcast only queues the frame for each subscriber, and the frames are written by a
+ * virtual thread of the subscriber, so a client that reads slowly only holds up its own thread,
+ * never the scheduler nor the other clients. A subscriber that falls {@code parking.feed.buffer}
+ * frames behind is dropped.
+ *
+ * <p>Subscriptions end cleanly after {@code parking.feed.timeout}, after which the clients
+ * reconnect, as browsers do on their own, and a subscriber that cannot be written to is dropped.
+ * Parks and leaves come from the {@link OccupancyRecorder}, so they stay at zero while the history
+ * is off.
+ */
+@Component
+@Slf4j
+public class OccupancyFeed {
+
+  private static final ParkingSpotType[] SPOT_TYPES = ParkingSpotType.values();
+  private static final VehicleType[] VEHICLE_TYPES = VehicleType.values();
+
+  @Autowired SpotAllocator spotAllocator;
+  @Autowired OccupancyRecorder occupancyRecorder;
+  @Autowired ObjectMapper objectMapper;
+
+  @Value("${parking.feed.timeout}")
+  Duration timeout;
+
+  @Value("${parking.feed.buffer}")
+  int buffer;
+
+  ExecutorService sender =
+      Executors.newThreadPerTaskExecutor(Thread.ofVirtual().name("occupancy-feed-", 0).factory());
+
+  private final Map<ResponseBodyEmitter, Subscriber> subscribers = new ConcurrentHashMap<>();
+  private final ReentrantLock lock = new ReentrantLock();
+  private final int[] freeSpots = new int[SPOT_TYPES.length];
+  private final long[] parks = new long[VEHICLE_TYPES.length];
+  private final long[] leaves = new long[VEHICLE_TYPES.length];
+  private long sequence;
+  private byte[] latest;
+
+  /**
+   * Subscribes a new client to the feed.
+   *
+   * @return The emitter of the subscription, to be returned by the controller.
+   */
+  public ResponseBodyEmitter subscribe() {
+    return this.subscribe(new ResponseBodyEmitter(timeout.toMillis()));
+  }
+
+  /**
+   * Subscribes a client to the feed through the given emitter, and sends it the latest event.
+   *
+   * @param emitter The emitter of the subscription.
+   * @return The same emitter.
+   */
+  public ResponseBodyEmitter subscribe(ResponseBodyEmitter emitter) {
+    emitter.onTimeout(emitter::complete);
+    emitter.onCompletion(() -> this.drop(emitter));
+    emitter.onError(e -> this.drop(emitter));
+
+    Subscriber subscriber = new Subscriber(emitter);
+    lock.lock();
+    try {
+      subscribers.put(emitter, subscriber);
+      if (latest != null) {
+        subscriber.offer(latest);
+      }
+    } finally {
+      lock.unlock();
+    }
+    return emitter;
+  }
+
+  /**
+   * Queues the changes since the previous update, if any, for every subscriber. The lock is only
+   * held to build the frame, so subscribing never waits for a write.
+   */
+  @Scheduled(fixedRateString = "${parking.feed.interval}")
+  public void broadcast() {
+    byte[] frame;
+    List<Subscriber> targets;
+    lock.lock();
+    try {
+      frame = this.nextFrame();
+      if (frame == null) {
+        return;
+      }
+      latest = frame;
+      targets = List.copyOf(subscribers.values());
+    } finally {
+      lock.unlock();
+    }
+    for (Subscriber subscriber : targets) {
+      if (!subscriber.offer(frame)) {
+        log.debug("Dropping an occupancy feed subscriber {} frames behind", buffer);
+        this.drop(subscriber.emitter);
+        sender.execute(subscriber.emitter::complete);
+      }
+    }
+  }
+
+  public int subscribers() {
+    return subscribers.size();
+  }
+
+  /**
+   * Builds the frame of the next event, from the changes since the previous one.
+   *
+   * @return The frame, or {@code null} if nothing changed.
+   */
+  private byte[] nextFrame() {
+    boolean changed = latest == null;
+
+    Map<ParkingSpotType, Integer> free = new EnumMap<>(ParkingSpotType.class);
+    for (int t = 0; t < SPOT_TYPES.length; t++) {
+      int available = spotAllocator.available(SPOT_TYPES[t]);
+      changed |= available != freeSpots[t];
+      freeSpots[t] = available;
+      free.put(SPOT_TYPES[t], available);
+    }
+
+    Map<VehicleType, Long> parked = new EnumMap<>(VehicleType.class);
+    Map<VehicleType, Long> left = new EnumMap<>(VehicleType.class);
+    for (int v = 0; v < VEHICLE_TYPES.length; v++) {
+      long parkTotal = occupancyRecorder.parks(VEHICLE_TYPES[v]);
+      long leaveTotal = occupancyRecorder.leaves(VEHICLE_TYPES[v]);
+      changed |= parkTotal != parks[v] || leaveTotal != leaves[v];
+      parked.put(VEHICLE_TYPES[v], parkTotal - parks[v]);
+      left.put(VEHICLE_TYPES[v], leaveTotal - leaves[v]);
+      parks[v] = parkTotal;
+      leaves[v] = leaveTotal;
+    }
+    if (!changed) {
+      return null;
+    }
+
+    OccupancyUpdateResponse update =
+        OccupancyUpdateResponse.builder()
+            .sequence(++sequence)
+            .time(Instant.now())
+            .freeSpots(free)
+            .parks(parked)
+            .leaves(left)
+            .build();
+    try {
+      return ("id: " + sequence + "\nevent: occupancy\ndata: "
+              + objectMapper.writeValueAsString(update) + "\n\n")
+          .getBytes(StandardCharsets.UTF_8);
+    } catch (JsonProcessingException e) {
+      throw new IllegalStateException("Unable to serialize the occupancy update", e);
+    }
+  }
+
+  @PreDestroy
+  public void close() {
+    sender.shutdownNow();
+  }
+
+  private void drop(ResponseBodyEmitter emitter) {
+    subscribers.remove(emitter);
+  }
+
+  /** A subscriber, with the frames not yet written to it. */
+  private final class Subscriber implements Runnable {
+
+    private final ResponseBodyEmitter emitter;
+    private final BlockingQueue<byte[]> pending = new LinkedBlockingQueue<>(Math.max(1, buffer));
+    private final AtomicBoolean writing = new AtomicBoolean();
+
+    private Subscriber(ResponseBodyEmitter emitter) {
+      this.emitter = emitter;
+    }
+
+    /**
+     * Queues a frame, and starts writing the queued frames unless a thread already does.
+     *
+     * @return {@code false} if the subscriber already has {@code parking.feed.buffer} frames
+     *     queued.
+     */
+    boolean offer(byte[] frame) {
+      if (!pending.offer(frame)) {
+        return false;
+      }
+      if (writing.compareAndSet(false, true)) {
+        sender.execute(this);
+      }
+      return true;
+    }
+
+    /**
+     * Writes the queued frames in order, dropping the subscriber if that fails. The container then
+     * completes the request on its own.
+     */
+    @Override
+    public void run() {
+      do {
+        byte[] frame;
+        while ((frame = pending.poll()) != null) {
+          try {
+            emitter.send(frame, MediaType.APPLICATION_OCTET_STREAM);
+          } catch (IOException | IllegalStateException e) {
+            log.debug("Dropping an occupancy feed subscriber: {}", e.getMessage());
+            drop(emitter);
+            pending.clear();
+            return;
+          }
+        }
+        writing.set(false);
+      } while (!pending.isEmpty() && writing.compareAndSet(false, true));
+    }
+  }
+}
@@ -0,0 +1,266 @@
+package assessment.parkinglot.history;
+
+import assessment.parkinglot.allocation.SpotAllocator;
+import assessment.parkinglot.domain.ParkingStatus;
+import assessment.parkinglot.enums.HistoryResolution;
+import assessment.parkinglot.enums.ParkingSpotType;
+import assessment.parkinglot.enums.VehicleType;
+import java.time.Duration;
+import java.time.Instant;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.atomic.LongAccumulator;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.concurrent.locks.StampedLock;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Component;
+
+/**
+ * Occupancy history of the lot, by {@link ParkingSpotType}, and parks, leaves and dwell times, by
+ * {@link VehicleType}, in rollups of one minute, one hour and one day.
+ *
+ * <p>A park or a leave only bumps striped counters, so recording never allocates nor blocks. Every
+ * {@code parking.history.sample-interval} what the counters gained since the previous sample goes,
+ * together with the taken spots of the {@link SpotAllocator}, into the open minute of a {@link
+ * Rollup}, which closes into the hour and the hour into the day. Each rollup is a fixed-size ring
+ * of primitive rows, so with the default retention of a day of minutes, a month of hours and a
+ * year of days the whole history takes about half a megabyte, whatever the traffic.
+ *
+ * <p>The dwell time of a leaving vehicle is measured from the time it parked at, which every
+ * vehicle carries.
+ *
+ * <p>History is kept per process and lost on restart. In cluster mode every node records its own
+ * levels.
+ */
+@Component
+public class OccupancyRecorder {
+
+  private static final long MINUTE = Duration.ofMinutes(1).toMillis();
+  private static final long HOUR = Duration.ofHours(1).toMillis();
+  private static final long DAY = Duration.ofDays(1).toMillis();
+
+  private static final ParkingSpotType[] SPOT_TYPES = ParkingSpotType.values();
+  private static final VehicleType[] VEHICLE_TYPES = VehicleType.values();
+
+  private static final int TAKEN_SUM = 0;
+  private static final int SAMPLES = 1;
+  private static final int TAKEN_PEAK = 2;
+  private static final int SPOT_COLUMNS = 3;
+
+  private static final int PARKS = 0;
+  private static final int LEAVES = 1;
+  private static final int DWELL_COUNT = 2;
+  private static final int DWELL_SUM = 3;
+  private static final int DWELL_MAX = 4;
+  private static final int VEHICLE_COLUMNS = 5;
+
+  private static final int VEHICLE_OFFSET = SPOT_TYPES.length * SPOT_COLUMNS;
+  private static final int WIDTH = VEHICLE_OFFSET + VEHICLE_TYPES.length * VEHICLE_COLUMNS;
+
+  private final SpotAllocator spotAllocator;
+  private final boolean enabled;
+
+  private final LongAdder[] parks = adders();
+  private final LongAdder[] leaves = adders();
+  private final long[] sampledParks = new long[VEHICLE_TYPES.length];
+  private final long[] sampledLeaves = new long[VEHICLE_TYPES.length];
+  private final LongAdder[] dwellCounts = adders();
+  private final LongAdder[] dwellSums = adders();
+  private final LongAccumulator[] dwellMaximums = new LongAccumulator[VEHICLE_TYPES.length];
+
+  private final StampedLock lock = new StampedLock();
+  private final long[] sample = new long[WIDTH];
+  private final Rollup days;
+  private final Rollup hours;
+  private final Rollup minutes;
+
+  public OccupancyRecorder(
+      SpotAllocator spotAllocator,
+      @Value("${parking.history.enabled:true}") boolean enabled,
+      @Value("${parking.history.minutes}") int minutes,
+      @Value("${parking.history.hours}") int hours,
+      @Value("${parking.history.days}") int days) {
+    this.spotAllocator = spotAllocator;
+    this.enabled = enabled;
+    for (int i = 0; i < dwellMaximums.length; i++) {
+      dwellMaximums[i] = new LongAccumulator(Math::max, 0);
+    }
+
+    boolean[] maximums = new boolean[WIDTH];
+    for (int t = 0; t < SPOT_TYPES.length; t++) {
+      maximums[t * SPOT_COLUMNS + TAKEN_PEAK] = true;
+    }
+    for (int v = 0; v < VEHICLE_TYPES.length; v++) {
+      maximums[VEHICLE_OFFSET + v * VEHICLE_COLUMNS + DWELL_MAX] = true;
+    }
+    this.days = new Rollup(DAY, days, maximums, null);
+    this.hours = new Rollup(HOUR, hours, maximums, this.days);
+    this.minutes = new Rollup(MINUTE, minutes, maximums, this.hours);
+  }
+
+  /**
+   * Records a park.
+   *
+   * @param type The type of the vehicle.
+   */
+  public void park(VehicleType type) {
+    if (!enabled) {
+      return;
+    }
+    parks[type.ordinal()].increment();
+  }
+
+  /**
+   * Records a leave, and the time the vehicle stayed.
+   *
+   * @param type The type of the vehicle.
+   * @param parkedAt The time the vehicle parked at, in epoch milliseconds.
+   */
+  public void leave(VehicleType type, long parkedAt) {
+    if (!enabled) {
+      return;
+    }
+    leaves[type.ordinal()].increment();
+    long dwell = Math.max(0, System.currentTimeMillis() - parkedAt);
+    dwellCounts[type.ordinal()].increment();
+    dwellSums[type.ordinal()].add(dwell);
+    dwellMaximums[type.ordinal()].accumulate(dwell);
+  }
+
+  /**
+   * Counts the parks recorded since the start.
+   *
+   * @param type The type of the vehicles.
+   * @return The amount of parks.
+   */
+  public long parks(VehicleType type) {
+    return parks[type.ordinal()].sum();
+  }
+
+  /**
+   * Counts the leaves recorded since the start.
+   *
+   * @param type The type of the vehicles.
+   * @return The amount of leaves.
+   */
+  public long leaves(VehicleType type) {
+    return leaves[type.ordinal()].sum();
+  }
+
+  @Scheduled(
+      initialDelayString = "${parking.history.sample-interval}",
+      fixedRateString = "${parking.history.sample-interval}")
+  public void sample() {
+    this.sample(System.currentTimeMillis());
+  }
+
+  /**
+   * Adds what the counters gained since the previous sample to the open minute, with the spots
+   * taken right now.
+   *
+   * @param now The time of the sample, in epoch milliseconds.
+   */
+  public void sample(long now) {
+    if (!enabled) {
+      return;
+    }
+    long stamp = lock.writeLock();
+    try {
+      for (int t = 0; t < SPOT_TYPES.length; t++) {
+        ParkingSpotType type = SPOT_TYPES[t];
+        long taken = spotAllocator.capacity(type) - spotAllocator.available(type);
+        sample[t * SPOT_COLUMNS + TAKEN_SUM] = taken;
+        sample[t * SPOT_COLUMNS + SAMPLES] = 1;
+        sample[t * SPOT_COLUMNS + TAKEN_PEAK] = taken;
+      }
+      for (int v = 0; v < VEHICLE_TYPES.length; v++) {
+        int column = VEHICLE_OFFSET + v * VEHICLE_COLUMNS;
+        long parked = parks[v].sum();
+        long left = leaves[v].sum();
+        sample[column + PARKS] = parked - sampledParks[v];
+        sample[column + LEAVES] = left - sampledLeaves[v];
+        sampledParks[v] = parked;
+        sampledLeaves[v] = left;
+        sample[column + DWELL_COUNT] = dwellCounts[v].sumThenReset();
+        sample[column + DWELL_SUM] = dwellSums[v].sumThenReset();
+        sample[column + DWELL_MAX] = dwellMaximums[v].getThenReset();
+      }
+      minutes.add(now, sample);
+    } finally {
+      lock.unlockWrite(stamp);
+    }
+  }
+
+  /**
+   * Reads the latest periods of a rollup.
+   *
+   * @param resolution The rollup.
+   * @param limit The maximum amount of periods.
+   * @return The periods, from the oldest to the newest, which is the one still open.
+   */
+  public List<ParkingStatus> history(HistoryResolution resolution, int limit) {
+    Rollup rollup =
+        switch (resolution) {
+          case MINUTE -> minutes;
+          case HOUR -> hours;
+          case DAY -> days;
+        };
+
+    List<ParkingStatus> periods = new ArrayList<>(limit);
+    long stamp = lock.readLock();
+    try {
+      rollup.read(
+          limit,
+          (start, values, offset) ->
+              periods.add(toStatus(start, start + rollup.resolution(), values, offset)));
+    } finally {
+      lock.unlockRead(stamp);
+    }
+    return periods;
+  }
+
+  private static ParkingStatus toStatus(long start, long end, long[] values, int offset) {
+    List<ParkingStatus.SpotOccupancy> spots = new ArrayList<>(SPOT_TYPES.length);
+    for (int t = 0; t < SPOT_TYPES.length; t++) {
+      int column = offset + t * SPOT_COLUMNS;
+      long samples = values[column + SAMPLES];
+      spots.add(
+          ParkingStatus.SpotOccupancy.builder()
+              .type(SPOT_TYPES[t])
+              .averageTaken(samples == 0 ? null : (double) values[column + TAKEN_SUM] / samples)
+              .peakTaken(samples == 0 ? null : values[column + TAKEN_PEAK])
+              .build());
+    }
+
+    List<ParkingStatus.VehicleTraffic> vehicles = new ArrayList<>(VEHICLE_TYPES.length);
+    for (int v = 0; v < VEHICLE_TYPES.length; v++) {
+      int column = offset + VEHICLE_OFFSET + v * VEHICLE_COLUMNS;
+      long dwellCount = values[column + DWELL_COUNT];
+      vehicles.add(
+          ParkingStatus.VehicleTraffic.builder()
+              .type(VEHICLE_TYPES[v])
+              .parks(values[column + PARKS])
+              .leaves(values[column + LEAVES])
+              .averageDwellSeconds(
+                  dwellCount == 0 ? null : values[column + DWELL_SUM] / 1000.0 / dwellCount)
+              .maxDwellSeconds(dwellCount == 0 ? null : values[column + DWELL_MAX] / 1000.0)
+              .build());
+    }
+
+    return ParkingStatus.builder()
+        .start(Instant.ofEpochMilli(start))
+        .end(Instant.ofEpochMilli(end))
+        .spots(spots)
+        .vehicles(vehicles)
+        .build();
+  }
+
+  private static LongAdder[] adders() {
+    LongAdder[] adders = new LongAdder[VEHICLE_TYPES.length];
+    for (int i = 0; i < adders.length; i++) {
+      adders[i] = new LongAdder();
+    }
+    return adders;
+  }
+}
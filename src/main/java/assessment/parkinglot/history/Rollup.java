@@ -0,0 +1,105 @@
+package assessment.parkinglot.history;
+
+import java.util.Arrays;
+
+/**
+ * Fixed-size ring of the periods of one resolution of the {@link OccupancyRecorder}, such as the
+ * last 1440 minutes.
+ *
+ * <p>Every period is a row of {@code long} columns, all of them kept in a single flat array, so the
+ * ring never allocates once created. Samples are merged into the open period, summing every column
+ * but the ones flagged as maximums, and when a sample falls in a later period the open one is
+ * closed into the ring, overwriting the oldest one, and merged in turn into the next, coarser,
+ * rollup. Periods are aligned on the epoch, so days are UTC days.
+ *
+ * <p>Not thread-safe, the recorder serializes every access.
+ */
+class Rollup {
+
+  /** Receives the periods of the ring, from the oldest to the newest. */
+  interface PeriodConsumer {
+    void accept(long start, long[] values, int offset);
+  }
+
+  private final long resolution;
+  private final int capacity;
+  private final boolean[] maximums;
+  private final int width;
+  private final long[] starts;
+  private final long[] values;
+  private final long[] open;
+  private final Rollup next;
+  private long closed;
+  private long openStart = -1;
+
+  /**
+   * Creates an empty rollup.
+   *
+   * @param resolution The length of a period, in milliseconds.
+   * @param capacity The amount of closed periods kept.
+   * @param maximums Whether each column holds a maximum instead of a sum.
+   * @param next The coarser rollup that closed periods are merged into, if any.
+   */
+  Rollup(long resolution, int capacity, boolean[] maximums, Rollup next) {
+    this.resolution = resolution;
+    this.capacity = capacity;
+    this.maximums = maximums;
+    this.width = maximums.length;
+    this.starts = new long[capacity];
+    this.values = new long[capacity * width];
+    this.open = new long[width];
+    this.next = next;
+  }
+
+  long resolution() {
+    return resolution;
+  }
+
+  /**
+   * Merges a sample into the period it falls in, closing the open period first if it is an
+   * earlier one.
+   *
+   * @param time The time of the sample, in epoch milliseconds.
+   * @param sample The columns of the sample.
+   */
+  void add(long time, long[] sample) {
+    long start = time - Math.floorMod(time, resolution);
+    if (start != openStart) {
+      if (openStart >= 0) {
+        this.close();
+      }
+      openStart = start;
+    }
+    for (int i = 0; i < width; i++) {
+      open[i] = maximums[i] ? Math.max(open[i], sample[i]) : open[i] + sample[i];
+    }
+  }
+
+  /**
+   * Hands the latest periods to the consumer, the open one included.
+   *
+   * @param limit The maximum amount of periods.
+   * @param consumer The consumer of each period, from the oldest to the newest.
+   */
+  void read(int limit, PeriodConsumer consumer) {
+    int kept = (int) Math.min(closed, capacity);
+    int fromRing = Math.min(kept, openStart < 0 ? limit : limit - 1);
+    for (long period = closed - fromRing; period < closed; period++) {
+      int slot = (int) (period % capacity);
+      consumer.accept(starts[slot], values, slot * width);
+    }
+    if (openStart >= 0 && limit > 0) {
+      consumer.accept(openStart, open, 0);
+    }
+  }
+
+  private void close() {
+    int slot = (int) (closed++ % capacity);
+    starts[slot] = openStart;
+    System.arraycopy(open, 0, values, slot * width, width);
+    if (next != null) {
+      next.add(openStart, open);
+    }
+    Arrays.fill(open, 0);
+  }
+}
@@ -0,0 +1,136 @@
+package assessment.parkinglot.journal;
+
+import assessment.parkinglot.enums.ParkingSpotType;
+import assessment.parkinglot.enums.VehicleType;
+import java.nio.ByteBuffer;
+import java.util.zip.CRC32C;
+import lombok.AllArgsConstructor;
+import lombok.Getter;
+
+/**
+ * A park or a leave, as written to the {@link ParkingJournal}.
+ *
+ * <p>Both kinds carry the vehicle, all its spots and the time it parked at, so a leave can be
+ * applied, and billed, without looking the park up. On disk a record is {@code [length][crc][kind]
+ * [vehicle id][vehicle type][spot type][spot count][spot ids...][parked at]}, with the enums stored
+ * as their ordinal and a CRC-32C of everything after it.
+ */
+@AllArgsConstructor
+@Getter
+public class JournalRecord {
+
+  public enum Kind {
+    PARK,
+    LEAVE
+  }
+
+  private static final int FIXED_SIZE =
+      Byte.BYTES + Long.BYTES + Byte.BYTES + Byte.BYTES + Short.BYTES;
+
+  private final Kind kind;
+  private final long vehicleId;
+  private final VehicleType vehicleType;
+  private final ParkingSpotType spotType;
+  private final long[] spotIds;
+
+  /** The time the vehicle parked at, in epoch milliseconds. */
+  private final long parkedAt;
+
+  public static JournalRecord park(
+      long vehicleId,
+      VehicleType vehicleType,
+      ParkingSpotType spotType,
+      long[] spotIds,
+      long parkedAt) {
+    return new JournalRecord(Kind.PARK, vehicleId, vehicleType, spotType, spotIds, parkedAt);
+  }
+
+  /**
+   * Creates the record that undoes this park.
+   *
+   * @return A leave of the same vehicle and spots.
+   */
+  public JournalRecord leave() {
+    return new JournalRecord(Kind.LEAVE, vehicleId, vehicleType, spotType, spotIds, parkedAt);
+  }
+
+  /** Size of the record on disk, length and checksum included. */
+  int size() {
+    return 2 * Integer.BYTES + FIXED_SIZE + spotIds.length * Long.BYTES + Long.BYTES;
+  }
+
+  void writeTo(ByteBuffer buffer, CRC32C crc) {
+    int length = FIXED_SIZE + spotIds.length * Long.BYTES + Long.BYTES;
+    buffer.putInt(length);
+    int crcPosition = buffer.position();
+    buffer.putInt(0);
+    buffer.put((byte) kind.ordinal());
+    buffer.putLong(vehicleId);
+    buffer.put((byte) vehicleType.ordinal());
+    buffer.put((byte) spotType.ordinal());
+    buffer.putShort((short) spotIds.length);
+    for (long spotId : spotIds) {
+      buffer.putLong(spotId);
+    }
+    buffer.putLong(parkedAt);
+
+    crc.reset();
+    crc.update(buffer.slice(crcPosition + Integer.BYTES, length));
+    buffer.putInt(crcPosition, (int) crc.getValue());
+  }
+
+  /**
+   * Reads the record at the position of the buffer, advancing it.
+   *
+   * @param buffer The journal contents.
+   * @return The record, or {@code null} if the buffer ends in the middle of a record or holds
+   *     something that is not a record, which is what a crash in the middle of a write leaves.
+   */
+  static JournalRecord readFrom(ByteBuffer buffer, CRC32C crc) {
+    if (buffer.remaining() < 2 * Integer.BYTES + FIXED_SIZE) {
+      return null;
+    }
+    int start = buffer.position();
+    int length = buffer.getInt();
+    int checksum = buffer.getInt();
+    if (length < FIXED_SIZE || length > buffer.remaining()) {
+      buffer.position(start);
+      return null;
+    }
+    crc.reset();
+    crc.update(buffer.slice(buffer.position(), length));
+    if ((int) crc.getValue() != checksum) {
+      buffer.position(start);
+      return null;
+    }
+
+    int kind = buffer.get();
+    long vehicleId = buffer.getLong();
+    int vehicleType = buffer.get();
+    int spotType = buffer.get();
+    int count = buffer.getShort();
+    if (kind < 0
+        || kind >= Kind.values().length
+        || vehicleType < 0
+        || vehicleType >= VehicleType.values().length
+        || spotType < 0
+        || spotType >= ParkingSpotType.values().length
+        || length != FIXED_SIZE + count * Long.BYTES + Long.BYTES) {
+      buffer.position(start);
+      return null;
+    }
+
+    long[] spotIds = new long[count];
+    for (int i = 0; i < count; i++) {
+      spotIds[i] = buffer.getLong();
+    }
+    long parkedAt = buffer.getLong();
+    return new JournalRecord(
+        Kind.values()[kind],
+        vehicleId,
+        VehicleType.values()[vehicleType],
+        ParkingSpotType.values()[spotType],
+        spotIds,
+        parkedAt);
+  }
+}
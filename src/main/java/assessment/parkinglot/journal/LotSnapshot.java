@@ -0,0 +1,331 @@
+package assessment.parkinglot.journal;
+
+import assessment.parkinglot.entities.ParkingSpotEntity;
+import assessment.parkinglot.enums.ParkingSpotType;
+import assessment.parkinglot.enums.VehicleType;
+import java.io.IOException;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.util.Arrays;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.NavigableMap;
+import java.util.Objects;
+import java.util.TreeMap;
+import java.util.zip.CRC32C;
+import lombok.Getter;
+
+/**
+ * Full state of the lot as of a segment of the {@link ParkingJournal}: every spot with its type,
+ * level and zone, a bitmap of the taken ones, and the spots of every parked vehicle.
+ *
+ * <p>A snapshot is brought forward by applying the records of the following segments to it, and is
+ * written as a single binary file, through a memory mapping, to a temporary file that then
+ * replaces the previous snapshot. On disk it is a header, the level and zone names, the spot ids,
+ * types and zones as flat arrays, the taken bitmap, the parked vehicles in the journal record
+ * layout, and a CRC-32C of all of it, so reading it back is a handful of bulk copies.
+ */
+@Getter
+public class LotSnapshot {
+
+  private static final int MAGIC = 0x504B4C53;
+  private static final int VERSION = 2;
+  private static final int HEADER_SIZE = 5 * Integer.BYTES + 2 * Long.BYTES;
+  private static final int VEHICLE_SIZE =
+      Long.BYTES + Byte.BYTES + Byte.BYTES + Short.BYTES + Long.BYTES;
+
+  private long nextSegment;
+  private long nextVehicleId;
+  private final long[] spotIds;
+  private final byte[] spotTypes;
+  private final int[] spotZones;
+  private final String[] levels;
+  private final String[] zones;
+  private final long[] taken;
+  private final NavigableMap<Long, JournalRecord> parks;
+
+  private LotSnapshot(
+      long nextSegment,
+      long nextVehicleId,
+      long[] spotIds,
+      byte[] spotTypes,
+      int[] spotZones,
+      String[] levels,
+      String[] zones,
+      long[] taken,
+      NavigableMap<Long, JournalRecord> parks) {
+    this.nextSegment = nextSegment;
+    this.nextVehicleId = nextVehicleId;
+    this.spotIds = spotIds;
+    this.spotTypes = spotTypes;
+    this.spotZones = spotZones;
+    this.levels = levels;
+    this.zones = zones;
+    this.taken = taken;
+    this.parks = parks;
+  }
+
+  /**
+   * Creates the snapshot of an empty lot, before the first segment of the journal.
+   *
+   * @param spots Every spot of the lot, sorted by ID.
+   * @return The snapshot.
+   */
+  public static LotSnapshot empty(List<ParkingSpotEntity> spots) {
+    long[] spotIds = new long[spots.size()];
+    byte[] spotTypes = new byte[spots.size()];
+    int[] spotZones = new int[spots.size()];
+    Map<List<String>, Integer> zoneIndexes = new LinkedHashMap<>();
+
+    for (int i = 0; i < spotIds.length; i++) {
+      ParkingSpotEntity spot = spots.get(i);
+      spotIds[i] = spot.getId();
+      spotTypes[i] = (byte) spot.getType().ordinal();
+      spotZones[i] =
+          zoneIndexes.computeIfAbsent(
+              List.of(
+                  Objects.toString(spot.getLevel(), ""), Objects.toString(spot.getZone(), "")),
+              key -> zoneIndexes.size());
+    }
+
+    String[] levels = new String[zoneIndexes.size()];
+    String[] zones = new String[zoneIndexes.size()];
+    zoneIndexes.forEach(
+        (zone, index) -> {
+          levels[index] = zone.get(0);
+          zones[index] = zone.get(1);
+        });
+
+    return new LotSnapshot(
+        0,
+        1,
+        spotIds,
+        spotTypes,
+        spotZones,
+        levels,
+        zones,
+        newBitmap(spotIds.length),
+        new TreeMap<>());
+  }
+
+  /**
+   * Applies a park or a leave to the snapshot. Applying a park already applied, or a leave of a
+   * vehicle that is not parked, changes nothing.
+   *
+   * @param record The park or leave.
+   */
+  public void apply(JournalRecord record) {
+    nextVehicleId = Math.max(nextVehicleId, record.getVehicleId() + 1);
+    if (JournalRecord.Kind.PARK.equals(record.getKind())) {
+      parks.put(record.getVehicleId(), record);
+      this.mark(record.getSpotIds(), true);
+    } else if (parks.remove(record.getVehicleId()) != null) {
+      this.mark(record.getSpotIds(), false);
+    }
+  }
+
+  /**
+   * Marks the snapshot as holding every record of the segments before the given one.
+   *
+   * @param nextSegment The first segment not applied to the snapshot.
+   */
+  public void coverUpTo(long nextSegment) {
+    this.nextSegment = nextSegment;
+  }
+
+  public int size() {
+    return spotIds.length;
+  }
+
+  public ParkingSpotType spotType(int index) {
+    return ParkingSpotType.values()[spotTypes[index]];
+  }
+
+  public String spotLevel(int index) {
+    return levels[spotZones[index]];
+  }
+
+  public boolean isTaken(int index) {
+    return (taken[index >>> 6] & (1L << index)) != 0;
+  }
+
+  /**
+   * Rebuilds the entity of a spot.
+   *
+   * @param index The position of the spot.
+   * @param vehicleId The vehicle parked on it, if any.
+   * @return The spot.
+   */
+  public ParkingSpotEntity spot(int index, Long vehicleId) {
+    return ParkingSpotEntity.builder()
+        .id(spotIds[index])
+        .type(this.spotType(index))
+        .vehicleId(vehicleId)
+        .level(levels[spotZones[index]])
+        .zone(zones[spotZones[index]])
+        .build();
+  }
+
+  /**
+   * Writes the snapshot, replacing the file at the given path only once it is complete.
+   *
+   * @param path The snapshot file.
+   */
+  public void write(Path path) throws IOException {
+    if (path.getParent() != null) {
+      Files.createDirectories(path.getParent());
+    }
+    byte[][] names = new byte[2 * levels.length][];
+    long size = HEADER_SIZE + Integer.BYTES;
+    for (int i = 0; i < levels.length; i++) {
+      names[2 * i] = levels[i].getBytes(StandardCharsets.UTF_8);
+      names[2 * i + 1] = zones[i].getBytes(StandardCharsets.UTF_8);
+      size += 2 * Integer.BYTES + names[2 * i].length + names[2 * i + 1].length;
+    }
+    size += (long) spotIds.length * (Long.BYTES + Byte.BYTES + Integer.BYTES);
+    size += (long) taken.length * Long.BYTES;
+    for (JournalRecord park : parks.values()) {
+      size += VEHICLE_SIZE + (long) park.getSpotIds().length * Long.BYTES;
+    }
+
+    Path temporary = path.resolveSibling(path.getFileName() + ".tmp");
+    try (FileChannel channel =
+        FileChannel.open(
+            temporary,
+            StandardOpenOption.CREATE,
+            StandardOpenOption.TRUNCATE_EXISTING,
+            StandardOpenOption.READ,
+            StandardOpenOption.WRITE)) {
+      MappedByteBuffer buffer = channel.map(FileChannel.MapMode.READ_WRITE, 0, size);
+      buffer.putInt(MAGIC).putInt(VERSION).putLong(nextSegment).putLong(nextVehicleId);
+      buffer.putInt(spotIds.length).putInt(levels.length).putInt(parks.size());
+      for (byte[] name : names) {
+        buffer.putInt(name.length).put(name);
+      }
+
+      buffer.asLongBuffer().put(spotIds);
+      buffer.position(buffer.position() + spotIds.length * Long.BYTES);
+      buffer.put(spotTypes);
+      buffer.asIntBuffer().put(spotZones);
+      buffer.position(buffer.position() + spotZones.length * Integer.BYTES);
+      buffer.asLongBuffer().put(taken);
+      buffer.position(buffer.position() + taken.length * Long.BYTES);
+
+      for (JournalRecord park : parks.values()) {
+        buffer.putLong(park.getVehicleId());
+        buffer.put((byte) park.getVehicleType().ordinal());
+        buffer.put((byte) park.getSpotType().ordinal());
+        buffer.putShort((short) park.getSpotIds().length);
+        for (long spotId : park.getSpotIds()) {
+          buffer.putLong(spotId);
+        }
+        buffer.putLong(park.getParkedAt());
+      }
+
+      CRC32C crc = new CRC32C();
+      crc.update(buffer.slice(0, buffer.position()));
+      buffer.putInt((int) crc.getValue());
+      buffer.force();
+    }
+    Files.move(
+        temporary, path, StandardCopyOption.ATOMIC_MOVE, StandardCopyOption.REPLACE_EXISTING);
+  }
+
+  /**
+   * Reads a snapshot through a memory mapping.
+   *
+   * @param path The snapshot file.
+   * @return The snapshot, or {@code null} if there is none.
+   * @throws IOException if the file cannot be read or is not a valid snapshot.
+   */
+  public static LotSnapshot read(Path path) throws IOException {
+    if (!Files.exists(path)) {
+      return null;
+    }
+    try (FileChannel channel = FileChannel.open(path, StandardOpenOption.READ)) {
+      long size = channel.size();
+      MappedByteBuffer buffer = channel.map(FileChannel.MapMode.READ_ONLY, 0, size);
+      int version =
+          size < HEADER_SIZE + Integer.BYTES || buffer.getInt() != MAGIC ? 0 : buffer.getInt();
+      if (version != VERSION) {
+        throw new IOException("Not a lot snapshot: " + path);
+      }
+      CRC32C crc = new CRC32C();
+      crc.update(buffer.slice(0, (int) size - Integer.BYTES));
+      if ((int) crc.getValue() != buffer.getInt((int) size - Integer.BYTES)) {
+        throw new IOException("Corrupt lot snapshot: " + path);
+      }
+
+      long nextSegment = buffer.getLong();
+      long nextVehicleId = buffer.getLong();
+      int spotCount = buffer.getInt();
+      int zoneCount = buffer.getInt();
+      int vehicleCount = buffer.getInt();
+
+      String[] levels = new String[zoneCount];
+      String[] zones = new String[zoneCount];
+      for (int i = 0; i < zoneCount; i++) {
+        levels[i] = readName(buffer);
+        zones[i] = readName(buffer);
+      }
+
+      long[] spotIds = new long[spotCount];
+      buffer.asLongBuffer().get(spotIds);
+      buffer.position(buffer.position() + spotCount * Long.BYTES);
+      byte[] spotTypes = new byte[spotCount];
+      buffer.get(spotTypes);
+      int[] spotZones = new int[spotCount];
+      buffer.asIntBuffer().get(spotZones);
+      buffer.position(buffer.position() + spotCount * Integer.BYTES);
+      long[] taken = newBitmap(spotCount);
+      buffer.asLongBuffer().get(taken);
+      buffer.position(buffer.position() + taken.length * Long.BYTES);
+
+      NavigableMap<Long, JournalRecord> parks = new TreeMap<>();
+      for (int i = 0; i < vehicleCount; i++) {
+        long vehicleId = buffer.getLong();
+        VehicleType vehicleType = VehicleType.values()[buffer.get()];
+        ParkingSpotType spotType = ParkingSpotType.values()[buffer.get()];
+        long[] parkedOn = new long[buffer.getShort()];
+        buffer.asLongBuffer().get(parkedOn);
+        buffer.position(buffer.position() + parkedOn.length * Long.BYTES);
+        long parkedAt = buffer.getLong();
+        parks.put(
+            vehicleId, JournalRecord.park(vehicleId, vehicleType, spotType, parkedOn, parkedAt));
+      }
+
+      return new LotSnapshot(
+          nextSegment, nextVehicleId, spotIds, spotTypes, spotZones, levels, zones, taken, parks);
+    }
+  }
+
+  private void mark(long[] parkedOn, boolean isTaken) {
+    for (long spotId : parkedOn) {
+      int index = Arrays.binarySearch(spotIds, spotId);
+      if (index < 0) {
+        continue;
+      }
+      if (isTaken) {
+        taken[index >>> 6] |= 1L << index;
+      } else {
+        taken[index >>> 6] &= ~(1L << index);
+      }
+    }
+  }
+
+  private static String readName(MappedByteBuffer buffer) {
+    byte[] name = new byte[buffer.getInt()];
+    buffer.get(name);
+    return new String(name, StandardCharsets.UTF_8);
+  }
+
+  private static long[] newBitmap(int size) {
+    return new long[(size + 63) >>> 6];
+  }
+}
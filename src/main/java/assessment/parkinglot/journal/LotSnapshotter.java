@@ -0,0 +1,93 @@
+package assessment.parkinglot.journal;
+
+import assessment.parkinglot.entities.ParkingSpotEntity;
+import assessment.parkinglot.repository.ParkingSpotRepository;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.locks.ReentrantLock;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.stereotype.Component;
+
+/**
+ * Keeps the {@link LotSnapshot} of the write-behind mode and compacts the {@link ParkingJournal}
+ * into it.
+ *
+ * <p>A compaction seals the current journal segment, reads the last snapshot back, applies the
+ * sealed segments to it and writes the result, and only then deletes those segments. It works on
+ * the files alone, so parks and leaves go on while it runs, only waiting for the segment switch.
+ */
+@Component
+@ConditionalOnProperty(name = "parking.persistence.mode", havingValue = "write-behind")
+@Slf4j
+public class LotSnapshotter {
+
+  @Autowired ParkingSpotRepository parkingSpotRepository;
+
+  @Value("${parking.snapshot.path}")
+  Path snapshotPath;
+
+  @Value("${parking.journal.directory}")
+  Path journalDirectory;
+
+  private final ReentrantLock lock = new ReentrantLock();
+
+  /** Whether a snapshot was written before, so the lot does not have to be created again. */
+  public boolean exists() {
+    return Files.exists(snapshotPath);
+  }
+
+  /**
+   * Loads the last snapshot or, if there is none yet, the empty lot already in the database.
+   *
+   * @return The snapshot, still missing the journal segments written after it.
+   */
+  public LotSnapshot load() throws IOException {
+    long start = System.nanoTime();
+    LotSnapshot snapshot = LotSnapshot.read(snapshotPath);
+    if (snapshot == null) {
+      List<ParkingSpotEntity> spots = new ArrayList<>();
+      parkingSpotRepository.forEachSpot(spots::add);
+      return LotSnapshot.empty(spots);
+    }
+
+    log.info(
+        "Read snapshot of {} spots and {} vehicles in {} ms",
+        snapshot.size(),
+        snapshot.getParks().size(),
+        (System.nanoTime() - start) / 1_000_000);
+    return snapshot;
+  }
+
+  /**
+   * Folds every record appended to the journal so far into a new snapshot, and deletes the
+   * segments that held them.
+   *
+   * @param journal The open journal.
+   */
+  public void compact(ParkingJournal journal) throws IOException {
+    lock.lock();
+    try {
+      long start = System.nanoTime();
+      long sealed = journal.roll();
+      LotSnapshot snapshot = this.load();
+      ParkingJournal.read(journalDirectory, snapshot.getNextSegment(), sealed, snapshot::apply);
+      snapshot.coverUpTo(sealed);
+      snapshot.write(snapshotPath);
+      journal.deleteBefore(sealed);
+
+      log.info(
+          "Wrote snapshot of {} spots and {} vehicles in {} ms",
+          snapshot.size(),
+          snapshot.getParks().size(),
+          (System.nanoTime() - start) / 1_000_000);
+    } finally {
+      lock.unlock();
+    }
+  }
+}
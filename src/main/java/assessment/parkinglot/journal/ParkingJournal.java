@@ -0,0 +1,313 @@
+package assessment.parkinglot.journal;
+
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.List;
+import java.util.concurrent.locks.Condition;
+import java.util.concurrent.locks.ReentrantLock;
+import java.util.function.Consumer;
+import java.util.stream.Stream;
+import java.util.zip.CRC32C;
+import lombok.extern.slf4j.Slf4j;
+
+/**
+ * Append-only log of {@link JournalRecord}s, written with group commit.
+ *
+ * <p>Appenders encode their records into a shared buffer and wait until it reaches the disk. The
+ * first appender to find no write in progress becomes the leader: it takes the buffer, writes it
+ * and forces it to disk outside the lock, while the records of the others pile up in the next
+ * buffer. One write and one fsync therefore cover every append that arrived while the previous one
+ * ran.
+ *
+ * <p>The log is a directory of numbered segment files. {@link #roll()} seals the current segment
+ * and continues in a new one, so sealed segments can be folded into a {@link LotSnapshot} and
+ * deleted while appends go on.
+ */
+@Slf4j
+public class ParkingJournal implements AutoCloseable {
+
+  private static final int INITIAL_BUFFER_SIZE = 64 * 1024;
+  private static final String SEGMENT_SUFFIX = ".journal";
+
+  private final Path directory;
+  private final boolean fsync;
+  private final CRC32C crc = new CRC32C();
+
+  private final ReentrantLock lock = new ReentrantLock();
+  private final Condition written = lock.newCondition();
+  private FileChannel channel;
+  private long segment;
+  private ByteBuffer pending = ByteBuffer.allocate(INITIAL_BUFFER_SIZE);
+  private ByteBuffer spare = ByteBuffer.allocate(INITIAL_BUFFER_SIZE);
+  private long appended;
+  private long durable;
+  private boolean writing;
+  private IOException failure;
+
+  private ParkingJournal(Path directory, boolean fsync, FileChannel channel, long segment) {
+    this.directory = directory;
+    this.fsync = fsync;
+    this.channel = channel;
+    this.segment = segment;
+  }
+
+  /**
+   * Opens the journal in the given directory, creating it if needed, and hands every valid record
+   * of the segments from {@code firstSegment} on to {@code replay}. Anything after the last valid
+   * record of the last segment, left by a crash in the middle of a write, is cut off. A sealed
+   * segment is complete once rolled, so invalid bytes in one fail the opening: replaying the later
+   * segments over the gap could give a spot whose leave was lost to a second vehicle.
+   *
+   * @param directory The directory of the segment files.
+   * @param fsync Whether every group of appends is forced to disk before the appenders return.
+   * @param firstSegment The first segment to replay, older ones are already in a snapshot.
+   * @param replay Receives the records already in the journal, in order.
+   * @return The journal, positioned after the last valid record.
+   * @throws IOException if a segment cannot be read, or a sealed one holds invalid bytes.
+   */
+  public static ParkingJournal open(
+      Path directory, boolean fsync, long firstSegment, Consumer<JournalRecord> replay)
+      throws IOException {
+    Files.createDirectories(directory);
+    List<Long> segments = segments(directory, firstSegment, Long.MAX_VALUE);
+    long last = segments.isEmpty() ? firstSegment : segments.get(segments.size() - 1);
+
+    long valid = 0;
+    for (long number : segments) {
+      Path path = segmentPath(directory, number);
+      if (number != last) {
+        readSealed(path, replay);
+        continue;
+      }
+      long size = Files.size(path);
+      valid = read(path, replay);
+      if (valid < size) {
+        log.warn("Journal {} ends with {} invalid bytes, cutting them off", path, size - valid);
+      }
+    }
+
+    FileChannel channel = openSegment(directory, last);
+    channel.truncate(valid);
+    channel.position(valid);
+    return new ParkingJournal(directory, fsync, channel, last);
+  }
+
+  /**
+   * Reads the records of the sealed segments in {@code [fromSegment, toSegment)}.
+   *
+   * @param directory The directory of the segment files.
+   * @param fromSegment The first segment to read.
+   * @param toSegment The segment to stop before.
+   * @param consumer Receives the records, in order.
+   * @throws IOException if a segment cannot be read or holds invalid bytes.
+   */
+  public static void read(
+      Path directory, long fromSegment, long toSegment, Consumer<JournalRecord> consumer)
+      throws IOException {
+    for (long number : segments(directory, fromSegment, toSegment)) {
+      readSealed(segmentPath(directory, number), consumer);
+    }
+  }
+
+  /**
+   * Appends records to the journal, returning once they are written, and forced to disk if the
+   * journal was opened with {@code fsync}.
+   *
+   * @param records The records to append.
+   * @throws UncheckedIOException if the journal cannot be written. Once a write fails every
+   *     following append fails too.
+   */
+  public void append(List<JournalRecord> records) {
+    lock.lock();
+    try {
+      this.checkFailure();
+      for (JournalRecord record : records) {
+        this.ensureCapacity(record.size());
+        record.writeTo(pending, crc);
+      }
+      long sequence = ++appended;
+
+      while (durable < sequence) {
+        if (writing) {
+          written.awaitUninterruptibly();
+          this.checkFailure();
+        } else {
+          this.writePending();
+        }
+      }
+    } finally {
+      lock.unlock();
+    }
+  }
+
+  /**
+   * Seals the current segment and continues in a new one. Waits for the write in progress, if any,
+   * but not for the appends still waiting for a leader, which go to the new segment.
+   *
+   * @return The number of the new segment. Every record appended before the call is in an older
+   *     one.
+   */
+  public long roll() throws IOException {
+    lock.lock();
+    try {
+      while (writing) {
+        written.awaitUninterruptibly();
+      }
+      this.checkFailure();
+
+      FileChannel next = openSegment(directory, segment + 1);
+      channel.force(false);
+      channel.close();
+      this.channel = next;
+      return ++segment;
+    } finally {
+      lock.unlock();
+    }
+  }
+
+  /**
+   * Deletes the segments older than the given one, once they are in a snapshot.
+   *
+   * @param keepFrom The first segment to keep.
+   */
+  public void deleteBefore(long keepFrom) throws IOException {
+    for (long number : segments(directory, 0, keepFrom)) {
+      Files.deleteIfExists(segmentPath(directory, number));
+    }
+  }
+
+  @Override
+  public void close() throws IOException {
+    lock.lock();
+    try {
+      channel.close();
+    } finally {
+      lock.unlock();
+    }
+  }
+
+  /** Writes the pending buffer as the leader. Called, and returns, holding the lock. */
+  private void writePending() {
+    ByteBuffer batch = pending;
+    FileChannel target = channel;
+    long upTo = appended;
+    pending = spare;
+    writing = true;
+
+    lock.unlock();
+    IOException error = null;
+    try {
+      batch.flip();
+      while (batch.hasRemaining()) {
+        target.write(batch);
+      }
+      if (fsync) {
+        target.force(false);
+      }
+    } catch (IOException e) {
+      error = e;
+    } finally {
+      lock.lock();
+    }
+
+    batch.clear();
+    spare = batch;
+    writing = false;
+    if (error == null) {
+      durable = upTo;
+    } else {
+      log.error("Error at writing the journal: {}", error.getMessage(), error);
+      failure = error;
+    }
+    written.signalAll();
+    this.checkFailure();
+  }
+
+  private void ensureCapacity(int size) {
+    if (pending.remaining() < size) {
+      ByteBuffer larger =
+          ByteBuffer.allocate(Math.max(pending.capacity() * 2, pending.position() + size));
+      pending.flip();
+      larger.put(pending);
+      pending = larger;
+    }
+  }
+
+  private void checkFailure() {
+    if (failure != null) {
+      throw new UncheckedIOException("The journal cannot be written", failure);
+    }
+  }
+
+  /**
+   * Reads the valid records of a segment.
+   *
+   * @return The length of the valid part of the segment.
+   */
+  private static long read(Path path, Consumer<JournalRecord> consumer) throws IOException {
+    try (FileChannel channel = FileChannel.open(path, StandardOpenOption.READ)) {
+      long size = channel.size();
+      if (size == 0) {
+        return 0;
+      }
+      MappedByteBuffer contents = channel.map(FileChannel.MapMode.READ_ONLY, 0, size);
+      CRC32C crc = new CRC32C();
+      for (JournalRecord record = JournalRecord.readFrom(contents, crc);
+          record != null;
+          record = JournalRecord.readFrom(contents, crc)) {
+        consumer.accept(record);
+      }
+      return contents.position();
+    }
+  }
+
+  /**
+   * Reads the records of a sealed segment, which must be valid up to its end.
+   *
+   * @throws IOException if the segment holds invalid bytes.
+   */
+  private static void readSealed(Path path, Consumer<JournalRecord> consumer) throws IOException {
+    long size = Files.size(path);
+    long valid = read(path, consumer);
+    if (valid < size) {
+      throw new IOException(
+          String.format(
+              "Journal %s has %d invalid bytes before its end, at offset %d",
+              path, size - valid, valid));
+    }
+  }
+
+  private static FileChannel openSegment(Path directory, long number) throws IOException {
+    return FileChannel.open(
+        segmentPath(directory, number),
+        StandardOpenOption.CREATE,
+        StandardOpenOption.READ,
+        StandardOpenOption.WRITE);
+  }
+
+  private static Path segmentPath(Path directory, long number) {
+    return directory.resolve(String.format("%020d%s", number, SEGMENT_SUFFIX));
+  }
+
+  /** Numbers of the segments in {@code [from, to)}, ascending. */
+  private static List<Long> segments(Path directory, long from, long to) throws IOException {
+    if (!Files.isDirectory(directory)) {
+      return List.of();
+    }
+    try (Stream<Path> files = Files.list(directory)) {
+      return files
+          .map(path -> path.getFileName().toString())
+          .filter(name -> name.endsWith(SEGMENT_SUFFIX))
+          .map(name -> Long.parseLong(name.substring(0, name.length() - SEGMENT_SUFFIX.length())))
+          .filter(number -> number >= from && number < to)
+          .sorted()
+          .toList();
+    }
+  }
+}
@@ -0,0 +1,357 @@
+package assessment.parkinglot.journal;
+
+import assessment.parkinglot.conf.ParkingLotProperties;
+import assessment.parkinglot.entities.ParkingSpotEntity;
+import assessment.parkinglot.entities.VehicleEntity;
+import assessment.parkinglot.metrics.ParkingMetrics;
+import assessment.parkinglot.repository.ParkingSpotRepository;
+import assessment.parkinglot.repository.VehicleRepository;
+import jakarta.annotation.PreDestroy;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.time.Duration;
+import java.time.Instant;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Queue;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.locks.ReentrantLock;
+import java.util.zip.CRC32C;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.dao.DataAccessResourceFailureException;
+import org.springframework.dao.RecoverableDataAccessException;
+import org.springframework.dao.TransientDataAccessException;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.TransactionException;
+import org.springframework.transaction.support.TransactionTemplate;
+
+/**
+ * Background writer of the write-behind mode. Parks and leaves already in the journal are queued
+ * here and periodically written to the database in batches, one transaction per batch.
+ *
+ * <p>Within a batch a vehicle that parks and leaves is skipped altogether, and leaves are written
+ * before parks, so a spot freed and taken again in the same batch is released before it is
+ * reassigned.
+ *
+ * <p>A batch that fails because the database cannot be reached is kept, and retried after a
+ * backoff that doubles from {@code parking.write-behind.flush-interval} up to {@code
+ * parking.write-behind.max-backoff}. A batch that fails for any other reason is split in halves
+ * until the records that fail on their own are found; those are appended to the dead-letter file
+ * at {@code parking.write-behind.dead-letter-path}, in the format of the journal, and counted, so
+ * the records behind them still reach the database.
+ *
+ * <p>When the lot is restored from a snapshot the database starts empty, so the flusher first
+ * writes the whole lot to it in the background, in chunks of {@code parking.insert-chunk-size} rows,
+ * holding back the queued records until it is done. A chunk that fails is retried after the same
+ * backoff as a batch, resuming after the last chunk written, so the queued records never reach a
+ * half-written lot.
+ */
+@Component
+@ConditionalOnProperty(name = "parking.persistence.mode", havingValue = "write-behind")
+@Slf4j
+public class WriteBehindFlusher {
+
+  @Autowired VehicleRepository vehicleRepository;
+  @Autowired ParkingSpotRepository parkingSpotRepository;
+  @Autowired TransactionTemplate transactionTemplate;
+  @Autowired ParkingLotProperties lotProperties;
+  @Autowired ParkingMetrics parkingMetrics;
+
+  @Value("${parking.write-behind.batch-size}")
+  int batchSize;
+
+  @Value("${parking.write-behind.flush-interval}")
+  Duration flushInterval;
+
+  @Value("${parking.write-behind.max-backoff}")
+  Duration maxBackoff;
+
+  @Value("${parking.write-behind.dead-letter-path}")
+  Path deadLetterPath;
+
+  private final Queue<JournalRecord> queue = new ConcurrentLinkedQueue<>();
+  private final List<JournalRecord> batch = new ArrayList<>();
+  private final ReentrantLock lock = new ReentrantLock();
+  private volatile boolean seeding;
+  private volatile boolean stopped;
+  private Thread seeder;
+  private int seededSpots;
+  private int seededVehicles;
+  private int written;
+  private int failures;
+  private long retryAt;
+
+  /**
+   * Queues a record already in the journal to be written to the database.
+   *
+   * @param record The park or leave.
+   */
+  public void enqueue(JournalRecord record) {
+    queue.add(record);
+  }
+
+  /**
+   * Writes a lot restored from a snapshot, with its parked vehicles, to the empty database in the
+   * background. Records queued meanwhile are written once it is done.
+   *
+   * @param lot The restored lot, not changed afterwards.
+   */
+  public void seed(LotSnapshot lot) {
+    seeding = true;
+    seeder = Thread.ofPlatform().name("write-behind-seed").daemon().start(() -> this.seedLot(lot));
+  }
+
+  /** Writes every queued record to the database, unless a failed batch is backing off. */
+  @Scheduled(fixedDelayString = "${parking.write-behind.flush-interval}")
+  public void flush() {
+    if (seeding) {
+      return;
+    }
+    lock.lock();
+    try {
+      if (failures > 0 && !stopped && System.nanoTime() - retryAt < 0) {
+        return;
+      }
+      do {
+        JournalRecord record;
+        while (batch.size() < batchSize && (record = queue.poll()) != null) {
+          batch.add(record);
+        }
+        if (batch.isEmpty()) {
+          return;
+        }
+
+        written = 0;
+        this.writeIsolating(List.copyOf(batch));
+        batch.clear();
+        failures = 0;
+      } while (!queue.isEmpty());
+    } catch (RuntimeException e) {
+      batch.subList(0, written).clear();
+      Duration backoff = this.backoff(++failures);
+      retryAt = System.nanoTime() + backoff.toNanos();
+      log.error(
+          "Error at writing {} journal records, retrying in {} ms: {}",
+          batch.size(),
+          backoff.toMillis(),
+          e.getMessage(),
+          e);
+    } finally {
+      lock.unlock();
+    }
+  }
+
+  @PreDestroy
+  public void stop() {
+    stopped = true;
+    if (seeder != null) {
+      seeder.interrupt();
+    }
+    this.flush();
+  }
+
+  /**
+   * Writes the lot until it is all in the database, backing off after each failure. The queued
+   * records stay held back if the flusher stops first.
+   */
+  private void seedLot(LotSnapshot lot) {
+    long start = System.nanoTime();
+    Long[] vehicleIds = new Long[lot.size()];
+    for (JournalRecord park : lot.getParks().values()) {
+      for (long spotId : park.getSpotIds()) {
+        vehicleIds[Arrays.binarySearch(lot.getSpotIds(), spotId)] = park.getVehicleId();
+      }
+    }
+
+    int attempts = 0;
+    while (!stopped) {
+      try {
+        if (this.writeLot(lot, vehicleIds)) {
+          log.info(
+              "Wrote {} spots and {} vehicles to the database in {} ms",
+              lot.size(),
+              lot.getParks().size(),
+              (System.nanoTime() - start) / 1_000_000);
+          seeding = false;
+        }
+        return;
+      } catch (RuntimeException e) {
+        Duration backoff = this.backoff(++attempts);
+        log.error(
+            "Error at writing the restored lot to the database, retrying in {} ms: {}",
+            backoff.toMillis(),
+            e.getMessage(),
+            e);
+        try {
+          Thread.sleep(backoff);
+        } catch (InterruptedException interrupted) {
+          return;
+        }
+      }
+    }
+  }
+
+  /**
+   * Writes the chunks of the lot not written yet, one transaction per chunk, counting the rows
+   * written in {@link #seededSpots} and {@link #seededVehicles}.
+   *
+   * @return {@code true} if the whole lot is written, {@code false} if the flusher stopped first.
+   */
+  private boolean writeLot(LotSnapshot lot, Long[] vehicleIds) {
+    int chunkSize = Math.max(1, lotProperties.getInsertChunkSize());
+    List<ParkingSpotEntity> spots = new ArrayList<>(chunkSize);
+    for (int i = seededSpots; i < lot.size(); i++) {
+      spots.add(lot.spot(i, vehicleIds[i]));
+      if (spots.size() == chunkSize || i == lot.size() - 1) {
+        if (stopped) {
+          return false;
+        }
+        transactionTemplate.executeWithoutResult(status -> parkingSpotRepository.insertAll(spots));
+        seededSpots = i + 1;
+        spots.clear();
+      }
+    }
+
+    List<VehicleEntity> vehicles = new ArrayList<>(chunkSize);
+    int index = 0;
+    for (JournalRecord park : lot.getParks().values()) {
+      if (index++ < seededVehicles) {
+        continue;
+      }
+      vehicles.add(toEntity(park));
+      if (vehicles.size() == chunkSize || index == lot.getParks().size()) {
+        if (stopped) {
+          return false;
+        }
+        transactionTemplate.executeWithoutResult(status -> vehicleRepository.insertAll(vehicles));
+        seededVehicles = index;
+        vehicles.clear();
+      }
+    }
+    return true;
+  }
+
+  /**
+   * Writes records in one transaction or, if they cannot be written, splits them in halves and
+   * writes each, setting aside the records that fail on their own. Records written or set aside
+   * are counted in {@link #written}, as they are always a prefix of the batch.
+   *
+   * @throws RuntimeException if the database cannot be reached.
+   */
+  private void writeIsolating(List<JournalRecord> records) {
+    try {
+      transactionTemplate.executeWithoutResult(status -> this.write(records));
+      written += records.size();
+    } catch (RuntimeException e) {
+      if (isTransient(e)) {
+        throw e;
+      }
+      if (records.size() == 1) {
+        this.deadLetter(records.get(0), e);
+        written++;
+        return;
+      }
+      int half = records.size() / 2;
+      this.writeIsolating(records.subList(0, half));
+      this.writeIsolating(records.subList(half, records.size()));
+    }
+  }
+
+  /** Whether a failure comes from the database rather than from the records being written. */
+  private static boolean isTransient(RuntimeException e) {
+    return e instanceof TransientDataAccessException
+        || e instanceof RecoverableDataAccessException
+        || e instanceof DataAccessResourceFailureException
+        || e instanceof TransactionException;
+  }
+
+  private Duration backoff(int failures) {
+    Duration backoff = flushInterval.multipliedBy(1L << Math.min(failures - 1, 20));
+    return backoff.compareTo(maxBackoff) > 0 ? maxBackoff : backoff;
+  }
+
+  private void deadLetter(JournalRecord record, RuntimeException cause) {
+    log.error(
+        "Setting aside the {} of vehicle {} on {} spots {}: {}",
+        record.getKind(),
+        record.getVehicleId(),
+        record.getSpotType(),
+        Arrays.toString(record.getSpotIds()),
+        cause.getMessage(),
+        cause);
+    parkingMetrics.deadLetter();
+    ByteBuffer buffer = ByteBuffer.allocate(record.size());
+    record.writeTo(buffer, new CRC32C());
+    buffer.flip();
+    try {
+      if (deadLetterPath.getParent() != null) {
+        Files.createDirectories(deadLetterPath.getParent());
+      }
+      try (FileChannel channel =
+          FileChannel.open(
+              deadLetterPath,
+              StandardOpenOption.CREATE,
+              StandardOpenOption.WRITE,
+              StandardOpenOption.APPEND)) {
+        while (buffer.hasRemaining()) {
+          channel.write(buffer);
+        }
+      }
+    } catch (IOException e) {
+      log.error("Error at writing to the dead-letter file: {}", e.getMessage(), e);
+    }
+  }
+
+  private void write(List<JournalRecord> records) {
+    Map<Long, JournalRecord> parks = new LinkedHashMap<>();
+    List<Long> leaves = new ArrayList<>();
+    for (JournalRecord record : records) {
+      if (JournalRecord.Kind.PARK.equals(record.getKind())) {
+        parks.put(record.getVehicleId(), record);
+      } else if (parks.remove(record.getVehicleId()) == null) {
+        leaves.add(record.getVehicleId());
+      }
+    }
+
+    if (!leaves.isEmpty()) {
+      parkingSpotRepository.releaseVehicles(leaves);
+      vehicleRepository.deleteAllByIdInBatch(leaves);
+    }
+
+    if (!parks.isEmpty()) {
+      List<VehicleEntity> vehicles = new ArrayList<>(parks.size());
+      Map<Long, long[]> spotIds = new LinkedHashMap<>();
+      int claimed = 0;
+      for (JournalRecord park : parks.values()) {
+        vehicles.add(toEntity(park));
+        spotIds.put(park.getVehicleId(), park.getSpotIds());
+        claimed += park.getSpotIds().length;
+      }
+      vehicleRepository.insertAll(vehicles);
+      int assigned = parkingSpotRepository.assignVehicles(spotIds);
+      if (assigned != claimed) {
+        throw new IllegalStateException(
+            "Only " + assigned + " of the " + claimed + " journaled spots were free");
+      }
+    }
+  }
+
+  private static VehicleEntity toEntity(JournalRecord park) {
+    return VehicleEntity.builder()
+        .id(park.getVehicleId())
+        .type(park.getVehicleType())
+        .parkedAt(Instant.ofEpochMilli(park.getParkedAt()))
+        .build();
+  }
+}
@@ -0,0 +1,130 @@
+package assessment.parkinglot.metrics;
+
+import assessment.parkinglot.allocation.SpotAllocator;
+import assessment.parkinglot.enums.ErrorCode;
+import assessment.parkinglot.enums.ParkingSpotType;
+import assessment.parkinglot.enums.VehicleType;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.DistributionSummary;
+import io.micrometer.core.instrument.FunctionCounter;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
+import io.micrometer.core.instrument.composite.CompositeMeterRegistry;
+import java.util.EnumMap;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+
+/**
+ * Meters of the park and leave paths.
+ *
+ * <p>Every meter is registered up front, one per {@link VehicleType}, {@link ErrorCode} or {@link
+ * ParkingSpotType}, and kept in enum maps, so recording is a map lookup plus the meter update and
+ * never allocates. With {@code parking.metrics.enabled=false} the meters are bound to an empty
+ * registry and do nothing, which is the baseline the overhead benchmark compares against.
+ */
+@Component
+public class ParkingMetrics {
+
+  private final Map<VehicleType, Timer> park = new EnumMap<>(VehicleType.class);
+  private final Map<VehicleType, Timer> leave = new EnumMap<>(VehicleType.class);
+  private final Map<ErrorCode, Counter> failures = new EnumMap<>(ErrorCode.class);
+  private final DistributionSummary queries;
+  private final Counter deadLetters;
+
+  public ParkingMetrics(
+      MeterRegistry meterRegistry,
+      SpotAllocator spotAllocator,
+      QueryCounter queryCounter,
+      @Value("${parking.metrics.enabled:true}") boolean enabled) {
+
+    MeterRegistry registry = enabled ? meterRegistry : new CompositeMeterRegistry();
+
+    for (VehicleType type : VehicleType.values()) {
+      park.put(type, latency("parking.park", type).register(registry));
+      leave.put(type, latency("parking.leave", type).register(registry));
+    }
+    for (ErrorCode error : ErrorCode.values()) {
+      failures.put(
+          error,
+          Counter.builder("parking.failures")
+              .description("Park and leave attempts that failed")
+              .tag("error", error.name())
+              .register(registry));
+    }
+    for (ParkingSpotType type : ParkingSpotType.values()) {
+      Gauge.builder("parking.spots.free", spotAllocator, a -> a.available(type))
+          .description("Free spots known to the allocator")
+          .tag("spot.type", type.name())
+          .register(registry);
+      FunctionCounter.builder("parking.allocator.contention", spotAllocator, a -> a.contention(type))
+          .description("Allocator CAS operations lost to another thread")
+          .tag("spot.type", type.name())
+          .register(registry);
+    }
+    FunctionCounter.builder("parking.db.statements", queryCounter, QueryCounter::total)
+        .description("SQL statements sent to the database")
+        .register(registry);
+    this.queries =
+        DistributionSummary.builder("parking.http.queries")
+            .description("SQL statements sent to the database per HTTP request")
+            .publishPercentileHistogram()
+            .register(registry);
+    this.deadLetters =
+        Counter.builder("parking.write-behind.dead-letters")
+            .description("Journal records set aside because they could not be written")
+            .register(registry);
+  }
+
+  /**
+   * Records the duration of a park attempt.
+   *
+   * @param type The type of the vehicle.
+   * @param nanos The duration, in nanoseconds.
+   */
+  public void park(VehicleType type, long nanos) {
+    park.get(type).record(nanos, TimeUnit.NANOSECONDS);
+  }
+
+  /**
+   * Records the duration of a leave.
+   *
+   * @param type The type of the vehicle.
+   * @param nanos The duration, in nanoseconds.
+   */
+  public void leave(VehicleType type, long nanos) {
+    leave.get(type).record(nanos, TimeUnit.NANOSECONDS);
+  }
+
+  /**
+   * Counts a failed park or leave.
+   *
+   * @param error The reason of the failure.
+   */
+  public void failure(ErrorCode error) {
+    failures.get(error).increment();
+  }
+
+  /**
+   * Records the amount of SQL statements of an HTTP request.
+   *
+   * @param count The amount of statements.
+   */
+  public void queries(int count) {
+    queries.record(count);
+  }
+
+  /** Counts a journal record set aside by the write-behind flusher. */
+  public void deadLetter() {
+    deadLetters.increment();
+  }
+
+  private static Timer.Builder latency(String name, VehicleType type) {
+    return Timer.builder(name)
+        .description("Duration of the " + name.substring("parking.".length()) + " operation")
+        .tag("vehicle.type", type.name())
+        .publishPercentileHistogram();
+  }
+}
@@ -0,0 +1,71 @@
+package assessment.parkinglot.metrics;
+
+import jakarta.servlet.http.HttpServletRequest;
+import jakarta.servlet.http.HttpServletResponse;
+import java.util.concurrent.Callable;
+import java.util.concurrent.atomic.AtomicInteger;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.stereotype.Component;
+import org.springframework.web.context.request.NativeWebRequest;
+import org.springframework.web.context.request.RequestAttributes;
+import org.springframework.web.context.request.async.CallableProcessingInterceptor;
+import org.springframework.web.servlet.AsyncHandlerInterceptor;
+
+/**
+ * Records the amount of SQL statements each HTTP request sends to the database.
+ *
+ * <p>The count is kept in a request attribute and bound to every thread that works for the
+ * request: the thread of the first dispatch, which lets go of it once the request goes
+ * asynchronous, the task thread of a streamed body, and the thread of the asynchronous dispatch,
+ * which records it once the request completes.
+ */
+@Component
+public class QueryCountInterceptor
+    implements AsyncHandlerInterceptor, CallableProcessingInterceptor {
+
+  private static final String COUNT_ATTRIBUTE = QueryCountInterceptor.class.getName() + ".count";
+
+  @Autowired QueryCounter queryCounter;
+  @Autowired ParkingMetrics parkingMetrics;
+
+  @Override
+  public boolean preHandle(
+      HttpServletRequest request, HttpServletResponse response, Object handler) {
+    AtomicInteger count = (AtomicInteger) request.getAttribute(COUNT_ATTRIBUTE);
+    if (count == null) {
+      count = new AtomicInteger();
+      request.setAttribute(COUNT_ATTRIBUTE, count);
+    }
+    queryCounter.bind(count);
+    return true;
+  }
+
+  @Override
+  public void afterConcurrentHandlingStarted(
+      HttpServletRequest request, HttpServletResponse response, Object handler) {
+    queryCounter.unbind();
+  }
+
+  @Override
+  public void afterCompletion(
+      HttpServletRequest request, HttpServletResponse response, Object handler, Exception ex) {
+    queryCounter.unbind();
+    AtomicInteger count = (AtomicInteger) request.getAttribute(COUNT_ATTRIBUTE);
+    if (count != null) {
+      parkingMetrics.queries(count.get());
+    }
+  }
+
+  @Override
+  public <T> void preProcess(NativeWebRequest request, Callable<T> task) {
+    Object count = request.getAttribute(COUNT_ATTRIBUTE, RequestAttributes.SCOPE_REQUEST);
+    if (count instanceof AtomicInteger requestCount) {
+      queryCounter.bind(requestCount);
+    }
+  }
+
+  @Override
+  public <T> void postProcess(NativeWebRequest request, Callable<T> task, Object concurrentResult) {
+    queryCounter.unbind();
+  }
+}
@@ -0,0 +1,71 @@
+package assessment.parkinglot.metrics;
+
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.function.Supplier;
+import org.springframework.stereotype.Component;
+
+/**
+ * Counts the SQL statements the {@link QueryCountingDataSource} runs, in total and for the request
+ * the current thread works for.
+ *
+ * <p>A request owns its count, which follows it across the threads of an asynchronous request: the
+ * {@link QueryCountInterceptor} binds it to every thread that dispatches the request, and work
+ * handed to another thread, such as a queued park, carries it along with {@link #propagate}.
+ */
+@Component
+public class QueryCounter {
+
+  private final LongAdder total = new LongAdder();
+  private final ThreadLocal<AtomicInteger> current = new ThreadLocal<>();
+
+  /** Counts a statement sent to the database. */
+  public void count() {
+    total.increment();
+    AtomicInteger count = current.get();
+    if (count != null) {
+      count.incrementAndGet();
+    }
+  }
+
+  public long total() {
+    return total.sum();
+  }
+
+  /**
+   * Counts the statements of the current thread into the given count, until {@link #unbind()}.
+   *
+   * @param count The count of the request the thread works for.
+   */
+  public void bind(AtomicInteger count) {
+    current.set(count);
+  }
+
+  /** Stops counting the statements of the current thread for a request. */
+  public void unbind() {
+    current.remove();
+  }
+
+  /**
+   * Wraps a task so the statements it runs count for the request of the current thread, whatever
+   * thread it runs on.
+   *
+   * @param task The task.
+   * @return The wrapped task, or the task itself if the current thread works for no request.
+   */
+  public <T> Supplier<T> propagate(Supplier<T> task) {
+    AtomicInteger count = current.get();
+    if (count == null) {
+      return task;
+    }
+    return () -> {
+      AtomicInteger previous = current.get();
+      current.set(count);
+      try {
+        return task.get();
+      } finally {
+        current.set(previous);
+      }
+    };
+  }
+}
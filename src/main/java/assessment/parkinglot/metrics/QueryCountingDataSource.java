@@ -0,0 +1,92 @@
+package assessment.parkinglot.metrics;
+
+import java.lang.reflect.InvocationTargetException;
+import java.lang.reflect.Method;
+import java.lang.reflect.Proxy;
+import java.sql.Connection;
+import java.sql.SQLException;
+import java.sql.Statement;
+import java.util.Set;
+import javax.sql.DataSource;
+import org.springframework.jdbc.datasource.DelegatingDataSource;
+
+/**
+ * {@link DataSource} that counts in the {@link QueryCounter} every statement run on its
+ * connections, whoever runs it: Hibernate, a {@code JdbcTemplate} or plain JDBC. A statement counts
+ * once per execution, and a JDBC batch once per {@code executeBatch}, since it is sent to the
+ * database in a single round trip.
+ */
+public class QueryCountingDataSource extends DelegatingDataSource {
+
+  private static final Set<String> EXECUTIONS =
+      Set.of(
+          "execute",
+          "executeQuery",
+          "executeUpdate",
+          "executeLargeUpdate",
+          "executeBatch",
+          "executeLargeBatch");
+
+  private final QueryCounter queryCounter;
+
+  public QueryCountingDataSource(DataSource dataSource, QueryCounter queryCounter) {
+    super(dataSource);
+    this.queryCounter = queryCounter;
+  }
+
+  @Override
+  public Connection getConnection() throws SQLException {
+    return this.counting(super.getConnection());
+  }
+
+  @Override
+  public Connection getConnection(String username, String password) throws SQLException {
+    return this.counting(super.getConnection(username, password));
+  }
+
+  /** Wraps a connection so the statements it creates are counted. */
+  private Connection counting(Connection connection) {
+    return (Connection)
+        Proxy.newProxyInstance(
+            Connection.class.getClassLoader(),
+            new Class<?>[] {Connection.class},
+            (proxy, method, args) -> {
+              Object result = invoke(proxy, connection, method, args);
+              if (result instanceof Statement statement
+                  && Statement.class.isAssignableFrom(method.getReturnType())) {
+                return this.counting(statement, method.getReturnType());
+              }
+              return result;
+            });
+  }
+
+  /** Wraps a statement, as the interface the connection returned it as, to count its executions. */
+  private Statement counting(Statement statement, Class<?> type) {
+    return (Statement)
+        Proxy.newProxyInstance(
+            Statement.class.getClassLoader(),
+            new Class<?>[] {type},
+            (proxy, method, args) -> {
+              if (EXECUTIONS.contains(method.getName())) {
+                queryCounter.count();
+              }
+              return invoke(proxy, statement, method, args);
+            });
+  }
+
+  private static Object invoke(Object proxy, Object target, Method method, Object[] args)
+      throws Throwable {
+    // Compared by identity, so a proxy equals itself rather than the target it wraps.
+    if (method.getName().equals("equals") && method.getParameterCount() == 1) {
+      return proxy == args[0];
+    }
+    if (method.getName().equals("hashCode") && method.getParameterCount() == 0) {
+      return System.identityHashCode(proxy);
+    }
+    try {
+      return method.invoke(target, args);
+    } catch (InvocationTargetException e) {
+      throw e.getCause();
+    }
+  }
+}
@@ -2,13 +2,45 @@ package assessment.parkinglot.repository;
 
 import assessment.parkinglot.entities.ParkingSpotEntity;
 import assessment.parkinglot.enums.ParkingSpotType;
+import java.util.Collection;
 import java.util.List;
 import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Modifying;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.repository.query.Param;
+import org.springframework.transaction.annotation.Transactional;
 
-public interface ParkingSpotRepository extends JpaRepository<ParkingSpotEntity, Long> {
+public interface ParkingSpotRepository
+    extends JpaRepository<ParkingSpotEntity, Long>, ParkingSpotRepositoryCustom {
   List<ParkingSpotEntity> findByVehicleId(Long vehicleId);
 
+  List<ParkingSpotEntity> findByVehicleIdIn(Collection<Long> vehicleIds);
+
   List<ParkingSpotEntity> findByTypeAndVehicleIdIsNull(ParkingSpotType type);
 
   long countByTypeAndVehicleIdIsNull(ParkingSpotType type);
+
+  @Query("select s.id from ParkingSpotEntity s where s.type = :type and s.vehicleId is null")
+  List<Long> findFreeSpotIds(@Param("type") ParkingSpotType type);
+
+  /**
+   * Assigns the vehicle the spots that are still free. The spots are looked up by their primary
+   * key, which is unique and so costs less to any planner than the free spots of the vehicle index.
+   */
+  @Transactional
+  @Modifying
+  @Query(
+      "update ParkingSpotEntity s set s.vehicleId = :vehicleId"
+          + " where s.id in :spotIds and s.vehicleId is null")
+  int assignVehicle(@Param("vehicleId") Long vehicleId, @Param("spotIds") List<Long> spotIds);
+
+  @Modifying
+  @Query("update ParkingSpotEntity s set s.vehicleId = null where s.vehicleId in :vehicleIds")
+  int releaseVehicles(@Param("vehicleIds") Collection<Long> vehicleIds);
+
+  @Modifying
+  @Query(
+      "update ParkingSpotEntity s set s.vehicleId = null"
+          + " where s.id in :spotIds and s.vehicleId = :vehicleId")
+  int releaseSpots(@Param("vehicleId") Long vehicleId, @Param("spotIds") List<Long> spotIds);
 }
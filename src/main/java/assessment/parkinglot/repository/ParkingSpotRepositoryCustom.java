@@ -0,0 +1,33 @@
+package assessment.parkinglot.repository;
+
+import assessment.parkinglot.entities.ParkingSpotEntity;
+import java.util.List;
+import java.util.Map;
+import java.util.function.Consumer;
+
+public interface ParkingSpotRepositoryCustom {
+
+  /**
+   * Assigns every vehicle its spots in a single JDBC batch. Only spots that are still free are
+   * assigned.
+   *
+   * @param spotIdsByVehicleId The ids of the spots to assign to each vehicle ID.
+   * @return The amount of spots assigned.
+   */
+  int assignVehicles(Map<Long, long[]> spotIdsByVehicleId);
+
+  /**
+   * Inserts spots with their IDs already set, in a single JDBC batch.
+   *
+   * @param spots The spots to insert, free or taken.
+   */
+  void insertAll(List<ParkingSpotEntity> spots);
+
+  /**
+   * Reads every spot, without its vehicle, in ID order and without keeping them in the
+   * persistence context.
+   *
+   * @param consumer Receives each spot.
+   */
+  void forEachSpot(Consumer<ParkingSpotEntity> consumer);
+}
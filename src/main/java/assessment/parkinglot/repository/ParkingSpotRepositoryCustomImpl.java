@@ -0,0 +1,72 @@
+package assessment.parkinglot.repository;
+
+import assessment.parkinglot.entities.ParkingSpotEntity;
+import assessment.parkinglot.enums.ParkingSpotType;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.function.Consumer;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.jdbc.core.JdbcTemplate;
+
+public class ParkingSpotRepositoryCustomImpl implements ParkingSpotRepositoryCustom {
+
+  private static final String ASSIGN_VEHICLE =
+      "update parking_spot_entity set vehicle_id = ? where id = ? and vehicle_id is null";
+
+  private static final String INSERT_SPOT =
+      "insert into parking_spot_entity (id, type, vehicle_id, level, zone) values (?, ?, ?, ?, ?)";
+  private static final String SELECT_SPOTS =
+      "select id, type, level, zone from parking_spot_entity order by id";
+
+  @Autowired JdbcTemplate jdbcTemplate;
+
+  @Override
+  public int assignVehicles(Map<Long, long[]> spotIdsByVehicleId) {
+    List<Object[]> assignments = new ArrayList<>();
+    spotIdsByVehicleId.forEach(
+        (vehicleId, spotIds) -> {
+          for (long spotId : spotIds) {
+            assignments.add(new Object[] {vehicleId, spotId});
+          }
+        });
+
+    int assigned = 0;
+    for (int count : jdbcTemplate.batchUpdate(ASSIGN_VEHICLE, assignments)) {
+      assigned += count;
+    }
+    return assigned;
+  }
+
+  @Override
+  public void insertAll(List<ParkingSpotEntity> spots) {
+    List<Object[]> rows = new ArrayList<>(spots.size());
+    for (ParkingSpotEntity spot : spots) {
+      rows.add(
+          new Object[] {
+            spot.getId(),
+            spot.getType().ordinal(),
+            spot.getVehicleId(),
+            spot.getLevel(),
+            spot.getZone()
+          });
+    }
+
+    jdbcTemplate.batchUpdate(INSERT_SPOT, rows);
+  }
+
+  @Override
+  public void forEachSpot(Consumer<ParkingSpotEntity> consumer) {
+    jdbcTemplate.query(
+        SELECT_SPOTS,
+        rs -> {
+          consumer.accept(
+              ParkingSpotEntity.builder()
+                  .id(rs.getLong(1))
+                  .type(ParkingSpotType.values()[rs.getInt(2)])
+                  .level(rs.getString(3))
+                  .zone(rs.getString(4))
+                  .build());
+        });
+  }
+}
@@ -0,0 +1,16 @@
+package assessment.parkinglot.repository;
+
+import assessment.parkinglot.entities.ReservationEntity;
+import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Modifying;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.repository.query.Param;
+import org.springframework.transaction.annotation.Transactional;
+
+public interface ReservationRepository extends JpaRepository<ReservationEntity, Long> {
+
+  @Modifying
+  @Transactional
+  @Query("update ReservationEntity r set r.arrived = :arrived where r.id = :reservationId")
+  int updateArrived(@Param("reservationId") Long reservationId, @Param("arrived") int arrived);
+}
@@ -1,6 +1,44 @@
 package assessment.parkinglot.repository;
 
 import assessment.parkinglot.entities.VehicleEntity;
+import jakarta.persistence.QueryHint;
+import java.util.Collection;
+import java.util.List;
+import java.util.stream.Stream;
+import org.hibernate.jpa.HibernateHints;
+import org.springframework.data.domain.Limit;
 import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Modifying;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.jpa.repository.QueryHints;
+import org.springframework.data.repository.query.Param;
 
-public interface VehicleRepository extends JpaRepository<VehicleEntity, Long> {}
+public interface VehicleRepository
+    extends JpaRepository<VehicleEntity, Long>, VehicleRepositoryCustom {
+
+  @Query(
+      "select new assessment.parkinglot.repository.VehicleSpotRow(v.id, v.type, s.id, s.type)"
+          + " from VehicleEntity v left join ParkingSpotEntity s on s.vehicleId = v.id"
+          + " order by v.id, s.id")
+  List<VehicleSpotRow> findAllWithSpots();
+
+  @Query(
+      "select new assessment.parkinglot.repository.VehicleSpotRow(v.id, v.type, s.id, s.type)"
+          + " from VehicleEntity v left join ParkingSpotEntity s on s.vehicleId = v.id"
+          + " order by v.id, s.id")
+  @QueryHints(@QueryHint(name = HibernateHints.HINT_FETCH_SIZE, value = "500"))
+  Stream<VehicleSpotRow> streamAllWithSpots();
+
+  @Query(
+      "select new assessment.parkinglot.repository.VehicleSpotRow(v.id, v.type, s.id, s.type)"
+          + " from VehicleEntity v left join ParkingSpotEntity s on s.vehicleId = v.id"
+          + " where v.id in :vehicleIds order by v.id, s.id")
+  List<VehicleSpotRow> findWithSpotsByIdIn(@Param("vehicleIds") Collection<Long> vehicleIds);
+
+  @Query("select v.id from VehicleEntity v where v.id > :after order by v.id")
+  List<Long> findIdsAfter(@Param("after") Long after, Limit limit);
+
+  @Modifying
+  @Query("delete from VehicleEntity v where v.id = :vehicleId")
+  int deleteVehicle(@Param("vehicleId") Long vehicleId);
+}
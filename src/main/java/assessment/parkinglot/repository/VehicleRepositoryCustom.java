@@ -0,0 +1,22 @@
+package assessment.parkinglot.repository;
+
+import assessment.parkinglot.entities.VehicleEntity;
+import java.util.List;
+
+public interface VehicleRepositoryCustom {
+
+  /**
+   * Inserts vehicles whose IDs are already assigned, in a single JDBC batch.
+   *
+   * @param vehicles The vehicles, with their ID, type and the time they parked at.
+   */
+  void insertAll(List<VehicleEntity> vehicles);
+
+  /**
+   * Deletes vehicles by their IDs, in a single JDBC batch.
+   *
+   * @param vehicleIds The IDs of the vehicles.
+   * @return The IDs of the vehicles the batch actually deleted, leaving out the ones already gone.
+   */
+  List<Long> deleteVehicles(List<Long> vehicleIds);
+}
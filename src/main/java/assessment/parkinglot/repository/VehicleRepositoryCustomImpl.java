@@ -0,0 +1,49 @@
+package assessment.parkinglot.repository;
+
+import assessment.parkinglot.entities.VehicleEntity;
+import java.sql.Timestamp;
+import java.util.ArrayList;
+import java.util.List;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.jdbc.core.JdbcTemplate;
+
+public class VehicleRepositoryCustomImpl implements VehicleRepositoryCustom {
+
+  private static final String INSERT_VEHICLE =
+      "insert into vehicle_entity (id, type, parked_at) values (?, ?, ?)";
+  private static final String DELETE_VEHICLE = "delete from vehicle_entity where id = ?";
+
+  @Autowired JdbcTemplate jdbcTemplate;
+
+  @Override
+  public void insertAll(List<VehicleEntity> vehicles) {
+    List<Object[]> rows = new ArrayList<>(vehicles.size());
+    for (VehicleEntity vehicle : vehicles) {
+      rows.add(
+          new Object[] {
+            vehicle.getId(),
+            vehicle.getType().ordinal(),
+            Timestamp.from(vehicle.getParkedAt())
+          });
+    }
+
+    jdbcTemplate.batchUpdate(INSERT_VEHICLE, rows);
+  }
+
+  @Override
+  public List<Long> deleteVehicles(List<Long> vehicleIds) {
+    List<Object[]> rows = new ArrayList<>(vehicleIds.size());
+    for (Long vehicleId : vehicleIds) {
+      rows.add(new Object[] {vehicleId});
+    }
+
+    int[] counts = jdbcTemplate.batchUpdate(DELETE_VEHICLE, rows);
+    List<Long> deleted = new ArrayList<>(vehicleIds.size());
+    for (int i = 0; i < counts.length; i++) {
+      if (counts[i] > 0) {
+        deleted.add(vehicleIds.get(i));
+      }
+    }
+    return deleted;
+  }
+}
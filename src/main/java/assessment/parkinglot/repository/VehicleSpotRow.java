@@ -0,0 +1,20 @@
+package assessment.parkinglot.repository;
+
+import assessment.parkinglot.enums.ParkingSpotType;
+import assessment.parkinglot.enums.VehicleType;
+import lombok.AllArgsConstructor;
+import lombok.Getter;
+
+/**
+ * A parked vehicle together with one of the spots it takes. A vehicle taking several spots spans
+ * several consecutive rows.
+ */
+@AllArgsConstructor
+@Getter
+public class VehicleSpotRow {
+
+  private Long vehicleId;
+  private VehicleType vehicleType;
+  private Long spotId;
+  private ParkingSpotType spotType;
+}
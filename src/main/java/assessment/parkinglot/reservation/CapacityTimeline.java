@@ -0,0 +1,99 @@
+package assessment.parkinglot.reservation;
+
+/**
+ * Spots booked in every slot of a ring of time slots, with the peak of any range of slots in
+ * logarithmic time.
+ *
+ * <p>A segment tree over the ring: each node keeps what was added to its whole range and the peak
+ * of its range, so booking a range and reading the peak of a range both visit O(log n) nodes,
+ * whatever the amount of bookings. Slot {@code s} lives at {@code s mod size}, so it is only
+ * reused once the bookings of its previous turn are taken out, which the {@link ReservationBook}
+ * ensures by keeping the ring more than twice as long as its horizon.
+ */
+final class CapacityTimeline {
+
+  private final int size;
+  private final int[] added;
+  private final int[] peaks;
+
+  CapacityTimeline(int slots) {
+    this.size = Integer.highestOneBit(Math.max(2, slots) - 1) << 1;
+    this.added = new int[2 * size];
+    this.peaks = new int[2 * size];
+  }
+
+  int size() {
+    return size;
+  }
+
+  /**
+   * Adds spots to every slot of a range.
+   *
+   * @param from The first slot.
+   * @param to The slot after the last one, at most {@link #size()} slots after {@code from}.
+   * @param spots The amount of spots, negative to take them out.
+   */
+  void add(long from, long to, int spots) {
+    if (from >= to) {
+      return;
+    }
+    int start = (int) Math.floorMod(from, (long) size);
+    int end = start + (int) (to - from);
+    if (end <= size) {
+      this.add(1, 0, size, start, end, spots);
+    } else {
+      this.add(1, 0, size, start, size, spots);
+      this.add(1, 0, size, 0, end - size, spots);
+    }
+  }
+
+  /**
+   * Reads the most spots booked at once in a range.
+   *
+   * @param from The first slot.
+   * @param to The slot after the last one, at most {@link #size()} slots after {@code from}.
+   * @return The peak of the range, 0 if it is empty.
+   */
+  int peak(long from, long to) {
+    if (from >= to) {
+      return 0;
+    }
+    int start = (int) Math.floorMod(from, (long) size);
+    int end = start + (int) (to - from);
+    if (end <= size) {
+      return this.peak(1, 0, size, start, end);
+    }
+    return Math.max(this.peak(1, 0, size, start, size), this.peak(1, 0, size, 0, end - size));
+  }
+
+  private void add(int node, int nodeFrom, int nodeTo, int from, int to, int spots) {
+    if (from <= nodeFrom && nodeTo <= to) {
+      added[node] += spots;
+      peaks[node] += spots;
+      return;
+    }
+    int middle = (nodeFrom + nodeTo) >>> 1;
+    if (from < middle) {
+      this.add(2 * node, nodeFrom, middle, from, to, spots);
+    }
+    if (to > middle) {
+      this.add(2 * node + 1, middle, nodeTo, from, to, spots);
+    }
+    peaks[node] = added[node] + Math.max(peaks[2 * node], peaks[2 * node + 1]);
+  }
+
+  private int peak(int node, int nodeFrom, int nodeTo, int from, int to) {
+    if (from <= nodeFrom && nodeTo <= to) {
+      return peaks[node];
+    }
+    int middle = (nodeFrom + nodeTo) >>> 1;
+    int peak = Integer.MIN_VALUE;
+    if (from < middle) {
+      peak = this.peak(2 * node, nodeFrom, middle, from, to);
+    }
+    if (to > middle) {
+      peak = Math.max(peak, this.peak(2 * node + 1, middle, nodeTo, from, to));
+    }
+    return added[node] + peak;
+  }
+}
@@ -0,0 +1,400 @@
+package assessment.parkinglot.reservation;
+
+import assessment.parkinglot.allocation.SpotAllocator;
+import assessment.parkinglot.domain.Vehicle;
+import assessment.parkinglot.dto.ReservationDTO;
+import assessment.parkinglot.enums.ErrorCode;
+import assessment.parkinglot.enums.ParkingSpotType;
+import assessment.parkinglot.exception.PklBadRequestException;
+import assessment.parkinglot.exception.PklErrorException;
+import assessment.parkinglot.exception.PklNotFoundException;
+import java.time.Duration;
+import java.time.Instant;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.NavigableSet;
+import java.util.TreeSet;
+import java.util.concurrent.locks.ReentrantLock;
+import lombok.AllArgsConstructor;
+import lombok.Getter;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+
+/**
+ * In-memory book of the reservations of the lot: spots of a {@link ParkingSpotType} booked for a
+ * window of time.
+ *
+ * <p>Time is cut into slots of {@code parking.reservation.slot}, and the spots booked in each slot
+ * are kept in a {@link CapacityTimeline} per type, so whether a window has room for more spots is
+ * answered from the peak of its slots in logarithmic time, however many bookings there are. Up to
+ * {@code parking.reservation.reservable-percent} of the spots of each type can be booked at once,
+ * and windows must end within {@code parking.reservation.horizon}.
+ *
+ * <p>When the window of a reservation opens, its spots are held in the {@link SpotAllocator}, so
+ * walk-in parks leave them free, for at most {@code parking.reservation.hold}. Each arriving
+ * vehicle claims its share of the hold before the hold gives it up, so no walk-in can take it in
+ * between; whatever is still held once the hold runs out is given back, to walk-ins and to other
+ * bookings. A hold only keeps spots that are free, it does not make vehicles parked beforehand
+ * leave.
+ *
+ * <p>Operations are serialized with a {@link ReentrantLock}, and the open, expire and end of the
+ * holds and bookings happen on {@link #sweep(long)}.
+ */
+@Component
+public class ReservationBook {
+
+  private static final ParkingSpotType[] SPOT_TYPES = ParkingSpotType.values();
+  private static final Comparator<Booking> BY_START =
+      Comparator.comparingLong(Booking::start).thenComparingLong(Booking::id);
+  private static final Comparator<Booking> BY_END =
+      Comparator.comparingLong(Booking::end).thenComparingLong(Booking::id);
+
+  private final SpotAllocator spotAllocator;
+  private final long slotMillis;
+  private final long horizonSlots;
+  private final long holdMillis;
+  private final int reservablePercent;
+
+  private final ReentrantLock lock = new ReentrantLock();
+  private final CapacityTimeline[] timelines = new CapacityTimeline[SPOT_TYPES.length];
+  private final Map<Long, Booking> bookings = new HashMap<>();
+  private final NavigableSet<Booking> pending = new TreeSet<>(BY_START);
+  private final NavigableSet<Booking> holding = new TreeSet<>(BY_START);
+  private final NavigableSet<Booking> byEnd = new TreeSet<>(BY_END);
+
+  public ReservationBook(
+      SpotAllocator spotAllocator,
+      @Value("${parking.reservation.slot}") Duration slot,
+      @Value("${parking.reservation.horizon}") Duration horizon,
+      @Value("${parking.reservation.hold}") Duration hold,
+      @Value("${parking.reservation.reservable-percent}") int reservablePercent) {
+    this.spotAllocator = spotAllocator;
+    this.slotMillis = slot.toMillis();
+    this.horizonSlots = Math.ceilDiv(horizon.toMillis(), slotMillis);
+    this.holdMillis = hold.toMillis();
+    this.reservablePercent = reservablePercent;
+    for (int t = 0; t < timelines.length; t++) {
+      timelines[t] = new CapacityTimeline((int) (2 * horizonSlots + 2));
+    }
+  }
+
+  /**
+   * Books spots for a window, if no slot of the window would go over the reservable spots.
+   *
+   * @param reservationId The ID of the reservation.
+   * @param type The type of the spots.
+   * @param spots The amount of spots.
+   * @param start The start of the window, in epoch milliseconds.
+   * @param end The end of the window, in epoch milliseconds.
+   * @return The booked reservation.
+   * @throws PklBadRequestException if the window or the amount of spots is out of range.
+   * @throws PklErrorException if there is no room left for the window.
+   */
+  public ReservationDTO book(
+      long reservationId, ParkingSpotType type, int spots, long start, long end) {
+    this.validate(spots, start, end);
+    Booking booking = new Booking(reservationId, type, spots, start, end);
+
+    lock.lock();
+    try {
+      CapacityTimeline timeline = timelines[type.ordinal()];
+      if (timeline.peak(booking.startSlot, booking.endSlot) + spots > this.reservable(type)) {
+        throw new PklErrorException(ErrorCode.NO_SPACE_TO_RESERVE);
+      }
+      this.add(booking);
+      return booking.toDTO();
+    } finally {
+      lock.unlock();
+    }
+  }
+
+  /**
+   * Puts back a reservation booked before a restart, without checking the room left.
+   *
+   * @param reservation The reservation, with the spots already taken by arrivals.
+   */
+  public void restore(ReservationDTO reservation) {
+    Booking booking =
+        new Booking(
+            reservation.getReservationId(),
+            reservation.getSpotType(),
+            reservation.getSpots(),
+            reservation.getStart().toEpochMilli(),
+            reservation.getEnd().toEpochMilli());
+    booking.arrived = reservation.getArrived();
+
+    lock.lock();
+    try {
+      this.add(booking);
+    } finally {
+      lock.unlock();
+    }
+  }
+
+  /**
+   * Counts the spots of a type that can still be booked for a whole window.
+   *
+   * @param type The type of the spots.
+   * @param start The start of the window, in epoch milliseconds.
+   * @param end The end of the window, in epoch milliseconds.
+   * @return The amount of spots.
+   * @throws PklBadRequestException if the window is out of range.
+   */
+  public int available(ParkingSpotType type, long start, long end) {
+    this.validate(1, start, end);
+    long startSlot = Math.floorDiv(start, slotMillis);
+    long endSlot = Math.ceilDiv(end, slotMillis);
+
+    lock.lock();
+    try {
+      return Math.max(
+          0, this.reservable(type) - timelines[type.ordinal()].peak(startSlot, endSlot));
+    } finally {
+      lock.unlock();
+    }
+  }
+
+  /**
+   * Reads a reservation.
+   *
+   * @param reservationId The ID of the reservation.
+   * @return The reservation, or {@code null} if it does not exist or is over.
+   */
+  public ReservationDTO get(long reservationId) {
+    lock.lock();
+    try {
+      Booking booking = bookings.get(reservationId);
+      return booking == null ? null : booking.toDTO();
+    } finally {
+      lock.unlock();
+    }
+  }
+
+  /**
+   * Cancels a reservation, giving back its booked and held spots.
+   *
+   * @param reservationId The ID of the reservation.
+   * @return The cancelled reservation.
+   * @throws PklNotFoundException if the reservation does not exist or is over.
+   */
+  public ReservationDTO cancel(long reservationId) {
+    lock.lock();
+    try {
+      Booking booking = this.find(reservationId);
+      this.remove(booking);
+      return booking.toDTO();
+    } finally {
+      lock.unlock();
+    }
+  }
+
+  /**
+   * Takes spots of the hold of a reservation for an arriving vehicle, claiming them from the {@link
+   * SpotAllocator} before the hold gives them up, so no walk-in park can take them in between.
+   *
+   * @param reservationId The ID of the reservation.
+   * @param vehicle The arriving vehicle, which tells the spots it needs.
+   * @return The reservation, after the arrival, and the spots claimed for the vehicle.
+   * @throws PklNotFoundException if the reservation does not exist or is over.
+   * @throws PklBadRequestException if the vehicle does not fit the spots of the reservation, or the
+   *     reservation does not hold enough of them right now.
+   * @throws PklErrorException if the held spots are not free next to each other, in which case the
+   *     hold is left as it was.
+   */
+  public Arrival takeHold(long reservationId, Vehicle vehicle) {
+    lock.lock();
+    try {
+      Booking booking = this.find(reservationId);
+      int spots = vehicle.spots(booking.type);
+      if (spots == 0 || booking.held < spots) {
+        throw new PklBadRequestException(ErrorCode.NO_HELD_SPACE);
+      }
+      long[] spotIds = new long[spots];
+      if (!spotAllocator.claim(booking.type, spotIds)) {
+        throw new PklErrorException(ErrorCode.NO_SPACE_TO_PARK);
+      }
+      booking.held -= spots;
+      booking.arrived += spots;
+      spotAllocator.hold(booking.type, -spots);
+      return new Arrival(booking.toDTO(), spotIds);
+    } finally {
+      lock.unlock();
+    }
+  }
+
+  /**
+   * Gives back spots taken from the hold of a reservation by a vehicle that could not be parked,
+   * once its claimed spots are free again.
+   *
+   * @param reservationId The ID of the reservation.
+   * @param spots The amount of spots taken.
+   */
+  public void returnHold(long reservationId, int spots) {
+    lock.lock();
+    try {
+      Booking booking = bookings.get(reservationId);
+      if (booking == null) {
+        return;
+      }
+      booking.arrived -= spots;
+      if (holding.contains(booking)) {
+        booking.held += spots;
+        spotAllocator.hold(booking.type, spots);
+      }
+    } finally {
+      lock.unlock();
+    }
+  }
+
+  /**
+   * Opens the holds of the windows that started, gives back what is left of the holds that ran
+   * out, and drops the reservations that are over.
+   *
+   * @param now The current time, in epoch milliseconds.
+   * @return The IDs of the reservations that are over.
+   */
+  public List<Long> sweep(long now) {
+    List<Long> ended = new ArrayList<>();
+    lock.lock();
+    try {
+      while (!byEnd.isEmpty() && byEnd.first().end <= now) {
+        Booking booking = byEnd.first();
+        this.remove(booking);
+        ended.add(booking.id);
+      }
+      while (!pending.isEmpty() && pending.first().start <= now) {
+        this.open(pending.pollFirst());
+      }
+      while (!holding.isEmpty() && holding.first().start + holdMillis <= now) {
+        this.expire(holding.pollFirst(), now);
+      }
+      return ended;
+    } finally {
+      lock.unlock();
+    }
+  }
+
+  private int reservable(ParkingSpotType type) {
+    return (int) ((long) spotAllocator.capacity(type) * reservablePercent / 100);
+  }
+
+  private void validate(int spots, long start, long end) {
+    long nowSlot = Math.floorDiv(System.currentTimeMillis(), slotMillis);
+    if (spots < 1
+        || start >= end
+        || Math.floorDiv(start, slotMillis) < nowSlot
+        || Math.ceilDiv(end, slotMillis) - nowSlot > horizonSlots) {
+      throw new PklBadRequestException(ErrorCode.INVALID_RESERVATION);
+    }
+  }
+
+  private Booking find(long reservationId) {
+    Booking booking = bookings.get(reservationId);
+    if (booking == null) {
+      throw new PklNotFoundException(ErrorCode.RESERVATION_NOT_FOUND);
+    }
+    return booking;
+  }
+
+  private void add(Booking booking) {
+    timelines[booking.type.ordinal()].add(booking.startSlot, booking.endSlot, booking.spots);
+    bookings.put(booking.id, booking);
+    pending.add(booking);
+    byEnd.add(booking);
+  }
+
+  private void remove(Booking booking) {
+    if (holding.remove(booking)) {
+      spotAllocator.hold(booking.type, -booking.held);
+    }
+    CapacityTimeline timeline = timelines[booking.type.ordinal()];
+    timeline.add(booking.startSlot, booking.trimmedSlot, -booking.spots);
+    timeline.add(booking.trimmedSlot, booking.endSlot, -(booking.spots - booking.trimmed));
+    bookings.remove(booking.id);
+    pending.remove(booking);
+    byEnd.remove(booking);
+  }
+
+  private void open(Booking booking) {
+    booking.held = Math.max(0, booking.spots - booking.arrived);
+    spotAllocator.hold(booking.type, booking.held);
+    holding.add(booking);
+  }
+
+  /**
+   * Ends the hold of a reservation. The spots nobody arrived for are no longer booked from the next
+   * slot on, so other reservations can have them.
+   */
+  private void expire(Booking booking, long now) {
+    int unused = booking.held;
+    spotAllocator.hold(booking.type, -unused);
+    booking.held = 0;
+
+    long from =
+        Math.min(booking.endSlot, Math.max(booking.startSlot, Math.ceilDiv(now, slotMillis)));
+    timelines[booking.type.ordinal()].add(from, booking.endSlot, -unused);
+    booking.trimmedSlot = from;
+    booking.trimmed = unused;
+  }
+
+  /** A vehicle arriving for a reservation, with the spots it claimed from the hold. */
+  @Getter
+  @AllArgsConstructor
+  public static class Arrival {
+    private final ReservationDTO reservation;
+    private final long[] spotIds;
+  }
+
+  /** A reservation, pending until its window opens, then holding until its hold runs out. */
+  private final class Booking {
+    private final long id;
+    private final ParkingSpotType type;
+    private final int spots;
+    private final long start;
+    private final long end;
+    private final long startSlot;
+    private final long endSlot;
+    private int arrived;
+    private int held;
+    private long trimmedSlot;
+    private int trimmed;
+
+    private Booking(long id, ParkingSpotType type, int spots, long start, long end) {
+      this.id = id;
+      this.type = type;
+      this.spots = spots;
+      this.start = start;
+      this.end = end;
+      this.startSlot = Math.floorDiv(start, slotMillis);
+      this.endSlot = Math.ceilDiv(end, slotMillis);
+      this.trimmedSlot = endSlot;
+    }
+
+    private long id() {
+      return id;
+    }
+
+    private long start() {
+      return start;
+    }
+
+    private long end() {
+      return end;
+    }
+
+    private ReservationDTO toDTO() {
+      return ReservationDTO.builder()
+          .reservationId(id)
+          .spotType(type)
+          .spots(spots)
+          .start(Instant.ofEpochMilli(start))
+          .end(Instant.ofEpochMilli(end))
+          .arrived(arrived)
+          .held(held)
+          .build();
+    }
+  }
+}
@@ -0,0 +1,15 @@
+package assessment.parkinglot.service;
+
+import assessment.parkinglot.billing.ParkingSession;
+import assessment.parkinglot.dto.RevenueDTO;
+import assessment.parkinglot.enums.ParkingSpotType;
+import assessment.parkinglot.enums.VehicleType;
+import java.time.Instant;
+
+public interface BillingService {
+
+    ParkingSession closeSession(
+            long vehicleId, VehicleType vehicleType, ParkingSpotType spotType, int spots, long parkedAt);
+
+    RevenueDTO getRevenue(Instant from, Instant to);
+}
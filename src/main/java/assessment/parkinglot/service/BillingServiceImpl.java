@@ -0,0 +1,142 @@
+package assessment.parkinglot.service;
+
+import assessment.parkinglot.billing.ParkingSession;
+import assessment.parkinglot.billing.SessionArchive;
+import assessment.parkinglot.billing.Tariff;
+import assessment.parkinglot.dto.RevenueDTO;
+import assessment.parkinglot.enums.ErrorCode;
+import assessment.parkinglot.enums.ParkingSpotType;
+import assessment.parkinglot.enums.VehicleType;
+import assessment.parkinglot.exception.PklBadRequestException;
+import assessment.parkinglot.exception.PklErrorException;
+import java.io.IOException;
+import java.time.Instant;
+import java.util.EnumMap;
+import java.util.Map;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.stereotype.Service;
+
+/**
+ * Service implementation for pricing parking sessions and reporting the revenue of the lot.
+ *
+ * <p>A leave closes the session of its vehicle, which the {@link Tariff} prices and the {@link
+ * SessionArchive} keeps. Revenue is aggregated by scanning the archive, column by column, so a
+ * report over millions of sessions never builds an object per session.
+ */
+@Service
+@Slf4j
+public class BillingServiceImpl implements BillingService {
+
+  private static final VehicleType[] VEHICLE_TYPES = VehicleType.values();
+  private static final ParkingSpotType[] SPOT_TYPES = ParkingSpotType.values();
+
+  @Autowired Tariff tariff;
+  @Autowired SessionArchive sessionArchive;
+
+  /**
+   * Prices the stay of a leaving vehicle, and archives it once the leave commits.
+   *
+   * @param vehicleId The ID of the vehicle.
+   * @param vehicleType The type of the vehicle.
+   * @param spotType The type of the spots it took, {@code null} if it took none.
+   * @param spots The amount of spots it took.
+   * @param parkedAt The time it parked at, in epoch milliseconds.
+   * @return The closed {@link ParkingSession}, or {@code null} if the vehicle took no spot, in
+   *     which case nothing is archived.
+   */
+  @Override
+  public ParkingSession closeSession(
+      long vehicleId, VehicleType vehicleType, ParkingSpotType spotType, int spots, long parkedAt) {
+    if (spotType == null) {
+      return null;
+    }
+
+    long leftAt = System.currentTimeMillis();
+    ParkingSession session =
+        ParkingSession.builder()
+            .vehicleId(vehicleId)
+            .vehicleType(vehicleType)
+            .spotType(spotType)
+            .spots(spots)
+            .parkedAt(parkedAt)
+            .leftAt(leftAt)
+            .fee(tariff.price(vehicleType, spotType, parkedAt, leftAt))
+            .build();
+    sessionArchive.appendAfterCommit(session);
+    return session;
+  }
+
+  /**
+   * Adds up the sessions closed in a range of time, by vehicle type and by spot type.
+   *
+   * @param from The start of the range.
+   * @param to The end of the range, excluded.
+   * @return The {@link RevenueDTO} of the range.
+   * @throws PklBadRequestException if the range ends before it starts.
+   * @throws PklErrorException if the archive cannot be read.
+   */
+  @Override
+  public RevenueDTO getRevenue(Instant from, Instant to) {
+    if (to.isBefore(from)) {
+      throw new PklBadRequestException(ErrorCode.INVALID_TIME_RANGE);
+    }
+
+    long start = from.toEpochMilli();
+    long end = to.toEpochMilli();
+    long[] sessions = new long[VEHICLE_TYPES.length];
+    long[] stays = new long[VEHICLE_TYPES.length];
+    long[] revenueByVehicle = new long[VEHICLE_TYPES.length];
+    long[] revenueBySpot = new long[SPOT_TYPES.length];
+    try {
+      sessionArchive.scan(
+          start,
+          end,
+          block -> {
+            for (int i = 0; i < block.size(); i++) {
+              long leftAt = block.leftAt(i);
+              if (leftAt < start || leftAt >= end) {
+                continue;
+              }
+              int vehicleType = block.vehicleType(i).ordinal();
+              long fee = block.fee(i);
+              sessions[vehicleType]++;
+              stays[vehicleType] += leftAt - block.parkedAt(i);
+              revenueByVehicle[vehicleType] += fee;
+              revenueBySpot[block.spotType(i).ordinal()] += fee;
+            }
+          });
+    } catch (IOException e) {
+      log.error("Error at reading the session archive: {}", e.getMessage(), e);
+      throw new PklErrorException(ErrorCode.UNABLE_TO_READ_SESSIONS);
+    }
+
+    long totalSessions = 0;
+    long totalStay = 0;
+    long totalRevenue = 0;
+    Map<VehicleType, Long> sessionsByVehicleType = new EnumMap<>(VehicleType.class);
+    Map<VehicleType, Long> revenueByVehicleType = new EnumMap<>(VehicleType.class);
+    for (VehicleType type : VEHICLE_TYPES) {
+      totalSessions += sessions[type.ordinal()];
+      totalStay += stays[type.ordinal()];
+      totalRevenue += revenueByVehicle[type.ordinal()];
+      sessionsByVehicleType.put(type, sessions[type.ordinal()]);
+      revenueByVehicleType.put(type, revenueByVehicle[type.ordinal()]);
+    }
+    Map<ParkingSpotType, Long> revenueBySpotType = new EnumMap<>(ParkingSpotType.class);
+    for (ParkingSpotType type : SPOT_TYPES) {
+      revenueBySpotType.put(type, revenueBySpot[type.ordinal()]);
+    }
+
+    return RevenueDTO.builder()
+        .from(from)
+        .to(to)
+        .sessions(totalSessions)
+        .revenue(totalRevenue)
+        .averageStaySeconds(totalSessions == 0 ? 0 : totalStay / totalSessions / 1000)
+        .sessionsByVehicleType(sessionsByVehicleType)
+        .revenueByVehicleType(revenueByVehicleType)
+        .revenueBySpotType(revenueBySpotType)
+        .build();
+  }
+}
@@ -1,18 +1,40 @@
 package assessment.parkinglot.service;
 
+import assessment.parkinglot.domain.ParkingStatus;
+import assessment.parkinglot.dto.BatchItemDTO;
 import assessment.parkinglot.dto.VehicleDTO;
+import assessment.parkinglot.enums.AllocationStrategyType;
+import assessment.parkinglot.enums.HistoryResolution;
 import assessment.parkinglot.enums.ParkingSpotType;
 import assessment.parkinglot.enums.VehicleType;
 import java.util.List;
+import java.util.Map;
+import java.util.function.Consumer;
 
 public interface ParkingService {
 
     VehicleDTO parkVehicle(VehicleType vehicleType);
+    VehicleDTO parkVehicle(VehicleType vehicleType, ParkingSpotType spotType, long[] spotIds);
     VehicleDTO removeVehicle(Long vehicleId);
 
+    List<BatchItemDTO> parkVehicles(List<VehicleType> vehicleTypes);
+    List<BatchItemDTO> removeVehicles(List<Long> vehicleIds);
+
     long countAvailableSpots(ParkingSpotType type);
 
+    Map<String, Long> countAvailableSpotsByLevel(ParkingSpotType type);
+
     boolean areAllSpotsTaken(VehicleType type);
 
     List<VehicleDTO> getAllParkedVehicles();
+
+    List<VehicleDTO> getParkedVehicles(Long afterVehicleId, int limit);
+
+    void streamParkedVehicles(Consumer<VehicleDTO> consumer);
+
+    AllocationStrategyType getAllocationStrategy();
+
+    void setAllocationStrategy(AllocationStrategyType strategy);
+
+    List<ParkingStatus> getOccupancyHistory(HistoryResolution resolution, int limit);
 }
@@ -1,23 +1,45 @@
 package assessment.parkinglot.service;
 
+import assessment.parkinglot.allocation.AllocationStrategySelector;
+import assessment.parkinglot.allocation.SpotAllocator;
 import assessment.parkinglot.behavior.ParkBehavior;
+import assessment.parkinglot.billing.ParkingSession;
+import assessment.parkinglot.cache.VehicleIndex;
+import assessment.parkinglot.domain.ParkingStatus;
 import assessment.parkinglot.domain.Vehicle;
 import assessment.parkinglot.domain.VehicleFactory;
+import assessment.parkinglot.dto.BatchItemDTO;
 import assessment.parkinglot.dto.Translator;
 import assessment.parkinglot.dto.VehicleDTO;
 import assessment.parkinglot.entities.ParkingSpotEntity;
 import assessment.parkinglot.entities.VehicleEntity;
+import assessment.parkinglot.enums.AllocationStrategyType;
 import assessment.parkinglot.enums.ErrorCode;
+import assessment.parkinglot.enums.HistoryResolution;
 import assessment.parkinglot.enums.ParkingSpotType;
 import assessment.parkinglot.enums.VehicleType;
+import assessment.parkinglot.exception.ParkingLotException;
 import assessment.parkinglot.exception.PklErrorException;
 import assessment.parkinglot.exception.PklNotFoundException;
+import assessment.parkinglot.history.OccupancyRecorder;
+import assessment.parkinglot.metrics.ParkingMetrics;
 import assessment.parkinglot.repository.ParkingSpotRepository;
 import assessment.parkinglot.repository.VehicleRepository;
+import assessment.parkinglot.repository.VehicleSpotRow;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.EnumMap;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
 import java.util.List;
 import java.util.Map;
-import java.util.stream.Collectors;
+import java.util.Objects;
+import java.util.Set;
+import java.util.function.Consumer;
+import java.util.stream.Stream;
 import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.data.domain.Limit;
 import org.springframework.stereotype.Service;
 import org.springframework.transaction.annotation.Transactional;
 
@@ -33,6 +55,12 @@ public class ParkingServiceImpl implements ParkingService {
   @Autowired VehicleRepository vehicleRepository;
   @Autowired ParkingSpotRepository parkingSpotRepository;
   @Autowired Translator translator;
+  @Autowired SpotAllocator spotAllocator;
+  @Autowired ParkingMetrics parkingMetrics;
+  @Autowired AllocationStrategySelector strategySelector;
+  @Autowired VehicleIndex vehicleIndex;
+  @Autowired OccupancyRecorder occupancyRecorder;
+  @Autowired BillingService billingService;
 
     /**
      * Parks a vehicle based on its type, if there is available space.
@@ -43,26 +71,73 @@ public class ParkingServiceImpl implements ParkingService {
      */
   @Override
   public VehicleDTO parkVehicle(VehicleType vehicleType) {
-    Vehicle vehicle = VehicleFactory.create(vehicleType);
-    if (this.canPark(vehicle)) {
-      return vehicle.park(parkBehavior);
+    long start = System.nanoTime();
+    try {
+      Vehicle vehicle = VehicleFactory.create(vehicleType);
+      if (this.canPark(vehicle)) {
+        VehicleDTO parked = vehicle.park(parkBehavior);
+        occupancyRecorder.park(vehicleType);
+        return parked;
+      }
+
+      throw new PklErrorException(ErrorCode.NO_SPACE_TO_PARK);
+    } catch (ParkingLotException e) {
+      parkingMetrics.failure(e.getError());
+      throw e;
+    } finally {
+      parkingMetrics.park(vehicleType, System.nanoTime() - start);
     }
+  }
 
-    throw new PklErrorException(ErrorCode.NO_SPACE_TO_PARK);
+    /**
+     * Parks a vehicle on spots already claimed for it from the {@link SpotAllocator}, such as the
+     * held spots of a reservation. The spots are given back if the vehicle cannot be parked.
+     *
+     * @param vehicleType The type of the vehicle to be parked.
+     * @param spotType The type of the claimed spots.
+     * @param spotIds The ids of the claimed spots.
+     * @return The parked vehicle's {@link VehicleDTO}.
+     * @throws PklErrorException if the vehicle cannot be parked.
+     */
+  @Override
+  public VehicleDTO parkVehicle(VehicleType vehicleType, ParkingSpotType spotType, long[] spotIds) {
+    long start = System.nanoTime();
+    try {
+      VehicleDTO parked =
+          parkBehavior.park(VehicleFactory.create(vehicleType), spotType, spotIds);
+      occupancyRecorder.park(vehicleType);
+      return parked;
+    } catch (ParkingLotException e) {
+      parkingMetrics.failure(e.getError());
+      throw e;
+    } finally {
+      parkingMetrics.park(vehicleType, System.nanoTime() - start);
+    }
   }
 
     /**
-     * Removes a vehicle from the parking lot by its ID.
+     * Removes a vehicle from the parking lot by its ID. A vehicle held by the {@link VehicleIndex}
+     * costs a single delete and a single update of its spots, by their ids, whatever the size of
+     * the lot. Any other vehicle is read from the database first. The vehicle is deleted before its
+     * spots are read or freed, so of two concurrent leaves of it only the one that deletes it frees
+     * its spots. The session of the vehicle is closed and priced by the {@link BillingService}.
      *
      * @param vehicleId The ID of the vehicle to be removed.
-     * @return The removed vehicle's {@link VehicleDTO}.
+     * @return The removed vehicle's {@link VehicleDTO}, with its stay and fee.
      * @throws PklNotFoundException if the vehicle is not found.
      */
   @Override
   @Transactional
   public VehicleDTO removeVehicle(Long vehicleId) {
+    long start = System.nanoTime();
+    VehicleIndex.ParkedVehicle parked = vehicleIndex.get(vehicleId);
+    if (parked != null) {
+      return this.removeIndexedVehicle(vehicleId, parked, start);
+    }
+
     VehicleEntity vehicle = vehicleRepository.findById(vehicleId).orElse(null);
-    if (vehicle == null) {
+    if (vehicle == null || vehicleRepository.deleteVehicle(vehicleId) == 0) {
+      parkingMetrics.failure(ErrorCode.VEHICLE_NOT_FOUND);
       throw new PklNotFoundException(ErrorCode.VEHICLE_NOT_FOUND);
     }
 
@@ -72,22 +147,142 @@ public class ParkingServiceImpl implements ParkingService {
         s -> {
           s.setVehicleId(null);
           parkingSpotRepository.save(s);
+          spotAllocator.releaseAfterCommit(s.getType(), s.getId());
         });
 
-    vehicleRepository.delete(vehicle);
+    ParkingSession session = this.closeSession(vehicle, occupiedSpots);
+    occupancyRecorder.leave(vehicle.getType(), vehicle.getParkedAt().toEpochMilli());
+    parkingMetrics.leave(vehicle.getType(), System.nanoTime() - start);
+    return this.toDTO(vehicleId, vehicle.getType(), session);
+  }
 
-    return VehicleDTO.builder().vehicleId(vehicleId).type(vehicle.getType()).parked(Boolean.FALSE).build();
+    /**
+     * Parks many vehicles in a single transaction.
+     *
+     * @param vehicleTypes The types of the vehicles to be parked. A {@code null} type is reported
+     *     as unknown.
+     * @return One {@link BatchItemDTO} per vehicle type, in the same order, with either the parked
+     *     vehicle or the reason it was not parked.
+     * @throws PklErrorException if the batch cannot be persisted, in which case no vehicle is parked.
+     */
+  @Override
+  public List<BatchItemDTO> parkVehicles(List<VehicleType> vehicleTypes) {
+    long start = System.nanoTime();
+    List<Vehicle> vehicles = new ArrayList<>(vehicleTypes.size());
+    vehicleTypes.stream().filter(Objects::nonNull).forEach(t -> vehicles.add(VehicleFactory.create(t)));
+
+    Iterator<BatchItemDTO> parked = parkBehavior.park(vehicles).iterator();
+    // The latency of each vehicle is its share of the batch.
+    long nanos = (System.nanoTime() - start) / Math.max(1, vehicleTypes.size());
+
+    List<BatchItemDTO> items = new ArrayList<>(vehicleTypes.size());
+    for (VehicleType vehicleType : vehicleTypes) {
+      BatchItemDTO item =
+          vehicleType == null
+              ? BatchItemDTO.builder().error(ErrorCode.UNKNOWN_VEHICLE_TYPE).build()
+              : parked.next();
+      if (item.getError() != null) {
+        parkingMetrics.failure(item.getError());
+      } else {
+        occupancyRecorder.park(vehicleType);
+        parkingMetrics.park(vehicleType, nanos);
+      }
+      items.add(item);
+    }
+    return items;
   }
 
     /**
-     * Counts the number of available parking spots of a specific type.
+     * Removes many vehicles from the parking lot in a single transaction, freeing all their spots
+     * with one update, and closes their sessions. The vehicles are deleted first, in a single JDBC
+     * batch, and only the ones it actually deleted have their spots read and freed, so a vehicle
+     * removed by a concurrent leave is reported as not found instead of being billed and freed
+     * twice.
+     *
+     * @param vehicleIds The IDs of the vehicles to be removed.
+     * @return One {@link BatchItemDTO} per vehicle ID, in the same order, with either the removed
+     *     vehicle or the reason it was not removed.
+     */
+  @Override
+  @Transactional
+  public List<BatchItemDTO> removeVehicles(List<Long> vehicleIds) {
+    long start = System.nanoTime();
+    Map<Long, VehicleEntity> vehicles = new HashMap<>();
+    vehicleRepository
+        .findAllById(vehicleIds.stream().filter(Objects::nonNull).toList())
+        .forEach(v -> vehicles.put(v.getId(), v));
+    Set<Long> removedIds =
+        vehicles.isEmpty()
+            ? Set.of()
+            : Set.copyOf(vehicleRepository.deleteVehicles(List.copyOf(vehicles.keySet())));
+
+    Map<Long, List<ParkingSpotEntity>> spotsByVehicle = new HashMap<>();
+    if (!removedIds.isEmpty()) {
+      Map<ParkingSpotType, List<Long>> occupiedSpots = new EnumMap<>(ParkingSpotType.class);
+      parkingSpotRepository
+          .findByVehicleIdIn(removedIds)
+          .forEach(
+              s -> {
+                occupiedSpots.computeIfAbsent(s.getType(), t -> new ArrayList<>()).add(s.getId());
+                spotsByVehicle.computeIfAbsent(s.getVehicleId(), v -> new ArrayList<>()).add(s);
+              });
+
+      parkingSpotRepository.releaseVehicles(removedIds);
+      vehicleIndex.removeAfterCommit(removedIds);
+
+      occupiedSpots.forEach(
+          (type, ids) ->
+              spotAllocator.releaseAfterCommit(
+                  type, ids.stream().mapToLong(Long::longValue).toArray()));
+    }
+
+    long nanos = (System.nanoTime() - start) / Math.max(1, vehicleIds.size());
+    List<BatchItemDTO> items = new ArrayList<>(vehicleIds.size());
+    for (Long vehicleId : vehicleIds) {
+      VehicleEntity vehicle =
+          vehicleId != null && removedIds.contains(vehicleId) ? vehicles.remove(vehicleId) : null;
+      if (vehicle == null) {
+        parkingMetrics.failure(ErrorCode.VEHICLE_NOT_FOUND);
+        items.add(BatchItemDTO.builder().error(ErrorCode.VEHICLE_NOT_FOUND).build());
+        continue;
+      }
+
+      ParkingSession session =
+          this.closeSession(vehicle, spotsByVehicle.getOrDefault(vehicleId, List.of()));
+      occupancyRecorder.leave(vehicle.getType(), vehicle.getParkedAt().toEpochMilli());
+      parkingMetrics.leave(vehicle.getType(), nanos);
+      VehicleDTO vehicleDTO = this.toDTO(vehicleId, vehicle.getType(), session);
+      items.add(BatchItemDTO.builder().vehicle(vehicleDTO).build());
+    }
+    return items;
+  }
+
+    /**
+     * Counts the number of available parking spots of a specific type, from the in-memory free
+     * counters of the {@link SpotAllocator}.
      *
      * @param type The type of parking spot.
      * @return The number of available spots.
      */
   @Override
   public long countAvailableSpots(ParkingSpotType type) {
-    return this.parkingSpotRepository.countByTypeAndVehicleIdIsNull(type);
+    return this.spotAllocator.available(type);
+  }
+
+    /**
+     * Counts the available parking spots of a specific type on each level of the lot, each level
+     * from its own shard of the {@link SpotAllocator}.
+     *
+     * @param type The type of parking spot.
+     * @return The number of available spots by level name, in the order of the lot.
+     */
+  @Override
+  public Map<String, Long> countAvailableSpotsByLevel(ParkingSpotType type) {
+    Map<String, Long> availableByLevel = new LinkedHashMap<>();
+    this.spotAllocator
+        .availableByLevel(type)
+        .forEach((level, available) -> availableByLevel.put(level, available.longValue()));
+    return availableByLevel;
   }
 
     /**
@@ -103,43 +298,196 @@ public class ParkingServiceImpl implements ParkingService {
   }
 
     /**
-     * Retrieves all currently parked vehicles.
+     * Retrieves all currently parked vehicles, with their spots, in a single query.
      *
      * @return A list of {@link VehicleDTO} representing the parked vehicles.
      */
   @Override
   public List<VehicleDTO> getAllParkedVehicles() {
 
-    return this.vehicleRepository.findAll().stream()
-        .map(
-            v -> {
-              VehicleDTO dto = translator.toDTO(v);
-              dto.setParked(Boolean.TRUE);
-              dto.setParkedOn(
-                  parkingSpotRepository.findByVehicleId(v.getId()).stream()
-                      .map(pse -> translator.toDTO(pse))
-                      .collect(Collectors.toList()));
-              return dto;
-            })
-        .collect(Collectors.toList());
+    List<VehicleDTO> parkedVehicles = new ArrayList<>();
+    this.groupByVehicle(this.vehicleRepository.findAllWithSpots().iterator(), parkedVehicles::add);
+    return parkedVehicles;
   }
 
     /**
-     * Determines if a vehicle can be parked based on available spots.
+     * Retrieves a page of parked vehicles ordered by their ID.
+     *
+     * @param afterVehicleId The ID of the last vehicle of the previous page, {@code null} for the
+     *     first page.
+     * @param limit The maximum amount of vehicles in the page.
+     * @return A list of {@link VehicleDTO} with the vehicles that follow {@code afterVehicleId}.
+     */
+  @Override
+  public List<VehicleDTO> getParkedVehicles(Long afterVehicleId, int limit) {
+
+    List<Long> vehicleIds =
+        this.vehicleRepository.findIdsAfter(
+            afterVehicleId == null ? Long.MIN_VALUE : afterVehicleId, Limit.of(limit));
+    if (vehicleIds.isEmpty()) {
+      return List.of();
+    }
+
+    List<VehicleDTO> parkedVehicles = new ArrayList<>(vehicleIds.size());
+    this.groupByVehicle(
+        this.vehicleRepository.findWithSpotsByIdIn(vehicleIds).iterator(), parkedVehicles::add);
+    return parkedVehicles;
+  }
+
+    /**
+     * Hands every parked vehicle to the consumer as it is read from the database, without holding
+     * them all in memory.
+     *
+     * @param consumer The consumer of each {@link VehicleDTO}.
+     */
+  @Override
+  @Transactional(readOnly = true)
+  public void streamParkedVehicles(Consumer<VehicleDTO> consumer) {
+
+    try (Stream<VehicleSpotRow> rows = this.vehicleRepository.streamAllWithSpots()) {
+      this.groupByVehicle(rows.iterator(), consumer);
+    }
+  }
+
+    /**
+     * Gets the strategy used to choose the spot type of each vehicle.
+     *
+     * @return The current {@link AllocationStrategyType}.
+     */
+  @Override
+  public AllocationStrategyType getAllocationStrategy() {
+    return strategySelector.current();
+  }
+
+    /**
+     * Switches the strategy used to choose the spot type of each vehicle, for the parks to come.
+     *
+     * @param strategy The {@link AllocationStrategyType} to use.
+     */
+  @Override
+  public void setAllocationStrategy(AllocationStrategyType strategy) {
+    strategySelector.select(strategy);
+  }
+
+    /**
+     * Retrieves the latest periods of the occupancy history of the lot.
+     *
+     * @param resolution The length of the periods.
+     * @param limit The maximum amount of periods.
+     * @return The periods, from the oldest to the newest, which is still open.
+     */
+  @Override
+  public List<ParkingStatus> getOccupancyHistory(HistoryResolution resolution, int limit) {
+    return occupancyRecorder.history(resolution, limit);
+  }
+
+    /**
+     * Determines if a vehicle can be parked based on available spots, among the spot types the
+     * current allocation strategy allows it to use. A vehicle taking several spots needs them
+     * adjacent, so it is checked against the longest run of free spots rather than their count.
      *
      * @param vehicle The vehicle to be checked.
      * @return {@code true} if the vehicle can be parked, {@code false} otherwise.
      */
   private boolean canPark(Vehicle vehicle) {
 
-    Map<ParkingSpotType, Integer> spotTypes = vehicle.getParkingSpotUsageByTypes();
+    List<ParkingSpotType> candidates = this.strategySelector.candidates(vehicle);
+    for (int i = 0; i < candidates.size(); i++) {
+      ParkingSpotType type = candidates.get(i);
+      int spots = vehicle.spots(type);
+      int room =
+          spots > 1 ? this.spotAllocator.longestRun(type) : this.spotAllocator.available(type);
+      if (room >= spots) {
+        return true;
+      }
+    }
+    return false;
+  }
+
+    /**
+     * Removes a vehicle of the {@link VehicleIndex}, freeing its spots by their ids. The vehicle is
+     * deleted before its spots are freed, as the batch leave does, and a vehicle already removed by
+     * a concurrent leave deletes no row, in which case the transaction rolls back.
+     *
+     * @param vehicleId The ID of the vehicle to be removed.
+     * @param parked The vehicle, as held by the index.
+     * @param start The time the leave started at, in nanoseconds.
+     * @return The removed vehicle's {@link VehicleDTO}.
+     * @throws PklNotFoundException if the vehicle is no longer in the database.
+     */
+  private VehicleDTO removeIndexedVehicle(Long vehicleId, VehicleIndex.ParkedVehicle parked, long start) {
+
+    long[] spotIds = parked.getSpotIds();
+    if (vehicleRepository.deleteVehicle(vehicleId) == 0) {
+      parkingMetrics.failure(ErrorCode.VEHICLE_NOT_FOUND);
+      throw new PklNotFoundException(ErrorCode.VEHICLE_NOT_FOUND);
+    }
+    parkingSpotRepository.releaseSpots(vehicleId, Arrays.stream(spotIds).boxed().toList());
+
+    spotAllocator.releaseAfterCommit(parked.getSpotType(), spotIds);
+    vehicleIndex.removeAfterCommit(List.of(vehicleId));
+
+    ParkingSession session =
+        billingService.closeSession(
+            vehicleId,
+            parked.getVehicleType(),
+            parked.getSpotType(),
+            spotIds.length,
+            parked.getParkedAt());
+    occupancyRecorder.leave(parked.getVehicleType(), parked.getParkedAt());
+    parkingMetrics.leave(parked.getVehicleType(), System.nanoTime() - start);
+    return this.toDTO(vehicleId, parked.getVehicleType(), session);
+  }
+
+    /**
+     * Closes the session of a vehicle read from the database.
+     *
+     * @param vehicle The leaving vehicle.
+     * @param occupiedSpots The spots it took.
+     * @return The closed {@link ParkingSession}, or {@code null} if it cannot be priced.
+     */
+  private ParkingSession closeSession(VehicleEntity vehicle, List<ParkingSpotEntity> occupiedSpots) {
+
+    return billingService.closeSession(
+        vehicle.getId(),
+        vehicle.getType(),
+        occupiedSpots.isEmpty() ? null : occupiedSpots.get(0).getType(),
+        occupiedSpots.size(),
+        vehicle.getParkedAt().toEpochMilli());
+  }
+
+  private VehicleDTO toDTO(Long vehicleId, VehicleType type, ParkingSession session) {
+    if (session != null) {
+      return translator.toDTO(session);
+    }
+    return VehicleDTO.builder().vehicleId(vehicleId).type(type).parked(Boolean.FALSE).build();
+  }
 
-    return spotTypes.entrySet().stream()
-        .anyMatch(
-            entry -> {
-              List<ParkingSpotEntity> freeSpots =
-                  this.parkingSpotRepository.findByTypeAndVehicleIdIsNull(entry.getKey());
-              return freeSpots.size() >= entry.getValue();
-            });
+    /**
+     * Groups the rows of consecutive spots of the same vehicle into one {@link VehicleDTO}. Each
+     * vehicle is handed to the consumer once its last row has been read.
+     *
+     * @param rows The rows, ordered by vehicle ID.
+     * @param consumer The consumer of each {@link VehicleDTO}.
+     */
+  private void groupByVehicle(Iterator<VehicleSpotRow> rows, Consumer<VehicleDTO> consumer) {
+
+    VehicleDTO current = null;
+    while (rows.hasNext()) {
+      VehicleSpotRow row = rows.next();
+      if (current == null || !current.getVehicleId().equals(row.getVehicleId())) {
+        if (current != null) {
+          consumer.accept(current);
+        }
+        current = translator.toDTO(row.getVehicleId(), row.getVehicleType());
+        current.setParked(Boolean.TRUE);
+      }
+      if (row.getSpotId() != null) {
+        current.getParkedOn().add(translator.toDTO(row.getSpotId(), row.getSpotType()));
+      }
+    }
+    if (current != null) {
+      consumer.accept(current);
+    }
   }
 }
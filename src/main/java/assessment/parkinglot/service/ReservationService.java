@@ -0,0 +1,20 @@
+package assessment.parkinglot.service;
+
+import assessment.parkinglot.dto.ReservationDTO;
+import assessment.parkinglot.dto.VehicleDTO;
+import assessment.parkinglot.enums.ParkingSpotType;
+import assessment.parkinglot.enums.VehicleType;
+import java.time.Instant;
+
+public interface ReservationService {
+
+    ReservationDTO reserve(ParkingSpotType type, int spots, Instant start, Instant end);
+
+    long countReservableSpots(ParkingSpotType type, Instant start, Instant end);
+
+    ReservationDTO getReservation(Long reservationId);
+
+    ReservationDTO cancelReservation(Long reservationId);
+
+    VehicleDTO arrive(Long reservationId, VehicleType vehicleType);
+}
@@ -0,0 +1,178 @@
+package assessment.parkinglot.service;
+
+import assessment.parkinglot.domain.Vehicle;
+import assessment.parkinglot.domain.VehicleFactory;
+import assessment.parkinglot.dto.ReservationDTO;
+import assessment.parkinglot.dto.VehicleDTO;
+import assessment.parkinglot.entities.ReservationEntity;
+import assessment.parkinglot.enums.ErrorCode;
+import assessment.parkinglot.enums.ParkingSpotType;
+import assessment.parkinglot.enums.VehicleType;
+import assessment.parkinglot.exception.ParkingLotException;
+import assessment.parkinglot.exception.PklBadRequestException;
+import assessment.parkinglot.exception.PklErrorException;
+import assessment.parkinglot.exception.PklNotFoundException;
+import assessment.parkinglot.repository.ReservationRepository;
+import assessment.parkinglot.reservation.ReservationBook;
+import java.time.Instant;
+import java.util.List;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.ApplicationArguments;
+import org.springframework.boot.ApplicationRunner;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.annotation.Transactional;
+
+/**
+ * Service implementation for booking spots ahead of time.
+ *
+ * <p>Reservations are saved to the database and booked in the {@link ReservationBook}, which
+ * answers availability and holds the spots of the open windows. The book is rebuilt from the
+ * database on startup, and reservations are deleted once over. Arriving vehicles are parked by the
+ * {@link ParkingService} of the persistence mode in use.
+ */
+@Service
+@Slf4j
+public class ReservationServiceImpl implements ReservationService, ApplicationRunner {
+
+  @Autowired ReservationBook reservationBook;
+  @Autowired ReservationRepository reservationRepository;
+  @Autowired ParkingService parkingService;
+
+  /** Books again the reservations saved before the restart. */
+  @Override
+  public void run(ApplicationArguments args) {
+    List<ReservationEntity> reservations = reservationRepository.findAll();
+    reservations.forEach(r -> reservationBook.restore(this.toDTO(r)));
+    this.sweep();
+    log.info("Restored {} reservations", reservations.size());
+  }
+
+  /**
+   * Books spots of a type for a window of time.
+   *
+   * @param type The type of the spots.
+   * @param spots The amount of spots.
+   * @param start The start of the window.
+   * @param end The end of the window.
+   * @return The booked {@link ReservationDTO}.
+   * @throws PklBadRequestException if the window or the amount of spots is out of range.
+   * @throws PklErrorException if there is no room left for the window, in which case nothing is
+   *     saved.
+   */
+  @Override
+  @Transactional
+  public ReservationDTO reserve(ParkingSpotType type, int spots, Instant start, Instant end) {
+    ReservationEntity reservation =
+        reservationRepository.save(
+            ReservationEntity.builder()
+                .spotType(type)
+                .spots(spots)
+                .startsAt(start)
+                .endsAt(end)
+                .build());
+
+    return reservationBook.book(
+        reservation.getId(), type, spots, start.toEpochMilli(), end.toEpochMilli());
+  }
+
+  /**
+   * Counts the spots of a type that can still be booked for a whole window.
+   *
+   * @param type The type of the spots.
+   * @param start The start of the window.
+   * @param end The end of the window.
+   * @return The number of spots.
+   * @throws PklBadRequestException if the window is out of range.
+   */
+  @Override
+  public long countReservableSpots(ParkingSpotType type, Instant start, Instant end) {
+    return reservationBook.available(type, start.toEpochMilli(), end.toEpochMilli());
+  }
+
+  /**
+   * Retrieves a reservation.
+   *
+   * @param reservationId The ID of the reservation.
+   * @return The {@link ReservationDTO}.
+   * @throws PklNotFoundException if the reservation does not exist or is over.
+   */
+  @Override
+  public ReservationDTO getReservation(Long reservationId) {
+    ReservationDTO reservation = reservationBook.get(reservationId);
+    if (reservation == null) {
+      throw new PklNotFoundException(ErrorCode.RESERVATION_NOT_FOUND);
+    }
+    return reservation;
+  }
+
+  /**
+   * Cancels a reservation, giving back its spots.
+   *
+   * @param reservationId The ID of the reservation.
+   * @return The cancelled {@link ReservationDTO}.
+   * @throws PklNotFoundException if the reservation does not exist or is over.
+   */
+  @Override
+  @Transactional
+  public ReservationDTO cancelReservation(Long reservationId) {
+    ReservationDTO reservation = reservationBook.cancel(reservationId);
+    reservationRepository.deleteById(reservationId);
+    return reservation;
+  }
+
+  /**
+   * Parks a vehicle of a reservation on the spots held for it. The vehicle claims its share of the
+   * hold, spots of the type of the reservation, and is then parked on them. If it cannot be parked,
+   * its share goes back to the hold.
+   *
+   * @param reservationId The ID of the reservation.
+   * @param vehicleType The type of the arriving vehicle.
+   * @return The parked vehicle's {@link VehicleDTO}.
+   * @throws PklNotFoundException if the reservation does not exist or is over.
+   * @throws PklBadRequestException if the reservation holds no room for the vehicle.
+   * @throws PklErrorException if the vehicle cannot be parked.
+   */
+  @Override
+  public VehicleDTO arrive(Long reservationId, VehicleType vehicleType) {
+    Vehicle arriving = VehicleFactory.create(vehicleType);
+    ReservationBook.Arrival arrival = reservationBook.takeHold(reservationId, arriving);
+    ReservationDTO reservation = arrival.getReservation();
+
+    VehicleDTO vehicle;
+    try {
+      vehicle =
+          parkingService.parkVehicle(vehicleType, reservation.getSpotType(), arrival.getSpotIds());
+    } catch (ParkingLotException e) {
+      reservationBook.returnHold(reservationId, arrival.getSpotIds().length);
+      throw e;
+    }
+
+    reservationRepository.updateArrived(reservationId, reservation.getArrived());
+    return vehicle;
+  }
+
+  /** Opens and expires the holds of the reservations, and deletes the ones that are over. */
+  @Scheduled(
+      initialDelayString = "${parking.reservation.sweep-interval}",
+      fixedDelayString = "${parking.reservation.sweep-interval}")
+  @Transactional
+  public void sweep() {
+    List<Long> ended = reservationBook.sweep(System.currentTimeMillis());
+    if (!ended.isEmpty()) {
+      reservationRepository.deleteAllByIdInBatch(ended);
+    }
+  }
+
+  private ReservationDTO toDTO(ReservationEntity reservation) {
+    return ReservationDTO.builder()
+        .reservationId(reservation.getId())
+        .spotType(reservation.getSpotType())
+        .spots(reservation.getSpots())
+        .start(reservation.getStartsAt())
+        .end(reservation.getEndsAt())
+        .arrived(reservation.getArrived())
+        .build();
+  }
+}
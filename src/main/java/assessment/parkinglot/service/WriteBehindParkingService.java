@@ -0,0 +1,486 @@
+package assessment.parkinglot.service;
+
+import assessment.parkinglot.allocation.AllocationStrategySelector;
+import assessment.parkinglot.allocation.SpotAllocator;
+import assessment.parkinglot.billing.ParkingSession;
+import assessment.parkinglot.cluster.ClusterNode;
+import assessment.parkinglot.domain.ParkingStatus;
+import assessment.parkinglot.domain.Vehicle;
+import assessment.parkinglot.domain.VehicleFactory;
+import assessment.parkinglot.dto.BatchItemDTO;
+import assessment.parkinglot.dto.Translator;
+import assessment.parkinglot.dto.VehicleDTO;
+import assessment.parkinglot.enums.AllocationStrategyType;
+import assessment.parkinglot.enums.ErrorCode;
+import assessment.parkinglot.enums.HistoryResolution;
+import assessment.parkinglot.enums.ParkingSpotType;
+import assessment.parkinglot.enums.VehicleType;
+import assessment.parkinglot.exception.ParkingLotException;
+import assessment.parkinglot.exception.PklErrorException;
+import assessment.parkinglot.exception.PklNotFoundException;
+import assessment.parkinglot.history.OccupancyRecorder;
+import assessment.parkinglot.journal.JournalRecord;
+import assessment.parkinglot.journal.LotSnapshot;
+import assessment.parkinglot.journal.LotSnapshotter;
+import assessment.parkinglot.journal.ParkingJournal;
+import assessment.parkinglot.journal.WriteBehindFlusher;
+import assessment.parkinglot.metrics.ParkingMetrics;
+import jakarta.annotation.PreDestroy;
+import java.io.IOException;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.NavigableMap;
+import java.util.concurrent.ConcurrentSkipListMap;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.Consumer;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.ApplicationArguments;
+import org.springframework.boot.ApplicationRunner;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.context.annotation.Primary;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Service;
+
+/**
+ * {@link ParkingService} of the write-behind mode, enabled with {@code
+ * parking.persistence.mode=write-behind}.
+ *
+ * <p>Parks and leaves are applied to the {@link SpotAllocator} and to an in-memory index of the
+ * parked vehicles, and appended to the {@link ParkingJournal} before returning, so a request costs
+ * a sequential append instead of several database round trips. The {@link WriteBehindFlusher} then
+ * writes them to the database in batches. Queries are answered from the index.
+ *
+ * <p>On startup the lot is restored from the last {@link LotSnapshot}, or from the freshly created
+ * lot if there is none yet, and the journal written after it is replayed on top, which brings back
+ * every vehicle parked before a crash or a restart. The result is then written to the database.
+ * Snapshots are taken every {@code parking.snapshot.interval} and at shutdown.
+ */
+@Service
+@Primary
+@ConditionalOnProperty(name = "parking.persistence.mode", havingValue = "write-behind")
+@Slf4j
+public class WriteBehindParkingService implements ParkingService, ApplicationRunner {
+
+  @Autowired ParkingServiceImpl parkingServiceImpl;
+  @Autowired SpotAllocator spotAllocator;
+  @Autowired AllocationStrategySelector strategySelector;
+  @Autowired WriteBehindFlusher flusher;
+  @Autowired LotSnapshotter snapshotter;
+  @Autowired Translator translator;
+  @Autowired ParkingMetrics parkingMetrics;
+  @Autowired OccupancyRecorder occupancyRecorder;
+  @Autowired BillingService billingService;
+
+  @Autowired(required = false)
+  ClusterNode clusterNode;
+
+  @Value("${parking.journal.directory}")
+  Path journalDirectory;
+
+  @Value("${parking.journal.fsync}")
+  boolean fsync;
+
+  private final NavigableMap<Long, JournalRecord> parked = new ConcurrentSkipListMap<>();
+  private final AtomicLong nextVehicleId = new AtomicLong(1);
+  private ParkingJournal journal;
+
+  /**
+   * Restores the lot from the last snapshot and the journal written after it, and opens the journal
+   * for appending.
+   */
+  @Override
+  public void run(ApplicationArguments args) throws IOException {
+    long start = System.nanoTime();
+    boolean restored = snapshotter.exists();
+    LotSnapshot lot = snapshotter.load();
+    AtomicInteger replayed = new AtomicInteger();
+    this.journal =
+        ParkingJournal.open(
+            journalDirectory,
+            fsync,
+            lot.getNextSegment(),
+            record -> {
+              lot.apply(record);
+              replayed.incrementAndGet();
+            });
+
+    ParkingSpotType[] types = new ParkingSpotType[lot.size()];
+    boolean[] free = new boolean[lot.size()];
+    String[] levels = new String[lot.size()];
+    for (int i = 0; i < types.length; i++) {
+      types[i] = lot.spotType(i);
+      free[i] = !lot.isTaken(i);
+      levels[i] = lot.spotLevel(i);
+    }
+    spotAllocator.load(lot.getSpotIds(), types, free, levels);
+    parked.putAll(lot.getParks());
+    nextVehicleId.set(
+        clusterNode == null
+            ? lot.getNextVehicleId()
+            : Math.max(lot.getNextVehicleId(), clusterNode.firstId()));
+
+    if (restored) {
+      flusher.seed(lot);
+    } else {
+      parked.values().forEach(flusher::enqueue);
+    }
+    log.info(
+        "Restored {} spots and {} vehicles, {} journal records replayed, in {} ms",
+        lot.size(),
+        parked.size(),
+        replayed.get(),
+        (System.nanoTime() - start) / 1_000_000);
+  }
+
+  /** Folds the journal into a new snapshot, so the next startup has less of it to replay. */
+  @Scheduled(
+      initialDelayString = "${parking.snapshot.interval}",
+      fixedDelayString = "${parking.snapshot.interval}")
+  public void snapshot() {
+    try {
+      snapshotter.compact(journal);
+    } catch (IOException | RuntimeException e) {
+      log.error("Error at writing a snapshot: {}", e.getMessage(), e);
+    }
+  }
+
+  @PreDestroy
+  public void close() throws IOException {
+    if (journal != null) {
+      this.snapshot();
+      journal.close();
+    }
+  }
+
+  /**
+   * Parks a vehicle based on its type, if there is available space.
+   *
+   * @param vehicleType The type of the vehicle to be parked.
+   * @return The parked vehicle's {@link VehicleDTO}.
+   * @throws PklErrorException if there is no space to park the vehicle, or it cannot be journaled.
+   */
+  @Override
+  public VehicleDTO parkVehicle(VehicleType vehicleType) {
+    long start = System.nanoTime();
+    try {
+      JournalRecord park = this.claim(VehicleFactory.create(vehicleType));
+      if (park == null) {
+        throw new PklErrorException(ErrorCode.NO_SPACE_TO_PARK);
+      }
+
+      this.appendParks(List.of(park));
+      occupancyRecorder.park(vehicleType);
+      return this.toDTO(park, Boolean.TRUE);
+    } catch (ParkingLotException e) {
+      parkingMetrics.failure(e.getError());
+      throw e;
+    } finally {
+      parkingMetrics.park(vehicleType, System.nanoTime() - start);
+    }
+  }
+
+  /**
+   * Parks a vehicle on spots already claimed for it from the {@link SpotAllocator}, such as the
+   * held spots of a reservation. The spots are given back if the park cannot be journaled.
+   *
+   * @param vehicleType The type of the vehicle to be parked.
+   * @param spotType The type of the claimed spots.
+   * @param spotIds The ids of the claimed spots.
+   * @return The parked vehicle's {@link VehicleDTO}.
+   * @throws PklErrorException if the park cannot be journaled.
+   */
+  @Override
+  public VehicleDTO parkVehicle(VehicleType vehicleType, ParkingSpotType spotType, long[] spotIds) {
+    long start = System.nanoTime();
+    try {
+      JournalRecord park =
+          JournalRecord.park(
+              nextVehicleId.getAndIncrement(),
+              vehicleType,
+              spotType,
+              spotIds,
+              System.currentTimeMillis());
+
+      this.appendParks(List.of(park));
+      occupancyRecorder.park(vehicleType);
+      return this.toDTO(park, Boolean.TRUE);
+    } catch (ParkingLotException e) {
+      parkingMetrics.failure(e.getError());
+      throw e;
+    } finally {
+      parkingMetrics.park(vehicleType, System.nanoTime() - start);
+    }
+  }
+
+  /**
+   * Removes a vehicle from the parking lot by its ID.
+   *
+   * @param vehicleId The ID of the vehicle to be removed.
+   * @return The removed vehicle's {@link VehicleDTO}, with its stay and fee.
+   * @throws PklNotFoundException if the vehicle is not found.
+   */
+  @Override
+  public VehicleDTO removeVehicle(Long vehicleId) {
+    long start = System.nanoTime();
+    JournalRecord park = vehicleId == null ? null : parked.remove(vehicleId);
+    if (park == null) {
+      parkingMetrics.failure(ErrorCode.VEHICLE_NOT_FOUND);
+      throw new PklNotFoundException(ErrorCode.VEHICLE_NOT_FOUND);
+    }
+
+    this.appendLeaves(List.of(park));
+    VehicleDTO left = this.closeSession(park);
+    occupancyRecorder.leave(park.getVehicleType(), park.getParkedAt());
+    parkingMetrics.leave(park.getVehicleType(), System.nanoTime() - start);
+    return left;
+  }
+
+  /**
+   * Parks many vehicles with a single journal append.
+   *
+   * @param vehicleTypes The types of the vehicles to be parked. A {@code null} type is reported as
+   *     unknown.
+   * @return One {@link BatchItemDTO} per vehicle type, in the same order.
+   */
+  @Override
+  public List<BatchItemDTO> parkVehicles(List<VehicleType> vehicleTypes) {
+    long start = System.nanoTime();
+    List<BatchItemDTO> items = new ArrayList<>(vehicleTypes.size());
+    List<JournalRecord> parks = new ArrayList<>();
+
+    for (VehicleType vehicleType : vehicleTypes) {
+      JournalRecord park =
+          vehicleType == null ? null : this.claim(VehicleFactory.create(vehicleType));
+      if (park == null) {
+        ErrorCode error =
+            vehicleType == null ? ErrorCode.UNKNOWN_VEHICLE_TYPE : ErrorCode.NO_SPACE_TO_PARK;
+        parkingMetrics.failure(error);
+        items.add(BatchItemDTO.builder().error(error).build());
+      } else {
+        parks.add(park);
+        items.add(BatchItemDTO.builder().vehicle(this.toDTO(park, Boolean.TRUE)).build());
+      }
+    }
+
+    if (!parks.isEmpty()) {
+      this.appendParks(parks);
+      // The latency of each vehicle is its share of the batch.
+      long nanos = (System.nanoTime() - start) / vehicleTypes.size();
+      for (JournalRecord park : parks) {
+        occupancyRecorder.park(park.getVehicleType());
+        parkingMetrics.park(park.getVehicleType(), nanos);
+      }
+    }
+    return items;
+  }
+
+  /**
+   * Removes many vehicles with a single journal append.
+   *
+   * @param vehicleIds The IDs of the vehicles to be removed.
+   * @return One {@link BatchItemDTO} per vehicle ID, in the same order.
+   */
+  @Override
+  public List<BatchItemDTO> removeVehicles(List<Long> vehicleIds) {
+    long start = System.nanoTime();
+    List<BatchItemDTO> items = new ArrayList<>(vehicleIds.size());
+    List<JournalRecord> parks = new ArrayList<>();
+    List<BatchItemDTO> leftItems = new ArrayList<>();
+
+    for (Long vehicleId : vehicleIds) {
+      JournalRecord park = vehicleId == null ? null : parked.remove(vehicleId);
+      if (park == null) {
+        parkingMetrics.failure(ErrorCode.VEHICLE_NOT_FOUND);
+        items.add(BatchItemDTO.builder().error(ErrorCode.VEHICLE_NOT_FOUND).build());
+      } else {
+        BatchItemDTO item = new BatchItemDTO();
+        parks.add(park);
+        leftItems.add(item);
+        items.add(item);
+      }
+    }
+
+    if (!parks.isEmpty()) {
+      this.appendLeaves(parks);
+      long nanos = (System.nanoTime() - start) / vehicleIds.size();
+      for (int i = 0; i < parks.size(); i++) {
+        JournalRecord park = parks.get(i);
+        leftItems.get(i).setVehicle(this.closeSession(park));
+        occupancyRecorder.leave(park.getVehicleType(), park.getParkedAt());
+        parkingMetrics.leave(park.getVehicleType(), nanos);
+      }
+    }
+    return items;
+  }
+
+  @Override
+  public long countAvailableSpots(ParkingSpotType type) {
+    return parkingServiceImpl.countAvailableSpots(type);
+  }
+
+  @Override
+  public Map<String, Long> countAvailableSpotsByLevel(ParkingSpotType type) {
+    return parkingServiceImpl.countAvailableSpotsByLevel(type);
+  }
+
+  @Override
+  public boolean areAllSpotsTaken(VehicleType type) {
+    return parkingServiceImpl.areAllSpotsTaken(type);
+  }
+
+  @Override
+  public AllocationStrategyType getAllocationStrategy() {
+    return parkingServiceImpl.getAllocationStrategy();
+  }
+
+  @Override
+  public void setAllocationStrategy(AllocationStrategyType strategy) {
+    parkingServiceImpl.setAllocationStrategy(strategy);
+  }
+
+  @Override
+  public List<ParkingStatus> getOccupancyHistory(HistoryResolution resolution, int limit) {
+    return parkingServiceImpl.getOccupancyHistory(resolution, limit);
+  }
+
+  @Override
+  public List<VehicleDTO> getAllParkedVehicles() {
+    List<VehicleDTO> parkedVehicles = new ArrayList<>(parked.size());
+    this.streamParkedVehicles(parkedVehicles::add);
+    return parkedVehicles;
+  }
+
+  @Override
+  public List<VehicleDTO> getParkedVehicles(Long afterVehicleId, int limit) {
+    NavigableMap<Long, JournalRecord> page =
+        afterVehicleId == null ? parked : parked.tailMap(afterVehicleId, false);
+
+    List<VehicleDTO> parkedVehicles = new ArrayList<>(Math.min(limit, page.size()));
+    for (JournalRecord park : page.values()) {
+      if (parkedVehicles.size() == limit) {
+        break;
+      }
+      parkedVehicles.add(this.toDTO(park, Boolean.TRUE));
+    }
+    return parkedVehicles;
+  }
+
+  @Override
+  public void streamParkedVehicles(Consumer<VehicleDTO> consumer) {
+    parked.values().forEach(park -> consumer.accept(this.toDTO(park, Boolean.TRUE)));
+  }
+
+  /**
+   * Claims the spots of the first type with enough free spots, in the order chosen by the current
+   * allocation strategy, and a new vehicle ID. The types tried share the array of ids the park
+   * keeps whenever they need as many spots.
+   *
+   * @param vehicle The vehicle to be parked.
+   * @return The park, or {@code null} if no type has enough free spots.
+   */
+  private JournalRecord claim(Vehicle vehicle) {
+    List<ParkingSpotType> candidates = strategySelector.candidates(vehicle);
+    long[] spotIds = null;
+    for (int i = 0; i < candidates.size(); i++) {
+      ParkingSpotType type = candidates.get(i);
+
+      int spots = vehicle.spots(type);
+      if (spotIds == null || spotIds.length != spots) {
+        spotIds = new long[spots];
+      }
+      if (spotAllocator.claim(type, spotIds)) {
+        return JournalRecord.park(
+            nextVehicleId.getAndIncrement(),
+            vehicle.getType(),
+            type,
+            spotIds,
+            System.currentTimeMillis());
+      }
+    }
+    return null;
+  }
+
+  /**
+   * Journals already claimed parks and, once they are durable, queues them for the database and
+   * makes them visible. A vehicle can only be left once it is visible, so its leave is always
+   * queued after its park.
+   *
+   * @throws PklErrorException if the journal cannot be written, after giving the spots back.
+   */
+  private void appendParks(List<JournalRecord> parks) {
+    try {
+      journal.append(parks);
+    } catch (RuntimeException e) {
+      log.error("Error at journaling a park: {}", e.getMessage(), e);
+      parks.forEach(this::releaseSpots);
+      throw new PklErrorException(ErrorCode.UNABLE_TO_PARK);
+    }
+
+    for (JournalRecord park : parks) {
+      flusher.enqueue(park);
+      parked.put(park.getVehicleId(), park);
+    }
+  }
+
+  /**
+   * Journals leaves of vehicles already taken out of the index and, once they are durable, frees
+   * their spots. The leaves are queued for the database before the spots are freed, so a park that
+   * takes one of them is always written after the leave that frees it.
+   *
+   * @throws PklErrorException if the journal cannot be written, after putting the vehicles back.
+   */
+  private void appendLeaves(List<JournalRecord> parks) {
+    List<JournalRecord> leaves = parks.stream().map(JournalRecord::leave).toList();
+    try {
+      journal.append(leaves);
+    } catch (RuntimeException e) {
+      log.error("Error at journaling a leave: {}", e.getMessage(), e);
+      parks.forEach(park -> parked.put(park.getVehicleId(), park));
+      throw new PklErrorException(ErrorCode.UNABLE_TO_LEAVE_PARK);
+    }
+
+    for (JournalRecord leave : leaves) {
+      flusher.enqueue(leave);
+      this.releaseSpots(leave);
+    }
+  }
+
+  private void releaseSpots(JournalRecord record) {
+    for (long spotId : record.getSpotIds()) {
+      spotAllocator.release(record.getSpotType(), spotId);
+    }
+  }
+
+  /**
+   * Closes the session of a vehicle whose leave is journaled.
+   *
+   * @param park The park of the vehicle.
+   * @return The removed vehicle's {@link VehicleDTO}, with its stay and fee.
+   */
+  private VehicleDTO closeSession(JournalRecord park) {
+    ParkingSession session =
+        billingService.closeSession(
+            park.getVehicleId(),
+            park.getVehicleType(),
+            park.getSpotType(),
+            park.getSpotIds().length,
+            park.getParkedAt());
+    return session == null ? this.toDTO(park, Boolean.FALSE) : translator.toDTO(session);
+  }
+
+  private VehicleDTO toDTO(JournalRecord park, Boolean isParked) {
+    VehicleDTO vehicleDTO = translator.toDTO(park.getVehicleId(), park.getVehicleType());
+    vehicleDTO.setParked(isParked);
+    if (Boolean.TRUE.equals(isParked)) {
+      for (long spotId : park.getSpotIds()) {
+        vehicleDTO.getParkedOn().add(translator.toDTO(spotId, park.getSpotType()));
+      }
+    }
+    return vehicleDTO;
+  }
+}
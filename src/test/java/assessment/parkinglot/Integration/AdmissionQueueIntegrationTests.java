@@ -0,0 +1,71 @@
+package assessment.parkinglot.Integration;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+import assessment.parkinglot.admission.AdmissionQueue;
+import assessment.parkinglot.dto.VehicleDTO;
+import assessment.parkinglot.enums.VehicleType;
+import assessment.parkinglot.service.ParkingService;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import java.net.URI;
+import java.net.http.HttpClient;
+import java.net.http.HttpRequest;
+import java.net.http.HttpResponse;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.TimeUnit;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.Timeout;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.boot.test.web.server.LocalServerPort;
+
+@SpringBootTest(
+    webEnvironment = SpringBootTest.WebEnvironment.RANDOM_PORT,
+    properties = {
+      "parking.admission.enabled=true",
+      "parking.lot.levels[0].name=1",
+      "parking.lot.levels[0].zones[0].name=A",
+      "parking.lot.levels[0].zones[0].spots.REGULAR=3"
+    })
+public class AdmissionQueueIntegrationTests {
+
+  @Autowired private ParkingService parkingService;
+  @Autowired private AdmissionQueue admissionQueue;
+  @Autowired private ObjectMapper objectMapper;
+  @LocalServerPort private int port;
+
+  /**
+   * Fills the lot with a van and sends the park of a second one, which waits in the queue until
+   * the first van leaves and is then parked on the spots it freed.
+   */
+  @Test
+  @Timeout(30)
+  void parksWaitForTheSpotsOfALeave() throws Exception {
+    VehicleDTO first = parkingService.parkVehicle(VehicleType.VAN);
+
+    HttpClient client = HttpClient.newHttpClient();
+    CompletableFuture<HttpResponse<String>> waiting =
+        client.sendAsync(
+            HttpRequest.newBuilder(URI.create("http://localhost:" + port + "/parking/park"))
+                .header("Content-Type", "application/json")
+                .POST(HttpRequest.BodyPublishers.ofString("{\"vehicleType\":\"VAN\"}"))
+                .build(),
+            HttpResponse.BodyHandlers.ofString());
+    while (admissionQueue.waiting(VehicleType.VAN) == 0) {
+      Thread.sleep(10);
+    }
+    assertFalse(waiting.isDone());
+
+    parkingService.removeVehicle(first.getVehicleId());
+
+    HttpResponse<String> response = waiting.get(10, TimeUnit.SECONDS);
+    assertEquals(200, response.statusCode(), response.body());
+    VehicleDTO second = objectMapper.readValue(response.body(), VehicleDTO.class);
+    assertTrue(second.getParked());
+    assertEquals(3, second.getParkedOn().size());
+    assertEquals(0, admissionQueue.waiting(VehicleType.VAN));
+
+    parkingService.removeVehicle(second.getVehicleId());
+    client.close();
+  }
+}
@@ -0,0 +1,62 @@
+package assessment.parkinglot.Integration;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+import assessment.parkinglot.billing.SessionArchive;
+import assessment.parkinglot.dto.RevenueDTO;
+import assessment.parkinglot.dto.VehicleDTO;
+import assessment.parkinglot.enums.VehicleType;
+import assessment.parkinglot.service.BillingService;
+import assessment.parkinglot.service.ParkingService;
+import java.nio.file.Path;
+import java.time.Duration;
+import java.time.Instant;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.test.context.DynamicPropertyRegistry;
+import org.springframework.test.context.DynamicPropertySource;
+
+@SpringBootTest(properties = {"parking.billing.grace=PT0S", "parking.billing.archive.fsync=false"})
+public class BillingIntegrationTests {
+
+  @TempDir static Path directory;
+
+  @Autowired private ParkingService parkingService;
+  @Autowired private BillingService billingService;
+  @Autowired private SessionArchive sessionArchive;
+
+  @DynamicPropertySource
+  static void archivePath(DynamicPropertyRegistry registry) {
+    registry.add("parking.billing.archive.directory", () -> directory.resolve("sessions").toString());
+  }
+
+  /**
+   * Parks and removes a van, checking that the leave is charged a started period of the van rate
+   * and that the revenue of the hour around it adds the session, before and after it is written.
+   */
+  @Test
+  void leavesAreChargedAndAddedToTheRevenue() {
+    Instant from = Instant.now().minus(Duration.ofHours(1));
+    Instant to = Instant.now().plus(Duration.ofHours(1));
+    RevenueDTO before = billingService.getRevenue(from, to);
+
+    VehicleDTO van = parkingService.parkVehicle(VehicleType.VAN);
+    VehicleDTO left = parkingService.removeVehicle(van.getVehicleId());
+
+    assertEquals(300L, left.getFee());
+    assertNotNull(left.getParkedAt());
+    assertFalse(left.getLeftAt().isBefore(left.getParkedAt()));
+
+    RevenueDTO after = billingService.getRevenue(from, to);
+    assertEquals(before.getSessions() + 1, after.getSessions());
+    assertEquals(before.getRevenue() + 300, after.getRevenue());
+    assertEquals(
+        before.getRevenueByVehicleType().get(VehicleType.VAN) + 300,
+        after.getRevenueByVehicleType().get(VehicleType.VAN));
+
+    sessionArchive.flush();
+    assertEquals(after, billingService.getRevenue(from, to));
+  }
+}
@@ -0,0 +1,260 @@
+package assessment.parkinglot.Integration;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+import assessment.parkinglot.ParkingLotServiceApplication;
+import assessment.parkinglot.admission.AdmissionQueue;
+import assessment.parkinglot.cluster.ClusterNode;
+import assessment.parkinglot.cluster.HashRing;
+import assessment.parkinglot.enums.ErrorCode;
+import assessment.parkinglot.enums.ParkingSpotType;
+import assessment.parkinglot.enums.VehicleType;
+import assessment.parkinglot.service.ParkingService;
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import java.io.IOException;
+import java.net.ServerSocket;
+import java.net.URI;
+import java.net.http.HttpClient;
+import java.net.http.HttpRequest;
+import java.net.http.HttpResponse;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.TimeUnit;
+import org.junit.jupiter.api.AfterAll;
+import org.junit.jupiter.api.BeforeAll;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.Timeout;
+import org.springframework.boot.WebApplicationType;
+import org.springframework.boot.builder.SpringApplicationBuilder;
+import org.springframework.context.ConfigurableApplicationContext;
+
+/**
+ * Two embedded nodes of a cluster, on ports of this machine, sharing a lot of several levels. Both
+ * queue the parks that find the lot full, for longer than a node waits for a forwarded park.
+ */
+public class ClusterIntegrationTests {
+
+  private static final List<String> NODES = List.of("a", "b");
+  private static final int LEVELS = 6;
+  private static final int COMPACT_SPOTS_PER_LEVEL = 2;
+  private static final int REGULAR_SPOTS_PER_LEVEL = 3;
+  private static final String ADMISSION_TIMEOUT = "PT3S";
+
+  private static final ObjectMapper MAPPER = new ObjectMapper();
+  private static final HttpClient CLIENT = HttpClient.newHttpClient();
+
+  private static final List<ConfigurableApplicationContext> contexts = new ArrayList<>();
+  private static final List<String> urls = new ArrayList<>();
+
+  @BeforeAll
+  static void startNodes() throws IOException {
+    for (int i = 0; i < NODES.size(); i++) {
+      try (ServerSocket socket = new ServerSocket(0)) {
+        urls.add("http://localhost:" + socket.getLocalPort());
+      }
+    }
+
+    for (int i = 0; i < NODES.size(); i++) {
+      List<String> args = new ArrayList<>();
+      args.add("--server.port=" + URI.create(urls.get(i)).getPort());
+      args.add("--parking.cluster.enabled=true");
+      args.add("--parking.cluster.self=" + NODES.get(i));
+      args.add("--parking.admission.enabled=true");
+      args.add("--parking.admission.timeout=" + ADMISSION_TIMEOUT);
+      for (int n = 0; n < NODES.size(); n++) {
+        args.add("--parking.cluster.nodes[" + n + "].name=" + NODES.get(n));
+        args.add("--parking.cluster.nodes[" + n + "].url=" + urls.get(n));
+      }
+      for (int level = 0; level < LEVELS; level++) {
+        String prefix = "--parking.lot.levels[" + level + "]";
+        args.add(prefix + ".name=" + (level + 1));
+        args.add(prefix + ".zones[0].name=A");
+        args.add(prefix + ".zones[0].spots.COMPACT=" + COMPACT_SPOTS_PER_LEVEL);
+        args.add(prefix + ".zones[0].spots.REGULAR=" + REGULAR_SPOTS_PER_LEVEL);
+      }
+      contexts.add(
+          new SpringApplicationBuilder(ParkingLotServiceApplication.class)
+              .web(WebApplicationType.SERVLET)
+              .run(args.toArray(String[]::new)));
+    }
+  }
+
+  @AfterAll
+  static void stopNodes() {
+    contexts.forEach(ConfigurableApplicationContext::close);
+  }
+
+  /**
+   * Checks that every level is created by the node the hash ring gives it to, and that any node
+   * answers the free spots of the whole lot.
+   */
+  @Test
+  void levelsArePartitionedAcrossTheNodes() throws Exception {
+    HashRing ring = new HashRing(NODES, 64);
+
+    for (int i = 0; i < NODES.size(); i++) {
+      int ownedLevels = 0;
+      for (int level = 1; level <= LEVELS; level++) {
+        ownedLevels += NODES.get(i).equals(ring.owner(String.valueOf(level))) ? 1 : 0;
+      }
+      assertTrue(ownedLevels > 0, "node " + NODES.get(i) + " owns no level");
+      ParkingService parkingService = contexts.get(i).getBean(ParkingService.class);
+      assertEquals(
+          ownedLevels * COMPACT_SPOTS_PER_LEVEL,
+          parkingService.countAvailableSpots(ParkingSpotType.COMPACT));
+    }
+
+    for (String url : urls) {
+      assertEquals(
+          LEVELS * COMPACT_SPOTS_PER_LEVEL,
+          get(url + "/parking/available-spots/COMPACT").get("freeSpots").asInt());
+      assertEquals(LEVELS, get(url + "/parking/available-spots/COMPACT/levels").size());
+    }
+  }
+
+  /**
+   * Fills the lot through a single node, which parks on the other one once its levels are full,
+   * and empties it through the other node, which forwards every leave to the node that parked the
+   * vehicle. A park on the full lot waits out the queue of the node that received it, and then
+   * fails for lack of space rather than for a peer that did not answer in time.
+   */
+  @Test
+  void parksOverflowToThePeerAndLeavesReachTheOwner() throws Exception {
+    List<Long> vehicleIds = new ArrayList<>();
+    for (int i = 0; i < LEVELS * (COMPACT_SPOTS_PER_LEVEL + REGULAR_SPOTS_PER_LEVEL); i++) {
+      HttpResponse<String> parked = park(urls.get(0));
+      assertEquals(200, parked.statusCode(), parked.body());
+      vehicleIds.add(MAPPER.readTree(parked.body()).get("vehicleId").asLong());
+    }
+    assertTrue(vehicleIds.stream().anyMatch(id -> id >>> ClusterNode.ID_SHIFT == 0));
+    assertTrue(vehicleIds.stream().anyMatch(id -> id >>> ClusterNode.ID_SHIFT == 1));
+
+    HttpResponse<String> full = park(urls.get(0));
+    assertEquals(500, full.statusCode());
+    assertEquals(
+        ErrorCode.NO_SPACE_TO_PARK.getCode(),
+        MAPPER.readTree(full.body()).get("errorCode").asInt());
+    assertTrue(get(urls.get(1) + "/parking/all-spots-taken/CAR").asBoolean());
+
+    for (Long vehicleId : vehicleIds) {
+      HttpResponse<String> left = leave(urls.get(1), vehicleId);
+      assertEquals(200, left.statusCode(), left.body());
+    }
+    assertEquals(
+        LEVELS * REGULAR_SPOTS_PER_LEVEL,
+        get(urls.get(1) + "/parking/available-spots/REGULAR").get("freeSpots").asInt());
+  }
+
+  /**
+   * Fills the lot with a single batch sent to one node, which parks on the other one the vehicles it
+   * has no space for, and empties it with a single batch sent to the other node.
+   */
+  @Test
+  void batchParksOverflowToThePeer() throws Exception {
+    int spots = LEVELS * (COMPACT_SPOTS_PER_LEVEL + REGULAR_SPOTS_PER_LEVEL);
+    String cars = String.join(",", Collections.nCopies(spots + 1, "{\"vehicleType\":\"CAR\"}"));
+    HttpResponse<String> parked =
+        CLIENT.send(
+            HttpRequest.newBuilder(URI.create(urls.get(0) + "/parking/park/batch"))
+                .header("Content-Type", "application/json")
+                .POST(HttpRequest.BodyPublishers.ofString("[" + cars + "]"))
+                .build(),
+            HttpResponse.BodyHandlers.ofString());
+    assertEquals(200, parked.statusCode(), parked.body());
+
+    JsonNode items = MAPPER.readTree(parked.body());
+    List<Long> vehicleIds = new ArrayList<>();
+    for (int i = 0; i < spots; i++) {
+      vehicleIds.add(items.get(i).get("vehicle").get("vehicleId").asLong());
+    }
+    assertEquals(ErrorCode.NO_SPACE_TO_PARK.name(), items.get(spots).get("error").asText());
+    assertTrue(vehicleIds.stream().anyMatch(id -> id >>> ClusterNode.ID_SHIFT == 0));
+    assertTrue(vehicleIds.stream().anyMatch(id -> id >>> ClusterNode.ID_SHIFT == 1));
+
+    String ids = MAPPER.writeValueAsString(vehicleIds);
+    HttpResponse<String> left =
+        CLIENT.send(
+            HttpRequest.newBuilder(URI.create(urls.get(1) + "/parking/leave/batch"))
+                .header("Content-Type", "application/json")
+                .method("DELETE", HttpRequest.BodyPublishers.ofString(ids))
+                .build(),
+            HttpResponse.BodyHandlers.ofString());
+    assertEquals(200, left.statusCode(), left.body());
+    for (JsonNode item : MAPPER.readTree(left.body())) {
+      assertFalse(item.hasNonNull("error"), item.toString());
+    }
+    assertEquals(
+        LEVELS * COMPACT_SPOTS_PER_LEVEL,
+        get(urls.get(0) + "/parking/available-spots/COMPACT").get("freeSpots").asInt());
+  }
+
+  /**
+   * Fills the lot and sends one more park, which the peer turns down at once rather than queuing
+   * it, so it waits in the queue of the node that received it and is parked on the spot of the
+   * next leave of that node.
+   */
+  @Test
+  @Timeout(30)
+  void fullParksQueueOnTheNodeThatReceivedThem() throws Exception {
+    List<Long> vehicleIds = new ArrayList<>();
+    for (int i = 0; i < LEVELS * (COMPACT_SPOTS_PER_LEVEL + REGULAR_SPOTS_PER_LEVEL); i++) {
+      HttpResponse<String> parked = park(urls.get(0));
+      assertEquals(200, parked.statusCode(), parked.body());
+      vehicleIds.add(MAPPER.readTree(parked.body()).get("vehicleId").asLong());
+    }
+
+    CompletableFuture<HttpResponse<String>> waiting =
+        CLIENT.sendAsync(parkRequest(urls.get(0)), HttpResponse.BodyHandlers.ofString());
+    AdmissionQueue origin = contexts.get(0).getBean(AdmissionQueue.class);
+    while (origin.waiting(VehicleType.CAR) == 0) {
+      Thread.sleep(10);
+    }
+    assertEquals(0, contexts.get(1).getBean(AdmissionQueue.class).waiting(VehicleType.CAR));
+    assertFalse(waiting.isDone());
+
+    Long local =
+        vehicleIds.stream().filter(id -> id >>> ClusterNode.ID_SHIFT == 0).findFirst().orElseThrow();
+    assertEquals(200, leave(urls.get(0), local).statusCode());
+    vehicleIds.remove(local);
+
+    HttpResponse<String> parked = waiting.get(10, TimeUnit.SECONDS);
+    assertEquals(200, parked.statusCode(), parked.body());
+    long vehicleId = MAPPER.readTree(parked.body()).get("vehicleId").asLong();
+    assertEquals(0, vehicleId >>> ClusterNode.ID_SHIFT);
+    vehicleIds.add(vehicleId);
+
+    for (Long parkedId : vehicleIds) {
+      HttpResponse<String> left = leave(urls.get(0), parkedId);
+      assertEquals(200, left.statusCode(), left.body());
+    }
+  }
+
+  private static HttpResponse<String> park(String url) throws Exception {
+    return CLIENT.send(parkRequest(url), HttpResponse.BodyHandlers.ofString());
+  }
+
+  private static HttpRequest parkRequest(String url) {
+    return HttpRequest.newBuilder(URI.create(url + "/parking/park"))
+        .header("Content-Type", "application/json")
+        .POST(HttpRequest.BodyPublishers.ofString("{\"vehicleType\":\"CAR\"}"))
+        .build();
+  }
+
+  private static HttpResponse<String> leave(String url, Long vehicleId) throws Exception {
+    return CLIENT.send(
+        HttpRequest.newBuilder(URI.create(url + "/parking/leave/" + vehicleId)).DELETE().build(),
+        HttpResponse.BodyHandlers.ofString());
+  }
+
+  private static JsonNode get(String url) throws Exception {
+    HttpResponse<String> response =
+        CLIENT.send(
+            HttpRequest.newBuilder(URI.create(url)).GET().build(),
+            HttpResponse.BodyHandlers.ofString());
+    assertEquals(200, response.statusCode(), response.body());
+    return MAPPER.readTree(response.body());
+  }
+}
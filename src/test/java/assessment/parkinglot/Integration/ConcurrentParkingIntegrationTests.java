@@ -0,0 +1,196 @@
+package assessment.parkinglot.Integration;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+import assessment.parkinglot.dto.BatchItemDTO;
+import assessment.parkinglot.dto.ParkingSpotDTO;
+import assessment.parkinglot.dto.VehicleDTO;
+import assessment.parkinglot.entities.ParkingSpotEntity;
+import assessment.parkinglot.enums.ErrorCode;
+import assessment.parkinglot.enums.ParkingSpotType;
+import assessment.parkinglot.enums.VehicleType;
+import assessment.parkinglot.exception.PklErrorException;
+import assessment.parkinglot.exception.PklNotFoundException;
+import assessment.parkinglot.repository.ParkingSpotRepository;
+import assessment.parkinglot.service.BillingService;
+import assessment.parkinglot.service.ParkingService;
+import java.time.Duration;
+import java.time.Instant;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.stream.Collectors;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+
+@SpringBootTest
+public class ConcurrentParkingIntegrationTests {
+
+  private static final int THREADS = 64;
+  private static final int OPERATIONS_PER_THREAD = 100;
+  private static final int LEAVE_THREADS = 8;
+  private static final int LEAVE_ROUNDS = 20;
+
+  @Autowired private ParkingService parkingService;
+  @Autowired private ParkingSpotRepository parkingSpotRepository;
+  @Autowired private BillingService billingService;
+
+  /**
+   * Parks and removes vehicles of every type from many threads at once, checking that no spot is
+   * ever handed to two vehicles at the same time and that the lot ends consistent with the
+   * database.
+   */
+  @Test
+  void concurrentParksNeverDoubleBookSpots() throws Exception {
+    Map<Long, Long> spotOwners = new ConcurrentHashMap<>();
+    AtomicInteger doubleAssignments = new AtomicInteger();
+    AtomicInteger unexpectedErrors = new AtomicInteger();
+    CountDownLatch start = new CountDownLatch(1);
+
+    ExecutorService executor = Executors.newFixedThreadPool(THREADS);
+    List<Future<?>> workers = new ArrayList<>();
+    for (int t = 0; t < THREADS; t++) {
+      workers.add(
+          executor.submit(
+              () -> {
+                List<VehicleDTO> parked = new ArrayList<>();
+                start.await();
+                for (int i = 0; i < OPERATIONS_PER_THREAD; i++) {
+                  ThreadLocalRandom random = ThreadLocalRandom.current();
+                  if (!parked.isEmpty() && random.nextBoolean()) {
+                    VehicleDTO vehicle = parked.remove(random.nextInt(parked.size()));
+                    vehicle.getParkedOn().forEach(s -> spotOwners.remove(s.getParkingSpotId()));
+                    parkingService.removeVehicle(vehicle.getVehicleId());
+                    continue;
+                  }
+
+                  VehicleType type = VehicleType.values()[random.nextInt(3)];
+                  try {
+                    VehicleDTO vehicle = parkingService.parkVehicle(type);
+                    for (ParkingSpotDTO spot : vehicle.getParkedOn()) {
+                      if (spotOwners.putIfAbsent(spot.getParkingSpotId(), vehicle.getVehicleId())
+                          != null) {
+                        doubleAssignments.incrementAndGet();
+                      }
+                    }
+                    parked.add(vehicle);
+                  } catch (PklErrorException e) {
+                    if (!ErrorCode.NO_SPACE_TO_PARK.equals(e.getError())) {
+                      unexpectedErrors.incrementAndGet();
+                    }
+                  }
+                }
+                return null;
+              }));
+    }
+    start.countDown();
+    for (Future<?> worker : workers) {
+      worker.get();
+    }
+    executor.shutdown();
+    assertTrue(executor.awaitTermination(10, TimeUnit.SECONDS));
+
+    assertEquals(0, doubleAssignments.get());
+    assertEquals(0, unexpectedErrors.get());
+    this.assertSpotsMatchVehicles();
+
+    this.parkingService.getAllParkedVehicles()
+        .forEach(v -> this.parkingService.removeVehicle(v.getVehicleId()));
+
+    assertEquals(5, this.parkingService.countAvailableSpots(ParkingSpotType.MOTORCYCLE));
+    assertEquals(11, this.parkingService.countAvailableSpots(ParkingSpotType.COMPACT));
+    assertEquals(9, this.parkingService.countAvailableSpots(ParkingSpotType.REGULAR));
+  }
+
+  /**
+   * Removes the same vehicles from many threads at once, half of them with batch leaves and half
+   * with single leaves, checking that each vehicle is removed and billed once and that its spots
+   * are freed once.
+   */
+  @Test
+  void concurrentLeavesRemoveEachVehicleOnce() throws Exception {
+    Instant from = Instant.now().minus(Duration.ofHours(1));
+    Instant to = Instant.now().plus(Duration.ofHours(1));
+
+    for (int round = 0; round < LEAVE_ROUNDS; round++) {
+      long sessionsBefore = this.billingService.getRevenue(from, to).getSessions();
+      List<Long> vehicleIds = new ArrayList<>();
+      for (int i = 0; i < 4; i++) {
+        vehicleIds.add(this.parkingService.parkVehicle(VehicleType.MOTORCYCLE).getVehicleId());
+        vehicleIds.add(this.parkingService.parkVehicle(VehicleType.CAR).getVehicleId());
+      }
+      vehicleIds.add(this.parkingService.parkVehicle(VehicleType.VAN).getVehicleId());
+
+      Map<Long, AtomicInteger> removals = new ConcurrentHashMap<>();
+      vehicleIds.forEach(vehicleId -> removals.put(vehicleId, new AtomicInteger()));
+      CountDownLatch start = new CountDownLatch(1);
+      ExecutorService executor = Executors.newFixedThreadPool(LEAVE_THREADS);
+      List<Future<?>> workers = new ArrayList<>();
+      for (int t = 0; t < LEAVE_THREADS; t++) {
+        boolean batch = t % 2 == 0;
+        workers.add(
+            executor.submit(
+                () -> {
+                  start.await();
+                  if (batch) {
+                    for (BatchItemDTO item : parkingService.removeVehicles(vehicleIds)) {
+                      if (item.getError() == null) {
+                        removals.get(item.getVehicle().getVehicleId()).incrementAndGet();
+                      } else {
+                        assertEquals(ErrorCode.VEHICLE_NOT_FOUND, item.getError());
+                      }
+                    }
+                    return null;
+                  }
+                  for (Long vehicleId : vehicleIds) {
+                    try {
+                      parkingService.removeVehicle(vehicleId);
+                      removals.get(vehicleId).incrementAndGet();
+                    } catch (PklNotFoundException e) {
+                      assertEquals(ErrorCode.VEHICLE_NOT_FOUND, e.getError());
+                    }
+                  }
+                  return null;
+                }));
+      }
+      start.countDown();
+      for (Future<?> worker : workers) {
+        worker.get();
+      }
+      executor.shutdown();
+      assertTrue(executor.awaitTermination(10, TimeUnit.SECONDS));
+
+      removals.values().forEach(count -> assertEquals(1, count.get()));
+      assertEquals(
+          sessionsBefore + vehicleIds.size(),
+          this.billingService.getRevenue(from, to).getSessions().longValue());
+      assertTrue(this.parkingService.getAllParkedVehicles().isEmpty());
+      assertEquals(5, this.parkingService.countAvailableSpots(ParkingSpotType.MOTORCYCLE));
+      assertEquals(11, this.parkingService.countAvailableSpots(ParkingSpotType.COMPACT));
+      assertEquals(9, this.parkingService.countAvailableSpots(ParkingSpotType.REGULAR));
+    }
+  }
+
+  private void assertSpotsMatchVehicles() {
+    Map<Long, List<ParkingSpotEntity>> spotsByVehicle =
+        this.parkingSpotRepository.findAll().stream()
+            .filter(s -> s.getVehicleId() != null)
+            .collect(Collectors.groupingBy(ParkingSpotEntity::getVehicleId));
+
+    for (VehicleDTO vehicle : this.parkingService.getAllParkedVehicles()) {
+      List<ParkingSpotEntity> spots = spotsByVehicle.remove(vehicle.getVehicleId());
+      assertNotNull(spots);
+      assertEquals(VehicleType.VAN.equals(vehicle.getType()) ? 3 : 1, spots.size());
+    }
+    assertTrue(spotsByVehicle.isEmpty());
+  }
+}
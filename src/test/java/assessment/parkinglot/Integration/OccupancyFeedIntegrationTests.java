@@ -0,0 +1,63 @@
+package assessment.parkinglot.Integration;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+import assessment.parkinglot.dto.VehicleDTO;
+import assessment.parkinglot.enums.VehicleType;
+import assessment.parkinglot.service.ParkingService;
+import java.net.URI;
+import java.net.http.HttpClient;
+import java.net.http.HttpRequest;
+import java.net.http.HttpResponse;
+import java.util.Iterator;
+import java.util.concurrent.TimeUnit;
+import java.util.stream.Stream;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.Timeout;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.boot.test.web.server.LocalServerPort;
+
+@SpringBootTest(
+    webEnvironment = SpringBootTest.WebEnvironment.RANDOM_PORT,
+    properties = "parking.feed.interval=PT0.1S")
+public class OccupancyFeedIntegrationTests {
+
+  @Autowired private ParkingService parkingService;
+  @LocalServerPort private int port;
+
+  /**
+   * Subscribes to the feed over HTTP, parks a van and waits for the event that reports it, with
+   * the three regular spots it took.
+   */
+  @Test
+  @Timeout(30)
+  void parksArePushedToSubscribers() throws Exception {
+    HttpClient client = HttpClient.newHttpClient();
+    HttpResponse<Stream<String>> response =
+        client
+            .sendAsync(
+                HttpRequest.newBuilder(
+                        URI.create("http://localhost:" + port + "/parking/status/feed"))
+                    .build(),
+                HttpResponse.BodyHandlers.ofLines())
+            .get(10, TimeUnit.SECONDS);
+
+    assertEquals(200, response.statusCode());
+    assertEquals(
+        "text/event-stream", response.headers().firstValue("Content-Type").orElseThrow());
+
+    VehicleDTO van = parkingService.parkVehicle(VehicleType.VAN);
+    try (Stream<String> lines = response.body()) {
+      Iterator<String> events = lines.filter(l -> l.startsWith("data: ")).iterator();
+      String event = events.next();
+      while (!event.contains("\"VAN\":1,")) {
+        event = events.next();
+      }
+      assertTrue(event.contains("\"REGULAR\":6"));
+    } finally {
+      parkingService.removeVehicle(van.getVehicleId());
+      client.close();
+    }
+  }
+}
@@ -1,34 +1,49 @@
 package assessment.parkinglot.Integration;
 
+import static org.hamcrest.Matchers.greaterThanOrEqualTo;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
 import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.*;
 import static org.springframework.test.web.servlet.result.MockMvcResultHandlers.print;
 import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.jsonPath;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.request;
 import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.status;
 
 import assessment.parkinglot.controller.request.ParkRequest;
+import assessment.parkinglot.controller.request.ReservationRequest;
 import assessment.parkinglot.dto.VehicleDTO;
 import assessment.parkinglot.enums.ParkingSpotType;
 import assessment.parkinglot.enums.VehicleType;
+import assessment.parkinglot.history.OccupancyRecorder;
 import assessment.parkinglot.service.ParkingService;
+import assessment.parkinglot.service.ReservationServiceImpl;
 import com.fasterxml.jackson.databind.ObjectMapper;
+import java.time.Duration;
+import java.time.Instant;
+import java.util.ArrayList;
 import java.util.List;
 import org.junit.jupiter.api.Test;
 import org.junit.runner.RunWith;
 import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.autoconfigure.actuate.observability.AutoConfigureObservability;
 import org.springframework.boot.test.autoconfigure.web.servlet.AutoConfigureMockMvc;
 import org.springframework.boot.test.context.SpringBootTest;
 import org.springframework.http.MediaType;
 import org.springframework.test.context.junit4.SpringRunner;
 import org.springframework.test.web.servlet.MockMvc;
+import org.springframework.test.web.servlet.MvcResult;
 
 @SpringBootTest
 @AutoConfigureMockMvc
+@AutoConfigureObservability
 @RunWith(SpringRunner.class)
 public class ParkingLotServiceIntegrationTests {
 
   private static final ObjectMapper objectMapper = new ObjectMapper();
   @Autowired private ParkingService parkingService;
   @Autowired private MockMvc mockMvc;
+  @Autowired private OccupancyRecorder occupancyRecorder;
+  @Autowired private ReservationServiceImpl reservationService;
 
   @Test
   /**
@@ -169,16 +184,271 @@ public class ParkingLotServiceIntegrationTests {
     this.availableSpots(ParkingSpotType.REGULAR, 9);
   }
 
-  private void parkVehicleOk(VehicleType type) throws Exception {
+  @Test
+  /**
+   * Tested Endpoints: - Parked vehicles by page - Parked vehicles as a stream
+   *
+   * <p>This test parks a few vehicles and reads them back page by page, following the cursor, and
+   * as a newline-delimited JSON stream.
+   */
+  void parkedVehiclesByPageAndStream() throws Exception {
 
-    ParkRequest request = ParkRequest.builder().vehicleType(type.name()).build();
+    for (int i = 0; i < 3; i++) {
+      this.parkVehicleOk(VehicleType.MOTORCYCLE);
+    }
+    this.parkVehicleOk(VehicleType.VAN);
+
+    MvcResult firstPage =
+        this.mockMvc
+            .perform(get("/parking/status/page").param("limit", "2"))
+            .andExpect(status().isOk())
+            .andExpect(jsonPath("$.vehicles.length()").value(2))
+            .andExpect(jsonPath("$.nextCursor").isNumber())
+            .andReturn();
+    Long cursor =
+        objectMapper
+            .readTree(firstPage.getResponse().getContentAsString())
+            .get("nextCursor")
+            .asLong();
 
     this.mockMvc
         .perform(
-            post("/parking/park")
+            get("/parking/status/page").param("after", cursor.toString()).param("limit", "2"))
+        .andExpect(status().isOk())
+        .andExpect(jsonPath("$.vehicles.length()").value(2))
+        .andExpect(jsonPath("$.vehicles[1].type").value(VehicleType.VAN.name()))
+        .andExpect(jsonPath("$.vehicles[1].parkedOn.length()").value(3));
+
+    this.mockMvc
+        .perform(get("/parking/status/page").param("limit", "1001"))
+        .andExpect(status().isBadRequest());
+
+    MvcResult stream =
+        this.mockMvc
+            .perform(get("/parking/status/stream"))
+            .andExpect(request().asyncStarted())
+            .andReturn();
+    String body =
+        this.mockMvc
+            .perform(asyncDispatch(stream))
+            .andExpect(status().isOk())
+            .andReturn()
+            .getResponse()
+            .getContentAsString();
+
+    assertEquals(4, body.lines().count());
+
+    removeAllVehicles();
+  }
+
+  @Test
+  /**
+   * Tested Endpoints: - Park vehicles in batch - Leave vehicles in batch - Amount of spots
+   * available
+   *
+   * <p>This test parks more vans than fit in a single batch, checks the per-item results and then
+   * removes them, together with an unknown ID, in another batch.
+   */
+  void batchParkAndLeave() throws Exception {
+
+    List<ParkRequest> requests =
+        List.of(
+            ParkRequest.builder().vehicleType(VehicleType.VAN.name()).build(),
+            ParkRequest.builder().vehicleType(VehicleType.VAN.name()).build(),
+            ParkRequest.builder().vehicleType(VehicleType.VAN.name()).build(),
+            ParkRequest.builder().vehicleType(VehicleType.VAN.name()).build(),
+            ParkRequest.builder().vehicleType("BUS").build());
+
+    MvcResult parked =
+        this.mockMvc
+            .perform(
+                post("/parking/park/batch")
+                    .accept(MediaType.APPLICATION_JSON)
+                    .contentType(MediaType.APPLICATION_JSON)
+                    .content(objectMapper.writeValueAsString(requests)))
+            .andDo(print())
+            .andExpect(status().isOk())
+            .andExpect(jsonPath("$.length()").value(5))
+            .andExpect(jsonPath("$[0].vehicle.parked").value(Boolean.TRUE))
+            .andExpect(jsonPath("$[2].vehicle.parkedOn.length()").value(3))
+            .andExpect(jsonPath("$[3].error").value("NO_SPACE_TO_PARK"))
+            .andExpect(jsonPath("$[4].error").value("UNKNOWN_VEHICLE_TYPE"))
+            .andReturn();
+    this.availableSpots(ParkingSpotType.REGULAR, 0);
+
+    List<Long> vehicleIds = new ArrayList<>();
+    objectMapper
+        .readTree(parked.getResponse().getContentAsString())
+        .forEach(
+            item -> {
+              if (item.hasNonNull("vehicle")) {
+                vehicleIds.add(item.get("vehicle").get("vehicleId").asLong());
+              }
+            });
+    vehicleIds.add(-1L);
+
+    this.mockMvc
+        .perform(
+            delete("/parking/leave/batch")
                 .accept(MediaType.APPLICATION_JSON)
                 .contentType(MediaType.APPLICATION_JSON)
-                .content(objectMapper.writeValueAsString(request)))
+                .content(objectMapper.writeValueAsString(vehicleIds)))
+        .andDo(print())
+        .andExpect(status().isOk())
+        .andExpect(jsonPath("$.length()").value(4))
+        .andExpect(jsonPath("$[0].vehicle.parked").value(Boolean.FALSE))
+        .andExpect(jsonPath("$[3].error").value("VEHICLE_NOT_FOUND"));
+    this.availableSpots(ParkingSpotType.REGULAR, 9);
+
+    assertEquals(0, this.getAllVehicles().size());
+  }
+
+  @Test
+  /**
+   * Tested Endpoints: - Park vehicle - Prometheus metrics
+   *
+   * <p>This test parks a car and checks its latency, the free spot gauges and the statements per
+   * request are exposed in the Prometheus format.
+   */
+  void prometheusMetrics() throws Exception {
+
+    this.parkVehicleOk(VehicleType.CAR);
+
+    String metrics =
+        this.mockMvc
+            .perform(get("/actuator/prometheus"))
+            .andExpect(status().isOk())
+            .andReturn()
+            .getResponse()
+            .getContentAsString();
+
+    assertTrue(metrics.contains("parking_park_seconds_count{vehicle_type=\"CAR\""));
+    assertTrue(metrics.contains("parking_park_seconds_bucket{vehicle_type=\"CAR\""));
+    assertTrue(metrics.contains("parking_spots_free{spot_type=\"REGULAR\""));
+    assertTrue(metrics.contains("parking_failures_total{error=\"NO_SPACE_TO_PARK\""));
+    assertTrue(metrics.contains("parking_http_queries_count"));
+
+    removeAllVehicles();
+  }
+
+  @Test
+  /**
+   * Tested Endpoints: - Park vehicle - Occupancy history
+   *
+   * <p>This test parks a van and checks the peak of the minute being recorded counts its three
+   * regular spots, and that unknown resolutions are rejected.
+   */
+  void occupancyHistory() throws Exception {
+
+    this.parkVehicleOk(VehicleType.VAN);
+    this.occupancyRecorder.sample();
+
+    this.mockMvc
+        .perform(get("/parking/status/history").param("limit", "1"))
+        .andExpect(status().isOk())
+        .andExpect(jsonPath("$.resolution").value("MINUTE"))
+        .andExpect(jsonPath("$.periods.length()").value(1))
+        .andExpect(jsonPath("$.periods[0].spots[2].type").value("REGULAR"))
+        .andExpect(jsonPath("$.periods[0].spots[2].peakTaken").value(greaterThanOrEqualTo(3)));
+
+    this.mockMvc
+        .perform(get("/parking/status/history").param("resolution", "HOUR"))
+        .andExpect(status().isOk())
+        .andExpect(jsonPath("$.resolution").value("HOUR"));
+
+    this.mockMvc
+        .perform(get("/parking/status/history").param("resolution", "WEEK"))
+        .andExpect(status().isBadRequest());
+
+    removeAllVehicles();
+  }
+
+  @Test
+  /**
+   * Tested Endpoints: - Reserve spots (OK) - Reserve spots (Failed) - Reservable spots - Park van
+   * (OK) - Park van (Failed) - Arrive with a van - Get a reservation - Cancel a reservation
+   *
+   * <p>This test reserves three regular spots from now on, up to the half of the lot that can be
+   * reserved, and checks that once held they are kept from walk-in vans but taken by the van of
+   * the reservation.
+   */
+  void reservationHoldsSpotsForItsVehicles() throws Exception {
+
+    Instant start = Instant.now();
+    Instant end = start.plus(Duration.ofHours(1));
+    MvcResult reserved =
+        this.mockMvc
+            .perform(post("/parking/reservations")
+                .contentType(MediaType.APPLICATION_JSON)
+                .content(objectMapper.writeValueAsString(
+                    ReservationRequest.builder().spotType("REGULAR").spots(3)
+                        .start(start.toString()).end(end.toString()).build())))
+            .andExpect(status().isOk())
+            .andExpect(jsonPath("$.spots").value(3))
+            .andReturn();
+    long reservationId =
+        objectMapper.readTree(reserved.getResponse().getContentAsString()).get("reservationId").asLong();
+
+    try {
+      this.mockMvc
+          .perform(get("/parking/reservations/available-spots/{type}", ParkingSpotType.REGULAR)
+              .param("start", start.toString())
+              .param("end", end.toString()))
+          .andExpect(status().isOk())
+          .andExpect(jsonPath("$.freeSpots").value(1));
+      this.mockMvc
+          .perform(post("/parking/reservations")
+              .contentType(MediaType.APPLICATION_JSON)
+              .content(objectMapper.writeValueAsString(
+                  ReservationRequest.builder().spotType("REGULAR").spots(2)
+                      .start(start.toString()).end(end.toString()).build())))
+          .andExpect(status().is5xxServerError())
+          .andExpect(jsonPath("$.errorCode").value(5004));
+
+      reservationService.sweep();
+      this.parkVehicleOk(VehicleType.VAN);
+      this.parkVehicleOk(VehicleType.VAN);
+      this.parkVehicleError(VehicleType.VAN);
+
+      this.mockMvc
+          .perform(post("/parking/reservations/{id}/arrive", reservationId)
+              .contentType(MediaType.APPLICATION_JSON)
+              .content(objectMapper.writeValueAsString(new ParkRequest("VAN"))))
+          .andExpect(status().isOk())
+          .andExpect(jsonPath("$.parked").value(Boolean.TRUE));
+      this.mockMvc
+          .perform(get("/parking/reservations/{id}", reservationId))
+          .andExpect(status().isOk())
+          .andExpect(jsonPath("$.arrived").value(3))
+          .andExpect(jsonPath("$.held").value(0));
+    } finally {
+      this.mockMvc
+          .perform(delete("/parking/reservations/{id}", reservationId))
+          .andExpect(status().isOk());
+      removeAllVehicles();
+    }
+
+    this.mockMvc
+        .perform(get("/parking/reservations/{id}", reservationId))
+        .andExpect(status().isNotFound());
+  }
+
+  private void parkVehicleOk(VehicleType type) throws Exception {
+
+    ParkRequest request = ParkRequest.builder().vehicleType(type.name()).build();
+
+    MvcResult result =
+        this.mockMvc
+            .perform(
+                post("/parking/park")
+                    .accept(MediaType.APPLICATION_JSON)
+                    .contentType(MediaType.APPLICATION_JSON)
+                    .content(objectMapper.writeValueAsString(request)))
+            .andExpect(request().asyncStarted())
+            .andReturn();
+
+    this.mockMvc
+        .perform(asyncDispatch(result))
         .andDo(print())
         .andExpect(status().isOk())
         .andExpect(jsonPath("$.vehicleId").isNumber())
@@ -0,0 +1,158 @@
+package assessment.parkinglot.Integration;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+import assessment.parkinglot.enums.ParkingSpotType;
+import assessment.parkinglot.enums.VehicleType;
+import assessment.parkinglot.repository.ParkingSpotRepository;
+import assessment.parkinglot.repository.VehicleRepository;
+import assessment.parkinglot.service.ParkingService;
+import java.util.Collections;
+import java.util.List;
+import java.util.Map;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.data.domain.Limit;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.support.TransactionTemplate;
+
+/**
+ * Checks, through the query plans of H2, that every lookup of the repositories reaches the spots
+ * and vehicles through an index instead of scanning their table. The statements a repository
+ * method runs are taken from the query statistics of H2 and explained one by one, on a lot half
+ * full so the optimizer sees realistic selectivities.
+ */
+@SpringBootTest(
+    properties = {
+      "parking.lot.levels[0].name=1",
+      "parking.lot.levels[0].zones[0].name=A",
+      "parking.lot.levels[0].zones[0].spots.MOTORCYCLE=200",
+      "parking.lot.levels[0].zones[0].spots.COMPACT=1000",
+      "parking.lot.levels[0].zones[0].spots.REGULAR=800"
+    })
+public class QueryPlanIntegrationTests {
+
+  private static final String VEHICLE_INDEX = "IDX_PARKING_SPOT_VEHICLE";
+  private static final String FREE_SPOT_INDEX = "IDX_PARKING_SPOT_TYPE_VEHICLE";
+  private static final String PRIMARY_KEY = "PRIMARY_KEY";
+
+  @Autowired private ParkingService parkingService;
+  @Autowired private ParkingSpotRepository parkingSpotRepository;
+  @Autowired private VehicleRepository vehicleRepository;
+  @Autowired private JdbcTemplate jdbcTemplate;
+  @Autowired private PlatformTransactionManager transactionManager;
+
+  @BeforeEach
+  void fillHalfTheLot() {
+    if (vehicleRepository.count() > 0) {
+      return;
+    }
+    List<VehicleType> cars = Collections.nCopies(100, VehicleType.CAR);
+    for (int i = 0; i < 10; i++) {
+      parkingService.parkVehicles(cars);
+    }
+    jdbcTemplate.execute("analyze");
+  }
+
+  @Test
+  void spotsOfAVehicleAreFoundThroughTheVehicleIndex() {
+    assertIndexed(() -> parkingSpotRepository.findByVehicleId(1L), VEHICLE_INDEX);
+    assertIndexed(() -> parkingSpotRepository.findByVehicleIdIn(List.of(1L, 2L)), VEHICLE_INDEX);
+    assertIndexed(() -> parkingSpotRepository.releaseVehicles(List.of(1L, 2L)), VEHICLE_INDEX);
+  }
+
+  @Test
+  void freeSpotsOfATypeAreFoundThroughTheFreeSpotIndex() {
+    ParkingSpotType type = ParkingSpotType.REGULAR;
+    assertIndexed(() -> parkingSpotRepository.findByTypeAndVehicleIdIsNull(type), FREE_SPOT_INDEX);
+    assertIndexed(() -> parkingSpotRepository.countByTypeAndVehicleIdIsNull(type), FREE_SPOT_INDEX);
+    assertIndexed(() -> parkingSpotRepository.findFreeSpotIds(type), FREE_SPOT_INDEX);
+  }
+
+  /** Assignments look the spots up by id, never through the free spots of the vehicle index. */
+  @Test
+  void spotsAreAssignedThroughTheirPrimaryKey() {
+    List<Runnable> assignments =
+        List.of(
+            () -> parkingSpotRepository.assignVehicle(1L, List.of(1L, 2L)),
+            () -> parkingSpotRepository.assignVehicles(Map.of(1L, new long[] {1L, 2L})));
+    for (Runnable assignment : assignments) {
+      assertIndexed(assignment, PRIMARY_KEY);
+      for (String plan : this.plansOf(assignment)) {
+        assertFalse(plan.contains(VEHICLE_INDEX), plan);
+      }
+    }
+    assertIndexed(() -> parkingSpotRepository.releaseSpots(1L, List.of(1L, 2L)), VEHICLE_INDEX);
+  }
+
+  /** A spot is free only when it has no vehicle, whatever the id of the vehicle it has. */
+  @Test
+  void spotsTakenByAnyVehicleAreNotAssigned() {
+    new TransactionTemplate(transactionManager)
+        .executeWithoutResult(
+            status -> {
+              jdbcTemplate.update("update parking_spot_entity set vehicle_id = 0 where id = 1");
+
+              assertEquals(0, parkingSpotRepository.assignVehicle(2L, List.of(1L)));
+              assertEquals(0, parkingSpotRepository.assignVehicles(Map.of(2L, new long[] {1L})));
+              status.setRollbackOnly();
+            });
+  }
+
+  @Test
+  void vehiclesAreReadWithTheirSpotsThroughTheVehicleIndex() {
+    assertIndexed(() -> vehicleRepository.findWithSpotsByIdIn(List.of(1L, 2L)), VEHICLE_INDEX);
+    assertIndexed(() -> vehicleRepository.findIdsAfter(1L, Limit.of(10)), PRIMARY_KEY);
+    assertIndexed(() -> vehicleRepository.deleteVehicle(1L), PRIMARY_KEY);
+  }
+
+  /** Listing every vehicle reads the whole vehicle table, but still joins the spots by index. */
+  @Test
+  void theStatusJoinsTheSpotsThroughTheVehicleIndex() {
+    List<String> plans = this.plansOf(() -> vehicleRepository.findAllWithSpots());
+
+    assertFalse(plans.isEmpty());
+    for (String plan : plans) {
+      assertTrue(plan.contains(VEHICLE_INDEX), plan);
+      assertFalse(plan.contains("PARKING_SPOT_ENTITY.tableScan"), plan);
+    }
+  }
+
+  /**
+   * Runs a repository method in a transaction that is rolled back, and checks that the plans of
+   * its statements scan no table and use the given index.
+   */
+  private void assertIndexed(Runnable call, String index) {
+    List<String> plans = this.plansOf(call);
+
+    assertFalse(plans.isEmpty());
+    for (String plan : plans) {
+      assertFalse(plan.contains("tableScan"), plan);
+    }
+    assertTrue(plans.stream().anyMatch(plan -> plan.contains(index)), plans::toString);
+  }
+
+  private List<String> plansOf(Runnable call) {
+    jdbcTemplate.execute("set query_statistics false");
+    jdbcTemplate.execute("set query_statistics true");
+    new TransactionTemplate(transactionManager)
+        .executeWithoutResult(
+            status -> {
+              call.run();
+              status.setRollbackOnly();
+            });
+    List<String> statements =
+        jdbcTemplate.queryForList(
+            "select sql_statement from information_schema.query_statistics", String.class);
+    jdbcTemplate.execute("set query_statistics false");
+
+    return statements.stream()
+        .filter(sql -> !sql.toLowerCase().contains("query_statistics"))
+        .filter(sql -> sql.toLowerCase().matches("(?s).*(parking_spot_entity|vehicle_entity).*"))
+        .map(sql -> jdbcTemplate.queryForObject("explain " + sql.replace("?", "1"), String.class))
+        .toList();
+  }
+}
@@ -0,0 +1,234 @@
+package assessment.parkinglot.Integration;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.Mockito.doAnswer;
+
+import assessment.parkinglot.ParkingLotServiceApplication;
+import assessment.parkinglot.dto.BatchItemDTO;
+import assessment.parkinglot.dto.VehicleDTO;
+import assessment.parkinglot.entities.ParkingSpotEntity;
+import assessment.parkinglot.enums.ParkingSpotType;
+import assessment.parkinglot.enums.VehicleType;
+import assessment.parkinglot.exception.PklNotFoundException;
+import assessment.parkinglot.journal.JournalRecord;
+import assessment.parkinglot.journal.WriteBehindFlusher;
+import assessment.parkinglot.repository.ParkingSpotRepository;
+import assessment.parkinglot.repository.VehicleRepository;
+import assessment.parkinglot.service.ParkingService;
+import assessment.parkinglot.service.WriteBehindParkingService;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.List;
+import java.util.concurrent.atomic.AtomicReference;
+import java.util.stream.Stream;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.WebApplicationType;
+import org.springframework.boot.builder.SpringApplicationBuilder;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.boot.test.mock.mockito.SpyBean;
+import org.springframework.context.ConfigurableApplicationContext;
+import org.springframework.test.context.DynamicPropertyRegistry;
+import org.springframework.test.context.DynamicPropertySource;
+
+@SpringBootTest(
+    properties = {
+      "parking.persistence.mode=write-behind",
+      "parking.journal.fsync=false",
+      "parking.write-behind.flush-interval=PT1H",
+      "parking.snapshot.interval=PT1H"
+    })
+public class WriteBehindIntegrationTests {
+
+  @TempDir static Path directory;
+
+  @Autowired private ParkingService parkingService;
+  @SpyBean private WriteBehindFlusher flusher;
+  @Autowired private VehicleRepository vehicleRepository;
+  @Autowired private ParkingSpotRepository parkingSpotRepository;
+
+  @DynamicPropertySource
+  static void journalPath(DynamicPropertyRegistry registry) {
+    registry.add("parking.journal.directory", () -> directory.resolve("journal").toString());
+    registry.add("parking.snapshot.path", () -> directory.resolve("lot.snapshot").toString());
+  }
+
+  /**
+   * Parks and removes a van, checking that the service answers from memory right away and that the
+   * database only follows once the flusher runs.
+   */
+  @Test
+  void parkAndLeaveAreWrittenBehind() {
+    assertInstanceOf(WriteBehindParkingService.class, parkingService);
+    long freeSpots = parkingService.countAvailableSpots(ParkingSpotType.REGULAR);
+
+    VehicleDTO van = parkingService.parkVehicle(VehicleType.VAN);
+    assertEquals(3, van.getParkedOn().size());
+    assertEquals(freeSpots - 3, parkingService.countAvailableSpots(ParkingSpotType.REGULAR));
+    assertTrue(
+        parkingService.getAllParkedVehicles().stream()
+            .anyMatch(parked -> parked.getVehicleId().equals(van.getVehicleId())));
+    assertFalse(vehicleRepository.existsById(van.getVehicleId()));
+
+    flusher.flush();
+    assertTrue(vehicleRepository.existsById(van.getVehicleId()));
+    assertEquals(3, parkingSpotRepository.findByVehicleIdIn(List.of(van.getVehicleId())).size());
+
+    parkingService.removeVehicle(van.getVehicleId());
+    assertEquals(freeSpots, parkingService.countAvailableSpots(ParkingSpotType.REGULAR));
+    assertThrows(
+        PklNotFoundException.class, () -> parkingService.removeVehicle(van.getVehicleId()));
+
+    flusher.flush();
+    assertFalse(vehicleRepository.existsById(van.getVehicleId()));
+    assertTrue(parkingSpotRepository.findByVehicleIdIn(List.of(van.getVehicleId())).isEmpty());
+  }
+
+  /** Parks and removes a car before any flush, which must leave no trace in the database. */
+  @Test
+  void leaveBeforeFlushNeverReachesTheDatabase() {
+    VehicleDTO car = parkingService.parkVehicle(VehicleType.CAR);
+    parkingService.removeVehicle(car.getVehicleId());
+
+    flusher.flush();
+    assertFalse(vehicleRepository.existsById(car.getVehicleId()));
+    assertTrue(parkingSpotRepository.findByVehicleIdIn(List.of(car.getVehicleId())).isEmpty());
+  }
+
+  /**
+   * Tries to remove a car while its park is being queued for the database. The car must not be
+   * found yet, otherwise its leave would be written before its park and it would stay parked in
+   * the database.
+   */
+  @Test
+  void leaveDuringParkIsNeverQueuedBeforeThePark() {
+    AtomicReference<RuntimeException> interleavedLeave = new AtomicReference<>();
+    doAnswer(
+            invocation -> {
+              JournalRecord record = invocation.getArgument(0);
+              if (JournalRecord.Kind.PARK.equals(record.getKind())
+                  && interleavedLeave.get() == null) {
+                try {
+                  parkingService.removeVehicle(record.getVehicleId());
+                  interleavedLeave.set(new IllegalStateException("left before queued"));
+                } catch (RuntimeException e) {
+                  interleavedLeave.set(e);
+                }
+              }
+              return invocation.callRealMethod();
+            })
+        .when(flusher)
+        .enqueue(any(JournalRecord.class));
+
+    VehicleDTO car = parkingService.parkVehicle(VehicleType.CAR);
+    assertInstanceOf(PklNotFoundException.class, interleavedLeave.get());
+    parkingService.removeVehicle(car.getVehicleId());
+
+    flusher.flush();
+    assertFalse(vehicleRepository.existsById(car.getVehicleId()));
+    assertTrue(parkingSpotRepository.findByVehicleIdIn(List.of(car.getVehicleId())).isEmpty());
+  }
+
+  /**
+   * Parks vehicles and starts a second application on a copy of the journal, which must recover them
+   * with the same spots, take those spots out of its free counters and write them to its own
+   * database. A snapshot left by another test is seeded in the background, hence the wait.
+   */
+  @Test
+  void restartRecoversParkedVehiclesFromTheJournal() throws Exception {
+    List<BatchItemDTO> parked =
+        parkingService.parkVehicles(List.of(VehicleType.MOTORCYCLE, VehicleType.CAR));
+    VehicleDTO leaving = parkingService.parkVehicle(VehicleType.VAN);
+    parkingService.removeVehicle(leaving.getVehicleId());
+    List<VehicleDTO> before = parkingService.getAllParkedVehicles();
+
+    try (ConfigurableApplicationContext restarted = this.restart()) {
+
+      ParkingService recovered = restarted.getBean(ParkingService.class);
+      List<VehicleDTO> after = recovered.getAllParkedVehicles();
+      assertEquals(before, after);
+      for (ParkingSpotType type : ParkingSpotType.values()) {
+        assertEquals(
+            parkingService.countAvailableSpots(type), recovered.countAvailableSpots(type));
+      }
+
+      VehicleDTO motorcycle = parked.get(0).getVehicle();
+      ParkingSpotRepository restartedSpots = restarted.getBean(ParkingSpotRepository.class);
+      List<ParkingSpotEntity> spots = List.of();
+      for (int i = 0; i < 100 && spots.isEmpty(); i++) {
+        restarted.getBean(WriteBehindFlusher.class).flush();
+        spots = restartedSpots.findByVehicleIdIn(List.of(motorcycle.getVehicleId()));
+        if (spots.isEmpty()) {
+          Thread.sleep(100);
+        }
+      }
+      assertEquals(1, spots.size());
+      assertEquals(motorcycle.getParkedOn().get(0).getParkingSpotId(), spots.get(0).getId());
+
+      VehicleDTO next = recovered.parkVehicle(VehicleType.CAR);
+      assertTrue(
+          before.stream().allMatch(vehicle -> vehicle.getVehicleId() < next.getVehicleId()));
+    }
+  }
+
+  /**
+   * Takes a snapshot between parks and starts a second application on a copy of it and of the
+   * journal, which must skip the creation of the lot, restore it from both, and write it to its
+   * empty database in the background.
+   */
+  @Test
+  void restartRestoresTheLotFromTheSnapshot() throws Exception {
+    VehicleDTO before = parkingService.parkVehicle(VehicleType.VAN);
+    ((WriteBehindParkingService) parkingService).snapshot();
+    VehicleDTO after = parkingService.parkVehicle(VehicleType.MOTORCYCLE);
+    assertTrue(Files.exists(directory.resolve("lot.snapshot")));
+
+    try (ConfigurableApplicationContext restarted = this.restart()) {
+      ParkingService recovered = restarted.getBean(ParkingService.class);
+      assertEquals(parkingService.getAllParkedVehicles(), recovered.getAllParkedVehicles());
+      for (ParkingSpotType type : ParkingSpotType.values()) {
+        assertEquals(
+            parkingService.countAvailableSpots(type), recovered.countAvailableSpots(type));
+      }
+
+      VehicleRepository restartedVehicles = restarted.getBean(VehicleRepository.class);
+      for (int i = 0; i < 100 && !restartedVehicles.existsById(after.getVehicleId()); i++) {
+        Thread.sleep(100);
+      }
+      assertTrue(restartedVehicles.existsById(before.getVehicleId()));
+      assertTrue(restartedVehicles.existsById(after.getVehicleId()));
+      assertEquals(
+          parkingSpotRepository.count(), restarted.getBean(ParkingSpotRepository.class).count());
+    }
+  }
+
+  /**
+   * Copies the journal, and the snapshot if any, to a new directory and starts a second
+   * application on the copy, as if this one had crashed.
+   */
+  private ConfigurableApplicationContext restart() throws IOException {
+    Path copy = Files.createTempDirectory(directory, "restart");
+    Files.createDirectories(copy.resolve("journal"));
+    try (Stream<Path> segments = Files.list(directory.resolve("journal"))) {
+      for (Path segment : segments.toList()) {
+        Files.copy(segment, copy.resolve("journal").resolve(segment.getFileName()));
+      }
+    }
+    if (Files.exists(directory.resolve("lot.snapshot"))) {
+      Files.copy(directory.resolve("lot.snapshot"), copy.resolve("lot.snapshot"));
+    }
+
+    return new SpringApplicationBuilder(ParkingLotServiceApplication.class)
+        .web(WebApplicationType.NONE)
+        .run(
+            "--parking.persistence.mode=write-behind",
+            "--parking.journal.fsync=false",
+            "--parking.write-behind.flush-interval=PT1H",
+            "--parking.snapshot.interval=PT1H",
+            "--parking.journal.directory=" + copy.resolve("journal"),
+            "--parking.snapshot.path=" + copy.resolve("lot.snapshot"));
+  }
+}
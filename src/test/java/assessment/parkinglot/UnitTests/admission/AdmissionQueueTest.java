@@ -0,0 +1,187 @@
+package assessment.parkinglot.UnitTests.admission;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.Mockito.*;
+
+import assessment.parkinglot.admission.AdmissionQueue;
+import assessment.parkinglot.allocation.SpotAllocator;
+import assessment.parkinglot.dto.VehicleDTO;
+import assessment.parkinglot.enums.ErrorCode;
+import assessment.parkinglot.enums.ParkingSpotType;
+import assessment.parkinglot.enums.VehicleType;
+import assessment.parkinglot.exception.PklErrorException;
+import assessment.parkinglot.service.ParkingService;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import java.time.Duration;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.TimeUnit;
+import java.util.function.Consumer;
+import java.util.function.Supplier;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.mockito.ArgumentCaptor;
+
+public class AdmissionQueueTest {
+
+  private final ParkingService parkingService = mock(ParkingService.class);
+  private final SpotAllocator spotAllocator = mock(SpotAllocator.class);
+  private final List<Long> parked = new CopyOnWriteArrayList<>();
+  private volatile boolean full = true;
+  private Consumer<ParkingSpotType> releaseListener;
+  private AdmissionQueue admissionQueue;
+
+  @BeforeEach
+  void setUp() {
+    when(parkingService.areAllSpotsTaken(any())).thenAnswer(i -> full);
+    this.admissionQueue = this.queue(Duration.ofMinutes(1), 10);
+  }
+
+  @AfterEach
+  void tearDown() {
+    admissionQueue.close();
+  }
+
+  @Test
+  void parksWithRoomAreNotQueued() {
+    this.full = false;
+
+    CompletableFuture<VehicleDTO> future = admissionQueue.park(VehicleType.CAR, this.park(1L));
+
+    assertTrue(future.isDone());
+    assertEquals(1L, future.join().getVehicleId());
+    assertEquals(0, admissionQueue.waiting(VehicleType.CAR));
+  }
+
+  @Test
+  void waitersOfATypeAreParkedInOrderOnceSpotsAreFreed() throws Exception {
+    CompletableFuture<VehicleDTO> first = admissionQueue.park(VehicleType.CAR, this.park(1L));
+    CompletableFuture<VehicleDTO> second = admissionQueue.park(VehicleType.CAR, this.park(2L));
+    CompletableFuture<VehicleDTO> third = admissionQueue.park(VehicleType.CAR, this.park(3L));
+
+    assertFalse(first.isDone());
+    assertEquals(3, admissionQueue.waiting(VehicleType.CAR));
+
+    this.full = false;
+    releaseListener.accept(ParkingSpotType.COMPACT);
+
+    assertEquals(3L, third.get(5, TimeUnit.SECONDS).getVehicleId());
+    assertEquals(1L, first.join().getVehicleId());
+    assertEquals(2L, second.join().getVehicleId());
+    assertEquals(List.of(1L, 2L, 3L), parked);
+    assertEquals(0, admissionQueue.waiting(VehicleType.CAR));
+  }
+
+  @Test
+  void waitersBeingParkedStillHoldBackWalkIns() throws Exception {
+    CountDownLatch parking = new CountDownLatch(1);
+    CountDownLatch proceed = new CountDownLatch(1);
+    Supplier<VehicleDTO> park = this.park(1L);
+    CompletableFuture<VehicleDTO> first =
+        admissionQueue.park(
+            VehicleType.CAR,
+            () -> {
+              if (!full) {
+                parking.countDown();
+                this.await(proceed);
+              }
+              return park.get();
+            });
+
+    this.full = false;
+    releaseListener.accept(ParkingSpotType.COMPACT);
+    assertTrue(parking.await(5, TimeUnit.SECONDS));
+
+    assertEquals(1, admissionQueue.waiting(VehicleType.CAR));
+    CompletableFuture<VehicleDTO> walkIn = admissionQueue.park(VehicleType.CAR, this.park(2L));
+    assertFalse(walkIn.isDone());
+    assertTrue(parked.isEmpty());
+
+    proceed.countDown();
+    assertEquals(2L, walkIn.get(5, TimeUnit.SECONDS).getVehicleId());
+    assertEquals(1L, first.join().getVehicleId());
+    assertEquals(List.of(1L, 2L), parked);
+    assertEquals(0, admissionQueue.waiting(VehicleType.CAR));
+  }
+
+  @Test
+  void parksFindingTheirQueueFullFailRightAway() {
+    admissionQueue.close();
+    this.admissionQueue = this.queue(Duration.ofMinutes(1), 1);
+    admissionQueue.park(VehicleType.VAN, this.park(1L));
+
+    CompletableFuture<VehicleDTO> rejected = admissionQueue.park(VehicleType.VAN, this.park(2L));
+
+    assertEquals(ErrorCode.PARKING_QUEUE_FULL, this.failure(rejected).getError());
+    assertEquals(1, admissionQueue.waiting(VehicleType.VAN));
+  }
+
+  @Test
+  void waitersNotParkedInTimeFailForLackOfRoom() {
+    admissionQueue.close();
+    this.admissionQueue = this.queue(Duration.ofMillis(50), 10);
+
+    CompletableFuture<VehicleDTO> future = admissionQueue.park(VehicleType.MOTORCYCLE, this.park(1L));
+
+    assertEquals(ErrorCode.NO_SPACE_TO_PARK, this.failure(future).getError());
+    assertEquals(0, admissionQueue.waiting(VehicleType.MOTORCYCLE));
+    assertTrue(parked.isEmpty());
+  }
+
+  @Test
+  void otherFailuresAreThrownWithoutQueueing() {
+    PklErrorException exception =
+        assertThrows(
+            PklErrorException.class,
+            () ->
+                admissionQueue.park(
+                    VehicleType.CAR,
+                    () -> {
+                      throw new PklErrorException(ErrorCode.UNABLE_TO_PARK);
+                    }));
+
+    assertEquals(ErrorCode.UNABLE_TO_PARK, exception.getError());
+    assertEquals(0, admissionQueue.waiting(VehicleType.CAR));
+  }
+
+  @SuppressWarnings("unchecked")
+  private AdmissionQueue queue(Duration timeout, int capacity) {
+    reset(spotAllocator);
+    AdmissionQueue queue =
+        new AdmissionQueue(
+            parkingService, spotAllocator, new SimpleMeterRegistry(), timeout, capacity);
+    ArgumentCaptor<Consumer<ParkingSpotType>> listener = ArgumentCaptor.forClass(Consumer.class);
+    verify(spotAllocator).onRelease(listener.capture());
+    this.releaseListener = listener.getValue();
+    return queue;
+  }
+
+  /** A park that fails for lack of room while the lot is full. */
+  private Supplier<VehicleDTO> park(long vehicleId) {
+    return () -> {
+      if (full) {
+        throw new PklErrorException(ErrorCode.NO_SPACE_TO_PARK);
+      }
+      parked.add(vehicleId);
+      return VehicleDTO.builder().vehicleId(vehicleId).parked(Boolean.TRUE).build();
+    };
+  }
+
+  private void await(CountDownLatch latch) {
+    try {
+      assertTrue(latch.await(5, TimeUnit.SECONDS));
+    } catch (InterruptedException e) {
+      throw new IllegalStateException(e);
+    }
+  }
+
+  private PklErrorException failure(CompletableFuture<VehicleDTO> future) {
+    ExecutionException exception =
+        assertThrows(ExecutionException.class, () -> future.get(5, TimeUnit.SECONDS));
+    return assertInstanceOf(PklErrorException.class, exception.getCause());
+  }
+}
@@ -0,0 +1,86 @@
+package assessment.parkinglot.UnitTests.allocation;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.Mockito.*;
+
+import assessment.parkinglot.allocation.AvailabilityReconciler;
+import assessment.parkinglot.allocation.SpotAllocator;
+import assessment.parkinglot.entities.ParkingSpotEntity;
+import assessment.parkinglot.enums.ParkingSpotType;
+import assessment.parkinglot.repository.ParkingSpotRepository;
+import java.util.List;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.mockito.InjectMocks;
+import org.mockito.Mock;
+import org.mockito.MockitoAnnotations;
+import org.mockito.Spy;
+
+public class AvailabilityReconcilerTest {
+
+  @Mock private ParkingSpotRepository parkingSpotRepository;
+  @Spy private SpotAllocator spotAllocator = new SpotAllocator();
+
+  @InjectMocks private AvailabilityReconciler availabilityReconciler;
+
+  @BeforeEach
+  void setUp() {
+    MockitoAnnotations.openMocks(this);
+    spotAllocator.load(
+        List.of(
+            ParkingSpotEntity.builder().id(1L).type(ParkingSpotType.REGULAR).build(),
+            ParkingSpotEntity.builder().id(2L).type(ParkingSpotType.REGULAR).build(),
+            ParkingSpotEntity.builder().id(3L).type(ParkingSpotType.REGULAR).build(),
+            ParkingSpotEntity.builder().id(4L).type(ParkingSpotType.REGULAR).build(),
+            ParkingSpotEntity.builder()
+                .id(5L)
+                .type(ParkingSpotType.REGULAR)
+                .vehicleId(1L)
+                .build()));
+  }
+
+  @Test
+  void reconcileFixesDriftEvenWhenTheCountsMatch() {
+    when(parkingSpotRepository.findFreeSpotIds(ParkingSpotType.REGULAR))
+        .thenReturn(List.of(1L, 2L, 3L, 5L));
+
+    availabilityReconciler.reconcile();
+    availabilityReconciler.reconcile();
+
+    assertEquals(4, spotAllocator.available(ParkingSpotType.REGULAR));
+    verify(spotAllocator).take(ParkingSpotType.REGULAR, 4L);
+    verify(spotAllocator).release(ParkingSpotType.REGULAR, 5L);
+  }
+
+  @Test
+  void reconcileFixesDriftSeenTwice() {
+    when(parkingSpotRepository.findFreeSpotIds(ParkingSpotType.REGULAR))
+        .thenReturn(List.of(1L, 2L, 5L));
+
+    availabilityReconciler.reconcile();
+
+    assertEquals(4, spotAllocator.available(ParkingSpotType.REGULAR));
+    verify(spotAllocator, never()).take(any(), anyLong());
+    verify(spotAllocator, never()).release(any(), anyLong());
+
+    availabilityReconciler.reconcile();
+
+    assertEquals(3, spotAllocator.available(ParkingSpotType.REGULAR));
+    verify(spotAllocator).take(ParkingSpotType.REGULAR, 3L);
+    verify(spotAllocator).take(ParkingSpotType.REGULAR, 4L);
+    verify(spotAllocator).release(ParkingSpotType.REGULAR, 5L);
+  }
+
+  @Test
+  void reconcileIgnoresDriftThatGoesAway() {
+    when(parkingSpotRepository.findFreeSpotIds(ParkingSpotType.REGULAR))
+        .thenReturn(List.of(1L, 2L, 3L))
+        .thenReturn(List.of(1L, 2L, 3L, 4L));
+
+    availabilityReconciler.reconcile();
+    availabilityReconciler.reconcile();
+
+    assertEquals(4, spotAllocator.available(ParkingSpotType.REGULAR));
+    verify(spotAllocator, never()).take(any(), anyLong());
+  }
+}
@@ -0,0 +1,126 @@
+package assessment.parkinglot.UnitTests.allocation;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+import assessment.parkinglot.allocation.AllocationStrategySelector;
+import assessment.parkinglot.allocation.BestFitStrategy;
+import assessment.parkinglot.allocation.FirstFitStrategy;
+import assessment.parkinglot.allocation.SpotAllocator;
+import assessment.parkinglot.allocation.UtilizationAwareStrategy;
+import assessment.parkinglot.domain.Vehicle;
+import assessment.parkinglot.domain.VehicleFactory;
+import assessment.parkinglot.entities.ParkingSpotEntity;
+import assessment.parkinglot.enums.AllocationStrategyType;
+import assessment.parkinglot.enums.ParkingSpotType;
+import assessment.parkinglot.enums.VehicleType;
+import java.util.ArrayList;
+import java.util.List;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+public class SpotAllocationStrategyTest {
+
+  private static final Vehicle CAR = VehicleFactory.create(VehicleType.CAR);
+  private static final Vehicle VAN = VehicleFactory.create(VehicleType.VAN);
+
+  private SpotAllocator spotAllocator;
+
+  /** A lot with the regular spots, 1 to 10, before the compact ones, 11 to 15. */
+  @BeforeEach
+  void setUp() {
+    List<ParkingSpotEntity> spots = new ArrayList<>();
+    for (long id = 1; id <= 15; id++) {
+      ParkingSpotType type = id <= 10 ? ParkingSpotType.REGULAR : ParkingSpotType.COMPACT;
+      spots.add(ParkingSpotEntity.builder().id(id).type(type).build());
+    }
+    spotAllocator = new SpotAllocator();
+    spotAllocator.load(spots);
+  }
+
+  @Test
+  void firstFitPrefersTheTypeThatComesFirstInTheLot() {
+    FirstFitStrategy strategy = new FirstFitStrategy(spotAllocator);
+
+    assertEquals(
+        List.of(ParkingSpotType.REGULAR, ParkingSpotType.COMPACT), strategy.candidates(CAR));
+
+    for (long id = 1; id <= 10; id++) {
+      spotAllocator.take(ParkingSpotType.REGULAR, id);
+    }
+    assertEquals(
+        List.of(ParkingSpotType.COMPACT, ParkingSpotType.REGULAR), strategy.candidates(CAR));
+  }
+
+  @Test
+  void bestFitPrefersTheSmallestType() {
+    BestFitStrategy strategy = new BestFitStrategy();
+
+    assertEquals(
+        List.of(ParkingSpotType.COMPACT, ParkingSpotType.REGULAR), strategy.candidates(CAR));
+    assertEquals(List.of(ParkingSpotType.REGULAR), strategy.candidates(VAN));
+  }
+
+  @Test
+  void utilizationAwareKeepsTheRegularReserveForVans() {
+    UtilizationAwareStrategy strategy = new UtilizationAwareStrategy(spotAllocator, 30);
+
+    assertEquals(
+        List.of(ParkingSpotType.COMPACT, ParkingSpotType.REGULAR), strategy.candidates(CAR));
+
+    for (long id = 1; id <= 7; id++) {
+      spotAllocator.take(ParkingSpotType.REGULAR, id);
+    }
+    assertEquals(List.of(ParkingSpotType.COMPACT), strategy.candidates(CAR));
+    assertEquals(List.of(ParkingSpotType.REGULAR), strategy.candidates(VAN));
+  }
+
+  @Test
+  void selectorSwitchesStrategies() {
+    AllocationStrategySelector selector =
+        new AllocationStrategySelector(
+            List.of(new FirstFitStrategy(spotAllocator), new BestFitStrategy()),
+            spotAllocator,
+            AllocationStrategyType.FIRST_FIT);
+
+    assertEquals(ParkingSpotType.REGULAR, selector.candidates(CAR).get(0));
+
+    selector.select(AllocationStrategyType.BEST_FIT);
+    assertEquals(AllocationStrategyType.BEST_FIT, selector.current());
+    assertEquals(ParkingSpotType.COMPACT, selector.candidates(CAR).get(0));
+    assertThrows(
+        IllegalArgumentException.class,
+        () -> selector.select(AllocationStrategyType.UTILIZATION_AWARE));
+  }
+
+  @Test
+  void selectorLeavesHeldSpotsToTheirReservations() {
+    AllocationStrategySelector selector =
+        new AllocationStrategySelector(
+            List.of(new BestFitStrategy()), spotAllocator, AllocationStrategyType.BEST_FIT);
+
+    spotAllocator.hold(ParkingSpotType.COMPACT, 5);
+    assertEquals(List.of(ParkingSpotType.REGULAR), selector.candidates(CAR));
+
+    spotAllocator.hold(ParkingSpotType.REGULAR, 7);
+    assertEquals(List.of(ParkingSpotType.REGULAR), selector.candidates(VAN));
+    spotAllocator.hold(ParkingSpotType.REGULAR, 1);
+    assertTrue(selector.candidates(VAN).isEmpty());
+
+    spotAllocator.hold(ParkingSpotType.COMPACT, -1);
+    assertEquals(
+        List.of(ParkingSpotType.COMPACT, ParkingSpotType.REGULAR), selector.candidates(CAR));
+  }
+
+  @Test
+  void candidatesAreSharedAcrossParks() {
+    FirstFitStrategy firstFit = new FirstFitStrategy(spotAllocator);
+    UtilizationAwareStrategy utilizationAware = new UtilizationAwareStrategy(spotAllocator, 30);
+
+    assertSame(CAR, VehicleFactory.create(VehicleType.CAR));
+    assertEquals(3, VAN.spots(ParkingSpotType.REGULAR));
+    assertEquals(0, VAN.spots(ParkingSpotType.COMPACT));
+    assertSame(firstFit.candidates(CAR), firstFit.candidates(CAR));
+    assertSame(utilizationAware.candidates(CAR), utilizationAware.candidates(CAR));
+    assertSame(VAN.getSpotTypes(), new BestFitStrategy().candidates(VAN));
+  }
+}
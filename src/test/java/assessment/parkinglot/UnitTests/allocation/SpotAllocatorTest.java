@@ -0,0 +1,296 @@
+package assessment.parkinglot.UnitTests.allocation;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+import assessment.parkinglot.allocation.SpotAllocator;
+import assessment.parkinglot.entities.ParkingSpotEntity;
+import assessment.parkinglot.enums.ParkingSpotType;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Map;
+import java.util.Random;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLongArray;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+public class SpotAllocatorTest {
+
+  private SpotAllocator spotAllocator;
+
+  @BeforeEach
+  void setUp() {
+    List<ParkingSpotEntity> spots = new ArrayList<>();
+    for (long id = 1; id <= 100; id++) {
+      spots.add(ParkingSpotEntity.builder().id(id).type(ParkingSpotType.REGULAR).build());
+    }
+    spots.add(ParkingSpotEntity.builder().id(101L).type(ParkingSpotType.COMPACT).build());
+    spots.add(
+        ParkingSpotEntity.builder().id(102L).type(ParkingSpotType.COMPACT).vehicleId(9L).build());
+
+    spotAllocator = new SpotAllocator();
+    spotAllocator.load(spots);
+  }
+
+  @Test
+  void loadCountsOnlyFreeSpots() {
+    assertEquals(100, spotAllocator.available(ParkingSpotType.REGULAR));
+    assertEquals(1, spotAllocator.available(ParkingSpotType.COMPACT));
+    assertEquals(0, spotAllocator.available(ParkingSpotType.MOTORCYCLE));
+  }
+
+  @Test
+  void claimTakesDistinctSpots() {
+    long[] first = new long[3];
+    long[] second = new long[3];
+
+    assertTrue(spotAllocator.claim(ParkingSpotType.REGULAR, first));
+    assertTrue(spotAllocator.claim(ParkingSpotType.REGULAR, second));
+
+    assertEquals(94, spotAllocator.available(ParkingSpotType.REGULAR));
+    assertEquals(
+        6,
+        Arrays.stream(new long[][] {first, second})
+            .flatMapToLong(Arrays::stream)
+            .distinct()
+            .count());
+  }
+
+  @Test
+  void claimIsAllOrNothing() {
+    long[] claimed = new long[2];
+
+    assertFalse(spotAllocator.claim(ParkingSpotType.COMPACT, claimed));
+    assertEquals(1, spotAllocator.available(ParkingSpotType.COMPACT));
+  }
+
+  @Test
+  void releasedSpotCanBeClaimedAgain() {
+    long[] claimed = new long[1];
+    assertTrue(spotAllocator.claim(ParkingSpotType.COMPACT, claimed));
+    assertEquals(101L, claimed[0]);
+    assertFalse(spotAllocator.claim(ParkingSpotType.COMPACT, new long[1]));
+
+    spotAllocator.release(ParkingSpotType.COMPACT, claimed[0]);
+
+    assertEquals(1, spotAllocator.available(ParkingSpotType.COMPACT));
+    assertTrue(spotAllocator.claim(ParkingSpotType.COMPACT, claimed));
+    assertEquals(101L, claimed[0]);
+  }
+
+  @Test
+  void releaseOfFreeOrUnknownSpotIsIgnored() {
+    spotAllocator.release(ParkingSpotType.COMPACT, 101L);
+    spotAllocator.release(ParkingSpotType.COMPACT, 500L);
+
+    assertEquals(1, spotAllocator.available(ParkingSpotType.COMPACT));
+  }
+
+  @Test
+  void claimOfSeveralSpotsTakesTheFirstAdjacentOnes() {
+    spotAllocator.take(ParkingSpotType.REGULAR, 3L);
+    spotAllocator.take(ParkingSpotType.REGULAR, 6L);
+    spotAllocator.take(ParkingSpotType.REGULAR, 7L);
+    long[] claimed = new long[3];
+
+    assertTrue(spotAllocator.claim(ParkingSpotType.REGULAR, claimed));
+    assertArrayEquals(new long[] {8L, 9L, 10L}, claimed);
+
+    spotAllocator.release(ParkingSpotType.REGULAR, 3L);
+
+    assertTrue(spotAllocator.claim(ParkingSpotType.REGULAR, claimed));
+    assertArrayEquals(new long[] {1L, 2L, 3L}, claimed);
+  }
+
+  @Test
+  void claimOfSeveralSpotsFailsWithoutAdjacentFreeOnes() {
+    for (long id = 2; id <= 100; id += 2) {
+      spotAllocator.take(ParkingSpotType.REGULAR, id);
+    }
+
+    assertFalse(spotAllocator.claim(ParkingSpotType.REGULAR, new long[2]));
+    assertEquals(50, spotAllocator.available(ParkingSpotType.REGULAR));
+    assertEquals(1, spotAllocator.longestRun(ParkingSpotType.REGULAR));
+    assertTrue(spotAllocator.claim(ParkingSpotType.REGULAR, new long[1]));
+  }
+
+  @Test
+  void adjacentSpotsFollowTheIdsAcrossWords() {
+    List<ParkingSpotEntity> spots = new ArrayList<>();
+    for (long id : new long[] {1L, 2L, 4L, 5L, 7L}) {
+      spots.add(ParkingSpotEntity.builder().id(id).type(ParkingSpotType.REGULAR).build());
+    }
+    for (long id = 100; id < 200; id++) {
+      spots.add(
+          ParkingSpotEntity.builder()
+              .id(id)
+              .type(ParkingSpotType.REGULAR)
+              .vehicleId(id < 157 ? 1L : null)
+              .build());
+    }
+    spotAllocator.load(spots);
+    long[] claimed = new long[3];
+
+    assertTrue(spotAllocator.claim(ParkingSpotType.REGULAR, claimed));
+    assertArrayEquals(new long[] {157L, 158L, 159L}, claimed);
+    claimed = new long[2];
+    assertTrue(spotAllocator.claim(ParkingSpotType.REGULAR, claimed));
+    assertArrayEquals(new long[] {1L, 2L}, claimed);
+    assertEquals(43, spotAllocator.available(ParkingSpotType.REGULAR));
+  }
+
+  @Test
+  void claimOfSeveralSpotsMatchesALinearSearch() {
+    int size = 20_000;
+    List<ParkingSpotEntity> spots = new ArrayList<>();
+    for (long id = 1; id <= size; id++) {
+      spots.add(ParkingSpotEntity.builder().id(id).type(ParkingSpotType.REGULAR).build());
+    }
+    spotAllocator.load(spots);
+    boolean[] taken = new boolean[size + 1];
+    Random random = new Random(7);
+
+    for (int round = 0; round < 50_000; round++) {
+      long spotId = 1 + random.nextInt(size);
+      if (random.nextInt(4) == 0) {
+        spotAllocator.release(ParkingSpotType.REGULAR, spotId);
+        taken[(int) spotId] = false;
+        continue;
+      }
+      int length = 1 + random.nextInt(4);
+      long[] claimed = new long[length];
+      long expected = length == 1 ? -1 : firstRun(taken, length);
+
+      boolean isClaimed = spotAllocator.claim(ParkingSpotType.REGULAR, claimed);
+
+      if (length > 1) {
+        assertEquals(expected > 0, isClaimed);
+        if (isClaimed) {
+          assertEquals(expected, claimed[0]);
+        }
+      }
+      if (isClaimed) {
+        for (long id : claimed) {
+          assertFalse(taken[(int) id]);
+          taken[(int) id] = true;
+        }
+      }
+    }
+  }
+
+  private static long firstRun(boolean[] taken, int length) {
+    int run = 0;
+    for (int id = 1; id < taken.length; id++) {
+      run = taken[id] ? 0 : run + 1;
+      if (run == length) {
+        return id - length + 1;
+      }
+    }
+    return -1;
+  }
+
+  @Test
+  void levelsAreCountedApartAndAddedUp() {
+    List<ParkingSpotEntity> spots = new ArrayList<>();
+    for (long id = 1; id <= 8; id++) {
+      spots.add(
+          ParkingSpotEntity.builder()
+              .id(id)
+              .type(ParkingSpotType.REGULAR)
+              .level(id <= 4 ? "1" : "2")
+              .vehicleId(id <= 2 || id >= 7 ? 1L : null)
+              .build());
+    }
+    spotAllocator.load(spots);
+
+    assertEquals(4, spotAllocator.available(ParkingSpotType.REGULAR));
+    assertEquals(8, spotAllocator.capacity(ParkingSpotType.REGULAR));
+    assertEquals(
+        Map.of("1", 2, "2", 2), spotAllocator.availableByLevel(ParkingSpotType.REGULAR));
+    assertEquals(2, spotAllocator.longestRun(ParkingSpotType.REGULAR));
+    assertFalse(spotAllocator.claim(ParkingSpotType.REGULAR, new long[3]));
+
+    spotAllocator.release(ParkingSpotType.REGULAR, 7L);
+    assertEquals(3, spotAllocator.longestRun(ParkingSpotType.REGULAR));
+
+    long[] claimed = new long[3];
+    assertTrue(spotAllocator.claim(ParkingSpotType.REGULAR, claimed));
+    assertArrayEquals(new long[] {5L, 6L, 7L}, claimed);
+    assertEquals(
+        Map.of("1", 2, "2", 0), spotAllocator.availableByLevel(ParkingSpotType.REGULAR));
+  }
+
+  @Test
+  void concurrentClaimsNeverShareSpots() throws Exception {
+    this.claimConcurrently(100);
+  }
+
+  @Test
+  void concurrentClaimsOnSeveralLevelsNeverShareSpots() throws Exception {
+    List<ParkingSpotEntity> spots = new ArrayList<>();
+    for (long id = 1; id <= 100; id++) {
+      spots.add(
+          ParkingSpotEntity.builder()
+              .id(id)
+              .type(ParkingSpotType.REGULAR)
+              .level(String.valueOf((id - 1) / 25))
+              .build());
+    }
+    spotAllocator.load(spots);
+
+    this.claimConcurrently(25);
+  }
+
+  private void claimConcurrently(int spotsPerLevel) throws Exception {
+    int threads = 64;
+    int rounds = 20_000;
+    AtomicLongArray owners = new AtomicLongArray(101);
+    AtomicInteger doubleAssignments = new AtomicInteger();
+    AtomicInteger splitClaims = new AtomicInteger();
+
+    ExecutorService executor = Executors.newFixedThreadPool(threads);
+    List<Future<?>> workers = new ArrayList<>();
+    for (int t = 1; t <= threads; t++) {
+      final long owner = t;
+      workers.add(
+          executor.submit(
+              () -> {
+                long[] claimed = new long[ThreadLocalRandom.current().nextInt(1, 4)];
+                for (int r = 0; r < rounds; r++) {
+                  if (!spotAllocator.claim(ParkingSpotType.REGULAR, claimed)) {
+                    continue;
+                  }
+                  if (claimed[claimed.length - 1] - claimed[0] != claimed.length - 1
+                      || (claimed[0] - 1) / spotsPerLevel
+                          != (claimed[claimed.length - 1] - 1) / spotsPerLevel) {
+                    splitClaims.incrementAndGet();
+                  }
+                  for (long spotId : claimed) {
+                    if (!owners.compareAndSet((int) spotId, 0, owner)) {
+                      doubleAssignments.incrementAndGet();
+                    }
+                  }
+                  for (long spotId : claimed) {
+                    owners.set((int) spotId, 0);
+                    spotAllocator.release(ParkingSpotType.REGULAR, spotId);
+                  }
+                }
+              }));
+    }
+    for (Future<?> worker : workers) {
+      worker.get();
+    }
+    executor.shutdown();
+    assertTrue(executor.awaitTermination(10, TimeUnit.SECONDS));
+
+    assertEquals(0, doubleAssignments.get());
+    assertEquals(0, splitClaims.get());
+    assertEquals(100, spotAllocator.available(ParkingSpotType.REGULAR));
+  }
+}
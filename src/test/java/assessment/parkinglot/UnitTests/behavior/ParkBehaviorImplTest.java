@@ -3,15 +3,21 @@ package assessment.parkinglot.UnitTests.behavior;
 import static org.junit.jupiter.api.Assertions.*;
 import static org.mockito.Mockito.*;
 
+import assessment.parkinglot.allocation.AllocationStrategySelector;
+import assessment.parkinglot.allocation.BestFitStrategy;
+import assessment.parkinglot.allocation.SpotAllocator;
 import assessment.parkinglot.behavior.ParkBehaviorImpl;
+import assessment.parkinglot.cache.VehicleIndex;
 import assessment.parkinglot.domain.Car;
 import assessment.parkinglot.domain.Motorcycle;
 import assessment.parkinglot.domain.Van;
+import assessment.parkinglot.domain.VehicleFactory;
+import assessment.parkinglot.dto.BatchItemDTO;
 import assessment.parkinglot.dto.ParkingSpotDTO;
 import assessment.parkinglot.dto.Translator;
 import assessment.parkinglot.dto.VehicleDTO;
-import assessment.parkinglot.entities.ParkingSpotEntity;
 import assessment.parkinglot.entities.VehicleEntity;
+import assessment.parkinglot.enums.AllocationStrategyType;
 import assessment.parkinglot.enums.ErrorCode;
 import assessment.parkinglot.enums.ParkingSpotType;
 import assessment.parkinglot.enums.VehicleType;
@@ -19,18 +25,25 @@ import assessment.parkinglot.exception.PklErrorException;
 import assessment.parkinglot.repository.ParkingSpotRepository;
 import assessment.parkinglot.repository.VehicleRepository;
 import java.util.List;
-import java.util.Map;
 import org.junit.jupiter.api.BeforeEach;
 import org.junit.jupiter.api.Test;
 import org.mockito.InjectMocks;
 import org.mockito.Mock;
 import org.mockito.MockitoAnnotations;
+import org.mockito.Spy;
 
 public class ParkBehaviorImplTest {
 
   @Mock private VehicleRepository vehicleRepository;
   @Mock private ParkingSpotRepository parkingSpotRepository;
   @Mock private Translator translator;
+  @Mock private SpotAllocator spotAllocator;
+  @Mock private VehicleIndex vehicleIndex;
+
+  @Spy
+  private AllocationStrategySelector strategySelector =
+      new AllocationStrategySelector(
+          List.of(new BestFitStrategy()), new SpotAllocator(), AllocationStrategyType.BEST_FIT);
 
   @InjectMocks private ParkBehaviorImpl parkBehavior;
 
@@ -41,15 +54,14 @@ public class ParkBehaviorImplTest {
 
   @Test
   void parkCarSuccessfully() {
-    Car car = mock(Car.class);
-    when(car.getParkingSpotUsageByTypes()).thenReturn(Map.of(ParkingSpotType.COMPACT, 1));
+    Car car = (Car) VehicleFactory.create(VehicleType.CAR);
     VehicleEntity vehicleEntity = VehicleEntity.builder().id(1L).type(VehicleType.CAR).build();
     when(vehicleRepository.save(any(VehicleEntity.class))).thenReturn(vehicleEntity);
     when(translator.toDTO(any(VehicleEntity.class)))
         .thenReturn(VehicleDTO.builder().vehicleId(1L).type(VehicleType.CAR).build());
-    when(parkingSpotRepository.findByTypeAndVehicleIdIsNull(ParkingSpotType.COMPACT))
-        .thenReturn(List.of(new ParkingSpotEntity()));
-    when(translator.toDTO(any(ParkingSpotEntity.class)))
+    when(spotAllocator.claim(eq(ParkingSpotType.COMPACT), any(long[].class))).thenReturn(true);
+    when(parkingSpotRepository.assignVehicle(eq(1L), anyList())).thenReturn(1);
+    when(translator.toDTO(anyLong(), eq(ParkingSpotType.COMPACT)))
         .thenReturn(
             ParkingSpotDTO.builder().parkingSpotId(33L).type(ParkingSpotType.COMPACT).build());
 
@@ -58,22 +70,29 @@ public class ParkBehaviorImplTest {
     assertNotNull(vehicle);
     assertNotNull(vehicle.getVehicleId());
     assertTrue(vehicle.getParked());
-    verify(parkingSpotRepository, times(1)).save(any(ParkingSpotEntity.class));
-    verify(vehicleRepository, times(1)).save(any(VehicleEntity.class));
+    assertEquals(1, vehicle.getParkedOn().size());
+    verify(parkingSpotRepository, times(1)).assignVehicle(eq(1L), anyList());
+    verify(vehicleRepository, times(1)).save(argThat(v -> v.getParkedAt() != null));
+    verify(vehicleIndex)
+        .putAfterCommit(
+            eq(1L),
+            eq(VehicleType.CAR),
+            eq(ParkingSpotType.COMPACT),
+            any(long[].class),
+            anyLong());
   }
 
   @Test
   void parkMotorcycleSuccessfully() {
-    Motorcycle motorcycle = mock(Motorcycle.class);
-    when(motorcycle.getParkingSpotUsageByTypes()).thenReturn(Map.of(ParkingSpotType.MOTORCYCLE, 1));
+    Motorcycle motorcycle = (Motorcycle) VehicleFactory.create(VehicleType.MOTORCYCLE);
     VehicleEntity vehicleEntity =
         VehicleEntity.builder().id(1L).type(VehicleType.MOTORCYCLE).build();
     when(vehicleRepository.save(any(VehicleEntity.class))).thenReturn(vehicleEntity);
     when(translator.toDTO(any(VehicleEntity.class)))
         .thenReturn(VehicleDTO.builder().vehicleId(1L).type(VehicleType.CAR).build());
-    when(parkingSpotRepository.findByTypeAndVehicleIdIsNull(ParkingSpotType.MOTORCYCLE))
-        .thenReturn(List.of(new ParkingSpotEntity()));
-    when(translator.toDTO(any(ParkingSpotEntity.class)))
+    when(spotAllocator.claim(eq(ParkingSpotType.MOTORCYCLE), any(long[].class))).thenReturn(true);
+    when(parkingSpotRepository.assignVehicle(eq(1L), anyList())).thenReturn(1);
+    when(translator.toDTO(anyLong(), eq(ParkingSpotType.MOTORCYCLE)))
         .thenReturn(
             ParkingSpotDTO.builder().parkingSpotId(33L).type(ParkingSpotType.MOTORCYCLE).build());
 
@@ -82,22 +101,21 @@ public class ParkBehaviorImplTest {
     assertNotNull(vehicle);
     assertNotNull(vehicle.getVehicleId());
     assertTrue(vehicle.getParked());
-    verify(parkingSpotRepository, times(1)).save(any(ParkingSpotEntity.class));
+    assertEquals(1, vehicle.getParkedOn().size());
+    verify(parkingSpotRepository, times(1)).assignVehicle(eq(1L), anyList());
     verify(vehicleRepository, times(1)).save(any(VehicleEntity.class));
   }
 
   @Test
   void parkVanSuccessfully() {
-    Van van = mock(Van.class);
-    when(van.getParkingSpotUsageByTypes()).thenReturn(Map.of(ParkingSpotType.REGULAR, 3));
+    Van van = (Van) VehicleFactory.create(VehicleType.VAN);
     VehicleEntity vehicleEntity = VehicleEntity.builder().id(1L).type(VehicleType.VAN).build();
     when(vehicleRepository.save(any(VehicleEntity.class))).thenReturn(vehicleEntity);
     when(translator.toDTO(any(VehicleEntity.class)))
         .thenReturn(VehicleDTO.builder().vehicleId(1L).type(VehicleType.VAN).build());
-    when(parkingSpotRepository.findByTypeAndVehicleIdIsNull(ParkingSpotType.REGULAR))
-        .thenReturn(
-            List.of(new ParkingSpotEntity(), new ParkingSpotEntity(), new ParkingSpotEntity()));
-    when(translator.toDTO(any(ParkingSpotEntity.class)))
+    when(spotAllocator.claim(eq(ParkingSpotType.REGULAR), any(long[].class))).thenReturn(true);
+    when(parkingSpotRepository.assignVehicle(eq(1L), anyList())).thenReturn(3);
+    when(translator.toDTO(anyLong(), eq(ParkingSpotType.REGULAR)))
         .thenReturn(
             ParkingSpotDTO.builder().parkingSpotId(33L).type(ParkingSpotType.REGULAR).build());
 
@@ -106,14 +124,34 @@ public class ParkBehaviorImplTest {
     assertNotNull(vehicle);
     assertNotNull(vehicle.getVehicleId());
     assertTrue(vehicle.getParked());
-    verify(parkingSpotRepository, times(3)).save(any(ParkingSpotEntity.class));
+    assertEquals(3, vehicle.getParkedOn().size());
+    verify(parkingSpotRepository, times(1)).assignVehicle(eq(1L), anyList());
     verify(vehicleRepository, times(1)).save(any(VehicleEntity.class));
   }
 
+  @Test
+  void parkOnClaimedSpotsClaimsNothingMore() {
+    VehicleEntity vehicleEntity = VehicleEntity.builder().id(1L).type(VehicleType.VAN).build();
+    long[] spotIds = {4L, 5L, 6L};
+    when(vehicleRepository.save(any(VehicleEntity.class))).thenReturn(vehicleEntity);
+    when(translator.toDTO(any(VehicleEntity.class)))
+        .thenReturn(VehicleDTO.builder().vehicleId(1L).type(VehicleType.VAN).build());
+    when(parkingSpotRepository.assignVehicle(1L, List.of(4L, 5L, 6L))).thenReturn(3);
+
+    VehicleDTO vehicle =
+        parkBehavior.park(VehicleFactory.create(VehicleType.VAN), ParkingSpotType.REGULAR, spotIds);
+
+    assertTrue(vehicle.getParked());
+    assertEquals(3, vehicle.getParkedOn().size());
+    verify(spotAllocator).releaseOnRollback(ParkingSpotType.REGULAR, spotIds);
+    verify(spotAllocator, never()).claim(any(ParkingSpotType.class), any(long[].class));
+    verify(vehicleRepository).save(argThat(v -> v.getType() == VehicleType.VAN));
+  }
+
   @Test
   void parkVehicleThrowsException() {
-    Car car = mock(Car.class);
-    when(car.getParkingSpotUsageByTypes()).thenReturn(Map.of(ParkingSpotType.COMPACT, 1));
+    Car car = (Car) VehicleFactory.create(VehicleType.CAR);
+    when(spotAllocator.claim(eq(ParkingSpotType.COMPACT), any(long[].class))).thenReturn(true);
     when(vehicleRepository.save(any(VehicleEntity.class)))
         .thenThrow(new RuntimeException("Simulated failure"));
 
@@ -126,6 +164,92 @@ public class ParkBehaviorImplTest {
 
     assertEquals(ErrorCode.UNABLE_TO_PARK, exception.getError());
     verify(vehicleRepository, times(1)).save(any(VehicleEntity.class));
-    verify(parkingSpotRepository, never()).save(any(ParkingSpotEntity.class));
+    verify(parkingSpotRepository, never()).assignVehicle(anyLong(), anyList());
+    verify(spotAllocator, times(1))
+        .releaseOnRollback(eq(ParkingSpotType.COMPACT), any(long[].class));
+  }
+
+  @Test
+  void parkVehicleWhenClaimedSpotsAreAlreadyAssigned() {
+    Van van = (Van) VehicleFactory.create(VehicleType.VAN);
+    when(spotAllocator.claim(eq(ParkingSpotType.REGULAR), any(long[].class))).thenReturn(true);
+    VehicleEntity vehicleEntity = VehicleEntity.builder().id(1L).type(VehicleType.VAN).build();
+    when(vehicleRepository.save(any(VehicleEntity.class))).thenReturn(vehicleEntity);
+    when(translator.toDTO(any(VehicleEntity.class)))
+        .thenReturn(VehicleDTO.builder().vehicleId(1L).type(VehicleType.VAN).build());
+    when(parkingSpotRepository.assignVehicle(eq(1L), anyList())).thenReturn(2);
+
+    PklErrorException exception =
+        assertThrows(
+            PklErrorException.class,
+            () -> {
+              parkBehavior.park(van);
+            });
+
+    assertEquals(ErrorCode.UNABLE_TO_PARK, exception.getError());
+    verify(spotAllocator, times(1))
+        .releaseOnRollback(eq(ParkingSpotType.REGULAR), any(long[].class));
+  }
+
+  @Test
+  void parkVehicleWithoutFreeSpots() {
+    Van van = (Van) VehicleFactory.create(VehicleType.VAN);
+    when(spotAllocator.claim(eq(ParkingSpotType.REGULAR), any(long[].class))).thenReturn(false);
+
+    PklErrorException exception =
+        assertThrows(
+            PklErrorException.class,
+            () -> {
+              parkBehavior.park(van);
+            });
+
+    assertEquals(ErrorCode.NO_SPACE_TO_PARK, exception.getError());
+    verify(vehicleRepository, never()).save(any(VehicleEntity.class));
+    verify(parkingSpotRepository, never()).assignVehicle(anyLong(), anyList());
+  }
+
+  @Test
+  void parkBatchReportsVehiclesWithoutSpace() {
+    Car car = (Car) VehicleFactory.create(VehicleType.CAR);
+    Van van = (Van) VehicleFactory.create(VehicleType.VAN);
+    when(spotAllocator.claim(eq(ParkingSpotType.COMPACT), any(long[].class))).thenReturn(true);
+    when(spotAllocator.claim(eq(ParkingSpotType.REGULAR), any(long[].class))).thenReturn(false);
+    when(vehicleRepository.saveAll(anyList()))
+        .thenReturn(List.of(VehicleEntity.builder().id(1L).type(VehicleType.CAR).build()));
+    when(parkingSpotRepository.assignVehicles(anyMap())).thenReturn(1);
+    when(translator.toDTO(any(VehicleEntity.class)))
+        .thenReturn(VehicleDTO.builder().vehicleId(1L).type(VehicleType.CAR).build());
+    when(translator.toDTO(anyLong(), eq(ParkingSpotType.COMPACT)))
+        .thenReturn(
+            ParkingSpotDTO.builder().parkingSpotId(33L).type(ParkingSpotType.COMPACT).build());
+
+    List<BatchItemDTO> items = parkBehavior.park(List.of(car, van));
+
+    assertEquals(2, items.size());
+    assertTrue(items.get(0).getVehicle().getParked());
+    assertEquals(1, items.get(0).getVehicle().getParkedOn().size());
+    assertNull(items.get(0).getError());
+    assertNull(items.get(1).getVehicle());
+    assertEquals(ErrorCode.NO_SPACE_TO_PARK, items.get(1).getError());
+    verify(vehicleRepository, times(1)).saveAll(anyList());
+    verify(parkingSpotRepository, times(1)).assignVehicles(anyMap());
+  }
+
+  @Test
+  void parkBatchFailsWhenClaimedSpotsAreTaken() {
+    Car car = (Car) VehicleFactory.create(VehicleType.CAR);
+    when(spotAllocator.claim(eq(ParkingSpotType.COMPACT), any(long[].class))).thenReturn(true);
+    when(vehicleRepository.saveAll(anyList()))
+        .thenReturn(
+            List.of(
+                VehicleEntity.builder().id(1L).type(VehicleType.CAR).build(),
+                VehicleEntity.builder().id(2L).type(VehicleType.CAR).build()));
+    when(parkingSpotRepository.assignVehicles(anyMap())).thenReturn(1);
+
+    PklErrorException exception =
+        assertThrows(PklErrorException.class, () -> parkBehavior.park(List.of(car, car)));
+
+    assertEquals(ErrorCode.UNABLE_TO_PARK, exception.getError());
+    verify(spotAllocator, times(2)).releaseOnRollback(eq(ParkingSpotType.COMPACT), any(long[].class));
   }
 }
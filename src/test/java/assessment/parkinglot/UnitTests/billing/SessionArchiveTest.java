@@ -0,0 +1,165 @@
+package assessment.parkinglot.UnitTests.billing;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+import assessment.parkinglot.billing.ParkingSession;
+import assessment.parkinglot.billing.SessionArchive;
+import assessment.parkinglot.enums.ParkingSpotType;
+import assessment.parkinglot.enums.VehicleType;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.stream.Stream;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+import org.springframework.util.unit.DataSize;
+
+public class SessionArchiveTest {
+
+  @TempDir Path directory;
+
+  @Test
+  void scanSeesTheSessionsBeforeAndAfterTheyAreWritten() throws IOException {
+    SessionArchive archive = this.archive(4);
+    for (long id = 1; id <= 6; id++) {
+      archive.append(session(id, id * 1_000L));
+    }
+
+    assertEquals(List.of(1L, 2L, 3L, 4L, 5L, 6L), vehicleIds(archive, 0, Long.MAX_VALUE));
+    archive.flush();
+    assertEquals(List.of(1L, 2L, 3L, 4L, 5L, 6L), vehicleIds(archive, 0, Long.MAX_VALUE));
+
+    List<String> columns = new ArrayList<>();
+    archive.scan(
+        5_000L,
+        5_001L,
+        block -> {
+          for (int i = 0; i < block.size(); i++) {
+            if (block.leftAt(i) == 5_000L) {
+              columns.add(
+                  block.vehicleType(i)
+                      + " "
+                      + block.spotType(i)
+                      + " "
+                      + block.spots(i)
+                      + " "
+                      + block.parkedAt(i)
+                      + " "
+                      + block.fee(i));
+            }
+          }
+        });
+    assertEquals(List.of("VAN REGULAR 3 1000 500"), columns);
+    archive.close();
+  }
+
+  @Test
+  void scanSkipsTheBlocksOutsideTheRange() throws IOException {
+    SessionArchive archive = this.archive(2);
+    archive.append(session(1L, 1_000L));
+    archive.append(session(2L, 2_000L));
+    archive.append(session(3L, 5_000L));
+    archive.append(session(4L, 6_000L));
+
+    List<Integer> blocks = new ArrayList<>();
+    archive.scan(4_000L, 7_000L, block -> blocks.add(block.size()));
+
+    assertEquals(List.of(2), blocks);
+    assertEquals(List.of(3L, 4L), vehicleIds(archive, 4_000L, 7_000L));
+    archive.close();
+  }
+
+  @Test
+  void archivesSharingADirectoryWriteToSegmentsOfTheirOwn() throws IOException {
+    SessionArchive first = this.archive(100);
+    first.append(session(1L, 1_000L));
+    first.close();
+
+    SessionArchive second = this.archive(100);
+    SessionArchive third = this.archive(100);
+    second.append(session(2L, 2_000L));
+    third.append(session(3L, 3_000L));
+    second.flush();
+    third.flush();
+
+    assertEquals(3, this.segments().size());
+    assertEquals(List.of(1L, 2L, 3L), vehicleIds(second, 0, Long.MAX_VALUE));
+    second.close();
+    third.close();
+  }
+
+  @Test
+  void scanStopsAtATornBlock() throws IOException {
+    SessionArchive archive = this.archive(2);
+    archive.append(session(1L, 1_000L));
+    archive.append(session(2L, 2_000L));
+    archive.append(session(3L, 3_000L));
+    archive.close();
+    Path segment = this.segments().get(0);
+    byte[] contents = Files.readAllBytes(segment);
+    contents[contents.length - 20] ^= 1;
+    Files.write(segment, contents);
+
+    assertEquals(List.of(1L, 2L), vehicleIds(this.archive(2), 0, Long.MAX_VALUE));
+  }
+
+  @Test
+  void sessionsAreKeptUntilTheArchiveCanBeWritten() throws IOException {
+    SessionArchive archive = this.archive(2);
+    Files.delete(directory);
+    for (long id = 1; id <= 5; id++) {
+      archive.append(session(id, id * 1_000L));
+    }
+
+    Files.createDirectories(directory);
+    assertEquals(List.of(1L, 2L, 3L, 4L, 5L), vehicleIds(archive, 0, Long.MAX_VALUE));
+    archive.flush();
+    archive.append(session(6L, 6_000L));
+    archive.append(session(7L, 7_000L));
+    archive.close();
+
+    assertEquals(
+        List.of(1L, 2L, 3L, 4L, 5L, 6L, 7L), vehicleIds(this.archive(2), 0, Long.MAX_VALUE));
+  }
+
+  private SessionArchive archive(int blockSize) throws IOException {
+    return new SessionArchive(directory, blockSize, DataSize.ofMegabytes(1), false);
+  }
+
+  private List<Path> segments() throws IOException {
+    try (Stream<Path> files = Files.list(directory)) {
+      return files.sorted().toList();
+    }
+  }
+
+  private static List<Long> vehicleIds(SessionArchive archive, long from, long to)
+      throws IOException {
+    List<Long> vehicleIds = new ArrayList<>();
+    archive.scan(
+        from,
+        to,
+        block -> {
+          for (int i = 0; i < block.size(); i++) {
+            if (block.leftAt(i) >= from && block.leftAt(i) < to) {
+              vehicleIds.add(block.vehicleId(i));
+            }
+          }
+        });
+    vehicleIds.sort(null);
+    return vehicleIds;
+  }
+
+  private static ParkingSession session(long vehicleId, long leftAt) {
+    return ParkingSession.builder()
+        .vehicleId(vehicleId)
+        .vehicleType(VehicleType.VAN)
+        .spotType(ParkingSpotType.REGULAR)
+        .spots(3)
+        .parkedAt(leftAt - 4_000L)
+        .leftAt(leftAt)
+        .fee(100 * vehicleId)
+        .build();
+  }
+}
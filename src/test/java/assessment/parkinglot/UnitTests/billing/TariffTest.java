@@ -0,0 +1,58 @@
+package assessment.parkinglot.UnitTests.billing;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+import assessment.parkinglot.billing.Tariff;
+import assessment.parkinglot.conf.BillingProperties;
+import assessment.parkinglot.enums.ParkingSpotType;
+import assessment.parkinglot.enums.VehicleType;
+import java.time.Duration;
+import org.junit.jupiter.api.Test;
+
+public class TariffTest {
+
+  private static final long MINUTE = Duration.ofMinutes(1).toMillis();
+  private static final long HOUR = Duration.ofHours(1).toMillis();
+  private static final long DAY = Duration.ofDays(1).toMillis();
+
+  private final Tariff tariff = new Tariff(new BillingProperties());
+
+  @Test
+  void staysWithinTheGracePeriodAreFree() {
+    assertEquals(0, tariff.price(VehicleType.CAR, ParkingSpotType.COMPACT, 0, 10 * MINUTE));
+  }
+
+  @Test
+  void everyStartedPeriodIsChargedInFull() {
+    assertEquals(100, tariff.price(VehicleType.CAR, ParkingSpotType.COMPACT, 0, 11 * MINUTE));
+    assertEquals(5 * 125, tariff.price(VehicleType.CAR, ParkingSpotType.REGULAR, 0, HOUR + 1));
+    assertEquals(300, tariff.price(VehicleType.VAN, ParkingSpotType.REGULAR, 0, 15 * MINUTE));
+  }
+
+  @Test
+  void aDayNeverCostsMoreThanTheDailyCap() {
+    assertEquals(3000, tariff.price(VehicleType.CAR, ParkingSpotType.REGULAR, 0, 23 * HOUR));
+    assertEquals(
+        2 * 3000 + 4 * 100,
+        tariff.price(VehicleType.CAR, ParkingSpotType.COMPACT, 0, 2 * DAY + HOUR));
+  }
+
+  @Test
+  void ratesLeftOutKeepTheirDefaults() {
+    BillingProperties properties = new BillingProperties();
+    properties.getRates().get(VehicleType.CAR).put(ParkingSpotType.COMPACT, 80L);
+    properties.setGrace(Duration.ZERO);
+    Tariff cheaper = new Tariff(properties);
+
+    assertEquals(80, cheaper.price(VehicleType.CAR, ParkingSpotType.COMPACT, 0, MINUTE));
+    assertEquals(125, cheaper.price(VehicleType.CAR, ParkingSpotType.REGULAR, 0, MINUTE));
+  }
+
+  @Test
+  void everySpotTypeAVehicleParksOnNeedsARate() {
+    BillingProperties properties = new BillingProperties();
+    properties.getRates().get(VehicleType.CAR).remove(ParkingSpotType.REGULAR);
+
+    assertThrows(IllegalStateException.class, () -> new Tariff(properties));
+  }
+}
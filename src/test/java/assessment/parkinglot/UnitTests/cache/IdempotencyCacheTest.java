@@ -0,0 +1,184 @@
+package assessment.parkinglot.UnitTests.cache;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+import assessment.parkinglot.cache.IdempotencyCache;
+import assessment.parkinglot.enums.ErrorCode;
+import assessment.parkinglot.exception.PklErrorException;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.atomic.AtomicInteger;
+import org.junit.jupiter.api.Test;
+
+public class IdempotencyCacheTest {
+
+  private final AtomicInteger runs = new AtomicInteger();
+
+  @Test
+  void retriesGetTheResultOfTheFirstRun() {
+    IdempotencyCache cache = new IdempotencyCache(100, Duration.ofMinutes(1));
+
+    assertEquals(1, cache.execute("park", "key", runs::incrementAndGet));
+    assertEquals(1, cache.execute("park", "key", runs::incrementAndGet));
+    assertEquals(1, runs.get());
+  }
+
+  @Test
+  void keysAreKeptApartByOperation() {
+    IdempotencyCache cache = new IdempotencyCache(100, Duration.ofMinutes(1));
+
+    cache.execute("park", "key", runs::incrementAndGet);
+    cache.execute("leave", "key", runs::incrementAndGet);
+    cache.execute("park", "other-key", runs::incrementAndGet);
+
+    assertEquals(3, runs.get());
+  }
+
+  @Test
+  void requestsWithoutAKeyAlwaysRun() {
+    IdempotencyCache cache = new IdempotencyCache(100, Duration.ofMinutes(1));
+
+    cache.execute("park", null, runs::incrementAndGet);
+    cache.execute("park", null, runs::incrementAndGet);
+
+    assertEquals(2, runs.get());
+    assertEquals(0, cache.size());
+  }
+
+  @Test
+  void failuresAreNotKept() {
+    IdempotencyCache cache = new IdempotencyCache(100, Duration.ofMinutes(1));
+
+    assertThrows(
+        PklErrorException.class,
+        () ->
+            cache.execute(
+                "park",
+                "key",
+                () -> {
+                  throw new PklErrorException(ErrorCode.NO_SPACE_TO_PARK);
+                }));
+
+    assertEquals(1, cache.execute("park", "key", runs::incrementAndGet));
+  }
+
+  @Test
+  void errorsAreNotKept() {
+    IdempotencyCache cache = new IdempotencyCache(100, Duration.ofMinutes(1));
+
+    assertThrows(
+        StackOverflowError.class,
+        () ->
+            cache.execute(
+                "park",
+                "key",
+                () -> {
+                  throw new StackOverflowError();
+                }));
+
+    assertEquals(1, cache.execute("park", "key", runs::incrementAndGet));
+    assertEquals(1, cache.size());
+  }
+
+  @Test
+  void expiredResultsRunAgain() throws InterruptedException {
+    IdempotencyCache cache = new IdempotencyCache(100, Duration.ofMillis(20));
+
+    cache.execute("park", "key", runs::incrementAndGet);
+    Thread.sleep(50);
+
+    assertEquals(2, cache.execute("park", "key", runs::incrementAndGet));
+  }
+
+  @Test
+  void theOldestResultsAreEvictedOnceFull() {
+    IdempotencyCache cache = new IdempotencyCache(3, Duration.ofMinutes(1));
+
+    for (int i = 0; i < 5; i++) {
+      cache.execute("park", "key-" + i, runs::incrementAndGet);
+    }
+
+    assertEquals(3, cache.size());
+    assertEquals(6, cache.execute("park", "key-0", runs::incrementAndGet));
+    assertEquals(5, cache.execute("park", "key-4", runs::incrementAndGet));
+  }
+
+  /** Sends the same key from many threads while the first run is still going on. */
+  @Test
+  void concurrentRetriesWaitForTheFirstRun() throws Exception {
+    IdempotencyCache cache = new IdempotencyCache(100, Duration.ofMinutes(1));
+    CountDownLatch running = new CountDownLatch(1);
+    CountDownLatch release = new CountDownLatch(1);
+
+    ExecutorService executor = Executors.newFixedThreadPool(8);
+    List<Future<Integer>> results = new ArrayList<>();
+    results.add(
+        executor.submit(
+            () ->
+                cache.execute(
+                    "park",
+                    "key",
+                    () -> {
+                      running.countDown();
+                      awaitQuietly(release);
+                      return runs.incrementAndGet();
+                    })));
+    running.await();
+    for (int i = 0; i < 7; i++) {
+      results.add(executor.submit(() -> cache.execute("park", "key", runs::incrementAndGet)));
+    }
+    release.countDown();
+
+    for (Future<Integer> result : results) {
+      assertEquals(1, result.get());
+    }
+    assertEquals(1, runs.get());
+    executor.shutdown();
+  }
+
+  /** Fills the cache while a request is running, so the running one would be the oldest. */
+  @Test
+  void runningRequestsAreNotEvicted() throws Exception {
+    IdempotencyCache cache = new IdempotencyCache(2, Duration.ofMinutes(1));
+    CountDownLatch running = new CountDownLatch(1);
+    CountDownLatch release = new CountDownLatch(1);
+
+    ExecutorService executor = Executors.newFixedThreadPool(2);
+    Future<Integer> first =
+        executor.submit(
+            () ->
+                cache.execute(
+                    "park",
+                    "slow",
+                    () -> {
+                      running.countDown();
+                      awaitQuietly(release);
+                      return runs.incrementAndGet();
+                    }));
+    running.await();
+    for (int i = 0; i < 3; i++) {
+      cache.execute("park", "key-" + i, runs::incrementAndGet);
+    }
+    Future<Integer> retry =
+        executor.submit(() -> cache.execute("park", "slow", runs::incrementAndGet));
+    release.countDown();
+
+    assertEquals(4, first.get());
+    assertEquals(4, retry.get());
+    assertEquals(4, runs.get());
+    executor.shutdown();
+  }
+
+  private static void awaitQuietly(CountDownLatch latch) {
+    try {
+      latch.await();
+    } catch (InterruptedException e) {
+      Thread.currentThread().interrupt();
+    }
+  }
+}
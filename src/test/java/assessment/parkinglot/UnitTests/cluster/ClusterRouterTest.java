@@ -0,0 +1,216 @@
+package assessment.parkinglot.UnitTests.cluster;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.Mockito.when;
+
+import assessment.parkinglot.cluster.ClusterNode;
+import assessment.parkinglot.cluster.ClusterRouter;
+import assessment.parkinglot.conf.ClusterProperties;
+import assessment.parkinglot.dto.BatchItemDTO;
+import assessment.parkinglot.dto.VehicleDTO;
+import assessment.parkinglot.enums.ErrorCode;
+import assessment.parkinglot.enums.VehicleType;
+import assessment.parkinglot.exception.PklErrorException;
+import com.sun.net.httpserver.HttpServer;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.net.InetSocketAddress;
+import java.nio.charset.StandardCharsets;
+import java.time.Duration;
+import java.util.List;
+import java.util.Map;
+import java.util.Objects;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.CopyOnWriteArrayList;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.mockito.InjectMocks;
+import org.mockito.Mock;
+import org.mockito.MockitoAnnotations;
+import org.springframework.test.util.ReflectionTestUtils;
+
+public class ClusterRouterTest {
+
+  private static final String NO_SPACE =
+      "{\"statusCode\":500,\"errorCode\":"
+          + ErrorCode.NO_SPACE_TO_PARK.getCode()
+          + ",\"message\":\"No space\"}";
+  private static final String PARKED = "{\"vehicleId\":7,\"type\":\"CAR\",\"parked\":true}";
+  private static final String BATCH_NO_SPACE = "[{\"error\":\"NO_SPACE_TO_PARK\"}]";
+  private static final String BATCH_PARKED = "[{\"vehicle\":" + PARKED + "}]";
+
+  @Mock ClusterNode clusterNode;
+
+  @InjectMocks ClusterRouter clusterRouter;
+
+  private HttpServer server;
+  private final Map<String, String> idempotencyKeys = new ConcurrentHashMap<>();
+
+  @BeforeEach
+  void setUp() throws IOException {
+    MockitoAnnotations.openMocks(this);
+    server = HttpServer.create(new InetSocketAddress("localhost", 0), 0);
+    this.answer("/full", 500, NO_SPACE, 0);
+    this.answer("/failing", 500, "{\"statusCode\":500,\"errorCode\":5000}", 0);
+    this.answer("/slow", 200, PARKED, 1_000);
+    this.answer("/free", 200, PARKED, 0);
+    this.answer("/batch-full", 200, BATCH_NO_SPACE, 0);
+    this.answer("/batch-free", 200, BATCH_PARKED, 0);
+    server.start();
+
+    ClusterProperties properties = new ClusterProperties();
+    properties.setForwardTimeout(Duration.ofMillis(200));
+    ReflectionTestUtils.setField(clusterRouter, "properties", properties);
+    when(clusterNode.name()).thenReturn("a");
+    clusterRouter.start();
+  }
+
+  @AfterEach
+  void tearDown() {
+    clusterRouter.stop();
+    server.stop(0);
+  }
+
+  @Test
+  void parkMovesOnOnlyWhenAPeerHasNoSpace() {
+    when(clusterNode.peers()).thenReturn(List.of(this.peer("full"), this.peer("free")));
+
+    assertEquals(7L, clusterRouter.park(VehicleType.CAR, "gate-1-42").getVehicleId());
+    assertEquals("a/gate-1-42", idempotencyKeys.get("/full"));
+    assertEquals("a/gate-1-42", idempotencyKeys.get("/free"));
+  }
+
+  @Test
+  void parkFailsWhenAPeerDoesNotAnswerInTime() {
+    when(clusterNode.peers()).thenReturn(List.of(this.peer("slow"), this.peer("free")));
+
+    PklErrorException exception =
+        assertThrows(PklErrorException.class, () -> clusterRouter.park(VehicleType.CAR, null));
+    assertEquals(ErrorCode.UNABLE_TO_PARK, exception.getError());
+    assertTrue(idempotencyKeys.get("/slow").startsWith("a/"));
+    assertFalse(idempotencyKeys.containsKey("/free"));
+  }
+
+  @Test
+  void parkFailsWhenAPeerFailsForAnotherReason() {
+    when(clusterNode.peers()).thenReturn(List.of(this.peer("failing"), this.peer("free")));
+
+    PklErrorException exception =
+        assertThrows(PklErrorException.class, () -> clusterRouter.park(VehicleType.CAR, null));
+    assertEquals(ErrorCode.UNABLE_TO_PARK, exception.getError());
+    assertFalse(idempotencyKeys.containsKey("/free"));
+  }
+
+  @Test
+  void parkAnswersNoSpaceWhenEveryPeerIsFull() {
+    when(clusterNode.peers()).thenReturn(List.of(this.peer("full")));
+
+    PklErrorException exception =
+        assertThrows(PklErrorException.class, () -> clusterRouter.park(VehicleType.CAR, null));
+    assertEquals(ErrorCode.NO_SPACE_TO_PARK, exception.getError());
+  }
+
+  @Test
+  void parkBatchSendsTheVehiclesWithoutSpaceToThePeers() {
+    when(clusterNode.peers())
+        .thenReturn(List.of(this.peer("batch-full"), this.peer("batch-free"), this.peer("free")));
+    BatchItemDTO parked =
+        BatchItemDTO.builder().vehicle(VehicleDTO.builder().vehicleId(1L).build()).build();
+    BatchItemDTO noSpace = BatchItemDTO.builder().error(ErrorCode.NO_SPACE_TO_PARK).build();
+
+    List<BatchItemDTO> items =
+        clusterRouter.park(
+            List.of(VehicleType.MOTORCYCLE, VehicleType.CAR), types -> List.of(parked, noSpace));
+
+    assertSame(parked, items.get(0));
+    assertEquals(7L, items.get(1).getVehicle().getVehicleId());
+    assertTrue(idempotencyKeys.get("/batch-full").startsWith("a/"));
+    assertEquals(idempotencyKeys.get("/batch-full"), idempotencyKeys.get("/batch-free"));
+    assertFalse(idempotencyKeys.containsKey("/free"));
+  }
+
+  @Test
+  void parkBatchStopsAtAPeerThatFails() {
+    when(clusterNode.peers()).thenReturn(List.of(this.peer("failing"), this.peer("batch-free")));
+    BatchItemDTO noSpace = BatchItemDTO.builder().error(ErrorCode.NO_SPACE_TO_PARK).build();
+
+    List<BatchItemDTO> items =
+        clusterRouter.park(List.of(VehicleType.CAR), types -> List.of(noSpace));
+
+    assertEquals(ErrorCode.UNABLE_TO_PARK, items.get(0).getError());
+    assertFalse(idempotencyKeys.containsKey("/batch-free"));
+  }
+
+  @Test
+  void parkBatchSendsItsBatchAgainToAPeerThatDoesNotAnswer() {
+    List<String> sentKeys = new CopyOnWriteArrayList<>();
+    server.createContext(
+        "/batch-lost",
+        exchange -> {
+          sentKeys.add(exchange.getRequestHeaders().getFirst("Idempotency-Key"));
+          if (sentKeys.size() == 1) {
+            exchange.close();
+            return;
+          }
+          byte[] bytes = BATCH_PARKED.getBytes(StandardCharsets.UTF_8);
+          exchange.getResponseHeaders().add("Content-Type", "application/json");
+          exchange.sendResponseHeaders(200, bytes.length);
+          try (OutputStream out = exchange.getResponseBody()) {
+            out.write(bytes);
+          } catch (IOException e) {
+            // the router gave up waiting
+          }
+        });
+    when(clusterNode.peers()).thenReturn(List.of(this.peer("batch-lost")));
+    BatchItemDTO noSpace = BatchItemDTO.builder().error(ErrorCode.NO_SPACE_TO_PARK).build();
+
+    List<BatchItemDTO> items =
+        clusterRouter.park(List.of(VehicleType.CAR), types -> List.of(noSpace));
+
+    assertEquals(7L, items.get(0).getVehicle().getVehicleId());
+    assertEquals(2, sentKeys.size());
+    assertEquals(sentKeys.get(0), sentKeys.get(1));
+  }
+
+  @Test
+  void parkBatchGivesUpOnAPeerThatNeverAnswers() {
+    when(clusterNode.peers()).thenReturn(List.of(this.peer("slow"), this.peer("batch-free")));
+    BatchItemDTO noSpace = BatchItemDTO.builder().error(ErrorCode.NO_SPACE_TO_PARK).build();
+
+    List<BatchItemDTO> items =
+        clusterRouter.park(List.of(VehicleType.CAR), types -> List.of(noSpace));
+
+    assertEquals(ErrorCode.UNABLE_TO_PARK, items.get(0).getError());
+    assertFalse(idempotencyKeys.containsKey("/batch-free"));
+  }
+
+  private ClusterProperties.Node peer(String name) {
+    return new ClusterProperties.Node(
+        name, "http://localhost:" + server.getAddress().getPort() + "/" + name);
+  }
+
+  private void answer(String prefix, int status, String body, long delayMillis) {
+    server.createContext(
+        prefix,
+        exchange -> {
+          idempotencyKeys.put(
+              prefix,
+              Objects.requireNonNullElse(
+                  exchange.getRequestHeaders().getFirst("Idempotency-Key"), ""));
+          try {
+            Thread.sleep(delayMillis);
+          } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+          }
+          byte[] bytes = body.getBytes(StandardCharsets.UTF_8);
+          exchange.getResponseHeaders().add("Content-Type", "application/json");
+          exchange.sendResponseHeaders(status, bytes.length);
+          try (OutputStream out = exchange.getResponseBody()) {
+            out.write(bytes);
+          } catch (IOException e) {
+            // the router gave up waiting
+          }
+        });
+  }
+}
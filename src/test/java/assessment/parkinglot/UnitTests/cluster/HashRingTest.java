@@ -0,0 +1,62 @@
+package assessment.parkinglot.UnitTests.cluster;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+import assessment.parkinglot.cluster.HashRing;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import org.junit.jupiter.api.Test;
+
+public class HashRingTest {
+
+  private static final int KEYS = 10_000;
+
+  @Test
+  void everyNodeComputesTheSameOwners() {
+    HashRing ring = new HashRing(List.of("a", "b", "c"), 64);
+    HashRing sameRing = new HashRing(List.of("a", "b", "c"), 64);
+
+    for (int i = 0; i < KEYS; i++) {
+      assertEquals(ring.owner("level-" + i), sameRing.owner("level-" + i));
+    }
+  }
+
+  @Test
+  void keysSpreadEvenlyOverTheNodes() {
+    HashRing ring = new HashRing(List.of("a", "b", "c", "d"), 64);
+
+    Map<String, Integer> owned = new HashMap<>();
+    for (int i = 0; i < KEYS; i++) {
+      owned.merge(ring.owner("level-" + i), 1, Integer::sum);
+    }
+
+    assertEquals(4, owned.size());
+    for (int keys : owned.values()) {
+      assertTrue(keys > KEYS / 8 && keys < KEYS * 3 / 8, owned::toString);
+    }
+  }
+
+  @Test
+  void addingANodeOnlyMovesKeysToIt() {
+    HashRing ring = new HashRing(List.of("a", "b", "c", "d"), 64);
+    HashRing grown = new HashRing(List.of("a", "b", "c", "d", "e"), 64);
+
+    int moved = 0;
+    for (int i = 0; i < KEYS; i++) {
+      String before = ring.owner("level-" + i);
+      String after = grown.owner("level-" + i);
+      if (!before.equals(after)) {
+        assertEquals("e", after);
+        moved++;
+      }
+    }
+
+    assertTrue(moved > KEYS / 10 && moved < KEYS * 3 / 10, "moved " + moved);
+  }
+
+  @Test
+  void aRingNeedsANode() {
+    assertThrows(IllegalArgumentException.class, () -> new HashRing(List.of(), 64));
+  }
+}
@@ -0,0 +1,80 @@
+package assessment.parkinglot.UnitTests.conf;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.Mockito.*;
+
+import assessment.parkinglot.allocation.SpotAllocator;
+import assessment.parkinglot.conf.ParkingInitializer;
+import assessment.parkinglot.conf.ParkingLotProperties;
+import assessment.parkinglot.entities.ParkingSpotEntity;
+import assessment.parkinglot.enums.ParkingSpotType;
+import assessment.parkinglot.repository.ParkingSpotRepository;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.mockito.ArgumentCaptor;
+import org.mockito.Captor;
+import org.mockito.InjectMocks;
+import org.mockito.Mock;
+import org.mockito.MockitoAnnotations;
+import org.mockito.Spy;
+
+public class ParkingInitializerTest {
+
+  @Mock private ParkingSpotRepository spotRepository;
+  @Mock private SpotAllocator spotAllocator;
+  @Spy private ParkingLotProperties lotProperties = new ParkingLotProperties();
+  @Captor private ArgumentCaptor<List<ParkingSpotEntity>> spots;
+
+  @InjectMocks private ParkingInitializer parkingInitializer;
+
+  @BeforeEach
+  void setUp() {
+    MockitoAnnotations.openMocks(this);
+    when(spotRepository.saveAll(anyList())).thenAnswer(i -> new ArrayList<>(i.getArgument(0)));
+  }
+
+  @Test
+  void runCreatesTheDefaultLot() throws Exception {
+
+    parkingInitializer.run(null);
+
+    verify(spotAllocator).load(spots.capture());
+    assertEquals(25, spots.getValue().size());
+    assertEquals(
+        9, spots.getValue().stream().filter(s -> s.getType() == ParkingSpotType.REGULAR).count());
+  }
+
+  @Test
+  void runCreatesEveryLevelAndZoneInChunks() throws Exception {
+    lotProperties.setInsertChunkSize(4);
+    lotProperties.setLevels(
+        List.of(
+            new ParkingLotProperties.Level(
+                "1",
+                List.of(
+                    new ParkingLotProperties.Zone("A", Map.of(ParkingSpotType.COMPACT, 3)),
+                    new ParkingLotProperties.Zone("B", Map.of(ParkingSpotType.REGULAR, 2)))),
+            new ParkingLotProperties.Level(
+                "2",
+                List.of(
+                    new ParkingLotProperties.Zone("A", Map.of(ParkingSpotType.MOTORCYCLE, 4))))));
+
+    parkingInitializer.run(null);
+
+    verify(spotRepository, times(3)).saveAll(anyList());
+    verify(spotAllocator).load(spots.capture());
+    assertEquals(9, spots.getValue().size());
+    assertEquals(
+        2,
+        spots.getValue().stream()
+            .filter(s -> "1".equals(s.getLevel()) && "B".equals(s.getZone()))
+            .count());
+    assertTrue(
+        spots.getValue().stream()
+            .filter(s -> "2".equals(s.getLevel()))
+            .allMatch(s -> s.getType() == ParkingSpotType.MOTORCYCLE));
+  }
+}
@@ -4,28 +4,71 @@ import static org.junit.jupiter.api.Assertions.*;
 import static org.mockito.ArgumentMatchers.any;
 import static org.mockito.Mockito.*;
 
+import assessment.parkinglot.cache.IdempotencyCache;
 import assessment.parkinglot.controller.ParkingController;
 import assessment.parkinglot.controller.request.ParkRequest;
+import assessment.parkinglot.controller.request.ReservationRequest;
+import assessment.parkinglot.controller.response.AllocationStrategyResponse;
 import assessment.parkinglot.controller.response.AvailableSpotResponse;
+import assessment.parkinglot.controller.response.LevelAvailabilityResponse;
+import assessment.parkinglot.controller.response.OccupancyHistoryResponse;
+import assessment.parkinglot.controller.response.ParkedVehiclesPageResponse;
+import assessment.parkinglot.controller.response.ReservableSpotResponse;
+import assessment.parkinglot.domain.ParkingStatus;
+import assessment.parkinglot.dto.BatchItemDTO;
+import assessment.parkinglot.dto.ReservationDTO;
+import assessment.parkinglot.dto.RevenueDTO;
 import assessment.parkinglot.dto.VehicleDTO;
+import assessment.parkinglot.enums.AllocationStrategyType;
 import assessment.parkinglot.enums.ErrorCode;
+import assessment.parkinglot.enums.HistoryResolution;
 import assessment.parkinglot.enums.ParkingSpotType;
 import assessment.parkinglot.enums.VehicleType;
 import assessment.parkinglot.exception.PklBadRequestException;
+import assessment.parkinglot.feed.OccupancyFeed;
+import assessment.parkinglot.service.BillingService;
 import assessment.parkinglot.service.ParkingService;
+import assessment.parkinglot.service.ReservationService;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import java.io.ByteArrayOutputStream;
+import java.nio.charset.StandardCharsets;
+import java.time.Duration;
+import java.time.Instant;
 import java.util.Arrays;
+import java.util.LinkedHashMap;
 import java.util.List;
+import java.util.Map;
+import java.util.function.Consumer;
 import org.junit.jupiter.api.BeforeEach;
 import org.junit.jupiter.api.Test;
 import org.mockito.InjectMocks;
 import org.mockito.Mock;
 import org.mockito.MockitoAnnotations;
+import org.mockito.Spy;
+import org.springframework.http.MediaType;
 import org.springframework.http.ResponseEntity;
+import org.springframework.web.servlet.mvc.method.annotation.ResponseBodyEmitter;
+import org.springframework.web.servlet.mvc.method.annotation.StreamingResponseBody;
 
 public class ParkingControllerTest {
     @Mock
     private ParkingService parkingService;
 
+    @Spy
+    private ObjectMapper objectMapper = new ObjectMapper();
+
+    @Spy
+    private IdempotencyCache idempotencyCache = new IdempotencyCache(100, Duration.ofMinutes(1));
+
+    @Mock
+    private OccupancyFeed occupancyFeed;
+
+    @Mock
+    private ReservationService reservationService;
+
+    @Mock
+    private BillingService billingService;
+
     @InjectMocks
     private ParkingController parkingController;
 
@@ -48,6 +91,106 @@ public class ParkingControllerTest {
         verify(parkingService, times(1)).getAllParkedVehicles();
     }
 
+    @Test
+    void testParkedVehiclesPage() {
+
+        List<VehicleDTO> parkedVehicles = Arrays.asList(
+                VehicleDTO.builder().vehicleId(3L).build(), VehicleDTO.builder().vehicleId(4L).build());
+        when(parkingService.getParkedVehicles(2L, 2)).thenReturn(parkedVehicles);
+
+        ResponseEntity<ParkedVehiclesPageResponse> response = parkingController.parkedVehiclesPage(2L, 2);
+
+        assertNotNull(response);
+        assertEquals(200, response.getStatusCodeValue());
+        assertEquals(parkedVehicles, response.getBody().getVehicles());
+        assertEquals(4L, response.getBody().getNextCursor());
+    }
+
+    @Test
+    void testParkedVehiclesPage_LastPage() {
+
+        List<VehicleDTO> parkedVehicles = List.of(VehicleDTO.builder().vehicleId(3L).build());
+        when(parkingService.getParkedVehicles(null, 2)).thenReturn(parkedVehicles);
+
+        ResponseEntity<ParkedVehiclesPageResponse> response = parkingController.parkedVehiclesPage(null, 2);
+
+        assertEquals(parkedVehicles, response.getBody().getVehicles());
+        assertNull(response.getBody().getNextCursor());
+    }
+
+    @Test
+    void testParkedVehiclesPage_BadRequestException() {
+
+        PklBadRequestException exception = assertThrows(PklBadRequestException.class, () ->
+                parkingController.parkedVehiclesPage(null, 0)
+        );
+
+        assertEquals(ErrorCode.INVALID_PAGE_SIZE, exception.getError());
+        verify(parkingService, never()).getParkedVehicles(any(), anyInt());
+    }
+
+    @Test
+    void testOccupancyHistory() {
+
+        List<ParkingStatus> periods = List.of(new ParkingStatus(), new ParkingStatus());
+        when(parkingService.getOccupancyHistory(HistoryResolution.HOUR, 24)).thenReturn(periods);
+
+        ResponseEntity<OccupancyHistoryResponse> response = parkingController.occupancyHistory("HOUR", 24);
+
+        assertEquals(200, response.getStatusCodeValue());
+        assertEquals(HistoryResolution.HOUR, response.getBody().getResolution());
+        assertEquals(periods, response.getBody().getPeriods());
+    }
+
+    @Test
+    void testOccupancyHistory_BadRequestException() {
+
+        PklBadRequestException exception = assertThrows(PklBadRequestException.class, () ->
+                parkingController.occupancyHistory("WEEK", 10)
+        );
+        assertEquals(ErrorCode.UNKNOWN_HISTORY_RESOLUTION, exception.getError());
+
+        exception = assertThrows(PklBadRequestException.class, () ->
+                parkingController.occupancyHistory("MINUTE", 0)
+        );
+        assertEquals(ErrorCode.INVALID_PAGE_SIZE, exception.getError());
+        verify(parkingService, never()).getOccupancyHistory(any(), anyInt());
+    }
+
+    @Test
+    void testOccupancyFeed() {
+
+        ResponseBodyEmitter emitter = new ResponseBodyEmitter();
+        when(occupancyFeed.subscribe()).thenReturn(emitter);
+
+        ResponseEntity<ResponseBodyEmitter> response = parkingController.occupancyFeed();
+
+        assertEquals(200, response.getStatusCodeValue());
+        assertEquals(MediaType.TEXT_EVENT_STREAM, response.getHeaders().getContentType());
+        assertSame(emitter, response.getBody());
+    }
+
+    @Test
+    void testStreamParkedVehicles() throws Exception {
+
+        doAnswer(invocation -> {
+            Consumer<VehicleDTO> consumer = invocation.getArgument(0);
+            consumer.accept(VehicleDTO.builder().vehicleId(1L).type(VehicleType.CAR).parked(true).build());
+            consumer.accept(VehicleDTO.builder().vehicleId(2L).type(VehicleType.VAN).parked(true).build());
+            return null;
+        }).when(parkingService).streamParkedVehicles(any());
+
+        ResponseEntity<StreamingResponseBody> response = parkingController.streamParkedVehicles();
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        response.getBody().writeTo(out);
+
+        String[] lines = out.toString(StandardCharsets.UTF_8).split("\n");
+        assertEquals(200, response.getStatusCodeValue());
+        assertEquals(2, lines.length);
+        assertEquals(1L, objectMapper.readValue(lines[0], VehicleDTO.class).getVehicleId());
+        assertEquals(2L, objectMapper.readValue(lines[1], VehicleDTO.class).getVehicleId());
+    }
+
     @Test
     void testParkVehicle_Success() {
 
@@ -56,7 +199,7 @@ public class ParkingControllerTest {
         VehicleDTO vehicleDTO= VehicleDTO.builder().vehicleId(1L).parked(Boolean.TRUE).build();
         when(parkingService.parkVehicle(VehicleType.CAR)).thenReturn(vehicleDTO);
 
-        ResponseEntity<VehicleDTO> response = parkingController.parkVehicle(parkRequest);
+        ResponseEntity<VehicleDTO> response = parkingController.parkVehicle(parkRequest, null, null).join();
         VehicleDTO vehicle= response.getBody();
 
         assertNotNull(response);
@@ -66,25 +209,92 @@ public class ParkingControllerTest {
         verify(parkingService, times(1)).parkVehicle(VehicleType.CAR);
     }
 
+    @Test
+    void testParkVehicle_RetryWithTheSameIdempotencyKey() {
+
+        ParkRequest parkRequest = new ParkRequest("CAR");
+        VehicleDTO vehicleDTO= VehicleDTO.builder().vehicleId(1L).parked(Boolean.TRUE).build();
+        when(parkingService.parkVehicle(VehicleType.CAR)).thenReturn(vehicleDTO);
+
+        VehicleDTO first= parkingController.parkVehicle(parkRequest, "gate-1-42", null).join().getBody();
+        VehicleDTO retry= parkingController.parkVehicle(parkRequest, "gate-1-42", null).join().getBody();
+        parkingController.parkVehicle(parkRequest, "gate-1-43", null);
+
+        assertSame(first, retry);
+        verify(parkingService, times(2)).parkVehicle(VehicleType.CAR);
+    }
+
     @Test
     void testParkVehicle_BadRequestException() {
         ParkRequest parkRequest = new ParkRequest();
         parkRequest.setVehicleType("UNKNOWN_TYPE");
 
         PklBadRequestException exception = assertThrows(PklBadRequestException.class, () ->
-                parkingController.parkVehicle(parkRequest)
+                parkingController.parkVehicle(parkRequest, null, null)
         );
 
         assertEquals(ErrorCode.UNKNOWN_VEHICLE_TYPE, exception.getError());
         verify(parkingService, never()).parkVehicle(any(VehicleType.class));
     }
 
+    @Test
+    void testParkVehicles() {
+        List<ParkRequest> parkRequests= List.of(new ParkRequest("CAR"), new ParkRequest("UNKNOWN_TYPE"));
+        List<BatchItemDTO> items= List.of(BatchItemDTO.builder().vehicle(VehicleDTO.builder().vehicleId(1L).parked(Boolean.TRUE).build()).build(),
+                BatchItemDTO.builder().error(ErrorCode.UNKNOWN_VEHICLE_TYPE).build());
+        when(parkingService.parkVehicles(Arrays.asList(VehicleType.CAR, null))).thenReturn(items);
+
+        ResponseEntity<List<BatchItemDTO>> response = parkingController.parkVehicles(parkRequests, null, null);
+
+        assertNotNull(response);
+        assertEquals(200, response.getStatusCodeValue());
+        assertEquals(items, response.getBody());
+        verify(parkingService, times(1)).parkVehicles(Arrays.asList(VehicleType.CAR, null));
+    }
+
+    @Test
+    void testParkVehicles_RetryWithTheSameIdempotencyKey() {
+        List<ParkRequest> parkRequests= List.of(new ParkRequest("CAR"));
+        List<BatchItemDTO> items= List.of(BatchItemDTO.builder().vehicle(VehicleDTO.builder().vehicleId(1L).parked(Boolean.TRUE).build()).build());
+        when(parkingService.parkVehicles(List.of(VehicleType.CAR))).thenReturn(items);
+
+        List<BatchItemDTO> first= parkingController.parkVehicles(parkRequests, "a/batch-1", null).getBody();
+        List<BatchItemDTO> retry= parkingController.parkVehicles(parkRequests, "a/batch-1", null).getBody();
+        parkingController.parkVehicles(parkRequests, "a/batch-2", null);
+
+        assertSame(first, retry);
+        verify(parkingService, times(2)).parkVehicles(List.of(VehicleType.CAR));
+    }
+
+    @Test
+    void testParkVehicles_BadRequestException() {
+
+        PklBadRequestException exception = assertThrows(PklBadRequestException.class, () ->
+                parkingController.parkVehicles(List.of(), null, null)
+        );
+
+        assertEquals(ErrorCode.INVALID_BATCH_SIZE, exception.getError());
+        verify(parkingService, never()).parkVehicles(any());
+    }
+
+    @Test
+    void testRemoveVehicles() {
+        List<BatchItemDTO> items= List.of(BatchItemDTO.builder().error(ErrorCode.VEHICLE_NOT_FOUND).build());
+        when(parkingService.removeVehicles(List.of(1L))).thenReturn(items);
+
+        ResponseEntity<List<BatchItemDTO>> response = parkingController.removeVehicles(List.of(1L), null);
+
+        assertNotNull(response);
+        assertEquals(200, response.getStatusCodeValue());
+        assertEquals(items, response.getBody());
+    }
+
     @Test
     void testRemoveVehicle() {
         VehicleDTO vehicleDTO= VehicleDTO.builder().vehicleId(1L).parked(false).build();
         when(parkingService.removeVehicle(1L)).thenReturn(vehicleDTO);
 
-        ResponseEntity<VehicleDTO> response = parkingController.removeVehicle(1L);
+        ResponseEntity<VehicleDTO> response = parkingController.removeVehicle(1L, null, null);
 
         assertNotNull(response);
         assertEquals(200, response.getStatusCodeValue());
@@ -92,12 +302,24 @@ public class ParkingControllerTest {
         verify(parkingService, times(1)).removeVehicle(1L);
     }
 
+    @Test
+    void testRemoveVehicle_RetryWithTheSameIdempotencyKey() {
+        VehicleDTO vehicleDTO= VehicleDTO.builder().vehicleId(1L).parked(false).build();
+        when(parkingService.removeVehicle(1L)).thenReturn(vehicleDTO);
+
+        VehicleDTO first= parkingController.removeVehicle(1L, "gate-1-42", null).getBody();
+        VehicleDTO retry= parkingController.removeVehicle(1L, "gate-1-42", null).getBody();
+
+        assertSame(first, retry);
+        verify(parkingService, times(1)).removeVehicle(1L);
+    }
+
     @Test
     void testCountAvailableSpots_Success() {
 
         when(parkingService.countAvailableSpots(ParkingSpotType.REGULAR)).thenReturn(5L);
 
-        ResponseEntity<AvailableSpotResponse> response = parkingController.countAvailableSpots("REGULAR");
+        ResponseEntity<AvailableSpotResponse> response = parkingController.countAvailableSpots("REGULAR", null);
 
         assertNotNull(response);
         assertEquals(200, response.getStatusCodeValue());
@@ -109,19 +331,37 @@ public class ParkingControllerTest {
     void testCountAvailableSpots_BadRequestException() {
 
         PklBadRequestException exception = assertThrows(PklBadRequestException.class, () ->
-                parkingController.countAvailableSpots("UNKNOWN_TYPE")
+                parkingController.countAvailableSpots("UNKNOWN_TYPE", null)
         );
 
         assertEquals(ErrorCode.UNKNOWN_PARKING_SPOT, exception.getError());
         verify(parkingService, never()).countAvailableSpots(any(ParkingSpotType.class));
     }
 
+    @Test
+    void testCountAvailableSpotsByLevel_Success() {
+
+        Map<String, Long> availableByLevel= new LinkedHashMap<>();
+        availableByLevel.put("1", 5L);
+        availableByLevel.put("2", 0L);
+        when(parkingService.countAvailableSpotsByLevel(ParkingSpotType.REGULAR)).thenReturn(availableByLevel);
+
+        ResponseEntity<List<LevelAvailabilityResponse>> response = parkingController.countAvailableSpotsByLevel("REGULAR", null);
+
+        assertEquals(200, response.getStatusCodeValue());
+        assertEquals(2, response.getBody().size());
+        assertEquals("1", response.getBody().get(0).getLevel());
+        assertEquals(5, response.getBody().get(0).getFreeSpots());
+        assertEquals("2", response.getBody().get(1).getLevel());
+        assertEquals(0, response.getBody().get(1).getFreeSpots());
+    }
+
     @Test
     void testAreAllSpotsTaken_Success() {
 
         when(parkingService.areAllSpotsTaken(VehicleType.CAR)).thenReturn(true);
 
-        ResponseEntity<Boolean> response = parkingController.areAllSpotsTaken("CAR");
+        ResponseEntity<Boolean> response = parkingController.areAllSpotsTaken("CAR", null);
 
         assertNotNull(response);
         assertEquals(200, response.getStatusCodeValue());
@@ -133,10 +373,111 @@ public class ParkingControllerTest {
     void testAreAllSpotsTaken_BadRequestException() {
 
         PklBadRequestException exception = assertThrows(PklBadRequestException.class, () ->
-                parkingController.areAllSpotsTaken("UNKNOWN_TYPE")
+                parkingController.areAllSpotsTaken("UNKNOWN_TYPE", null)
         );
 
         assertEquals(ErrorCode.UNKNOWN_VEHICLE_TYPE, exception.getError());
         verify(parkingService, never()).areAllSpotsTaken(any(VehicleType.class));
     }
+
+    @Test
+    void testSelectAllocationStrategy_Success() {
+
+        ResponseEntity<AllocationStrategyResponse> response = parkingController.selectAllocationStrategy("UTILIZATION_AWARE");
+
+        assertEquals(200, response.getStatusCodeValue());
+        assertEquals(AllocationStrategyType.UTILIZATION_AWARE, response.getBody().getStrategy());
+        verify(parkingService, times(1)).setAllocationStrategy(AllocationStrategyType.UTILIZATION_AWARE);
+    }
+
+    @Test
+    void testSelectAllocationStrategy_BadRequestException() {
+
+        PklBadRequestException exception = assertThrows(PklBadRequestException.class, () ->
+                parkingController.selectAllocationStrategy("RANDOM")
+        );
+
+        assertEquals(ErrorCode.UNKNOWN_ALLOCATION_STRATEGY, exception.getError());
+        verify(parkingService, never()).setAllocationStrategy(any());
+    }
+
+    @Test
+    void testReserve_Success() {
+
+        Instant start = Instant.parse("2030-01-01T08:00:00Z");
+        Instant end = Instant.parse("2030-01-01T10:00:00Z");
+        ReservationDTO reservation = ReservationDTO.builder().reservationId(1L).spotType(ParkingSpotType.REGULAR).spots(40).build();
+        when(reservationService.reserve(ParkingSpotType.REGULAR, 40, start, end)).thenReturn(reservation);
+
+        ResponseEntity<ReservationDTO> response = parkingController.reserve(
+                ReservationRequest.builder().spotType("REGULAR").spots(40).start(start.toString()).end(end.toString()).build());
+
+        assertEquals(200, response.getStatusCodeValue());
+        assertEquals(reservation, response.getBody());
+    }
+
+    @Test
+    void testReserve_BadRequestException() {
+
+        PklBadRequestException exception = assertThrows(PklBadRequestException.class, () ->
+                parkingController.reserve(ReservationRequest.builder().spotType("HUGE").spots(1).build())
+        );
+        assertEquals(ErrorCode.UNKNOWN_PARKING_SPOT, exception.getError());
+
+        exception = assertThrows(PklBadRequestException.class, () ->
+                parkingController.reserve(ReservationRequest.builder().spotType("REGULAR").spots(1).start("tomorrow").end("2030-01-01T10:00:00Z").build())
+        );
+        assertEquals(ErrorCode.INVALID_RESERVATION, exception.getError());
+        verify(reservationService, never()).reserve(any(), anyInt(), any(), any());
+    }
+
+    @Test
+    void testCountReservableSpots_Success() {
+
+        Instant start = Instant.parse("2030-01-01T08:00:00Z");
+        Instant end = Instant.parse("2030-01-01T10:00:00Z");
+        when(reservationService.countReservableSpots(ParkingSpotType.COMPACT, start, end)).thenReturn(12L);
+
+        ResponseEntity<ReservableSpotResponse> response = parkingController.countReservableSpots("COMPACT", start.toString(), end.toString());
+
+        assertEquals(200, response.getStatusCodeValue());
+        assertEquals(ParkingSpotType.COMPACT, response.getBody().getType());
+        assertEquals(12, response.getBody().getFreeSpots());
+    }
+
+    @Test
+    void testArrive_Success() {
+
+        VehicleDTO vehicle = VehicleDTO.builder().vehicleId(7L).type(VehicleType.VAN).parked(Boolean.TRUE).build();
+        when(reservationService.arrive(3L, VehicleType.VAN)).thenReturn(vehicle);
+
+        ResponseEntity<VehicleDTO> response = parkingController.arrive(3L, new ParkRequest("VAN"));
+
+        assertEquals(200, response.getStatusCodeValue());
+        assertEquals(vehicle, response.getBody());
+    }
+
+    @Test
+    void testRevenue_Success() {
+
+        Instant from = Instant.parse("2030-01-01T00:00:00Z");
+        Instant to = Instant.parse("2030-01-02T00:00:00Z");
+        RevenueDTO revenue = RevenueDTO.builder().from(from).to(to).sessions(3L).revenue(725L).build();
+        when(billingService.getRevenue(from, to)).thenReturn(revenue);
+
+        ResponseEntity<RevenueDTO> response = parkingController.revenue(from.toString(), to.toString());
+
+        assertEquals(200, response.getStatusCodeValue());
+        assertEquals(revenue, response.getBody());
+    }
+
+    @Test
+    void testRevenue_BadRequestException() {
+
+        PklBadRequestException exception = assertThrows(PklBadRequestException.class, () ->
+                parkingController.revenue("yesterday", "2030-01-02T00:00:00Z")
+        );
+        assertEquals(ErrorCode.INVALID_TIME_RANGE, exception.getError());
+        verify(billingService, never()).getRevenue(any(), any());
+    }
 }
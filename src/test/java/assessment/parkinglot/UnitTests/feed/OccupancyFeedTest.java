@@ -0,0 +1,177 @@
+package assessment.parkinglot.UnitTests.feed;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.Mockito.*;
+
+import assessment.parkinglot.allocation.SpotAllocator;
+import assessment.parkinglot.enums.ParkingSpotType;
+import assessment.parkinglot.enums.VehicleType;
+import assessment.parkinglot.feed.OccupancyFeed;
+import assessment.parkinglot.history.OccupancyRecorder;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.util.List;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.mockito.InjectMocks;
+import org.mockito.Mock;
+import org.mockito.MockitoAnnotations;
+import org.mockito.Spy;
+import org.springframework.core.task.SyncTaskExecutor;
+import org.springframework.core.task.support.ExecutorServiceAdapter;
+import org.springframework.http.MediaType;
+import org.springframework.test.util.ReflectionTestUtils;
+import org.springframework.web.servlet.mvc.method.annotation.ResponseBodyEmitter;
+
+public class OccupancyFeedTest {
+
+  @Mock private SpotAllocator spotAllocator;
+  @Spy private ObjectMapper objectMapper = new ObjectMapper().findAndRegisterModules();
+
+  @Spy
+  private OccupancyRecorder occupancyRecorder =
+      new OccupancyRecorder(mock(SpotAllocator.class), true, 60, 24, 7);
+
+  @InjectMocks private OccupancyFeed occupancyFeed;
+
+  @BeforeEach
+  void setUp() {
+    MockitoAnnotations.openMocks(this);
+    when(spotAllocator.available(any())).thenReturn(10);
+    ReflectionTestUtils.setField(occupancyFeed, "buffer", 2);
+    ReflectionTestUtils.setField(
+        occupancyFeed, "sender", new ExecutorServiceAdapter(new SyncTaskExecutor()));
+  }
+
+  @Test
+  void changesBetweenUpdatesAreCoalescedIntoOneEvent() throws Exception {
+    RecordingEmitter subscriber = new RecordingEmitter();
+    occupancyFeed.subscribe(subscriber);
+    occupancyFeed.broadcast();
+
+    occupancyRecorder.park(VehicleType.CAR);
+    occupancyRecorder.park(VehicleType.CAR);
+    occupancyRecorder.park(VehicleType.VAN);
+    when(spotAllocator.available(ParkingSpotType.REGULAR)).thenReturn(6);
+    occupancyFeed.broadcast();
+
+    assertEquals(2, subscriber.frames.size());
+    String frame = subscriber.frames.get(1);
+    assertTrue(frame.startsWith("id: 2\nevent: occupancy\ndata: {"));
+    assertTrue(frame.endsWith("}\n\n"));
+    assertTrue(frame.contains("\"REGULAR\":6"));
+    assertTrue(frame.contains("\"parks\":{\"CAR\":2,\"VAN\":1,\"MOTORCYCLE\":0}"));
+  }
+
+  @Test
+  void nothingIsSentWhenNothingChanged() throws Exception {
+    RecordingEmitter subscriber = new RecordingEmitter();
+    occupancyFeed.subscribe(subscriber);
+
+    occupancyFeed.broadcast();
+    occupancyFeed.broadcast();
+
+    assertEquals(1, subscriber.frames.size());
+  }
+
+  @Test
+  void everySubscriberGetsTheSameFrame() throws Exception {
+    RecordingEmitter first = new RecordingEmitter();
+    RecordingEmitter second = new RecordingEmitter();
+    occupancyFeed.subscribe(first);
+    occupancyFeed.subscribe(second);
+
+    occupancyFeed.broadcast();
+
+    assertSame(first.sent.get(0), second.sent.get(0));
+  }
+
+  @Test
+  void newSubscribersGetTheLatestEvent() throws Exception {
+    occupancyFeed.broadcast();
+    occupancyRecorder.leave(VehicleType.CAR, System.currentTimeMillis());
+    occupancyFeed.broadcast();
+
+    RecordingEmitter subscriber = new RecordingEmitter();
+    occupancyFeed.subscribe(subscriber);
+
+    assertEquals(1, subscriber.frames.size());
+    assertTrue(subscriber.frames.get(0).startsWith("id: 2\n"));
+  }
+
+  @Test
+  void subscribersThatCannotBeWrittenToAreDropped() throws Exception {
+    occupancyFeed.subscribe(new RecordingEmitter());
+    occupancyFeed.subscribe(
+        new ResponseBodyEmitter() {
+          @Override
+          public void send(Object object, MediaType mediaType) throws IOException {
+            throw new IOException("Broken pipe");
+          }
+        });
+
+    occupancyFeed.broadcast();
+
+    assertEquals(1, occupancyFeed.subscribers());
+  }
+
+  @Test
+  void slowSubscribersDoNotHoldUpTheBroadcastAndAreDropped() throws Exception {
+    ReflectionTestUtils.setField(
+        occupancyFeed, "sender", Executors.newVirtualThreadPerTaskExecutor());
+    CountDownLatch written = new CountDownLatch(1);
+    CountDownLatch unblocked = new CountDownLatch(1);
+    occupancyFeed.subscribe(
+        new ResponseBodyEmitter() {
+          @Override
+          public void send(Object object, MediaType mediaType) throws IOException {
+            written.countDown();
+            try {
+              unblocked.await();
+            } catch (InterruptedException e) {
+              Thread.currentThread().interrupt();
+            }
+          }
+        });
+    RecordingEmitter subscriber = new RecordingEmitter();
+    occupancyFeed.subscribe(subscriber);
+
+    occupancyFeed.broadcast();
+    assertTrue(written.await(10, TimeUnit.SECONDS));
+    for (int update = 1; update <= 3; update++) {
+      occupancyRecorder.park(VehicleType.CAR);
+      occupancyFeed.broadcast();
+      subscriber.await(update + 1);
+    }
+
+    assertEquals(1, occupancyFeed.subscribers());
+    unblocked.countDown();
+    occupancyFeed.close();
+  }
+
+  private static class RecordingEmitter extends ResponseBodyEmitter {
+
+    private final List<Object> sent = new CopyOnWriteArrayList<>();
+    private final List<String> frames = new CopyOnWriteArrayList<>();
+
+    @Override
+    public void send(Object object, MediaType mediaType) {
+      sent.add(object);
+      frames.add(new String((byte[]) object, StandardCharsets.UTF_8));
+    }
+
+    /** Waits for the frames written on the threads of the feed. */
+    void await(int count) throws InterruptedException {
+      long deadline = System.nanoTime() + TimeUnit.SECONDS.toNanos(10);
+      while (frames.size() < count && System.nanoTime() < deadline) {
+        Thread.sleep(1);
+      }
+      assertEquals(count, frames.size());
+    }
+  }
+}
@@ -0,0 +1,123 @@
+package assessment.parkinglot.UnitTests.history;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.Mockito.*;
+
+import assessment.parkinglot.allocation.SpotAllocator;
+import assessment.parkinglot.domain.ParkingStatus;
+import assessment.parkinglot.enums.HistoryResolution;
+import assessment.parkinglot.enums.ParkingSpotType;
+import assessment.parkinglot.enums.VehicleType;
+import assessment.parkinglot.history.OccupancyRecorder;
+import java.time.Duration;
+import java.time.Instant;
+import java.util.List;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+public class OccupancyRecorderTest {
+
+  private static final long MIDNIGHT = Instant.parse("2026-01-01T00:00:00Z").toEpochMilli();
+  private static final long MINUTE = Duration.ofMinutes(1).toMillis();
+
+  private final SpotAllocator spotAllocator = mock(SpotAllocator.class);
+
+  @BeforeEach
+  void setUp() {
+    when(spotAllocator.capacity(any())).thenReturn(10);
+    when(spotAllocator.available(any())).thenReturn(10);
+  }
+
+  @Test
+  void samplesOfAMinuteAreAveraged() {
+    OccupancyRecorder recorder = new OccupancyRecorder(spotAllocator, true, 60, 24, 7);
+
+    when(spotAllocator.available(ParkingSpotType.REGULAR)).thenReturn(7);
+    recorder.sample(MIDNIGHT);
+    when(spotAllocator.available(ParkingSpotType.REGULAR)).thenReturn(5);
+    recorder.sample(MIDNIGHT + MINUTE / 2);
+
+    List<ParkingStatus> periods = recorder.history(HistoryResolution.MINUTE, 10);
+
+    assertEquals(1, periods.size());
+    assertEquals(Instant.ofEpochMilli(MIDNIGHT), periods.get(0).getStart());
+    assertEquals(Instant.ofEpochMilli(MIDNIGHT + MINUTE), periods.get(0).getEnd());
+    ParkingStatus.SpotOccupancy regular = spot(periods.get(0), ParkingSpotType.REGULAR);
+    assertEquals(4.0, regular.getAverageTaken());
+    assertEquals(5L, regular.getPeakTaken());
+    assertEquals(0.0, spot(periods.get(0), ParkingSpotType.COMPACT).getAverageTaken());
+  }
+
+  @Test
+  void closedMinutesRollUpIntoHours() {
+    OccupancyRecorder recorder = new OccupancyRecorder(spotAllocator, true, 180, 24, 7);
+
+    for (int minute = 0; minute < 90; minute++) {
+      recorder.park(VehicleType.CAR);
+      recorder.park(VehicleType.CAR);
+      recorder.sample(MIDNIGHT + minute * MINUTE);
+    }
+
+    List<ParkingStatus> hours = recorder.history(HistoryResolution.HOUR, 10);
+
+    assertEquals(2, hours.size());
+    assertEquals(120L, traffic(hours.get(0), VehicleType.CAR).getParks());
+    assertEquals(58L, traffic(hours.get(1), VehicleType.CAR).getParks());
+    assertEquals(0L, traffic(hours.get(1), VehicleType.VAN).getParks());
+    assertEquals(90, recorder.history(HistoryResolution.MINUTE, 1000).size());
+  }
+
+  @Test
+  void onlyTheLatestPeriodsAreKept() {
+    OccupancyRecorder recorder = new OccupancyRecorder(spotAllocator, true, 3, 24, 7);
+
+    for (int minute = 0; minute < 10; minute++) {
+      recorder.sample(MIDNIGHT + minute * MINUTE);
+    }
+
+    List<ParkingStatus> periods = recorder.history(HistoryResolution.MINUTE, 100);
+
+    assertEquals(4, periods.size());
+    assertEquals(Instant.ofEpochMilli(MIDNIGHT + 6 * MINUTE), periods.get(0).getStart());
+    assertEquals(Instant.ofEpochMilli(MIDNIGHT + 9 * MINUTE), periods.get(3).getStart());
+    assertEquals(2, recorder.history(HistoryResolution.MINUTE, 2).size());
+  }
+
+  @Test
+  void dwellTimesAreMeasuredFromTheParkTimes() {
+    OccupancyRecorder recorder = new OccupancyRecorder(spotAllocator, true, 60, 24, 7);
+    long now = System.currentTimeMillis();
+
+    recorder.leave(VehicleType.CAR, now - 10 * MINUTE);
+    recorder.leave(VehicleType.CAR, now - 6 * MINUTE);
+    recorder.leave(VehicleType.VAN, now - 3 * MINUTE);
+    recorder.sample(now);
+
+    List<ParkingStatus> periods = recorder.history(HistoryResolution.MINUTE, 1);
+    ParkingStatus.VehicleTraffic cars = traffic(periods.get(0), VehicleType.CAR);
+    ParkingStatus.VehicleTraffic vans = traffic(periods.get(0), VehicleType.VAN);
+
+    assertEquals(2L, cars.getLeaves());
+    assertEquals(8 * 60, cars.getAverageDwellSeconds(), 5);
+    assertEquals(10 * 60, cars.getMaxDwellSeconds(), 5);
+    assertEquals(3 * 60, vans.getAverageDwellSeconds(), 5);
+  }
+
+  @Test
+  void nothingIsRecordedWhenDisabled() {
+    OccupancyRecorder recorder = new OccupancyRecorder(spotAllocator, false, 60, 24, 7);
+
+    recorder.park(VehicleType.CAR);
+    recorder.sample(MIDNIGHT);
+
+    assertTrue(recorder.history(HistoryResolution.MINUTE, 10).isEmpty());
+  }
+
+  private static ParkingStatus.SpotOccupancy spot(ParkingStatus status, ParkingSpotType type) {
+    return status.getSpots().stream().filter(s -> s.getType() == type).findFirst().orElseThrow();
+  }
+
+  private static ParkingStatus.VehicleTraffic traffic(ParkingStatus status, VehicleType type) {
+    return status.getVehicles().stream().filter(v -> v.getType() == type).findFirst().orElseThrow();
+  }
+}
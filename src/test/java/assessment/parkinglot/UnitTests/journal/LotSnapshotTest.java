@@ -0,0 +1,90 @@
+package assessment.parkinglot.UnitTests.journal;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+import assessment.parkinglot.entities.ParkingSpotEntity;
+import assessment.parkinglot.enums.ParkingSpotType;
+import assessment.parkinglot.enums.VehicleType;
+import assessment.parkinglot.journal.JournalRecord;
+import assessment.parkinglot.journal.LotSnapshot;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.List;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+public class LotSnapshotTest {
+
+  @TempDir Path directory;
+
+  private final LotSnapshot lot =
+      LotSnapshot.empty(
+          List.of(
+              spot(1L, ParkingSpotType.MOTORCYCLE, "1", "A"),
+              spot(2L, ParkingSpotType.COMPACT, "1", "A"),
+              spot(3L, ParkingSpotType.REGULAR, "1", "B"),
+              spot(4L, ParkingSpotType.REGULAR, "2", "A"),
+              spot(5L, ParkingSpotType.REGULAR, "2", "A")));
+
+  @Test
+  void applyTracksParksAndLeaves() {
+    JournalRecord van =
+        JournalRecord.park(
+            7L, VehicleType.VAN, ParkingSpotType.REGULAR, new long[] {3L, 4L, 5L}, 1_000L);
+    JournalRecord car =
+        JournalRecord.park(8L, VehicleType.CAR, ParkingSpotType.COMPACT, new long[] {2L}, 2_000L);
+
+    lot.apply(van);
+    lot.apply(car);
+    lot.apply(van.leave());
+    lot.apply(van.leave());
+
+    assertEquals(List.of(8L), List.copyOf(lot.getParks().keySet()));
+    assertEquals(9L, lot.getNextVehicleId());
+    assertFalse(lot.isTaken(0));
+    assertTrue(lot.isTaken(1));
+    assertFalse(lot.isTaken(2));
+    assertFalse(lot.isTaken(4));
+  }
+
+  @Test
+  void writeAndReadRoundTrip() throws IOException {
+    Path path = directory.resolve("lot.snapshot");
+    lot.apply(
+        JournalRecord.park(
+            7L, VehicleType.VAN, ParkingSpotType.REGULAR, new long[] {3L, 4L, 5L}, 1_000L));
+    lot.coverUpTo(4);
+    lot.write(path);
+
+    LotSnapshot read = LotSnapshot.read(path);
+    assertEquals(4, read.getNextSegment());
+    assertEquals(8L, read.getNextVehicleId());
+    assertArrayEquals(lot.getSpotIds(), read.getSpotIds());
+    for (int i = 0; i < lot.size(); i++) {
+      assertEquals(lot.spotType(i), read.spotType(i));
+      assertEquals(lot.isTaken(i), read.isTaken(i));
+      assertEquals(lot.spot(i, null), read.spot(i, null));
+    }
+    JournalRecord van = read.getParks().get(7L);
+    assertEquals(VehicleType.VAN, van.getVehicleType());
+    assertArrayEquals(new long[] {3L, 4L, 5L}, van.getSpotIds());
+    assertEquals(1_000L, van.getParkedAt());
+  }
+
+  @Test
+  void readRejectsACorruptSnapshot() throws IOException {
+    Path path = directory.resolve("lot.snapshot");
+    lot.write(path);
+    byte[] contents = Files.readAllBytes(path);
+    contents[contents.length / 2] ^= 1;
+    Files.write(path, contents);
+
+    assertThrows(IOException.class, () -> LotSnapshot.read(path));
+    assertNull(LotSnapshot.read(directory.resolve("missing.snapshot")));
+  }
+
+  private static ParkingSpotEntity spot(long id, ParkingSpotType type, String level, String zone) {
+    return ParkingSpotEntity.builder().id(id).type(type).level(level).zone(zone).build();
+  }
+}
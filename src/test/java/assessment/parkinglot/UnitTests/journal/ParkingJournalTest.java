@@ -0,0 +1,143 @@
+package assessment.parkinglot.UnitTests.journal;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+import assessment.parkinglot.enums.ParkingSpotType;
+import assessment.parkinglot.enums.VehicleType;
+import assessment.parkinglot.journal.JournalRecord;
+import assessment.parkinglot.journal.ParkingJournal;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.stream.Stream;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+public class ParkingJournalTest {
+
+  @TempDir Path directory;
+
+  @Test
+  void openReplaysAppendedRecordsInOrder() throws Exception {
+    JournalRecord van =
+        JournalRecord.park(
+            1L, VehicleType.VAN, ParkingSpotType.REGULAR, new long[] {7L, 8L, 9L}, 1_000L);
+    JournalRecord car =
+        JournalRecord.park(2L, VehicleType.CAR, ParkingSpotType.COMPACT, new long[] {3L}, 2_000L);
+
+    try (ParkingJournal journal = ParkingJournal.open(directory, false, 0, record -> {})) {
+      journal.append(List.of(van, car));
+      journal.append(List.of(van.leave()));
+    }
+
+    List<JournalRecord> replay = new ArrayList<>();
+    try (ParkingJournal journal = ParkingJournal.open(directory, false, 0, replay::add)) {
+      assertEquals(3, replay.size());
+      assertEquals(JournalRecord.Kind.PARK, replay.get(0).getKind());
+      assertEquals(1L, replay.get(0).getVehicleId());
+      assertEquals(VehicleType.VAN, replay.get(0).getVehicleType());
+      assertEquals(ParkingSpotType.REGULAR, replay.get(0).getSpotType());
+      assertEquals(1_000L, replay.get(0).getParkedAt());
+      assertArrayEquals(new long[] {7L, 8L, 9L}, replay.get(0).getSpotIds());
+      assertEquals(2L, replay.get(1).getVehicleId());
+      assertEquals(JournalRecord.Kind.LEAVE, replay.get(2).getKind());
+      assertEquals(1L, replay.get(2).getVehicleId());
+    }
+  }
+
+  @Test
+  void openCutsOffATornTail() throws Exception {
+    try (ParkingJournal journal = ParkingJournal.open(directory, true, 0, record -> {})) {
+      journal.append(List.of(park(1L)));
+    }
+    Path segment = this.segments().get(0);
+    long validSize = Files.size(segment);
+    Files.write(segment, new byte[] {0, 0, 0, 40, 1, 2, 3}, StandardOpenOption.APPEND);
+
+    List<JournalRecord> replay = new ArrayList<>();
+    try (ParkingJournal journal = ParkingJournal.open(directory, false, 0, replay::add)) {
+      assertEquals(1, replay.size());
+      assertEquals(validSize, Files.size(segment));
+
+      journal.append(List.of(park(2L)));
+    }
+
+    replay.clear();
+    try (ParkingJournal journal = ParkingJournal.open(directory, false, 0, replay::add)) {
+      assertEquals(2, replay.size());
+      assertEquals(2L, replay.get(1).getVehicleId());
+    }
+  }
+
+  @Test
+  void openIgnoresARecordWithABadChecksum() throws Exception {
+    try (ParkingJournal journal = ParkingJournal.open(directory, false, 0, record -> {})) {
+      journal.append(List.of(park(1L), park(2L)));
+    }
+    Path segment = this.segments().get(0);
+    byte[] contents = Files.readAllBytes(segment);
+    contents[contents.length - 1] ^= 1;
+    Files.write(segment, contents);
+
+    List<JournalRecord> replay = new ArrayList<>();
+    try (ParkingJournal journal = ParkingJournal.open(directory, false, 0, replay::add)) {
+      assertEquals(1, replay.size());
+      assertEquals(1L, replay.get(0).getVehicleId());
+    }
+  }
+
+  @Test
+  void rollSealsTheSegmentAndKeepsAppending() throws Exception {
+    try (ParkingJournal journal = ParkingJournal.open(directory, false, 0, record -> {})) {
+      journal.append(List.of(park(1L)));
+      long sealed = journal.roll();
+      journal.append(List.of(park(2L)));
+
+      List<JournalRecord> read = new ArrayList<>();
+      ParkingJournal.read(directory, 0, sealed, read::add);
+      assertEquals(1, read.size());
+      assertEquals(1L, read.get(0).getVehicleId());
+
+      journal.deleteBefore(sealed);
+      assertEquals(1, this.segments().size());
+    }
+
+    List<JournalRecord> replay = new ArrayList<>();
+    try (ParkingJournal journal = ParkingJournal.open(directory, false, 0, replay::add)) {
+      assertEquals(1, replay.size());
+      assertEquals(2L, replay.get(0).getVehicleId());
+    }
+  }
+
+  @Test
+  void openFailsOnASealedSegmentWithInvalidBytes() throws Exception {
+    try (ParkingJournal journal = ParkingJournal.open(directory, false, 0, record -> {})) {
+      journal.append(List.of(park(1L), park(2L)));
+      journal.roll();
+      journal.append(List.of(park(3L)));
+    }
+    Path sealed = this.segments().get(0);
+    byte[] contents = Files.readAllBytes(sealed);
+    contents[contents.length - 1] ^= 1;
+    Files.write(sealed, contents);
+
+    List<JournalRecord> replay = new ArrayList<>();
+    assertThrows(IOException.class, () -> ParkingJournal.open(directory, false, 0, replay::add));
+    assertTrue(replay.stream().noneMatch(record -> record.getVehicleId() == 3L));
+    assertThrows(IOException.class, () -> ParkingJournal.read(directory, 0, 1, replay::add));
+  }
+
+  private static JournalRecord park(long vehicleId) {
+    return JournalRecord.park(
+        vehicleId, VehicleType.CAR, ParkingSpotType.COMPACT, new long[] {vehicleId}, vehicleId);
+  }
+
+  private List<Path> segments() throws Exception {
+    try (Stream<Path> files = Files.list(directory)) {
+      return files.sorted().toList();
+    }
+  }
+}
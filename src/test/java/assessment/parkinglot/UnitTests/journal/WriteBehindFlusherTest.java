@@ -0,0 +1,182 @@
+package assessment.parkinglot.UnitTests.journal;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.Mockito.*;
+
+import assessment.parkinglot.conf.ParkingLotProperties;
+import assessment.parkinglot.entities.ParkingSpotEntity;
+import assessment.parkinglot.entities.VehicleEntity;
+import assessment.parkinglot.enums.ParkingSpotType;
+import assessment.parkinglot.enums.VehicleType;
+import assessment.parkinglot.journal.JournalRecord;
+import assessment.parkinglot.journal.LotSnapshot;
+import assessment.parkinglot.journal.WriteBehindFlusher;
+import assessment.parkinglot.metrics.ParkingMetrics;
+import assessment.parkinglot.repository.ParkingSpotRepository;
+import assessment.parkinglot.repository.VehicleRepository;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.time.Duration;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.Consumer;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+import org.mockito.InjectMocks;
+import org.mockito.Mock;
+import org.mockito.MockitoAnnotations;
+import org.springframework.dao.DataIntegrityViolationException;
+import org.springframework.jdbc.CannotGetJdbcConnectionException;
+import org.springframework.test.util.ReflectionTestUtils;
+import org.springframework.transaction.support.TransactionTemplate;
+
+public class WriteBehindFlusherTest {
+
+  @TempDir Path directory;
+
+  @Mock private VehicleRepository vehicleRepository;
+  @Mock private ParkingSpotRepository parkingSpotRepository;
+  @Mock private TransactionTemplate transactionTemplate;
+  @Mock private ParkingMetrics parkingMetrics;
+
+  @InjectMocks private WriteBehindFlusher flusher;
+
+  private final List<Long> inserted = new CopyOnWriteArrayList<>();
+
+  @BeforeEach
+  @SuppressWarnings("unchecked")
+  void setUp() {
+    MockitoAnnotations.openMocks(this);
+    ReflectionTestUtils.setField(flusher, "batchSize", 100);
+    ReflectionTestUtils.setField(flusher, "flushInterval", Duration.ofHours(1));
+    ReflectionTestUtils.setField(flusher, "maxBackoff", Duration.ofHours(1));
+    ReflectionTestUtils.setField(flusher, "deadLetterPath", directory.resolve("dead-letter"));
+    doAnswer(
+            invocation -> {
+              invocation.<Consumer<Object>>getArgument(0).accept(null);
+              return null;
+            })
+        .when(transactionTemplate)
+        .executeWithoutResult(any());
+    doAnswer(
+            invocation -> {
+              List<VehicleEntity> vehicles = invocation.getArgument(0);
+              if (vehicles.stream().anyMatch(vehicle -> vehicle.getId() == 2L)) {
+                throw new DataIntegrityViolationException("duplicate vehicle 2");
+              }
+              vehicles.forEach(vehicle -> inserted.add(vehicle.getId()));
+              return null;
+            })
+        .when(vehicleRepository)
+        .insertAll(anyList());
+    when(parkingSpotRepository.assignVehicles(anyMap()))
+        .thenAnswer(
+            invocation ->
+                invocation.<Map<Long, long[]>>getArgument(0).values().stream()
+                    .mapToInt(spotIds -> spotIds.length)
+                    .sum());
+  }
+
+  @Test
+  void flushSetsAsideTheRecordThatCannotBeWritten() throws Exception {
+    for (long vehicleId = 1; vehicleId <= 5; vehicleId++) {
+      flusher.enqueue(park(vehicleId));
+    }
+
+    flusher.flush();
+
+    assertEquals(List.of(1L, 3L, 4L, 5L), inserted.stream().sorted().toList());
+    verify(parkingMetrics, times(1)).deadLetter();
+    assertTrue(Files.size(directory.resolve("dead-letter")) > 0);
+
+    flusher.flush();
+    assertEquals(4, inserted.size());
+  }
+
+  @Test
+  void flushFailsAParkWhoseSpotsAreTaken() {
+    when(parkingSpotRepository.assignVehicles(anyMap())).thenReturn(0);
+    flusher.enqueue(park(1L));
+
+    flusher.flush();
+
+    verify(parkingMetrics, times(1)).deadLetter();
+  }
+
+  @Test
+  void flushBacksOffWhileTheDatabaseIsUnreachable() {
+    reset(transactionTemplate);
+    doThrow(new CannotGetJdbcConnectionException("down"))
+        .doAnswer(
+            invocation -> {
+              invocation.<Consumer<Object>>getArgument(0).accept(null);
+              return null;
+            })
+        .when(transactionTemplate)
+        .executeWithoutResult(any());
+    flusher.enqueue(park(1L));
+
+    flusher.flush();
+    flusher.flush();
+    verify(transactionTemplate, times(1)).executeWithoutResult(any());
+    assertTrue(inserted.isEmpty());
+
+    flusher.stop();
+    assertEquals(List.of(1L), inserted);
+    verify(parkingMetrics, never()).deadLetter();
+  }
+
+  @Test
+  void queuedRecordsWaitUntilTheRestoredLotIsWritten() throws InterruptedException {
+    ParkingLotProperties properties = new ParkingLotProperties();
+    properties.setInsertChunkSize(2);
+    ReflectionTestUtils.setField(flusher, "lotProperties", properties);
+    ReflectionTestUtils.setField(flusher, "flushInterval", Duration.ofMillis(10));
+    List<Long> seededSpots = new CopyOnWriteArrayList<>();
+    AtomicInteger chunks = new AtomicInteger();
+    doAnswer(
+            invocation -> {
+              if (chunks.incrementAndGet() == 2) {
+                throw new CannotGetJdbcConnectionException("down");
+              }
+              invocation.<List<ParkingSpotEntity>>getArgument(0).stream()
+                  .map(ParkingSpotEntity::getId)
+                  .forEach(seededSpots::add);
+              return null;
+            })
+        .when(parkingSpotRepository)
+        .insertAll(anyList());
+    LotSnapshot lot =
+        LotSnapshot.empty(List.of(spot(1L), spot(3L), spot(4L), spot(5L), spot(6L)));
+    lot.apply(park(3L));
+    lot.apply(park(5L));
+
+    flusher.seed(lot);
+    flusher.enqueue(park(1L));
+    for (int i = 0; i < 500 && !inserted.contains(1L); i++) {
+      flusher.flush();
+      Thread.sleep(10);
+    }
+
+    assertEquals(List.of(1L, 3L, 4L, 5L, 6L), seededSpots);
+    assertEquals(List.of(3L, 5L, 1L), inserted);
+    verify(parkingMetrics, never()).deadLetter();
+  }
+
+  private static ParkingSpotEntity spot(long id) {
+    return ParkingSpotEntity.builder()
+        .id(id)
+        .type(ParkingSpotType.COMPACT)
+        .level("1")
+        .zone("A")
+        .build();
+  }
+
+  private static JournalRecord park(long vehicleId) {
+    return JournalRecord.park(
+        vehicleId, VehicleType.CAR, ParkingSpotType.COMPACT, new long[] {vehicleId}, 1_000L);
+  }
+}
@@ -0,0 +1,120 @@
+package assessment.parkinglot.UnitTests.metrics;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.Mockito.*;
+
+import assessment.parkinglot.allocation.SpotAllocator;
+import assessment.parkinglot.enums.ErrorCode;
+import assessment.parkinglot.enums.ParkingSpotType;
+import assessment.parkinglot.enums.VehicleType;
+import assessment.parkinglot.metrics.ParkingMetrics;
+import assessment.parkinglot.metrics.QueryCounter;
+import assessment.parkinglot.metrics.QueryCountingDataSource;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.Supplier;
+import javax.sql.DataSource;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.mockito.Mock;
+import org.mockito.MockitoAnnotations;
+
+public class ParkingMetricsTest {
+
+  @Mock private SpotAllocator spotAllocator;
+
+  private final SimpleMeterRegistry registry = new SimpleMeterRegistry();
+  private final QueryCounter queryCounter = new QueryCounter();
+
+  @BeforeEach
+  void setUp() {
+    MockitoAnnotations.openMocks(this);
+  }
+
+  @Test
+  void recordsParkLeaveAndFailures() {
+    when(spotAllocator.available(ParkingSpotType.REGULAR)).thenReturn(7);
+    ParkingMetrics parkingMetrics = new ParkingMetrics(registry, spotAllocator, queryCounter, true);
+
+    parkingMetrics.park(VehicleType.VAN, 2_000_000);
+    parkingMetrics.leave(VehicleType.CAR, 1_000_000);
+    parkingMetrics.failure(ErrorCode.NO_SPACE_TO_PARK);
+    queryCounter.count();
+
+    assertEquals(1, registry.get("parking.park").tag("vehicle.type", "VAN").timer().count());
+    assertEquals(
+        2.0,
+        registry
+            .get("parking.park")
+            .tag("vehicle.type", "VAN")
+            .timer()
+            .totalTime(TimeUnit.MILLISECONDS));
+    assertEquals(1, registry.get("parking.leave").tag("vehicle.type", "CAR").timer().count());
+    assertEquals(
+        1.0, registry.get("parking.failures").tag("error", "NO_SPACE_TO_PARK").counter().count());
+    assertEquals(
+        7.0, registry.get("parking.spots.free").tag("spot.type", "REGULAR").gauge().value());
+    assertEquals(1.0, registry.get("parking.db.statements").functionCounter().count());
+  }
+
+  @Test
+  void registersNothingWhenDisabled() {
+    ParkingMetrics parkingMetrics = new ParkingMetrics(registry, spotAllocator, queryCounter, false);
+
+    parkingMetrics.park(VehicleType.VAN, 2_000_000);
+    parkingMetrics.failure(ErrorCode.NO_SPACE_TO_PARK);
+
+    assertTrue(registry.getMeters().isEmpty());
+  }
+
+  @Test
+  void queryCounterCountsForTheRequestOfTheThread() throws Exception {
+    AtomicInteger request = new AtomicInteger();
+    queryCounter.count();
+    queryCounter.bind(request);
+    queryCounter.count();
+    Supplier<Integer> queued =
+        queryCounter.propagate(
+            () -> {
+              queryCounter.count();
+              return 1;
+            });
+    queryCounter.unbind();
+
+    CompletableFuture.supplyAsync(queued).get();
+    queryCounter.count();
+
+    assertEquals(2, request.get());
+    assertEquals(4, queryCounter.total());
+  }
+
+  @Test
+  void queryCountingDataSourceCountsEveryExecution() throws Exception {
+    DataSource dataSource = mock(DataSource.class);
+    Connection connection = mock(Connection.class);
+    PreparedStatement statement = mock(PreparedStatement.class);
+    when(dataSource.getConnection()).thenReturn(connection);
+    when(connection.prepareStatement(anyString())).thenReturn(statement);
+    AtomicInteger request = new AtomicInteger();
+    queryCounter.bind(request);
+
+    try (Connection counted = new QueryCountingDataSource(dataSource, queryCounter).getConnection();
+        PreparedStatement update = counted.prepareStatement("update parking_spot set id = ?")) {
+      update.setLong(1, 1L);
+      update.addBatch();
+      update.addBatch();
+      update.executeBatch();
+      update.executeQuery();
+    } finally {
+      queryCounter.unbind();
+    }
+
+    assertEquals(2, request.get());
+    verify(statement, times(2)).addBatch();
+    verify(connection).close();
+  }
+}
@@ -0,0 +1,213 @@
+package assessment.parkinglot.UnitTests.reservation;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+import assessment.parkinglot.allocation.SpotAllocator;
+import assessment.parkinglot.domain.Vehicle;
+import assessment.parkinglot.domain.VehicleFactory;
+import assessment.parkinglot.dto.ReservationDTO;
+import assessment.parkinglot.enums.ErrorCode;
+import assessment.parkinglot.enums.ParkingSpotType;
+import assessment.parkinglot.enums.VehicleType;
+import assessment.parkinglot.exception.PklBadRequestException;
+import assessment.parkinglot.exception.PklErrorException;
+import assessment.parkinglot.exception.PklNotFoundException;
+import assessment.parkinglot.reservation.ReservationBook;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+public class ReservationBookTest {
+
+  private static final long SLOT = Duration.ofMinutes(15).toMillis();
+  private static final long HOUR = Duration.ofHours(1).toMillis();
+  private static final long DAY = Duration.ofDays(1).toMillis();
+  private static final Vehicle CAR = VehicleFactory.create(VehicleType.CAR);
+  private static final Vehicle VAN = VehicleFactory.create(VehicleType.VAN);
+
+  private SpotAllocator spotAllocator;
+  private ReservationBook book;
+  private long tomorrow;
+
+  /** A lot of 20 regular spots, 10 of them reservable. */
+  @BeforeEach
+  void setUp() {
+    long[] spotIds = new long[20];
+    ParkingSpotType[] types = new ParkingSpotType[20];
+    boolean[] free = new boolean[20];
+    for (int i = 0; i < spotIds.length; i++) {
+      spotIds[i] = i + 1;
+      types[i] = ParkingSpotType.REGULAR;
+      free[i] = true;
+    }
+    spotAllocator = new SpotAllocator();
+    spotAllocator.load(spotIds, types, free);
+    book =
+        new ReservationBook(
+            spotAllocator, Duration.ofMinutes(15), Duration.ofDays(30), Duration.ofMinutes(15), 50);
+    tomorrow = Math.ceilDiv(System.currentTimeMillis(), DAY) * DAY;
+  }
+
+  @Test
+  void windowsAreBookedUpToTheReservableSpots() {
+    long eight = tomorrow + 8 * HOUR;
+
+    book.book(1, ParkingSpotType.REGULAR, 6, eight, eight + 2 * HOUR);
+    book.book(2, ParkingSpotType.REGULAR, 4, eight + HOUR, eight + 3 * HOUR);
+
+    PklErrorException exception =
+        assertThrows(
+            PklErrorException.class,
+            () -> book.book(3, ParkingSpotType.REGULAR, 1, eight + 6 * SLOT, eight + 7 * SLOT));
+    assertEquals(ErrorCode.NO_SPACE_TO_RESERVE, exception.getError());
+
+    book.book(4, ParkingSpotType.REGULAR, 1, eight + 2 * HOUR, eight + 4 * HOUR);
+    assertEquals(4, book.available(ParkingSpotType.REGULAR, eight, eight + HOUR));
+    assertEquals(0, book.available(ParkingSpotType.REGULAR, eight, eight + 4 * HOUR));
+    assertEquals(5, book.available(ParkingSpotType.REGULAR, eight + 2 * HOUR, eight + 3 * HOUR));
+    assertEquals(9, book.available(ParkingSpotType.REGULAR, eight + 3 * HOUR, eight + 5 * HOUR));
+    assertEquals(0, book.available(ParkingSpotType.COMPACT, eight, eight + HOUR));
+  }
+
+  @Test
+  void cancelledReservationsGiveTheirSpotsBack() {
+    book.book(1, ParkingSpotType.REGULAR, 10, tomorrow, tomorrow + HOUR);
+
+    ReservationDTO cancelled = book.cancel(1);
+
+    assertEquals(10, cancelled.getSpots());
+    assertEquals(10, book.available(ParkingSpotType.REGULAR, tomorrow, tomorrow + HOUR));
+    assertNull(book.get(1));
+    assertThrows(PklNotFoundException.class, () -> book.cancel(1));
+  }
+
+  @Test
+  void windowsOutOfRangeAreRejected() {
+    long now = System.currentTimeMillis();
+
+    for (long[] window :
+        new long[][] {
+          {now - DAY, now + HOUR}, {tomorrow, tomorrow}, {tomorrow, now + 31 * DAY}
+        }) {
+      PklBadRequestException exception =
+          assertThrows(
+              PklBadRequestException.class,
+              () -> book.book(1, ParkingSpotType.REGULAR, 1, window[0], window[1]));
+      assertEquals(ErrorCode.INVALID_RESERVATION, exception.getError());
+    }
+    assertThrows(
+        PklBadRequestException.class,
+        () -> book.book(1, ParkingSpotType.REGULAR, 0, tomorrow, tomorrow + HOUR));
+  }
+
+  @Test
+  void spotsAreHeldFromTheStartOfTheWindowForArrivals() {
+    book.book(1, ParkingSpotType.REGULAR, 4, tomorrow, tomorrow + 2 * HOUR);
+
+    book.sweep(tomorrow - 1);
+    assertEquals(0, spotAllocator.held(ParkingSpotType.REGULAR));
+    PklBadRequestException early =
+        assertThrows(PklBadRequestException.class, () -> book.takeHold(1, VAN));
+    assertEquals(ErrorCode.NO_HELD_SPACE, early.getError());
+
+    book.sweep(tomorrow);
+    assertEquals(4, spotAllocator.held(ParkingSpotType.REGULAR));
+
+    ReservationDTO reservation = book.takeHold(1, VAN).getReservation();
+    assertEquals(3, reservation.getArrived());
+    assertEquals(1, reservation.getHeld());
+    assertEquals(1, spotAllocator.held(ParkingSpotType.REGULAR));
+    assertThrows(PklBadRequestException.class, () -> book.takeHold(1, VAN));
+
+    book.takeHold(1, CAR);
+    book.returnHold(1, 1);
+    assertEquals(1, spotAllocator.held(ParkingSpotType.REGULAR));
+    assertEquals(3, book.get(1).getArrived());
+  }
+
+  @Test
+  void arrivalsClaimTheirSpotsBeforeTheHoldGivesThemUp() {
+    book.book(1, ParkingSpotType.REGULAR, 3, tomorrow, tomorrow + HOUR);
+    book.sweep(tomorrow);
+    for (long id = 4; id <= 20; id++) {
+      spotAllocator.take(ParkingSpotType.REGULAR, id);
+    }
+    List<Integer> unheldWhenWoken = new ArrayList<>();
+    spotAllocator.onRelease(
+        type -> unheldWhenWoken.add(spotAllocator.available(type) - spotAllocator.held(type)));
+
+    ReservationBook.Arrival arrival = book.takeHold(1, VAN);
+
+    assertArrayEquals(new long[] {1L, 2L, 3L}, arrival.getSpotIds());
+    assertEquals(List.of(0), unheldWhenWoken);
+    assertEquals(0, spotAllocator.available(ParkingSpotType.REGULAR));
+  }
+
+  @Test
+  void arrivalsWithoutAdjacentHeldSpotsLeaveTheHold() {
+    book.book(1, ParkingSpotType.REGULAR, 3, tomorrow, tomorrow + HOUR);
+    book.sweep(tomorrow);
+    for (long id = 2; id <= 20; id += 2) {
+      spotAllocator.take(ParkingSpotType.REGULAR, id);
+    }
+
+    PklErrorException exception =
+        assertThrows(PklErrorException.class, () -> book.takeHold(1, VAN));
+
+    assertEquals(ErrorCode.NO_SPACE_TO_PARK, exception.getError());
+    assertEquals(3, book.get(1).getHeld());
+    assertEquals(0, book.get(1).getArrived());
+    assertEquals(3, spotAllocator.held(ParkingSpotType.REGULAR));
+    assertEquals(10, spotAllocator.available(ParkingSpotType.REGULAR));
+  }
+
+  @Test
+  void unusedHoldsAreGivenBackWhenTheHoldRunsOut() {
+    book.book(1, ParkingSpotType.REGULAR, 5, tomorrow, tomorrow + 4 * HOUR);
+    book.book(2, ParkingSpotType.REGULAR, 5, tomorrow, tomorrow + 4 * HOUR);
+    book.sweep(tomorrow);
+    book.takeHold(1, CAR);
+    assertEquals(9, spotAllocator.held(ParkingSpotType.REGULAR));
+
+    book.sweep(tomorrow + SLOT);
+
+    assertEquals(0, spotAllocator.held(ParkingSpotType.REGULAR));
+    assertEquals(0, book.get(2).getHeld());
+    assertEquals(9, book.available(ParkingSpotType.REGULAR, tomorrow + HOUR, tomorrow + 4 * HOUR));
+
+    assertEquals(List.of(1L, 2L), book.sweep(tomorrow + 4 * HOUR));
+    assertNull(book.get(1));
+    assertEquals(10, book.available(ParkingSpotType.REGULAR, tomorrow, tomorrow + 4 * HOUR));
+  }
+
+  @Test
+  void availabilityMatchesAScanOfTheBookings() {
+    Random random = new Random(42);
+    long start = tomorrow + 3 * DAY;
+    int slots = (int) (7 * DAY / SLOT);
+    int[] booked = new int[slots];
+
+    for (int id = 0; id < 2000; id++) {
+      int from = random.nextInt(slots - 16);
+      int to = from + 1 + random.nextInt(16);
+      int spots = 1 + random.nextInt(3);
+      int peak = 0;
+      for (int slot = from; slot < to; slot++) {
+        peak = Math.max(peak, booked[slot]);
+      }
+      assertEquals(
+          Math.max(0, 10 - peak),
+          book.available(ParkingSpotType.REGULAR, start + from * SLOT, start + to * SLOT));
+
+      if (peak + spots <= 10) {
+        book.book(id, ParkingSpotType.REGULAR, spots, start + from * SLOT, start + to * SLOT);
+        for (int slot = from; slot < to; slot++) {
+          booked[slot] += spots;
+        }
+      }
+    }
+  }
+}
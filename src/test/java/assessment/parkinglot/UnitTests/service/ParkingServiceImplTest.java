@@ -3,32 +3,50 @@ package assessment.parkinglot.UnitTests.service;
 import static org.junit.jupiter.api.Assertions.*;
 import static org.mockito.Mockito.*;
 
+import assessment.parkinglot.allocation.AllocationStrategySelector;
+import assessment.parkinglot.allocation.BestFitStrategy;
+import assessment.parkinglot.allocation.SpotAllocator;
 import assessment.parkinglot.behavior.ParkBehavior;
+import assessment.parkinglot.billing.ParkingSession;
+import assessment.parkinglot.cache.VehicleIndex;
 import assessment.parkinglot.domain.Car;
 import assessment.parkinglot.domain.Vehicle;
+import assessment.parkinglot.dto.BatchItemDTO;
+import assessment.parkinglot.dto.ParkingSpotDTO;
 import assessment.parkinglot.dto.Translator;
 import assessment.parkinglot.dto.VehicleDTO;
 import assessment.parkinglot.entities.ParkingSpotEntity;
 import assessment.parkinglot.entities.VehicleEntity;
+import assessment.parkinglot.enums.AllocationStrategyType;
 import assessment.parkinglot.enums.ErrorCode;
 import assessment.parkinglot.enums.ParkingSpotType;
 import assessment.parkinglot.enums.VehicleType;
 import assessment.parkinglot.exception.PklBadRequestException;
 import assessment.parkinglot.exception.PklErrorException;
 import assessment.parkinglot.exception.PklNotFoundException;
+import assessment.parkinglot.history.OccupancyRecorder;
+import assessment.parkinglot.metrics.ParkingMetrics;
 import assessment.parkinglot.repository.ParkingSpotRepository;
 import assessment.parkinglot.repository.VehicleRepository;
-import java.util.Collections;
+import assessment.parkinglot.repository.VehicleSpotRow;
+import java.time.Instant;
+import java.util.ArrayList;
+import java.util.Arrays;
 import java.util.List;
-import java.util.Map;
 import java.util.Optional;
+import java.util.Set;
+import java.util.stream.Stream;
 
+import assessment.parkinglot.service.BillingService;
 import assessment.parkinglot.service.ParkingServiceImpl;
 import org.junit.jupiter.api.BeforeEach;
 import org.junit.jupiter.api.Test;
 import org.mockito.InjectMocks;
 import org.mockito.Mock;
 import org.mockito.MockitoAnnotations;
+import org.mockito.Spy;
+import org.springframework.data.domain.Limit;
+import org.springframework.test.util.ReflectionTestUtils;
 
 class ParkingServiceImplTest {
 
@@ -36,6 +54,16 @@ class ParkingServiceImplTest {
   @Mock private VehicleRepository vehicleRepository;
   @Mock private ParkingSpotRepository parkingSpotRepository;
   @Mock private Translator translator;
+  @Mock private SpotAllocator spotAllocator;
+  @Mock private VehicleIndex vehicleIndex;
+  @Mock private OccupancyRecorder occupancyRecorder;
+  @Mock private BillingService billingService;
+
+  @Spy
+  private AllocationStrategySelector strategySelector =
+      new AllocationStrategySelector(
+          List.of(new BestFitStrategy()), new SpotAllocator(), AllocationStrategyType.BEST_FIT);
+  @Mock private ParkingMetrics parkingMetrics;
 
   @InjectMocks private ParkingServiceImpl parkingService;
 
@@ -50,9 +78,7 @@ class ParkingServiceImplTest {
     VehicleDTO dto =
         VehicleDTO.builder().vehicleId(1L).parked(Boolean.TRUE).type(VehicleType.CAR).build();
 
-    when(vehicle.getParkingSpotUsageByTypes()).thenReturn(Map.of(ParkingSpotType.REGULAR, 1));
-    when(parkingSpotRepository.findByTypeAndVehicleIdIsNull(ParkingSpotType.REGULAR))
-        .thenReturn(List.of(new ParkingSpotEntity()));
+    when(spotAllocator.available(ParkingSpotType.REGULAR)).thenReturn(1);
     when(vehicle.park(parkBehavior)).thenReturn(dto);
     when(parkBehavior.park(any(Car.class))).thenReturn(dto);
 
@@ -61,6 +87,7 @@ class ParkingServiceImplTest {
     assertNotNull(vehicle);
     assertEquals(1L, response.getVehicleId());
     assertTrue(response.getParked());
+    verify(occupancyRecorder).park(VehicleType.CAR);
   }
 
   @Test
@@ -69,12 +96,8 @@ class ParkingServiceImplTest {
     VehicleDTO dto =
         VehicleDTO.builder().vehicleId(2L).parked(Boolean.TRUE).type(VehicleType.CAR).build();
 
-    when(vehicle.getParkingSpotUsageByTypes())
-        .thenReturn(Map.of(ParkingSpotType.COMPACT, 1, ParkingSpotType.REGULAR, 1));
-    when(parkingSpotRepository.findByTypeAndVehicleIdIsNull(ParkingSpotType.COMPACT))
-        .thenReturn(List.of(new ParkingSpotEntity()));
-    when(parkingSpotRepository.findByTypeAndVehicleIdIsNull(ParkingSpotType.REGULAR))
-        .thenReturn(List.of(new ParkingSpotEntity()));
+    when(spotAllocator.available(ParkingSpotType.COMPACT)).thenReturn(1);
+    when(spotAllocator.available(ParkingSpotType.REGULAR)).thenReturn(1);
     when(vehicle.park(parkBehavior)).thenReturn(dto);
     when(parkBehavior.park(any(Car.class))).thenReturn(dto);
 
@@ -87,10 +110,7 @@ class ParkingServiceImplTest {
 
   @Test
   void parkVehicleNoAvailableSpots() {
-    Vehicle vehicle = mock(Vehicle.class);
-    when(vehicle.getParkingSpotUsageByTypes()).thenReturn(Map.of(ParkingSpotType.REGULAR, 1));
-    when(parkingSpotRepository.findByTypeAndVehicleIdIsNull(ParkingSpotType.REGULAR))
-        .thenReturn(Collections.emptyList());
+    when(spotAllocator.available(ParkingSpotType.REGULAR)).thenReturn(0);
 
     PklErrorException exception =
         assertThrows(
@@ -101,29 +121,81 @@ class ParkingServiceImplTest {
 
     ErrorCode error = exception.getError();
     assertEquals(ErrorCode.NO_SPACE_TO_PARK, error);
+    verify(parkingMetrics).failure(ErrorCode.NO_SPACE_TO_PARK);
+    verify(parkingMetrics).park(eq(VehicleType.CAR), anyLong());
   }
 
   @Test
   void removeVehicleSuccessfully() {
-    VehicleEntity vehicleEntity = VehicleEntity.builder().id(1L).type(VehicleType.CAR).build();
+    VehicleEntity vehicleEntity =
+        VehicleEntity.builder()
+            .id(1L)
+            .type(VehicleType.CAR)
+            .parkedAt(Instant.ofEpochMilli(1_000L))
+            .build();
     when(vehicleRepository.findById(1L)).thenReturn(Optional.of(vehicleEntity));
-    when(parkingSpotRepository.findByVehicleId(1L)).thenReturn(List.of(new ParkingSpotEntity()));
+    when(vehicleRepository.deleteVehicle(1L)).thenReturn(1);
+    when(parkingSpotRepository.findByVehicleId(1L))
+        .thenReturn(
+            List.of(ParkingSpotEntity.builder().id(7L).type(ParkingSpotType.COMPACT).build()));
 
     VehicleDTO vehicleDTO = parkingService.removeVehicle(1L);
 
     assertNotNull(vehicleDTO);
     assertEquals(1L, vehicleDTO.getVehicleId());
     assertFalse(vehicleDTO.getParked());
-    verify(vehicleRepository).delete(vehicleEntity);
+    verify(vehicleRepository).deleteVehicle(1L);
+  }
+
+  @Test
+  void removeVehicleReturnsTheFeeOfItsSession() {
+    Instant parkedAt = Instant.parse("2030-01-01T08:00:00Z");
+    VehicleEntity vehicleEntity =
+        VehicleEntity.builder().id(1L).type(VehicleType.CAR).parkedAt(parkedAt).build();
+    ParkingSession session =
+        ParkingSession.builder()
+            .vehicleId(1L)
+            .vehicleType(VehicleType.CAR)
+            .spotType(ParkingSpotType.COMPACT)
+            .spots(1)
+            .parkedAt(parkedAt.toEpochMilli())
+            .leftAt(parkedAt.plusSeconds(3600).toEpochMilli())
+            .fee(400L)
+            .build();
+    VehicleDTO left =
+        VehicleDTO.builder().vehicleId(1L).type(VehicleType.CAR).parked(false).fee(400L).build();
+    when(vehicleRepository.findById(1L)).thenReturn(Optional.of(vehicleEntity));
+    when(vehicleRepository.deleteVehicle(1L)).thenReturn(1);
+    when(parkingSpotRepository.findByVehicleId(1L))
+        .thenReturn(
+            List.of(ParkingSpotEntity.builder().id(7L).type(ParkingSpotType.COMPACT).build()));
+    when(billingService.closeSession(
+            1L, VehicleType.CAR, ParkingSpotType.COMPACT, 1, parkedAt.toEpochMilli()))
+        .thenReturn(session);
+    when(translator.toDTO(session)).thenReturn(left);
+
+    VehicleDTO vehicleDTO = parkingService.removeVehicle(1L);
+
+    assertSame(left, vehicleDTO);
+    assertEquals(400L, vehicleDTO.getFee());
   }
 
   @Test
   void removeVehicleWithMultipleParkingSpots() {
-    VehicleEntity vehicleEntity = VehicleEntity.builder().id(1L).type(VehicleType.VAN).build();
+    VehicleEntity vehicleEntity =
+        VehicleEntity.builder()
+            .id(1L)
+            .type(VehicleType.VAN)
+            .parkedAt(Instant.ofEpochMilli(1_000L))
+            .build();
     when(vehicleRepository.findById(1L)).thenReturn(Optional.of(vehicleEntity));
+    when(vehicleRepository.deleteVehicle(1L)).thenReturn(1);
     when(parkingSpotRepository.findByVehicleId(1L))
         .thenReturn(
-            List.of(new ParkingSpotEntity(), new ParkingSpotEntity(), new ParkingSpotEntity()));
+            List.of(
+                ParkingSpotEntity.builder().id(7L).type(ParkingSpotType.REGULAR).build(),
+                ParkingSpotEntity.builder().id(8L).type(ParkingSpotType.REGULAR).build(),
+                ParkingSpotEntity.builder().id(9L).type(ParkingSpotType.REGULAR).build()));
 
     VehicleDTO vehicleDTO = parkingService.removeVehicle(1L);
 
@@ -131,7 +203,67 @@ class ParkingServiceImplTest {
     assertEquals(1L, vehicleDTO.getVehicleId());
     assertFalse(vehicleDTO.getParked());
     verify(parkingSpotRepository, times(3)).save(any(ParkingSpotEntity.class));
-    verify(vehicleRepository).delete(vehicleEntity);
+    verify(spotAllocator, times(3)).releaseAfterCommit(eq(ParkingSpotType.REGULAR), anyLong());
+    verify(vehicleRepository).deleteVehicle(1L);
+  }
+
+  @Test
+  void removeIndexedVehicleWithOneUpdateAndOneDelete() {
+    long[] spotIds = {7L, 8L, 9L};
+    when(vehicleIndex.get(1L))
+        .thenReturn(
+            new VehicleIndex.ParkedVehicle(
+                VehicleType.VAN, ParkingSpotType.REGULAR, spotIds, 1_000L));
+    when(parkingSpotRepository.releaseSpots(1L, List.of(7L, 8L, 9L))).thenReturn(3);
+    when(vehicleRepository.deleteVehicle(1L)).thenReturn(1);
+
+    VehicleDTO vehicleDTO = parkingService.removeVehicle(1L);
+
+    assertEquals(VehicleType.VAN, vehicleDTO.getType());
+    assertFalse(vehicleDTO.getParked());
+    verify(spotAllocator).releaseAfterCommit(ParkingSpotType.REGULAR, spotIds);
+    verify(vehicleIndex).removeAfterCommit(List.of(1L));
+    verify(vehicleRepository, never()).findById(anyLong());
+    verify(parkingSpotRepository, never()).findByVehicleId(anyLong());
+    verify(parkingSpotRepository, never()).save(any(ParkingSpotEntity.class));
+    verify(billingService).closeSession(1L, VehicleType.VAN, ParkingSpotType.REGULAR, 3, 1_000L);
+  }
+
+  @Test
+  void removeIndexedVehicleAlreadyRemoved() {
+    long[] spotIds = {7L};
+    when(vehicleIndex.get(1L))
+        .thenReturn(
+            new VehicleIndex.ParkedVehicle(
+                VehicleType.CAR, ParkingSpotType.COMPACT, spotIds, 1_000L));
+    when(vehicleRepository.deleteVehicle(1L)).thenReturn(0);
+
+    PklNotFoundException exception =
+        assertThrows(PklNotFoundException.class, () -> parkingService.removeVehicle(1L));
+
+    assertEquals(ErrorCode.VEHICLE_NOT_FOUND, exception.getError());
+    verify(spotAllocator, never()).releaseAfterCommit(any(), any(long[].class));
+  }
+
+  @Test
+  void removeVehicleAlreadyRemoved() {
+    VehicleEntity vehicleEntity =
+        VehicleEntity.builder()
+            .id(1L)
+            .type(VehicleType.CAR)
+            .parkedAt(Instant.ofEpochMilli(1_000L))
+            .build();
+    when(vehicleRepository.findById(1L)).thenReturn(Optional.of(vehicleEntity));
+    when(vehicleRepository.deleteVehicle(1L)).thenReturn(0);
+
+    PklNotFoundException exception =
+        assertThrows(PklNotFoundException.class, () -> parkingService.removeVehicle(1L));
+
+    assertEquals(ErrorCode.VEHICLE_NOT_FOUND, exception.getError());
+    verify(parkingSpotRepository, never()).findByVehicleId(anyLong());
+    verify(spotAllocator, never()).releaseAfterCommit(any(), anyLong());
+    verify(billingService, never())
+        .closeSession(anyLong(), any(), any(), anyInt(), anyLong());
   }
 
   @Test
@@ -149,22 +281,116 @@ class ParkingServiceImplTest {
     assertEquals(ErrorCode.VEHICLE_NOT_FOUND, error);
   }
 
+  @Test
+  void parkVehiclesReportsUnknownTypes() {
+    BatchItemDTO parked =
+        BatchItemDTO.builder()
+            .vehicle(VehicleDTO.builder().vehicleId(1L).parked(Boolean.TRUE).build())
+            .build();
+    when(parkBehavior.park(anyList())).thenReturn(List.of(parked));
+
+    List<BatchItemDTO> items = parkingService.parkVehicles(Arrays.asList(null, VehicleType.CAR));
+
+    assertEquals(2, items.size());
+    assertEquals(ErrorCode.UNKNOWN_VEHICLE_TYPE, items.get(0).getError());
+    assertSame(parked, items.get(1));
+    verify(parkingMetrics, times(1)).park(eq(VehicleType.CAR), anyLong());
+    verify(parkingMetrics).failure(ErrorCode.UNKNOWN_VEHICLE_TYPE);
+  }
+
+  @Test
+  void removeVehiclesSuccessfully() {
+    when(vehicleRepository.findAllById(List.of(1L, 2L, 3L)))
+        .thenReturn(
+            List.of(
+                VehicleEntity.builder()
+                    .id(1L)
+                    .type(VehicleType.CAR)
+                    .parkedAt(Instant.ofEpochMilli(1_000L))
+                    .build(),
+                VehicleEntity.builder()
+                    .id(3L)
+                    .type(VehicleType.VAN)
+                    .parkedAt(Instant.ofEpochMilli(1_000L))
+                    .build()));
+    when(vehicleRepository.deleteVehicles(anyList())).thenReturn(List.of(1L, 3L));
+    when(parkingSpotRepository.findByVehicleIdIn(anyCollection()))
+        .thenReturn(
+            List.of(
+                ParkingSpotEntity.builder().id(7L).type(ParkingSpotType.COMPACT).build(),
+                ParkingSpotEntity.builder().id(8L).type(ParkingSpotType.REGULAR).build(),
+                ParkingSpotEntity.builder().id(9L).type(ParkingSpotType.REGULAR).build(),
+                ParkingSpotEntity.builder().id(10L).type(ParkingSpotType.REGULAR).build()));
+
+    List<BatchItemDTO> items = parkingService.removeVehicles(List.of(1L, 2L, 3L));
+
+    assertEquals(3, items.size());
+    assertFalse(items.get(0).getVehicle().getParked());
+    assertEquals(ErrorCode.VEHICLE_NOT_FOUND, items.get(1).getError());
+    assertEquals(VehicleType.VAN, items.get(2).getVehicle().getType());
+    verify(parkingSpotRepository, times(1)).releaseVehicles(anyCollection());
+    verify(vehicleRepository, times(1)).deleteVehicles(anyList());
+    verify(vehicleRepository, never()).deleteVehicle(anyLong());
+    verify(spotAllocator).releaseAfterCommit(ParkingSpotType.COMPACT, 7L);
+    verify(spotAllocator).releaseAfterCommit(ParkingSpotType.REGULAR, 8L, 9L, 10L);
+    verify(occupancyRecorder).leave(VehicleType.CAR, 1_000L);
+    verify(occupancyRecorder).leave(VehicleType.VAN, 1_000L);
+    verify(parkingMetrics).leave(eq(VehicleType.CAR), anyLong());
+    verify(parkingMetrics).leave(eq(VehicleType.VAN), anyLong());
+    verify(parkingMetrics).failure(ErrorCode.VEHICLE_NOT_FOUND);
+  }
+
+  @Test
+  void removeVehiclesSkipsVehiclesRemovedConcurrently() {
+    when(vehicleRepository.findAllById(List.of(1L, 2L)))
+        .thenReturn(
+            List.of(
+                VehicleEntity.builder()
+                    .id(1L)
+                    .type(VehicleType.CAR)
+                    .parkedAt(Instant.ofEpochMilli(1_000L))
+                    .build(),
+                VehicleEntity.builder()
+                    .id(2L)
+                    .type(VehicleType.CAR)
+                    .parkedAt(Instant.ofEpochMilli(1_000L))
+                    .build()));
+    when(vehicleRepository.deleteVehicles(anyList())).thenReturn(List.of(2L));
+    when(parkingSpotRepository.findByVehicleIdIn(Set.of(2L)))
+        .thenReturn(
+            List.of(
+                ParkingSpotEntity.builder()
+                    .id(8L)
+                    .type(ParkingSpotType.COMPACT)
+                    .vehicleId(2L)
+                    .build()));
+
+    List<BatchItemDTO> items = parkingService.removeVehicles(List.of(1L, 2L));
+
+    assertEquals(ErrorCode.VEHICLE_NOT_FOUND, items.get(0).getError());
+    assertEquals(2L, items.get(1).getVehicle().getVehicleId());
+    verify(parkingSpotRepository).releaseVehicles(Set.of(2L));
+    verify(vehicleIndex).removeAfterCommit(Set.of(2L));
+    verify(spotAllocator).releaseAfterCommit(ParkingSpotType.COMPACT, 8L);
+    verify(billingService).closeSession(2L, VehicleType.CAR, ParkingSpotType.COMPACT, 1, 1_000L);
+    verify(billingService, never())
+        .closeSession(eq(1L), any(), any(), anyInt(), anyLong());
+    verify(occupancyRecorder, times(1)).leave(VehicleType.CAR, 1_000L);
+  }
+
   @Test
   void countAvailableSpots() {
-    when(parkingSpotRepository.countByTypeAndVehicleIdIsNull(ParkingSpotType.REGULAR))
-        .thenReturn(5L);
+    when(spotAllocator.available(ParkingSpotType.REGULAR)).thenReturn(5);
 
     long availableSpots = parkingService.countAvailableSpots(ParkingSpotType.REGULAR);
 
     assertEquals(5L, availableSpots);
+    verifyNoInteractions(parkingSpotRepository);
   }
 
   @Test
   void areAllSpotsTaken() {
-    Vehicle vehicle = mock(Vehicle.class);
-    when(vehicle.getParkingSpotUsageByTypes()).thenReturn(Map.of(ParkingSpotType.REGULAR, 1));
-    when(parkingSpotRepository.findByTypeAndVehicleIdIsNull(ParkingSpotType.REGULAR))
-        .thenReturn(Collections.emptyList());
+    when(spotAllocator.available(ParkingSpotType.REGULAR)).thenReturn(0);
 
     boolean result = parkingService.areAllSpotsTaken(VehicleType.CAR);
 
@@ -173,31 +399,112 @@ class ParkingServiceImplTest {
 
   @Test
   void getAllParkedVehicles() {
-    List<VehicleEntity> vehicles =
-        List.of(VehicleEntity.builder().id(1L).type(VehicleType.CAR).build());
-    when(vehicleRepository.findAll()).thenReturn(vehicles);
-    when(translator.toDTO(any(VehicleEntity.class)))
-        .thenReturn(VehicleDTO.builder().vehicleId(1L).type(VehicleType.CAR).build());
+    List<VehicleSpotRow> rows =
+        List.of(
+            new VehicleSpotRow(1L, VehicleType.CAR, 10L, ParkingSpotType.COMPACT),
+            new VehicleSpotRow(2L, VehicleType.VAN, 20L, ParkingSpotType.REGULAR),
+            new VehicleSpotRow(2L, VehicleType.VAN, 21L, ParkingSpotType.REGULAR),
+            new VehicleSpotRow(2L, VehicleType.VAN, 22L, ParkingSpotType.REGULAR));
+    when(vehicleRepository.findAllWithSpots()).thenReturn(rows);
+    when(translator.toDTO(anyLong(), any(VehicleType.class))).thenCallRealMethod();
+    when(translator.toDTO(anyLong(), any(ParkingSpotType.class))).thenCallRealMethod();
 
     List<VehicleDTO> result = parkingService.getAllParkedVehicles();
 
     assertNotNull(result);
-    assertEquals(vehicles.size(), result.size());
-    for (int i = 0; i < result.size(); i++) {
-      assertEquals(vehicles.get(i).getId(), result.get(i).getVehicleId());
-      assertEquals(vehicles.get(i).getType().name(), result.get(i).getType().name());
-    }
+    assertEquals(2, result.size());
+    assertEquals(1L, result.get(0).getVehicleId());
+    assertEquals(VehicleType.CAR, result.get(0).getType());
+    assertEquals(List.of(10L), spotIds(result.get(0)));
+    assertEquals(2L, result.get(1).getVehicleId());
+    assertEquals(VehicleType.VAN, result.get(1).getType());
+    assertEquals(List.of(20L, 21L, 22L), spotIds(result.get(1)));
+    result.forEach(v -> assertTrue(v.getParked()));
+    verify(vehicleRepository, never()).findAll();
+    verify(parkingSpotRepository, never()).findByVehicleId(anyLong());
+  }
+
+  @Test
+  void getParkedVehiclesPage() {
+    when(vehicleRepository.findIdsAfter(eq(5L), any(Limit.class))).thenReturn(List.of(6L, 7L));
+    when(vehicleRepository.findWithSpotsByIdIn(List.of(6L, 7L)))
+        .thenReturn(
+            List.of(
+                new VehicleSpotRow(6L, VehicleType.MOTORCYCLE, 1L, ParkingSpotType.MOTORCYCLE),
+                new VehicleSpotRow(7L, VehicleType.CAR, 12L, ParkingSpotType.COMPACT)));
+    when(translator.toDTO(anyLong(), any(VehicleType.class))).thenCallRealMethod();
+    when(translator.toDTO(anyLong(), any(ParkingSpotType.class))).thenCallRealMethod();
+
+    List<VehicleDTO> result = parkingService.getParkedVehicles(5L, 2);
+
+    assertEquals(2, result.size());
+    assertEquals(6L, result.get(0).getVehicleId());
+    assertEquals(List.of(1L), spotIds(result.get(0)));
+    assertEquals(7L, result.get(1).getVehicleId());
+    assertEquals(List.of(12L), spotIds(result.get(1)));
+    verify(vehicleRepository).findIdsAfter(5L, Limit.of(2));
+  }
+
+  @Test
+  void getParkedVehiclesPageAfterLastVehicle() {
+    when(vehicleRepository.findIdsAfter(eq(7L), any(Limit.class))).thenReturn(List.of());
+
+    List<VehicleDTO> result = parkingService.getParkedVehicles(7L, 2);
+
+    assertTrue(result.isEmpty());
+    verify(vehicleRepository, never()).findWithSpotsByIdIn(any());
+  }
+
+  @Test
+  void streamParkedVehicles() {
+    when(vehicleRepository.streamAllWithSpots())
+        .thenReturn(
+            Stream.of(
+                new VehicleSpotRow(1L, VehicleType.VAN, 20L, ParkingSpotType.REGULAR),
+                new VehicleSpotRow(1L, VehicleType.VAN, 21L, ParkingSpotType.REGULAR),
+                new VehicleSpotRow(1L, VehicleType.VAN, 22L, ParkingSpotType.REGULAR),
+                new VehicleSpotRow(2L, VehicleType.CAR, 10L, ParkingSpotType.COMPACT)));
+    when(translator.toDTO(anyLong(), any(VehicleType.class))).thenCallRealMethod();
+    when(translator.toDTO(anyLong(), any(ParkingSpotType.class))).thenCallRealMethod();
+
+    List<VehicleDTO> result = new ArrayList<>();
+    parkingService.streamParkedVehicles(result::add);
+
+    assertEquals(2, result.size());
+    assertEquals(List.of(20L, 21L, 22L), spotIds(result.get(0)));
+    assertEquals(List.of(10L), spotIds(result.get(1)));
   }
 
   @Test
   void areAllSpotsTakenWhenAvailable() {
-    Vehicle vehicle = mock(Vehicle.class);
-    when(vehicle.getParkingSpotUsageByTypes()).thenReturn(Map.of(ParkingSpotType.REGULAR, 1));
-    when(parkingSpotRepository.findByTypeAndVehicleIdIsNull(ParkingSpotType.REGULAR))
-        .thenReturn(List.of(new ParkingSpotEntity()));
+    when(spotAllocator.available(ParkingSpotType.REGULAR)).thenReturn(1);
 
     boolean result = parkingService.areAllSpotsTaken(VehicleType.CAR);
 
     assertFalse(result);
   }
+
+  @Test
+  void areAllSpotsTakenWhenTheFreeSpotsAreNotAdjacent() {
+    SpotAllocator fragmented = new SpotAllocator();
+    ParkingSpotType[] types = new ParkingSpotType[6];
+    Arrays.fill(types, ParkingSpotType.REGULAR);
+    fragmented.load(
+        new long[] {1L, 2L, 3L, 4L, 5L, 6L},
+        types,
+        new boolean[] {true, false, true, false, true, false});
+    ReflectionTestUtils.setField(parkingService, "spotAllocator", fragmented);
+
+    assertEquals(3, fragmented.available(ParkingSpotType.REGULAR));
+    assertTrue(parkingService.areAllSpotsTaken(VehicleType.VAN));
+    assertFalse(parkingService.areAllSpotsTaken(VehicleType.CAR));
+
+    fragmented.release(ParkingSpotType.REGULAR, 4L);
+
+    assertFalse(parkingService.areAllSpotsTaken(VehicleType.VAN));
+  }
+
+  private static List<Long> spotIds(VehicleDTO vehicle) {
+    return vehicle.getParkedOn().stream().map(ParkingSpotDTO::getParkingSpotId).toList();
+  }
 }